@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+/**
+ * Window of pending invocations tuned by additive increase and multiplicative decrease, like the
+ * congestion window of TCP.
+ * <ul>
+ * <li>The window grows by one after a window of successful responses.</li>
+ * <li>The window shrinks by the backoff ratio when the server is busy or an invocation times out,
+ * at most once for the invocations sent before the last backoff, so a burst of failures counts once.</li>
+ * </ul>
+ * The window is a soft limit checked against the pending invocations before sending, the invocations
+ * checked at the same time may exceed it slightly.
+ */
+public class AimdLimiter {
+
+    private final int       minLimit;
+    private final int       maxLimit;
+    private final double    backoffRatio;
+
+    /** window, the update is synchronized and the read is lock free */
+    private volatile double window;
+
+    /** time in nanos of the last backoff */
+    private long            lastBackoffTime;
+    private boolean         backedOff;
+
+    /**
+     * @param initialLimit initial window
+     * @param maxLimit max window
+     * @param backoffPercent percentage of the window kept when backing off
+     */
+    public AimdLimiter(int initialLimit, int maxLimit, int backoffPercent) {
+        if (maxLimit < 1 || backoffPercent <= 0 || backoffPercent >= 100) {
+            throw new IllegalArgumentException("Illegal max limit " + maxLimit
+                                               + " or backoff percent " + backoffPercent);
+        }
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffPercent / 100.0;
+        this.window = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Whether one more invocation is allowed.
+     *
+     * @param pending number of pending invocations
+     * @return true if the pending invocations are below the window
+     */
+    public boolean allow(int pending) {
+        return pending < getLimit();
+    }
+
+    /**
+     * Grow the window on a successful response.
+     */
+    public synchronized void onSuccess() {
+        this.window = Math.min(maxLimit, this.window + 1 / this.window);
+    }
+
+    /**
+     * Shrink the window when the server is busy or an invocation times out.
+     *
+     * @param sendTime time in nanos the invocation was sent
+     */
+    public synchronized void onOverload(long sendTime) {
+        if (this.backedOff && sendTime - this.lastBackoffTime <= 0) {
+            return;
+        }
+        this.window = Math.max(minLimit, this.window * backoffRatio);
+        this.lastBackoffTime = System.nanoTime();
+        this.backedOff = true;
+    }
+
+    /**
+     * Get the current window.
+     *
+     * @return window
+     */
+    public int getLimit() {
+        return (int) this.window;
+    }
+}
@@ -16,8 +16,10 @@
  */
 package com.alipay.remoting;
 
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.exception.RemotingException;
 import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.rpc.RpcCommand;
 import com.alipay.remoting.util.RemotingUtil;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -40,8 +42,12 @@ public abstract class BaseRemoting {
 
     protected CommandFactory commandFactory;
 
+    /** whether the invoke timeouts are scanned in the event loops, see {@link InvokeTimeoutScanner} */
+    private final boolean invokeTimeoutScan;
+
     public BaseRemoting(CommandFactory commandFactory) {
         this.commandFactory = commandFactory;
+        this.invokeTimeoutScan = ConfigManager.invoke_timeout_scan();
     }
 
     /**
@@ -61,14 +67,17 @@ public abstract class BaseRemoting {
         conn.addInvokeFuture(future);
         final int requestId = request.getId();
         try {
-            conn.getChannel().writeAndFlush(request).addListener((ChannelFutureListener) f -> {
+            conn.markInvoke();
+            writeAndFlush(conn, request).addListener((ChannelFutureListener) f -> {
                 if (!f.isSuccess()) {
+                    releaseUnsent(request);
                     conn.removeInvokeFuture(requestId);
                     future.putResponse(commandFactory.createSendFailedResponse(conn.getRemoteAddress(), f.cause()));
                     logger.error("Invoke send failed, id={}", requestId, f.cause());
                 }
             });
         } catch (Exception e) {
+            releaseUnsent(request);
             conn.removeInvokeFuture(requestId);
             future.putResponse(commandFactory.createSendFailedResponse(conn.getRemoteAddress(), e));
             logger.error("Exception caught when sending invocation, id={}", requestId, e);
@@ -76,7 +85,12 @@ public abstract class BaseRemoting {
         RemotingCommand response = future.waitResponse(timeoutMillis); // 使用countdownlatch等待，直到超时
 
         if (response == null) {
-            conn.removeInvokeFuture(requestId);
+            if (conn.removeInvokeFuture(requestId) != null) {
+                conn.recordResponseLatency(future);
+                conn.recordInvokeResult(future, true);
+            }
+            // the response may still be put right after the wait times out, nobody resolves it then
+            future.release();
             response = this.commandFactory.createTimeoutResponse(conn.getRemoteAddress());
             logger.warn("Wait response, request id={} timeout!", requestId);
         }
@@ -100,24 +114,28 @@ public abstract class BaseRemoting {
         conn.addInvokeFuture(future);
         final int requestId = request.getId();
         try {
-            Timeout timeout = TimerHolder.getTimer().newTimeout(new TimerTask() {
+            Timeout timeout = newTimeout(conn, new TimerTask() {
                 @Override
                 public void run(Timeout timeout) throws Exception {
                     InvokeFuture future = conn.removeInvokeFuture(requestId);
                     if (future != null) {
+                        conn.recordResponseLatency(future);
+                        conn.recordInvokeResult(future, true);
                         future.putResponse(commandFactory.createTimeoutResponse(conn
                                 .getRemoteAddress()));
                         future.tryAsyncExecuteInvokeCallbackAbnormally();
                     }
                 }
 
-            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }, timeoutMillis);
             future.addTimeout(timeout);
-            conn.getChannel().writeAndFlush(request).addListener(new ChannelFutureListener() {
+            conn.markInvoke();
+            writeAndFlush(conn, request).addListener(new ChannelFutureListener() {
 
                 @Override
                 public void operationComplete(ChannelFuture cf) throws Exception {
                     if (!cf.isSuccess()) {
+                        releaseUnsent(request);
                         InvokeFuture f = conn.removeInvokeFuture(requestId);
                         if (f != null) {
                             f.cancelTimeout();
@@ -132,6 +150,7 @@ public abstract class BaseRemoting {
 
             });
         } catch (Exception e) {
+            releaseUnsent(request);
             InvokeFuture f = conn.removeInvokeFuture(requestId);
             if (f != null) {
                 f.cancelTimeout();
@@ -153,29 +172,46 @@ public abstract class BaseRemoting {
      */
     protected InvokeFuture invokeWithFuture(final Connection conn, final RemotingCommand request,
                                             final int timeoutMillis) {
+        return invokeWithFuture(conn, request,
+            createInvokeFuture(request, request.getInvokeContext()), timeoutMillis);
+    }
 
-        final InvokeFuture future = createInvokeFuture(request, request.getInvokeContext());
+    /**
+     * Invocation with the given future, which is completed by the response, the timeout or the send failure.
+     *
+     * @param conn
+     * @param request
+     * @param future
+     * @param timeoutMillis
+     * @return
+     */
+    protected InvokeFuture invokeWithFuture(final Connection conn, final RemotingCommand request,
+                                            final InvokeFuture future, final int timeoutMillis) {
         conn.addInvokeFuture(future);
         final int requestId = request.getId();
         try {
-            Timeout timeout = TimerHolder.getTimer().newTimeout(new TimerTask() {
+            Timeout timeout = newTimeout(conn, new TimerTask() {
                 @Override
                 public void run(Timeout timeout) throws Exception {
                     InvokeFuture future = conn.removeInvokeFuture(requestId);
                     if (future != null) {
+                        conn.recordResponseLatency(future);
+                        conn.recordInvokeResult(future, true);
                         future.putResponse(commandFactory.createTimeoutResponse(conn
                                 .getRemoteAddress()));
                     }
                 }
 
-            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }, timeoutMillis);
             future.addTimeout(timeout);
 
-            conn.getChannel().writeAndFlush(request).addListener(new ChannelFutureListener() {
+            conn.markInvoke();
+            writeAndFlush(conn, request).addListener(new ChannelFutureListener() {
 
                 @Override
                 public void operationComplete(ChannelFuture cf) throws Exception {
                     if (!cf.isSuccess()) {
+                        releaseUnsent(request);
                         InvokeFuture f = conn.removeInvokeFuture(requestId);
                         if (f != null) {
                             f.cancelTimeout();
@@ -189,6 +225,7 @@ public abstract class BaseRemoting {
 
             });
         } catch (Exception e) {
+            releaseUnsent(request);
             InvokeFuture f = conn.removeInvokeFuture(requestId);
             if (f != null) {
                 f.cancelTimeout();
@@ -209,11 +246,13 @@ public abstract class BaseRemoting {
      */
     protected void oneway(final Connection conn, final RemotingCommand request) {
         try {
-            conn.getChannel().writeAndFlush(request).addListener(new ChannelFutureListener() {
+            conn.markInvoke();
+            writeAndFlush(conn, request).addListener(new ChannelFutureListener() {
 
                 @Override
                 public void operationComplete(ChannelFuture f) throws Exception {
                     if (!f.isSuccess()) {
+                        releaseUnsent(request);
                         logger.error("Invoke send failed. The address is {}",
                                 RemotingUtil.parseRemoteAddress(conn.getChannel()), f.cause());
                     }
@@ -221,6 +260,7 @@ public abstract class BaseRemoting {
 
             });
         } catch (Exception e) {
+            releaseUnsent(request);
             if (null == conn) {
                 logger.error("Conn is null");
             } else {
@@ -230,6 +270,45 @@ public abstract class BaseRemoting {
         }
     }
 
+    /**
+     * Write and flush a request to the connection, the way the request is written may be customized by subclasses.
+     *
+     * @param conn
+     * @param request
+     * @return the future of the write
+     */
+    protected ChannelFuture writeAndFlush(Connection conn, RemotingCommand request) {
+        return conn.getChannel().writeAndFlush(request);
+    }
+
+    /**
+     * Create the timeout of an invocation, checked in the event loop of the connection
+     * or scheduled in the global timer.
+     *
+     * @param conn
+     * @param task
+     * @param timeoutMillis
+     * @return
+     */
+    private Timeout newTimeout(Connection conn, TimerTask task, int timeoutMillis) {
+        if (this.invokeTimeoutScan) {
+            return conn.newInvokeTimeout(task, timeoutMillis);
+        }
+        return TimerHolder.getTimer().newTimeout(task, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Release the content buffer of a request which fails to be sent, it is safe even if the encoder has
+     * released it.
+     *
+     * @param request
+     */
+    private void releaseUnsent(RemotingCommand request) {
+        if (request instanceof RpcCommand) {
+            ((RpcCommand) request).release();
+        }
+    }
+
     /**
      * Create invoke future with {@link InvokeContext}.
      *
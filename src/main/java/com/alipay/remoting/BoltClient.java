@@ -622,6 +622,26 @@ public interface BoltClient extends Configurable, LifeCycle {
      */
     boolean isConnectionMonitorSwitchOn();
 
+    /**
+     * enable request batch switch on, the requests to the same pool key within a window are written
+     * together as one batch frame, see {@link com.alipay.remoting.config.Configs#INVOKE_BATCH}
+     * <p>
+     * Notice: This api should be called before {@link RpcClient#init()}
+     */
+    void enableRequestBatchSwitch();
+
+    /**
+     * disable request batch switch off
+     * <p>
+     * Notice: This api should be called before {@link RpcClient#init()}
+     */
+    void disableRequestBatchSwitch();
+
+    /**
+     * is request batch switch on
+     */
+    boolean isRequestBatchSwitchOn();
+
     /**
      * Getter method for property <tt>connectionManager</tt>.
      *
@@ -36,6 +36,21 @@ public interface CommandFactory {
      */
     <T extends RemotingCommand> T createRequestCommand(final Object requestObject);
 
+    /**
+     * create a request command with request object and id, the id is usually allocated by
+     * {@link Connection#nextInvokeId()} of the connection to send the command.
+     * The factories not overriding it ignore the id and create the command by
+     * {@link #createRequestCommand(Object)}
+     *
+     * @param requestObject the request object included in request command
+     * @param id            request id
+     * @param <T>
+     * @return
+     */
+    default <T extends RemotingCommand> T createRequestCommand(final Object requestObject, int id) {
+        return createRequestCommand(requestObject);
+    }
+
     // ~~~ create response command
 
     /**
@@ -16,6 +16,7 @@
  */
 package com.alipay.remoting;
 
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.log.BoltLoggerFactory;
 import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
 import com.alipay.remoting.util.ConcurrentHashSet;
@@ -23,15 +24,17 @@ import com.alipay.remoting.util.RemotingUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 
 import java.net.InetSocketAddress;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -62,7 +65,8 @@ public class Connection {
 
     /** no reference of the current connection */
     private static final int NO_REFERENCE = 0;
-    private final ConcurrentHashMap<Integer, InvokeFuture> invokeFutureMap = new ConcurrentHashMap<>(4);
+    private final InvokeFutureTable invokeFutureMap = new InvokeFutureTable(
+            ConfigManager.conn_invoke_future_table_size());
     private final ConcurrentHashMap<Integer/* id */, String/* poolKey */> id2PoolKey = new ConcurrentHashMap<>(256);
     private final ConcurrentHashMap<String/* attr key*/, Object /*attr value*/> attributes = new ConcurrentHashMap<>();
     /**
@@ -75,6 +79,18 @@ public class Connection {
     private Url url;
     private Set<String> poolKeys = new ConcurrentHashSet<>();
     private AtomicBoolean closed = new AtomicBoolean(false);
+    /** sequence of the invoke ids, which only need to be unique among the pending invocations of this connection */
+    private final AtomicInteger invokeIdSequence = new AtomicInteger();
+    /** whether registered to the invoke timeout scanner of the event loop */
+    private final AtomicBoolean timeoutScanRegistered = new AtomicBoolean(false);
+    /** monitor of the threads waiting for the connection to be writable */
+    private final Object writableLock = new Object();
+    /** response latency of the invocations */
+    private final LatencyEwma responseLatency = new LatencyEwma(ConfigManager.conn_latency_decay());
+    /** pool sharing its AIMD invoke limit with this connection, null if none */
+    private volatile ConnectionPool invokeLimitPool;
+    /** time in millis of the last invocation, or of the creation if no invocation yet */
+    private volatile long lastInvokeTime = System.currentTimeMillis();
 
     /**
      * Constructor
@@ -143,6 +159,80 @@ public class Connection {
         return this.channel != null && this.channel.isActive();
     }
 
+    /**
+     * Whether the outbound buffer of the connection is under the high water mark.
+     *
+     * @return true if writable
+     */
+    public boolean isWritable() {
+        return this.channel != null && this.channel.isWritable();
+    }
+
+    /**
+     * Get the bytes written to the connection but not yet flushed to the socket.
+     *
+     * @return pending bytes, 0 if the connection is closed
+     */
+    public long getPendingWriteBytes() {
+        if (this.channel == null) {
+            return 0;
+        }
+        ChannelOutboundBuffer buffer = this.channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    /**
+     * Get the bytes can be written until the connection becomes unwritable.
+     *
+     * @return bytes before unwritable, 0 if already unwritable
+     */
+    public long bytesBeforeUnwritable() {
+        return this.channel == null ? 0 : this.channel.bytesBeforeUnwritable();
+    }
+
+    /**
+     * Wait for the connection to be writable.
+     * <p>
+     * Notice: never wait in the event loop of the connection, which is the only thread to drain the outbound buffer.
+     *
+     * @param timeoutMillis max time to wait in millisecond
+     * @return true if the connection is writable
+     */
+    public boolean awaitWritable(long timeoutMillis) {
+        if (this.isWritable()) {
+            return true;
+        }
+        if (this.channel == null || this.channel.eventLoop().inEventLoop()) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this.writableLock) {
+            while (!this.isWritable() && this.isFine()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.writableLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return this.isWritable();
+    }
+
+    /**
+     * Wake up the threads waiting for the connection to be writable, called when the writability
+     * of the channel changed or the connection closed.
+     */
+    public void onWritabilityChanged() {
+        synchronized (this.writableLock) {
+            this.writableLock.notifyAll();
+        }
+    }
+
     /**
      * increase the reference count
      */
@@ -229,6 +319,25 @@ public class Connection {
         return this.channel;
     }
 
+    /**
+     * Allocate an id for a command to invoke on this connection.
+     * <p>
+     * The ids are allocated from a sequence of this connection, an id still pending after the sequence wraps
+     * around is skipped.
+     *
+     * @return invoke id
+     */
+    public int nextInvokeId() {
+        for (;;) {
+            int id = this.invokeIdSequence.incrementAndGet();
+            if (this.invokeFutureMap.get(id) == null) {
+                return id;
+            }
+            logger.warn("Invoke id {} of connection {} is still pending, skip it", id,
+                    RemotingUtil.parseRemoteAddress(this.channel));
+        }
+    }
+
     /**
      * Get the InvokeFuture with invokeId of id.
      *
@@ -246,7 +355,7 @@ public class Connection {
      * @return previous InvokeFuture with same invoke id
      */
     public InvokeFuture addInvokeFuture(InvokeFuture future) {
-        return this.invokeFutureMap.putIfAbsent(future.invokeId(), future);
+        return this.invokeFutureMap.putIfAbsent(future);
     }
 
     /**
@@ -259,21 +368,51 @@ public class Connection {
         return this.invokeFutureMap.remove(id);
     }
 
+    /**
+     * Create a timeout for an invoke future of this connection, which is checked by the
+     * {@link InvokeTimeoutScanner} of the event loop of this connection.
+     *
+     * @param task          task to run when timeout
+     * @param timeoutMillis timeout in millisecond
+     * @return timeout to add to the invoke future
+     */
+    public Timeout newInvokeTimeout(TimerTask task, int timeoutMillis) {
+        InvokeTimeoutScanner scanner = InvokeTimeoutScanner.of(this.channel.eventLoop());
+        if (!this.timeoutScanRegistered.get() && this.timeoutScanRegistered.compareAndSet(false, true)) {
+            scanner.register(this);
+        }
+        return new InvokeTimeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis),
+                scanner.timer());
+    }
+
+    /**
+     * Expire the invoke timeouts whose deadline is reached, called in the event loop.
+     *
+     * @param now current time in nanos
+     */
+    void scanInvokeTimeouts(long now) {
+        this.invokeFutureMap.forEach(future -> {
+            Timeout timeout = future.getTimeout();
+            if (timeout instanceof InvokeTimeout) {
+                ((InvokeTimeout) timeout).expire(now);
+            }
+        });
+    }
+
     /**
      * Do something when closing.
      */
     public void onClose() {
-        Iterator<Entry<Integer, InvokeFuture>> iter = invokeFutureMap.entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<Integer, InvokeFuture> entry = iter.next();
-            iter.remove();
-            InvokeFuture future = entry.getValue();
+        invokeFutureMap.forEach(pending -> {
+            // only handle the futures not removed by the response or timeout concurrently
+            InvokeFuture future = invokeFutureMap.remove(pending.invokeId());
             if (future != null) {
                 future.putResponse(future.createConnectionClosedResponse(this.getRemoteAddress()));
                 future.cancelTimeout();
                 future.tryAsyncExecuteInvokeCallbackAbnormally();
             }
-        }
+        });
+        onWritabilityChanged();
     }
 
     /**
@@ -303,6 +442,119 @@ public class Connection {
         }
     }
 
+    /**
+     * Get the number of invocations pending on this connection.
+     *
+     * @return pending invocations
+     */
+    public int getInvokeFutureCount() {
+        return invokeFutureMap.size();
+    }
+
+    /**
+     * Get the time of the last invocation on this connection.
+     *
+     * @return time in millis, the creation time if no invocation yet
+     */
+    public long getLastInvokeTime() {
+        return lastInvokeTime;
+    }
+
+    /**
+     * do mark the time of an invocation sent on this connection, oneway ones included
+     */
+    public void markInvoke() {
+        this.lastInvokeTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Record the latency of an invocation when its response arrives or it times out, skipped if
+     * the future does not track its start time.
+     *
+     * @param future the invoke future removed from this connection
+     */
+    public void recordResponseLatency(InvokeFuture future) {
+        long startTime = future.getStartTime();
+        if (startTime == InvokeFuture.NO_START_TIME) {
+            return;
+        }
+        long now = System.nanoTime();
+        this.responseLatency.update(now - startTime, now);
+    }
+
+    /**
+     * Get the EWMA of the response latency, decayed to now.
+     *
+     * @return latency in nanos, 0 if no response recorded
+     */
+    public double getResponseLatency() {
+        return this.responseLatency.get(System.nanoTime());
+    }
+
+    /**
+     * Record the result of an invocation to the invoke limiter when its response arrives or it times out.
+     *
+     * @param future the invoke future removed from this connection
+     * @param overloaded true if the server is busy or the invocation times out
+     */
+    public void recordInvokeResult(InvokeFuture future, boolean overloaded) {
+        AimdLimiter limiter = getInvokeLimiter();
+        if (limiter == null) {
+            return;
+        }
+        if (overloaded) {
+            long startTime = future.getStartTime();
+            limiter.onOverload(startTime == InvokeFuture.NO_START_TIME ? System.nanoTime()
+                : startTime);
+        } else {
+            limiter.onSuccess();
+        }
+    }
+
+    /**
+     * Get the AIMD limit of the pending invocations, shared by the connections of the pool this
+     * connection is first added to.
+     *
+     * @return invoke limiter, null if not switched on or not added to a pool
+     */
+    public AimdLimiter getInvokeLimiter() {
+        ConnectionPool pool = this.invokeLimitPool;
+        return pool == null ? null : pool.getInvokeLimiter();
+    }
+
+    /**
+     * Get the number of pending invocations checked against the AIMD invoke limit, which are the
+     * pending invocations of all the connections sharing the limit.
+     *
+     * @return pending invocations count
+     */
+    public int getLimitedInvokeCount() {
+        ConnectionPool pool = this.invokeLimitPool;
+        return pool == null ? getInvokeFutureCount() : pool.getInvokeFutureCount();
+    }
+
+    /**
+     * Share the AIMD invoke limit of a pool, the first pool added to wins.
+     *
+     * @param pool connection pool
+     */
+    synchronized void bindInvokeLimit(ConnectionPool pool) {
+        if (this.invokeLimitPool == null && pool.getInvokeLimiter() != null) {
+            this.invokeLimitPool = pool;
+        }
+    }
+
+    /**
+     * Stop sharing the AIMD invoke limit of a pool the connection is removed from.
+     *
+     * @param pool connection pool
+     */
+    synchronized void unbindInvokeLimit(ConnectionPool pool) {
+        if (this.invokeLimitPool == pool) {
+            this.invokeLimitPool = null;
+        }
+    }
+
     /**
      * Whether invokeFutures is completed
      */
@@ -412,11 +664,16 @@ public class Connection {
     }
 
     /**
-     * Getter method for property <tt>invokeFutureMap</tt>.
+     * Get a snapshot of the pending invoke futures, changes to it take no effect on this connection.
      *
-     * @return property value of invokeFutureMap
+     * @return snapshot of the pending invoke futures keyed by invoke id
+     * @deprecated the invoke futures are kept in an {@link InvokeFutureTable}, use {@link #getInvokeFuture(int)},
+     * {@link #removeInvokeFuture(int)} or {@link #isInvokeFutureMapFinish()} instead
      */
+    @Deprecated
     public ConcurrentHashMap<Integer, InvokeFuture> getInvokeFutureMap() {
-        return invokeFutureMap;
+        final ConcurrentHashMap<Integer, InvokeFuture> snapshot = new ConcurrentHashMap<Integer, InvokeFuture>();
+        invokeFutureMap.forEach(future -> snapshot.put(future.invokeId(), future));
+        return snapshot;
     }
 }
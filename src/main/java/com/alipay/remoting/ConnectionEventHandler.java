@@ -131,6 +131,15 @@ public class ConnectionEventHandler extends ChannelDuplexHandler {
         super.channelActive(ctx);
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        final Connection conn = ctx.channel().attr(Connection.CONNECTION).get();
+        if (conn != null) {
+            conn.onWritabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         String remoteAddress = RemotingUtil.parseRemoteAddress(ctx.channel());
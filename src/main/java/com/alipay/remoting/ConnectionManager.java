@@ -20,6 +20,7 @@ import com.alipay.remoting.exception.RemotingException;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Connection manager of connection pool
@@ -130,6 +131,29 @@ public interface ConnectionManager extends Scannable, LifeCycle {
      */
     Connection getAndCreateIfAbsent(Url url) throws InterruptedException, RemotingException;
 
+    /**
+     * Get a connection using {@link Url} without blocking the caller, the connections are created in
+     * the connection create executor if absent, and the acquisitions of the same {@link Url} wait for
+     * the same creation. The managers not overriding it create the connections in the caller thread by
+     * {@link #getAndCreateIfAbsent(Url)} and return a completed future.
+     *
+     * @param url {@link Url} contains connect infos.
+     * @return future of the connection, completed exceptionally with {@link RemotingException} if create failed.
+     */
+    default CompletableFuture<Connection> getAndCreateIfAbsentAsync(Url url) {
+        CompletableFuture<Connection> future = new CompletableFuture<Connection>();
+        try {
+            future.complete(getAndCreateIfAbsent(url));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new RemotingException(
+                "Interrupted while creating connection to " + url.getUniqueKey(), e));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * This method can create connection pool with connections initialized and check the number of connections.
      * The connection number of {@link ConnectionPool} is decided by {@link Url#getConnNum()}.
@@ -16,12 +16,16 @@
  */
 package com.alipay.remoting;
 
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.log.BoltLoggerFactory;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Connection pool
@@ -38,15 +42,49 @@ public class ConnectionPool implements Scannable {
     private volatile long lastAccessTimestamp;
     private volatile boolean asyncCreationDone;
 
+    /** min and max size of an elastic pool, equal if the pool is not elastic */
+    private final int minSize;
+    private final int maxSize;
+    private final int growInflight;
+    private final long growPendingBytes;
+    private final long idleTimeout;
+    private final long drainTimeout;
+    /** idle connections removed from the selection, mapped to the time they started draining */
+    private final ConcurrentHashMap<Connection, Long> draining = new ConcurrentHashMap<Connection, Long>();
+    private final AtomicBoolean growing = new AtomicBoolean(false);
+    /** AIMD limit of the pending invocations of all the connections, null if not switched on */
+    private final AimdLimiter invokeLimiter;
+
     /**
      * Constructor
      *
      * @param strategy ConnectionSelectStrategy
      */
     public ConnectionPool(ConnectionSelectStrategy strategy) {
+        this(strategy, 0, 0);
+    }
+
+    /**
+     * Constructor of an elastic pool, which grows towards the max size when its connections are loaded
+     * and shrinks towards the min size when its connections are idle.
+     *
+     * @param strategy ConnectionSelectStrategy
+     * @param minSize  min number of connections kept by scanning
+     * @param maxSize  max number of connections created by growing
+     */
+    public ConnectionPool(ConnectionSelectStrategy strategy, int minSize, int maxSize) {
         this.strategy = strategy;
         this.connections = new CopyOnWriteArrayList<>();
         this.asyncCreationDone = true;
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+        this.growInflight = ConfigManager.conn_pool_elastic_grow_inflight();
+        this.growPendingBytes = ConfigManager.conn_pool_elastic_grow_pending_bytes();
+        this.idleTimeout = ConfigManager.conn_pool_elastic_idle();
+        this.drainTimeout = ConfigManager.conn_pool_elastic_drain();
+        this.invokeLimiter = ConfigManager.invoke_aimd_limit() ? new AimdLimiter(
+            ConfigManager.invoke_aimd_limit_initial(), ConfigManager.invoke_aimd_limit_max(),
+            ConfigManager.invoke_aimd_limit_backoff()) : null;
     }
 
     /**
@@ -62,6 +100,7 @@ public class ConnectionPool implements Scannable {
         boolean res = connections.addIfAbsent(connection);
         if (res) {
             connection.increaseRef();
+            connection.bindInvokeLimit(this);
         }
     }
 
@@ -84,9 +123,10 @@ public class ConnectionPool implements Scannable {
         if (null == connection) {
             return;
         }
-        boolean res = connections.remove(connection);
+        boolean res = connections.remove(connection) || null != draining.remove(connection);
         if (res) {
             connection.decreaseRef();
+            connection.unbindInvokeLimit(this);
         }
         if (connection.noRef()) {
             connection.close();
@@ -100,6 +140,9 @@ public class ConnectionPool implements Scannable {
         for (Connection conn : connections) {
             removeAndTryClose(conn);
         }
+        for (Connection conn : draining.keySet()) {
+            removeAndTryClose(conn);
+        }
         connections.clear();
     }
 
@@ -166,6 +209,77 @@ public class ConnectionPool implements Scannable {
         lastAccessTimestamp = System.currentTimeMillis();
     }
 
+    /**
+     * whether this pool grows and shrinks with the load
+     *
+     * @return true if elastic
+     */
+    public boolean isElastic() {
+        return maxSize > minSize;
+    }
+
+    /**
+     * whether the connections are loaded beyond the thresholds and the pool can grow, either the
+     * average number of pending invocations or the average outbound pending bytes counts
+     *
+     * @return true if one more connection should be created
+     */
+    public boolean needGrow() {
+        if (!isElastic() || growing.get()) {
+            return false;
+        }
+        int size = 0;
+        long inflight = 0;
+        long pendingBytes = 0;
+        for (Connection conn : connections) {
+            ++size;
+            inflight += conn.getInvokeFutureCount();
+            pendingBytes += conn.getPendingWriteBytes();
+        }
+        if (size == 0 || size >= maxSize) {
+            return false;
+        }
+        return inflight >= (long) growInflight * size || pendingBytes >= growPendingBytes * size;
+    }
+
+    /**
+     * get the number of pending invocations of all the connections
+     *
+     * @return pending invocations count
+     */
+    public int getInvokeFutureCount() {
+        int count = 0;
+        for (Connection conn : connections) {
+            count += conn.getInvokeFutureCount();
+        }
+        return count;
+    }
+
+    /**
+     * get the AIMD limit of the pending invocations of all the connections
+     *
+     * @return invoke limiter, null if not switched on
+     */
+    public AimdLimiter getInvokeLimiter() {
+        return invokeLimiter;
+    }
+
+    /**
+     * do mark the start of growing, only one connection is created at a time
+     *
+     * @return false if the pool is growing already
+     */
+    public boolean markGrowStart() {
+        return growing.compareAndSet(false, true);
+    }
+
+    /**
+     * do mark the end of growing
+     */
+    public void markGrowDone() {
+        growing.set(false);
+    }
+
     /**
      * is async create connection done
      *
@@ -201,5 +315,44 @@ public class ConnectionPool implements Scannable {
                 }
             }
         }
+        if (isElastic()) {
+            shrink();
+        }
+    }
+
+    /**
+     * drain the connections without invocation for the idle timeout, until the min size is reached,
+     * and close the draining connections without invocation for the drain timeout
+     *
+     * a draining connection is no longer selected, but it may have been handed out by {@link #get()}
+     * just before, so it is only closed after the grace period with no pending invocation
+     */
+    private void shrink() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Connection, Long> entry : draining.entrySet()) {
+            Connection conn = entry.getKey();
+            long lastInvokeTime = Math.max(entry.getValue(), conn.getLastInvokeTime());
+            if (!conn.isFine()
+                || (conn.getInvokeFutureCount() == 0 && now - lastInvokeTime > drainTimeout)) {
+                logger.info("Remove drained connection when scanning conns of ConnectionPool - {}:{}",
+                        conn.getRemoteIP(), conn.getRemotePort());
+                removeAndTryClose(conn);
+            }
+        }
+        for (Connection conn : connections) {
+            if (connections.size() <= minSize) {
+                return;
+            }
+            if (conn.getInvokeFutureCount() == 0
+                && now - conn.getLastInvokeTime() > idleTimeout) {
+                logger.info("Drain idle connection when scanning conns of ConnectionPool - {}:{}",
+                        conn.getRemoteIP(), conn.getRemotePort());
+                // tracked as draining before leaving the selection, so that removeAll never misses it
+                draining.put(conn, now);
+                if (!connections.remove(conn)) {
+                    draining.remove(conn);
+                }
+            }
+        }
     }
 }
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
@@ -77,6 +78,13 @@ public class DefaultConnectionManager extends AbstractLifeCycle implements Conne
     /** executor to create connections in async way */
     private ThreadPoolExecutor asyncCreateConnectionExecutor;
 
+    /** whether the pools grow and shrink with the load, and the max size they grow to */
+    private final boolean elasticPool;
+    private final int elasticPoolMaxSize;
+
+    /** connection pools being created for the async acquisitions */
+    private final ConcurrentHashMap<String, CompletableFuture<ConnectionPool>> pendingPools = new ConcurrentHashMap<>();
+
     /** switch status */
     private GlobalSwitch globalSwitch;
 
@@ -85,6 +93,8 @@ public class DefaultConnectionManager extends AbstractLifeCycle implements Conne
         this.connTasks = new ConcurrentHashMap<>();
         this.healTasks = new ConcurrentHashMap<>();
         this.connectionSelectStrategy = new RandomSelectStrategy(globalSwitch);
+        this.elasticPool = ConfigManager.conn_pool_elastic();
+        this.elasticPoolMaxSize = ConfigManager.conn_pool_elastic_max();
     }
 
     /**
@@ -423,13 +433,104 @@ public class DefaultConnectionManager extends AbstractLifeCycle implements Conne
         // get and create a connection pool with initialized connections.
         ConnectionPool pool = this.getConnectionPoolAndCreateIfAbsent(url.getUniqueKey(), new ConnectionPoolCall(url));
         if (null != pool) {
-            return pool.get();
+            return this.select(pool, url);
         } else {
             logger.error("[NOTIFYME] bug detected! pool here must not be null!");
             return null;
         }
     }
 
+    /**
+     * Complete at once if the connection pool is created, otherwise create it in the connection create executor,
+     * the acquisitions during the creation wait for the same future.
+     *
+     * @see ConnectionManager#getAndCreateIfAbsentAsync(Url)
+     */
+    @Override
+    public CompletableFuture<Connection> getAndCreateIfAbsentAsync(final Url url) {
+        final String poolKey = url.getUniqueKey();
+        RunStateRecordedFutureTask<ConnectionPool> task = this.connTasks.get(poolKey);
+        if (null != task && task.isDone()) {
+            ConnectionPool pool = this.getConnectionPool(task);
+            if (null != pool) {
+                return CompletableFuture.completedFuture(this.select(pool, url));
+            }
+        }
+
+        CompletableFuture<ConnectionPool> poolFuture = this.pendingPools.get(poolKey);
+        if (null == poolFuture) {
+            final CompletableFuture<ConnectionPool> newFuture = new CompletableFuture<ConnectionPool>();
+            poolFuture = this.pendingPools.putIfAbsent(poolKey, newFuture);
+            if (null == poolFuture) {
+                poolFuture = newFuture;
+                newFuture.whenComplete((pool, cause) -> this.pendingPools.remove(poolKey, newFuture));
+                try {
+                    this.asyncCreateConnectionExecutor.execute(() -> {
+                        try {
+                            newFuture.complete(this.getConnectionPoolAndCreateIfAbsent(poolKey,
+                                    new ConnectionPoolCall(url)));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            newFuture.completeExceptionally(e);
+                        } catch (Throwable e) {
+                            newFuture.completeExceptionally(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    newFuture.completeExceptionally(new RemotingException(
+                            "Create connection rejected by the executor for " + poolKey, e));
+                }
+            }
+        }
+        return poolFuture.thenApply(pool -> this.select(pool, url));
+    }
+
+    /**
+     * Select a connection from the pool, and grow the pool in async way if it is elastic and loaded.
+     *
+     * @param pool connection pool
+     * @param url  target url
+     * @return selected connection
+     */
+    private Connection select(ConnectionPool pool, Url url) {
+        Connection conn = pool.get();
+        if (pool.needGrow()) {
+            this.grow(pool, url);
+        }
+        return conn;
+    }
+
+    /**
+     * Create one more connection for an elastic pool in the connection create executor.
+     *
+     * @param pool connection pool
+     * @param url  target url
+     */
+    private void grow(final ConnectionPool pool, final Url url) {
+        if (null == this.asyncCreateConnectionExecutor || !pool.markGrowStart()) {
+            return;
+        }
+        try {
+            this.asyncCreateConnectionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pool.add(create(url));
+                        logger.info("Grow connection pool of {} to {}", url.getUniqueKey(), pool.size());
+                    } catch (RemotingException e) {
+                        logger.warn("Exception occurred when growing connection pool of {}",
+                                url.getUniqueKey(), e);
+                    } finally {
+                        pool.markGrowDone();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pool.markGrowDone();
+            logger.warn("Grow connection pool of {} rejected by the executor", url.getUniqueKey());
+        }
+    }
+
     /**
      * If no task cached, create one and initialize the connections.
      * If task cached, check whether the number of connections adequate, if not then heal it.
@@ -843,7 +944,13 @@ public class DefaultConnectionManager extends AbstractLifeCycle implements Conne
 
         @Override
         public ConnectionPool call() throws Exception {
-            final ConnectionPool pool = new ConnectionPool(connectionSelectStrategy);
+            final ConnectionPool pool;
+            if (elasticPool && null != this.url) {
+                pool = new ConnectionPool(connectionSelectStrategy, this.url.getConnNum(),
+                        elasticPoolMaxSize);
+            } else {
+                pool = new ConnectionPool(connectionSelectStrategy);
+            }
             if (whetherInitConnection) {
                 try {
                     doCreate(this.url, pool, this.getClass().getSimpleName(), 1);
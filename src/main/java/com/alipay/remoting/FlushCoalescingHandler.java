@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce the flushes of a channel, so that the messages written by many invocations share one write syscall.
+ * <ul>
+ * <li>During a read, the flushes are deferred to the read complete, e.g. the responses processed in the event loop.</li>
+ * <li>Out of reading, the first flush schedules a flush in the event loop, after the delay if any or
+ * as the next task, the flushes before it runs are coalesced, e.g. the requests and responses written by
+ * business threads.</li>
+ * <li>The pending flushes are flushed at once when reaching the max count, or the channel becomes unwritable,
+ * or the channel is closing.</li>
+ * </ul>
+ * Notice: this handler keeps state of one channel, add it as the first handler of each pipeline
+ * to see the flushes of all the other handlers.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    /** max flushes coalesced before an explicit flush */
+    private final int                   maxPendingFlushes;
+
+    /** delay of the flush scheduled out of reading in nanos, 0 for the next task of the event loop */
+    private final long                  delayNanos;
+
+    private final Runnable              flushTask;
+
+    private ChannelHandlerContext       ctx;
+
+    private int                         pendingFlushes;
+
+    private boolean                     readInProgress;
+
+    private Future<?>                   scheduledFlush;
+
+    /**
+     * @param maxPendingFlushes max flushes coalesced before an explicit flush
+     * @param delayMicros max delay of a coalesced flush out of reading in microseconds, 0 for the next task
+     *                    of the event loop
+     */
+    public FlushCoalescingHandler(int maxPendingFlushes, long delayMicros) {
+        if (maxPendingFlushes <= 0) {
+            throw new IllegalArgumentException("maxPendingFlushes should be positive: "
+                                               + maxPendingFlushes);
+        }
+        if (delayMicros < 0) {
+            throw new IllegalArgumentException("delayMicros should not be negative: " + delayMicros);
+        }
+        this.maxPendingFlushes = maxPendingFlushes;
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+        this.flushTask = new Runnable() {
+            @Override
+            public void run() {
+                scheduledFlush = null;
+                // flushed by the read complete otherwise
+                if (!readInProgress) {
+                    flushIfNeeded();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (++this.pendingFlushes >= this.maxPendingFlushes) {
+            flushNow();
+        } else if (!this.readInProgress && this.scheduledFlush == null) {
+            this.scheduledFlush = this.delayNanos > 0 ? ctx.executor().schedule(this.flushTask,
+                this.delayNanos, TimeUnit.NANOSECONDS) : ctx.executor().submit(this.flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        this.readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        this.readInProgress = false;
+        flushIfNeeded();
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // let the pending messages drain rather than wait for the scheduled flush
+            flushIfNeeded();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        this.readInProgress = false;
+        flushIfNeeded();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        this.readInProgress = false;
+        flushIfNeeded();
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        this.readInProgress = false;
+        flushIfNeeded();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfNeeded();
+    }
+
+    private void flushIfNeeded() {
+        if (this.pendingFlushes > 0) {
+            flushNow();
+        }
+    }
+
+    private void flushNow() {
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        this.pendingFlushes = 0;
+        this.ctx.flush();
+    }
+}
@@ -27,6 +27,12 @@ import java.net.InetSocketAddress;
  * @version $Id: InvokeFuture.java, v 0.1 2015-9-21 PM5:30:35 tao Exp $
  */
 public interface InvokeFuture {
+
+    /**
+     * start time of the futures not tracking it
+     */
+    long NO_START_TIME = Long.MIN_VALUE;
+
     /**
      * Wait response with timeout.
      *
@@ -59,6 +65,13 @@ public interface InvokeFuture {
      */
     void putResponse(final RemotingCommand response);
 
+    /**
+     * Release the retained content of the response which will never be resolved, a response put afterwards is
+     * released as well. Nothing is done by default for implementations not holding retained content.
+     */
+    default void release() {
+    }
+
     /**
      * Get the id of the invocation.
      *
@@ -105,6 +118,25 @@ public interface InvokeFuture {
      */
     void cancelTimeout();
 
+    /**
+     * Get the timeout added, null if none or not tracked by the implementation.
+     *
+     * @return timeout
+     */
+    default Timeout getTimeout() {
+        return null;
+    }
+
+    /**
+     * Get the time this future is created, which is right before the request is sent.
+     *
+     * @return start time in nanos, comparable with {@link System#nanoTime()} only, {@link #NO_START_TIME}
+     * if not tracked by the implementation
+     */
+    default long getStartTime() {
+        return NO_START_TIME;
+    }
+
     /**
      * Whether the future is done.
      *
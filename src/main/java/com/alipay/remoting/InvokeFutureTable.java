@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Lock free table of the pending invoke futures of a connection, keyed by invoke id.
+ * <p>
+ * Each invoke future is kept in the slot indexed by its id modulo the number of slots, so adding, getting and
+ * removing it is a single volatile read or CAS without boxing the id. An invoke future whose slot is taken by
+ * another pending one is kept in an overflow map, which is only created when such a collision happens.
+ * The slots are allocated on the first add, so connections which never invoke pay nothing.
+ * <p>
+ * Notice: an invoke id must not be added again while it is pending.
+ */
+public class InvokeFutureTable {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<InvokeFutureTable, AtomicReferenceArray> SLOTS_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(InvokeFutureTable.class, AtomicReferenceArray.class, "slots");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<InvokeFutureTable, ConcurrentHashMap> OVERFLOW_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(InvokeFutureTable.class, ConcurrentHashMap.class, "overflow");
+
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile AtomicReferenceArray<InvokeFuture> slots;
+    private volatile ConcurrentHashMap<Integer, InvokeFuture> overflow;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public InvokeFutureTable(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Illegal invoke future table capacity: " + capacity);
+        }
+        this.mask = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1) - 1;
+    }
+
+    /**
+     * Add an invoke future if its id is absent.
+     *
+     * @param future invoke future
+     * @return the pending invoke future with the same id, or null if added
+     */
+    public InvokeFuture putIfAbsent(InvokeFuture future) {
+        int id = future.invokeId();
+        AtomicReferenceArray<InvokeFuture> slots = slots();
+        int index = id & this.mask;
+        for (;;) {
+            InvokeFuture current = slots.get(index);
+            if (current == null) {
+                ConcurrentHashMap<Integer, InvokeFuture> overflow = this.overflow;
+                if (overflow != null) {
+                    InvokeFuture previous = overflow.get(id);
+                    if (previous != null) {
+                        return previous;
+                    }
+                }
+                if (slots.compareAndSet(index, null, future)) {
+                    this.size.incrementAndGet();
+                    return null;
+                }
+            } else if (current.invokeId() == id) {
+                return current;
+            } else {
+                InvokeFuture previous = overflow().putIfAbsent(id, future);
+                if (previous == null) {
+                    this.size.incrementAndGet();
+                }
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Get the invoke future of an id.
+     *
+     * @param id invoke id
+     * @return invoke future, null if absent
+     */
+    public InvokeFuture get(int id) {
+        AtomicReferenceArray<InvokeFuture> slots = this.slots;
+        if (slots != null) {
+            InvokeFuture current = slots.get(id & this.mask);
+            if (current != null && current.invokeId() == id) {
+                return current;
+            }
+        }
+        ConcurrentHashMap<Integer, InvokeFuture> overflow = this.overflow;
+        return overflow == null ? null : overflow.get(id);
+    }
+
+    /**
+     * Remove the invoke future of an id, only one of the concurrent removals gets it.
+     *
+     * @param id invoke id
+     * @return invoke future removed, null if absent
+     */
+    public InvokeFuture remove(int id) {
+        AtomicReferenceArray<InvokeFuture> slots = this.slots;
+        if (slots != null) {
+            int index = id & this.mask;
+            InvokeFuture current = slots.get(index);
+            if (current != null && current.invokeId() == id
+                && slots.compareAndSet(index, current, null)) {
+                this.size.decrementAndGet();
+                return current;
+            }
+        }
+        ConcurrentHashMap<Integer, InvokeFuture> overflow = this.overflow;
+        if (overflow != null) {
+            InvokeFuture removed = overflow.remove(id);
+            if (removed != null) {
+                this.size.decrementAndGet();
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Perform an action for each pending invoke future, the futures added or removed concurrently
+     * may or may not be visited.
+     *
+     * @param action action
+     */
+    public void forEach(Consumer<InvokeFuture> action) {
+        if (this.size.get() == 0) {
+            return;
+        }
+        AtomicReferenceArray<InvokeFuture> slots = this.slots;
+        if (slots != null) {
+            for (int i = 0, length = slots.length(); i < length; i++) {
+                InvokeFuture future = slots.get(i);
+                if (future != null) {
+                    action.accept(future);
+                }
+            }
+        }
+        ConcurrentHashMap<Integer, InvokeFuture> overflow = this.overflow;
+        if (overflow != null) {
+            for (InvokeFuture future : overflow.values()) {
+                action.accept(future);
+            }
+        }
+    }
+
+    /**
+     * Number of pending invoke futures.
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    public boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    /**
+     * Number of slots.
+     */
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AtomicReferenceArray<InvokeFuture> slots() {
+        AtomicReferenceArray<InvokeFuture> slots = this.slots;
+        if (slots == null) {
+            SLOTS_UPDATER.compareAndSet(this, null, new AtomicReferenceArray<InvokeFuture>(
+                this.mask + 1));
+            slots = this.slots;
+        }
+        return slots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentHashMap<Integer, InvokeFuture> overflow() {
+        ConcurrentHashMap<Integer, InvokeFuture> overflow = this.overflow;
+        if (overflow == null) {
+            OVERFLOW_UPDATER.compareAndSet(this, null, new ConcurrentHashMap<Integer, InvokeFuture>());
+            overflow = this.overflow;
+        }
+        return overflow;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import com.alipay.remoting.log.BoltLoggerFactory;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Timeout of an invoke future, which is not scheduled in a wheel timer but checked by the
+ * {@link InvokeTimeoutScanner} of the event loop of its connection, whose {@link Timer} view is
+ * returned by {@link #timer()}.
+ * <p>
+ * Cancelling it only changes its state, nothing is enqueued to another thread.
+ *
+ * @see Connection#newInvokeTimeout(TimerTask, int)
+ */
+public class InvokeTimeout implements Timeout {
+
+    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<InvokeTimeout> STATE_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(InvokeTimeout.class, "state");
+
+    private final TimerTask task;
+    /** deadline in nanos, compared with {@link System#nanoTime()} */
+    private final long deadline;
+    private final Timer timer;
+    private volatile int state = ST_INIT;
+
+    /**
+     * @param task task run when expired
+     * @param deadline deadline in nanos, compared with {@link System#nanoTime()}
+     * @param timer timer expiring this timeout
+     */
+    public InvokeTimeout(TimerTask task, long deadline, Timer timer) {
+        this.task = task;
+        this.deadline = deadline;
+        this.timer = timer;
+    }
+
+    /**
+     * Run the task if the deadline is reached and the timeout is neither cancelled nor expired.
+     *
+     * @param now current time in nanos
+     * @return true if the task is run
+     */
+    public boolean expire(long now) {
+        if (now - this.deadline < 0) {
+            return false;
+        }
+        return fire();
+    }
+
+    /**
+     * Run the task regardless of the deadline if the timeout is neither cancelled nor expired.
+     *
+     * @return true if the task is run
+     */
+    boolean fire() {
+        if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+            return false;
+        }
+        try {
+            this.task.run(this);
+        } catch (Throwable t) {
+            logger.warn("Exception caught when running invoke timeout task", t);
+        }
+        return true;
+    }
+
+    public long deadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @see Timeout#timer()
+     */
+    @Override
+    public Timer timer() {
+        return this.timer;
+    }
+
+    @Override
+    public TimerTask task() {
+        return this.task;
+    }
+
+    @Override
+    public boolean isExpired() {
+        return this.state == ST_EXPIRED;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.state == ST_CANCELLED;
+    }
+
+    @Override
+    public boolean cancel() {
+        return STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import com.alipay.remoting.config.ConfigManager;
+import com.alipay.remoting.log.BoltLoggerFactory;
+import io.netty.channel.EventLoop;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanner of the invoke timeouts of the connections in one event loop.
+ * <p>
+ * Each event loop has at most one scanner, which scans the invoke futures of its connections periodically
+ * in the event loop and expires the {@link InvokeTimeout}s whose deadline is reached. The connection is
+ * registered once when its first invoke timeout is created, so the invocations themselves schedule and
+ * cancel nothing in other threads.
+ */
+public class InvokeTimeoutScanner implements Runnable {
+
+    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+
+    private static final ConcurrentHashMap<EventLoop, InvokeTimeoutScanner> scanners = new ConcurrentHashMap<EventLoop, InvokeTimeoutScanner>();
+
+    private final EventLoop eventLoop;
+
+    /** timer view of this scanner */
+    private final Timer timer = new ScannerTimer();
+
+    /** connections scanned, only accessed in the event loop */
+    private final List<Connection> connections = new ArrayList<Connection>();
+
+    private InvokeTimeoutScanner(EventLoop eventLoop) {
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * Get the scanner of an event loop, create and start it if absent.
+     *
+     * @param eventLoop event loop
+     * @return scanner of the event loop
+     */
+    public static InvokeTimeoutScanner of(EventLoop eventLoop) {
+        InvokeTimeoutScanner scanner = scanners.get(eventLoop);
+        if (scanner == null) {
+            InvokeTimeoutScanner newScanner = new InvokeTimeoutScanner(eventLoop);
+            scanner = scanners.putIfAbsent(eventLoop, newScanner);
+            if (scanner == null) {
+                scanner = newScanner;
+                scanner.start();
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * Register a connection of the event loop of this scanner.
+     *
+     * @param connection connection
+     */
+    public void register(final Connection connection) {
+        try {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connections.add(connection);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down, the futures are failed when the channel is closed
+            logger.warn("Failed to register connection to invoke timeout scanner, event loop is shutting down");
+        }
+    }
+
+    private void start() {
+        long period = ConfigManager.invoke_timeout_scan_period();
+        try {
+            this.eventLoop.scheduleAtFixedRate(this, period, period, TimeUnit.MILLISECONDS);
+            this.eventLoop.terminationFuture().addListener(f -> scanners.remove(this.eventLoop, this));
+        } catch (RejectedExecutionException e) {
+            scanners.remove(this.eventLoop, this);
+        }
+    }
+
+    /**
+     * Get the timer view of this scanner, which is the timer of the {@link InvokeTimeout}s it expires.
+     *
+     * @return timer
+     */
+    public Timer timer() {
+        return this.timer;
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        Iterator<Connection> iter = this.connections.iterator();
+        while (iter.hasNext()) {
+            Connection connection = iter.next();
+            try {
+                connection.scanInvokeTimeouts(now);
+            } catch (Throwable t) {
+                logger.warn("Exception caught when scanning invoke timeouts", t);
+            }
+            if (!connection.getChannel().isActive() && connection.isInvokeFutureMapFinish()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Timer view of the scanner. The timeouts created by it are scheduled in the event loop, and the
+     * scanner is shared by the connections of the event loop, so it is stopped with the event loop only.
+     */
+    private final class ScannerTimer implements Timer {
+
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            final InvokeTimeout timeout = new InvokeTimeout(task, System.nanoTime()
+                                                                  + unit.toNanos(delay), this);
+            eventLoop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timeout.fire();
+                }
+            }, delay, unit);
+            return timeout;
+        }
+
+        /**
+         * Nothing is stopped, the scanner stops with its event loop.
+         */
+        @Override
+        public Set<Timeout> stop() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import com.alipay.remoting.config.ConfigManager;
+import com.alipay.remoting.config.switches.GlobalSwitch;
+import com.alipay.remoting.log.BoltLoggerFactory;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Select a connection by the response latency EWMA of the connections.
+ * <ul>
+ * <li>The connections whose latency is more than {@link com.alipay.remoting.config.Configs#CONN_LATENCY_OUTLIER_RATIO}
+ * times the lowest one of the pool (and not less than {@link com.alipay.remoting.config.Configs#CONN_LATENCY_OUTLIER_MIN})
+ * are ejected as outliers, unless all the connections are outliers.</li>
+ * <li>Out of the rest, the one with less latency * (pending invocations + 1) of two sampled randomly is selected,
+ * a connection without any response yet costs nothing so that it is tried at once.</li>
+ * </ul>
+ * The latency decays if no response arrives, so an ejected connection is tried again later.
+ */
+public class LatencyAwareSelectStrategy extends LeastInflightSelectStrategy {
+
+    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+
+    private final int           outlierRatio;
+
+    private final double        outlierMinNanos;
+
+    public LatencyAwareSelectStrategy(GlobalSwitch globalSwitch) {
+        this(globalSwitch, ConfigManager.conn_latency_outlier_ratio(), ConfigManager
+            .conn_latency_outlier_min());
+    }
+
+    /**
+     * @param globalSwitch switches of the client
+     * @param outlierRatio ratio of the latency of an outlier to the lowest latency
+     * @param outlierMinMillis min latency of an outlier in milliseconds
+     */
+    public LatencyAwareSelectStrategy(GlobalSwitch globalSwitch, int outlierRatio,
+                                      long outlierMinMillis) {
+        super(globalSwitch);
+        if (outlierRatio <= 1) {
+            throw new IllegalArgumentException("outlierRatio should be more than 1: " + outlierRatio);
+        }
+        this.outlierRatio = outlierRatio;
+        this.outlierMinNanos = TimeUnit.MILLISECONDS.toNanos(outlierMinMillis);
+    }
+
+    @Override
+    public Connection select(List<Connection> connections) {
+        if (connections == null) {
+            return null;
+        }
+        try {
+            int size = connections.size();
+            if (size == 0) {
+                return null;
+            }
+            boolean checkServiceStatus = null != this.globalSwitch
+                                         && this.globalSwitch
+                                             .isOn(GlobalSwitch.CONN_MONITOR_SWITCH);
+            if (size == 1) {
+                Connection only = connections.get(0);
+                return isAvailable(only, checkServiceStatus) ? only : null;
+            }
+
+            // lowest latency of the available connections with any response
+            double lowest = Double.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                Connection conn = connections.get(i);
+                if (isAvailable(conn, checkServiceStatus)) {
+                    double latency = conn.getResponseLatency();
+                    if (latency > 0 && latency < lowest) {
+                        lowest = latency;
+                    }
+                }
+            }
+            double threshold = lowest == Double.MAX_VALUE ? Double.MAX_VALUE : Math.max(lowest
+                                                                                        * this.outlierRatio,
+                this.outlierMinNanos);
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = (first + 1 + random.nextInt(size - 1)) % size;
+            Connection a = candidate(connections.get(first), checkServiceStatus, threshold);
+            Connection b = candidate(connections.get(second), checkServiceStatus, threshold);
+            if (a != null && b != null) {
+                return cost(b) < cost(a) ? b : a;
+            }
+            if (a != null || b != null) {
+                return a != null ? a : b;
+            }
+            // both samples unavailable or ejected, take the first candidate from a random position
+            for (int i = 1; i < size; i++) {
+                Connection conn = candidate(connections.get((first + i) % size),
+                    checkServiceStatus, threshold);
+                if (conn != null) {
+                    return conn;
+                }
+            }
+            // the latencies changed concurrently so that all the connections look like outliers, eject none
+            return super.select(connections);
+        } catch (Throwable e) {
+            logger.error("Choose connection failed using LatencyAwareSelectStrategy!", e);
+            return null;
+        }
+    }
+
+    private static Connection candidate(Connection conn, boolean checkServiceStatus,
+                                        double threshold) {
+        if (!isAvailable(conn, checkServiceStatus) || conn.getResponseLatency() > threshold) {
+            return null;
+        }
+        return conn;
+    }
+
+    private static double cost(Connection conn) {
+        return conn.getResponseLatency() * (conn.getInvokeFutureCount() + 1);
+    }
+}
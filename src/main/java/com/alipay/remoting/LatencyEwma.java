@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponentially weighted moving average of latency, decayed by the time elapsed.
+ * <ul>
+ * <li>The weight of the average is exp(-elapsed / decay) when a sample arrives,
+ * so the samples arriving at any rate are weighted by time.</li>
+ * <li>A sample higher than the average replaces it, to react to a degraded peer at once.</li>
+ * <li>The average read decays towards 0 if no sample arrives, so a connection avoided for its latency
+ * is tried again later.</li>
+ * </ul>
+ * The update is synchronized and the read is lock free, which may read an average and a time of
+ * different updates, the error is ignorable for selection.
+ */
+public class LatencyEwma {
+
+    /** time constant of the decay in nanos */
+    private final double decayNanos;
+
+    /** average in nanos, 0 if no sample */
+    private volatile double average;
+
+    /** time of the last sample in nanos */
+    private volatile long   lastTime;
+
+    /**
+     * @param decayMillis time constant of the decay in milliseconds
+     */
+    public LatencyEwma(long decayMillis) {
+        if (decayMillis <= 0) {
+            throw new IllegalArgumentException("decayMillis should be positive: " + decayMillis);
+        }
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+    }
+
+    /**
+     * Add a latency sample.
+     *
+     * @param latencyNanos latency in nanos
+     * @param now current time in nanos
+     */
+    public synchronized void update(long latencyNanos, long now) {
+        if (latencyNanos < 0) {
+            return;
+        }
+        if (latencyNanos > this.average) {
+            this.average = latencyNanos;
+        } else {
+            double weight = Math.exp(-(now - this.lastTime) / this.decayNanos);
+            this.average = this.average * weight + latencyNanos * (1 - weight);
+        }
+        this.lastTime = now;
+    }
+
+    /**
+     * Get the average decayed to now.
+     *
+     * @param now current time in nanos
+     * @return average latency in nanos, 0 if no sample
+     */
+    public double get(long now) {
+        double avg = this.average;
+        if (avg == 0) {
+            return 0;
+        }
+        long elapsed = now - this.lastTime;
+        return elapsed <= 0 ? avg : avg * Math.exp(-elapsed / this.decayNanos);
+    }
+}
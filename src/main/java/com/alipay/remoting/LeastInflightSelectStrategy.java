@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.GlobalSwitch;
+import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.util.StringUtils;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Select the connection with fewer pending invocations from two sampled randomly, a.k.a. the power of two choices.
+ * <p>
+ * Compared with {@link RandomSelectStrategy}, the requests avoid the connection stuck behind a large response,
+ * and no object is allocated to select.
+ */
+public class LeastInflightSelectStrategy implements ConnectionSelectStrategy {
+
+    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+
+    protected final GlobalSwitch globalSwitch;
+
+    public LeastInflightSelectStrategy(GlobalSwitch globalSwitch) {
+        this.globalSwitch = globalSwitch;
+    }
+
+    @Override
+    public Connection select(List<Connection> connections) {
+        if (connections == null) {
+            return null;
+        }
+        try {
+            int size = connections.size();
+            if (size == 0) {
+                return null;
+            }
+            boolean checkServiceStatus = null != this.globalSwitch
+                                         && this.globalSwitch
+                                             .isOn(GlobalSwitch.CONN_MONITOR_SWITCH);
+            if (size == 1) {
+                Connection only = connections.get(0);
+                return isAvailable(only, checkServiceStatus) ? only : null;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            // a different index from the first one
+            int second = (first + 1 + random.nextInt(size - 1)) % size;
+            Connection a = connections.get(first);
+            Connection b = connections.get(second);
+            boolean aAvailable = isAvailable(a, checkServiceStatus);
+            boolean bAvailable = isAvailable(b, checkServiceStatus);
+            if (aAvailable && bAvailable) {
+                return b.getInvokeFutureCount() < a.getInvokeFutureCount() ? b : a;
+            }
+            if (aAvailable) {
+                return a;
+            }
+            if (bAvailable) {
+                return b;
+            }
+            // both samples unavailable, take the first available one from a random position
+            for (int i = 1; i < size; i++) {
+                Connection conn = connections.get((first + i) % size);
+                if (isAvailable(conn, checkServiceStatus)) {
+                    return conn;
+                }
+            }
+            return null;
+        } catch (Throwable e) {
+            logger.error("Choose connection failed using LeastInflightSelectStrategy!", e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether a connection is fine and not offline by the connection monitor.
+     */
+    protected static boolean isAvailable(Connection conn, boolean checkServiceStatus) {
+        if (conn == null || !conn.isFine()) {
+            return false;
+        }
+        return !checkServiceStatus
+               || !StringUtils.equals((String) conn.getAttribute(Configs.CONN_SERVICE_STATUS),
+                   Configs.CONN_SERVICE_STATUS_OFF);
+    }
+}
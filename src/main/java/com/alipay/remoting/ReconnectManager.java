@@ -16,45 +16,101 @@
  */
 package com.alipay.remoting;
 
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.log.BoltLoggerFactory;
 import org.slf4j.Logger;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Reconnect manager.
+ * <p>
+ * Urls are reconnected in parallel by a bounded scheduled executor. Each url has at most one pending task,
+ * which attempts at once and backs off exponentially with jitter after each failed attempt until the url is
+ * reconnected or canceled. The attempts of a url are at least the base backoff apart, so that a flapping url
+ * is not redialed in a tight loop.
  *
  * @author yunliang.shi
  * @version $Id: ReconnectManager.java, v 0.1 Mar 11, 2016 5:20:50 PM yunliang.shi Exp $
  */
 public class ReconnectManager extends AbstractLifeCycle implements Reconnector {
 
-    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+    private static final Logger                   logger = BoltLoggerFactory
+                                                             .getLogger("CommonDefault");
 
-    private static final int HEAL_CONNECTION_INTERVAL = 1000;
+    private static final int                      MAX_BACKOFF_SHIFT = 30;
 
-    private final ConnectionManager connectionManager;
-    private final LinkedBlockingQueue<ReconnectTask> tasks;
-    private final List<Url> canceled;
+    private final ConnectionManager               connectionManager;
+    private final int                             parallelism;
+    private final long                            baseBackoff;
+    private final long                            maxBackoff;
+    private final ConcurrentHashMap<Url, ReconnectTask> tasks;
+    private final ConcurrentHashMap<Url, Long>    lastAttemptTimes;
+    private final Set<Url>                        canceled;
 
-    private Thread healConnectionThreads;
+    private ScheduledThreadPoolExecutor           executor;
 
     public ReconnectManager(ConnectionManager connectionManager) {
+        this(connectionManager, ConfigManager.conn_reconnect_parallelism(), ConfigManager
+            .conn_reconnect_backoff_base(), ConfigManager.conn_reconnect_backoff_max());
+    }
+
+    /**
+     * @param connectionManager connection manager
+     * @param parallelism max number of urls reconnected at the same time
+     * @param baseBackoff min interval in milliseconds between the attempts of a url, the backoff after the first
+     *                    failed attempt is twice of it and doubled after each failed attempt
+     * @param maxBackoff max backoff in milliseconds
+     */
+    public ReconnectManager(ConnectionManager connectionManager, int parallelism,
+                            long baseBackoff, long maxBackoff) {
         this.connectionManager = connectionManager;
-        this.tasks = new LinkedBlockingQueue<ReconnectTask>();
-        this.canceled = new CopyOnWriteArrayList<Url>();
+        this.parallelism = Math.max(1, parallelism);
+        this.baseBackoff = Math.max(1, baseBackoff);
+        this.maxBackoff = Math.max(this.baseBackoff, maxBackoff);
+        this.tasks = new ConcurrentHashMap<Url, ReconnectTask>();
+        this.lastAttemptTimes = new ConcurrentHashMap<Url, Long>();
+        this.canceled = ConcurrentHashMap.newKeySet();
     }
 
     @Override
     public void reconnect(Url url) {
-        tasks.add(new ReconnectTask(url));
+        if (!isStarted()) {
+            return;
+        }
+        ReconnectTask task = new ReconnectTask(url);
+        for (;;) {
+            ReconnectTask existing = this.tasks.putIfAbsent(url, task);
+            if (existing == null) {
+                task.schedule();
+                return;
+            }
+            // a url disconnected again while its task is running must be healed again
+            if (existing.rerun()) {
+                return;
+            }
+            if (this.tasks.replace(url, existing, task)) {
+                task.schedule();
+                return;
+            }
+        }
     }
 
     @Override
     public void disableReconnect(Url url) {
         canceled.add(url);
+        lastAttemptTimes.remove(url);
+        ReconnectTask task = this.tasks.remove(url);
+        if (task != null) {
+            task.cancel();
+        }
     }
 
     @Override
@@ -66,19 +122,28 @@ public class ReconnectManager extends AbstractLifeCycle implements Reconnector {
     public void startup() throws LifeCycleException {
         super.startup();
 
-        this.healConnectionThreads = new Thread(new HealConnectionRunner());
-        this.healConnectionThreads.start();
+        this.executor = new ScheduledThreadPoolExecutor(parallelism, new NamedThreadFactory(
+            "Bolt-reconnect", true), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.setRemoveOnCancelPolicy(true);
     }
 
     @Override
     public void shutdown() throws LifeCycleException {
         super.shutdown();
 
-        healConnectionThreads.interrupt();
+        this.executor.shutdownNow();
         this.tasks.clear();
+        this.lastAttemptTimes.clear();
         this.canceled.clear();
     }
 
+    /**
+     * Number of urls waiting to be reconnected or being reconnected.
+     */
+    public int getPendingTaskCount() {
+        return this.tasks.size();
+    }
+
     /**
      * please use {@link Reconnector#disableReconnect(Url)} instead
      */
@@ -111,65 +176,145 @@ public class ReconnectManager extends AbstractLifeCycle implements Reconnector {
         shutdown();
     }
 
-    private final class HealConnectionRunner implements Runnable {
-        private long lastConnectTime = -1;
+    /**
+     * Backoff of an attempt, jittered between the half and the whole of the exponential backoff.
+     */
+    long backoff(int attempts) {
+        long backoff = baseBackoff << Math.min(attempts, MAX_BACKOFF_SHIFT);
+        if (backoff <= 0 || backoff > maxBackoff) {
+            backoff = maxBackoff;
+        }
+        long half = backoff >> 1;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
 
-        @Override
-        public void run() {
-            while (isStarted()) {
-                long start = -1;
-                ReconnectTask task = null;
-                try {
-                    if (this.lastConnectTime < HEAL_CONNECTION_INTERVAL) {
-                        Thread.sleep(HEAL_CONNECTION_INTERVAL);
-                    }
-
-                    try {
-                        task = ReconnectManager.this.tasks.take();
-                    } catch (InterruptedException e) {
-                        // ignore
-                    }
-
-                    if (task == null) {
-                        continue;
-                    }
-
-                    start = System.currentTimeMillis();
-                    if (!canceled.contains(task.url)) {
-                        task.run();
-                    } else {
-                        logger.warn("Invalid reconnect request task {}, cancel list size {}",
-                                task.url, canceled.size());
-                    }
-                    this.lastConnectTime = System.currentTimeMillis() - start;
-                } catch (Exception e) {
-                    if (start != -1) {
-                        this.lastConnectTime = System.currentTimeMillis() - start;
-                    }
-
-                    if (task != null) {
-                        logger.warn("reconnect target: {} failed.", task.url, e);
-                        tasks.add(task);
-                    }
-                }
-            }
+    /**
+     * Delay of the first attempt of a url, zero unless the url was attempted within the base backoff.
+     */
+    long firstAttemptDelay(Url url) {
+        Long last = lastAttemptTimes.get(url);
+        if (last == null) {
+            return 0;
+        }
+        long delay = last + baseBackoff - System.currentTimeMillis();
+        if (delay <= 0) {
+            lastAttemptTimes.remove(url, last);
+            return 0;
         }
+        return delay;
     }
 
-    private class ReconnectTask implements Runnable {
-        Url url;
+    private final class ReconnectTask implements Runnable {
+        private final Url url;
+        private int       attempts;
+        private boolean   running;
+        private boolean   rerun;
+        private boolean   done;
+        private Future<?> future;
 
-        public ReconnectTask(Url url) {
+        ReconnectTask(Url url) {
             this.url = url;
         }
 
         @Override
         public void run() {
+            if (!isStarted() || canceled.contains(url)) {
+                logger.warn("Invalid reconnect request task {}, cancel list size {}", url,
+                    canceled.size());
+                finish();
+                return;
+            }
+
+            boolean skip;
+            synchronized (this) {
+                // disableReconnect marks the url canceled before canceling the task under this lock
+                skip = done || canceled.contains(url);
+                running = !skip;
+            }
+            if (skip) {
+                finish();
+                return;
+            }
+            lastAttemptTimes.put(url, System.currentTimeMillis());
             try {
                 connectionManager.createConnectionAndHealIfNeed(url);
             } catch (Exception e) {
-                throw new RuntimeException(e);
+                logger.warn("reconnect target: {} failed, attempts {}.", url, attempts + 1, e);
+                synchronized (this) {
+                    ++attempts;
+                    running = false;
+                    rerun = false;
+                }
+                schedule();
+                return;
+            }
+
+            boolean healed;
+            synchronized (this) {
+                healed = !rerun;
+                running = false;
+                rerun = false;
+                attempts = 0;
+                done |= healed;
+            }
+            if (healed) {
+                tasks.remove(url, this);
+            } else {
+                schedule();
+            }
+        }
+
+        /**
+         * Ask a task not done yet to run again if it is running, a task waiting to run is just reused.
+         */
+        synchronized boolean rerun() {
+            if (done) {
+                return false;
+            }
+            if (running) {
+                rerun = true;
+            }
+            return true;
+        }
+
+        void schedule() {
+            if (!isStarted()) {
+                finish();
+                return;
+            }
+            long delay;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                delay = attempts > 0 ? backoff(attempts) : firstAttemptDelay(url);
+            }
+            try {
+                Future<?> f = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    future = f;
+                }
+            } catch (RejectedExecutionException e) {
+                finish();
+            }
+        }
+
+        void cancel() {
+            Future<?> f;
+            synchronized (this) {
+                done = true;
+                f = future;
+            }
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        private void finish() {
+            synchronized (this) {
+                done = true;
             }
+            tasks.remove(url, this);
         }
     }
 }
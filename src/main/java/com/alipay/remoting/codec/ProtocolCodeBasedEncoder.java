@@ -20,6 +20,7 @@ import com.alipay.remoting.Connection;
 import com.alipay.remoting.Protocol;
 import com.alipay.remoting.ProtocolCode;
 import com.alipay.remoting.ProtocolManager;
+import com.alipay.remoting.config.ConfigManager;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -44,6 +45,11 @@ public class ProtocolCodeBasedEncoder extends MessageToByteEncoder<Serializable>
      */
     protected ProtocolCode defaultProtocolCode;
 
+    /**
+     * whether to encode into a composite buffer, see {@link com.alipay.remoting.config.Configs#CODEC_COMPOSITE_ENCODE}
+     */
+    protected boolean      compositeEncode = ConfigManager.codec_composite_encode();
+
     public ProtocolCodeBasedEncoder(ProtocolCode defaultProtocolCode) {
         super();
         this.defaultProtocolCode = defaultProtocolCode;
@@ -63,4 +69,17 @@ public class ProtocolCodeBasedEncoder extends MessageToByteEncoder<Serializable>
         protocol.getEncoder().encode(ctx, msg, out);
     }
 
+    /**
+     * If composite encode is on, an empty composite buffer is handed to the protocol encoder,
+     * which then adds its header and content buffers as components.
+     */
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Serializable msg,
+                                     boolean preferDirect) throws Exception {
+        if (this.compositeEncode) {
+            return ctx.alloc().compositeBuffer();
+        }
+        return super.allocateBuffer(ctx, msg, preferDirect);
+    }
+
 }
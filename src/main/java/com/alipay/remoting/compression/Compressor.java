@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.compression;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Compressor for the content of rpc commands.
+ * <p>
+ * Implementations must be thread safe, the same instance is shared by all connections.
+ */
+public interface Compressor {
+
+    /**
+     * Compress all readable bytes of src and write the result into dst.
+     *
+     * @param src source buffer, its reader index is moved to its writer index
+     * @param dst destination buffer
+     * @throws CodecException
+     */
+    void compress(ByteBuf src, ByteBuf dst) throws CodecException;
+
+    /**
+     * Decompress all readable bytes of src and write the result into dst.
+     *
+     * @param src source buffer, its reader index is moved to its writer index
+     * @param dst destination buffer
+     * @throws CodecException
+     */
+    void decompress(ByteBuf src, ByteBuf dst) throws CodecException;
+}
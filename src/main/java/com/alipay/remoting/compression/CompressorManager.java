@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.compression;
+
+/**
+ * Manage all compressors.
+ * <p>
+ * The code of a compressor is written as the first byte of a compressed content,
+ * code {@link #NONE} means the content is stored as is.
+ */
+public class CompressorManager {
+
+    public static final byte    NONE        = 0;
+    public static final byte    Deflate     = 1;
+
+    private static Compressor[] compressors = new Compressor[5];
+
+    static {
+        addCompressor(Deflate, new DeflateCompressor());
+    }
+
+    public static Compressor getCompressor(int idx) {
+        return idx < compressors.length ? compressors[idx] : null;
+    }
+
+    public static void addCompressor(int idx, Compressor compressor) {
+        if (idx == NONE) {
+            throw new IllegalArgumentException("Compressor code " + NONE + " is reserved");
+        }
+        if (compressors.length <= idx) {
+            Compressor[] newCompressors = new Compressor[idx + 5];
+            System.arraycopy(compressors, 0, newCompressors, 0, compressors.length);
+            compressors = newCompressors;
+        }
+        compressors[idx] = compressor;
+    }
+}
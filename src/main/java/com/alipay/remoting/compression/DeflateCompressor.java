@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.compression;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressor based on jdk {@link Deflater} and {@link Inflater}.
+ * <p>
+ * Deflaters and inflaters hold native memory, so they are pooled instead of created per call.
+ * Instances beyond the pool size are ended after use.
+ */
+public class DeflateCompressor implements Compressor {
+
+    private static final int                 CHUNK_SIZE = 8 * 1024;
+
+    private final int                        level;
+
+    private final BlockingQueue<DeflaterEntry> deflaters;
+
+    private final BlockingQueue<InflaterEntry> inflaters;
+
+    public DeflateCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public DeflateCompressor(int level, int poolSize) {
+        this.level = level;
+        this.deflaters = new ArrayBlockingQueue<DeflaterEntry>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<InflaterEntry>(poolSize);
+    }
+
+    @Override
+    public void compress(ByteBuf src, ByteBuf dst) throws CodecException {
+        DeflaterEntry entry = this.deflaters.poll();
+        if (entry == null) {
+            entry = new DeflaterEntry(this.level);
+        }
+        Deflater deflater = entry.deflater;
+        try {
+            if (src.hasArray()) {
+                deflater.setInput(src.array(), src.arrayOffset() + src.readerIndex(),
+                    src.readableBytes());
+                src.skipBytes(src.readableBytes());
+                deflater.finish();
+            }
+            while (!deflater.finished()) {
+                if (deflater.needsInput()) {
+                    if (src.isReadable()) {
+                        int len = Math.min(src.readableBytes(), CHUNK_SIZE);
+                        src.readBytes(entry.input, 0, len);
+                        deflater.setInput(entry.input, 0, len);
+                    } else {
+                        deflater.finish();
+                    }
+                }
+                ensureWritable(dst);
+                if (dst.hasArray() && dst.isWritable()) {
+                    int len = deflater.deflate(dst.array(), dst.arrayOffset() + dst.writerIndex(),
+                        dst.writableBytes());
+                    dst.writerIndex(dst.writerIndex() + len);
+                } else {
+                    int len = deflater.deflate(entry.output);
+                    dst.writeBytes(entry.output, 0, len);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new CodecException("Failed to deflate content!", e);
+        } finally {
+            deflater.reset();
+            if (!this.deflaters.offer(entry)) {
+                deflater.end();
+            }
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf src, ByteBuf dst) throws CodecException {
+        InflaterEntry entry = this.inflaters.poll();
+        if (entry == null) {
+            entry = new InflaterEntry();
+        }
+        Inflater inflater = entry.inflater;
+        try {
+            if (src.hasArray()) {
+                inflater.setInput(src.array(), src.arrayOffset() + src.readerIndex(),
+                    src.readableBytes());
+                src.skipBytes(src.readableBytes());
+            }
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!src.isReadable()) {
+                        throw new CodecException("Truncated deflate content!");
+                    }
+                    int len = Math.min(src.readableBytes(), CHUNK_SIZE);
+                    src.readBytes(entry.input, 0, len);
+                    inflater.setInput(entry.input, 0, len);
+                }
+                int len;
+                ensureWritable(dst);
+                if (dst.hasArray() && dst.isWritable()) {
+                    len = inflater.inflate(dst.array(), dst.arrayOffset() + dst.writerIndex(),
+                        dst.writableBytes());
+                    dst.writerIndex(dst.writerIndex() + len);
+                } else {
+                    len = inflater.inflate(entry.output);
+                    if (len > dst.maxWritableBytes()) {
+                        // stop at the bound of dst rather than inflating all the content
+                        throw new CodecException("Inflated content exceeds max length "
+                                                 + dst.maxCapacity());
+                    }
+                    dst.writeBytes(entry.output, 0, len);
+                }
+                if (len == 0 && inflater.needsDictionary()) {
+                    throw new CodecException("Deflate content with preset dictionary is not supported!");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new CodecException("Failed to inflate content!", e);
+        } catch (RuntimeException e) {
+            throw new CodecException("Failed to inflate content!", e);
+        } finally {
+            inflater.reset();
+            if (!this.inflaters.offer(entry)) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Grow dst by a chunk if possible, a dst with a fixed capacity (e.g. of a known decompressed length) is kept as is.
+     */
+    private static void ensureWritable(ByteBuf dst) {
+        if (dst.writableBytes() < CHUNK_SIZE) {
+            dst.ensureWritable(Math.min(CHUNK_SIZE, dst.maxWritableBytes()));
+        }
+    }
+
+    private static class DeflaterEntry {
+        final Deflater deflater;
+        final byte[]   input  = new byte[CHUNK_SIZE];
+        final byte[]   output = new byte[CHUNK_SIZE];
+
+        DeflaterEntry(int level) {
+            this.deflater = new Deflater(level);
+        }
+    }
+
+    private static class InflaterEntry {
+        final Inflater inflater = new Inflater();
+        final byte[]   input    = new byte[CHUNK_SIZE];
+        final byte[]   output   = new byte[CHUNK_SIZE];
+    }
+}
@@ -25,6 +25,7 @@ package com.alipay.remoting.config;
 public class ConfigManager {
     // ~~~ properties for serializer
     public static final byte serializer = serializer();
+    public static final boolean serializer_bytebuf = serializer_bytebuf();
 
     // ~~~ properties for bootstrap
     public static boolean tcp_nodelay() {
@@ -67,6 +68,20 @@ public class ConfigManager {
         return getBool(Configs.NETTY_EPOLL_LT, Configs.NETTY_EPOLL_LT_DEFAULT);
     }
 
+    public static boolean netty_flush_consolidation() {
+        return getBool(Configs.NETTY_FLUSH_CONSOLIDATION, Configs.NETTY_FLUSH_CONSOLIDATION_DEFAULT);
+    }
+
+    public static int netty_flush_consolidation_max_flushes() {
+        return getInt(Configs.NETTY_FLUSH_CONSOLIDATION_MAX_FLUSHES,
+                Configs.NETTY_FLUSH_CONSOLIDATION_MAX_FLUSHES_DEFAULT);
+    }
+
+    public static long netty_flush_consolidation_delay() {
+        return getLong(Configs.NETTY_FLUSH_CONSOLIDATION_DELAY,
+                Configs.NETTY_FLUSH_CONSOLIDATION_DELAY_DEFAULT);
+    }
+
     // ~~~ properties for idle
     public static boolean tcp_idle_switch() {
         return getBool(Configs.TCP_IDLE_SWITCH, Configs.TCP_IDLE_SWITCH_DEFAULT);
@@ -102,6 +117,49 @@ public class ConfigManager {
                 Configs.CONN_CREATE_TP_KEEPALIVE_TIME_DEFAULT);
     }
 
+    public static boolean conn_pool_elastic() {
+        return getBool(Configs.CONN_POOL_ELASTIC, Configs.CONN_POOL_ELASTIC_DEFAULT);
+    }
+
+    public static int conn_pool_elastic_max() {
+        return getInt(Configs.CONN_POOL_ELASTIC_MAX, Configs.CONN_POOL_ELASTIC_MAX_DEFAULT);
+    }
+
+    public static int conn_pool_elastic_grow_inflight() {
+        return getInt(Configs.CONN_POOL_ELASTIC_GROW_INFLIGHT,
+                Configs.CONN_POOL_ELASTIC_GROW_INFLIGHT_DEFAULT);
+    }
+
+    public static long conn_pool_elastic_grow_pending_bytes() {
+        return getLong(Configs.CONN_POOL_ELASTIC_GROW_PENDING_BYTES,
+                Configs.CONN_POOL_ELASTIC_GROW_PENDING_BYTES_DEFAULT);
+    }
+
+    public static long conn_pool_elastic_idle() {
+        return getLong(Configs.CONN_POOL_ELASTIC_IDLE, Configs.CONN_POOL_ELASTIC_IDLE_DEFAULT);
+    }
+
+    public static long conn_pool_elastic_drain() {
+        return getLong(Configs.CONN_POOL_ELASTIC_DRAIN, Configs.CONN_POOL_ELASTIC_DRAIN_DEFAULT);
+    }
+
+    public static int conn_invoke_future_table_size() {
+        return getInt(Configs.CONN_INVOKE_FUTURE_TABLE_SIZE,
+                Configs.CONN_INVOKE_FUTURE_TABLE_SIZE_DEFAULT);
+    }
+
+    public static long conn_latency_decay() {
+        return getLong(Configs.CONN_LATENCY_DECAY, Configs.CONN_LATENCY_DECAY_DEFAULT);
+    }
+
+    public static int conn_latency_outlier_ratio() {
+        return getInt(Configs.CONN_LATENCY_OUTLIER_RATIO, Configs.CONN_LATENCY_OUTLIER_RATIO_DEFAULT);
+    }
+
+    public static long conn_latency_outlier_min() {
+        return getLong(Configs.CONN_LATENCY_OUTLIER_MIN, Configs.CONN_LATENCY_OUTLIER_MIN_DEFAULT);
+    }
+
     // ~~~ properties for processor manager
     public static int default_tp_min_size() {
         return getInt(Configs.TP_MIN_SIZE, Configs.TP_MIN_SIZE_DEFAULT);
@@ -119,11 +177,51 @@ public class ConfigManager {
         return getInt(Configs.TP_KEEPALIVE_TIME, Configs.TP_KEEPALIVE_TIME_DEFAULT);
     }
 
+    public static boolean process_admission_codel() {
+        return getBool(Configs.PROCESS_ADMISSION_CODEL, Configs.PROCESS_ADMISSION_CODEL_DEFAULT);
+    }
+
+    public static long process_admission_codel_target() {
+        return getLong(Configs.PROCESS_ADMISSION_CODEL_TARGET,
+                Configs.PROCESS_ADMISSION_CODEL_TARGET_DEFAULT);
+    }
+
+    public static long process_admission_codel_interval() {
+        return getLong(Configs.PROCESS_ADMISSION_CODEL_INTERVAL,
+                Configs.PROCESS_ADMISSION_CODEL_INTERVAL_DEFAULT);
+    }
+
+    public static boolean process_concurrency_limit() {
+        return getBool(Configs.PROCESS_CONCURRENCY_LIMIT, Configs.PROCESS_CONCURRENCY_LIMIT_DEFAULT);
+    }
+
+    public static int process_concurrency_limit_initial() {
+        return getInt(Configs.PROCESS_CONCURRENCY_LIMIT_INITIAL,
+                Configs.PROCESS_CONCURRENCY_LIMIT_INITIAL_DEFAULT);
+    }
+
+    public static int process_concurrency_limit_max() {
+        return getInt(Configs.PROCESS_CONCURRENCY_LIMIT_MAX,
+                Configs.PROCESS_CONCURRENCY_LIMIT_MAX_DEFAULT);
+    }
+
     // ~~~ properties for reconnect manager
     public static boolean conn_reconnect_switch() {
         return getBool(Configs.CONN_RECONNECT_SWITCH, Configs.CONN_RECONNECT_SWITCH_DEFAULT);
     }
 
+    public static int conn_reconnect_parallelism() {
+        return getInt(Configs.CONN_RECONNECT_PARALLELISM, Configs.CONN_RECONNECT_PARALLELISM_DEFAULT);
+    }
+
+    public static long conn_reconnect_backoff_base() {
+        return getLong(Configs.CONN_RECONNECT_BACKOFF_BASE, Configs.CONN_RECONNECT_BACKOFF_BASE_DEFAULT);
+    }
+
+    public static long conn_reconnect_backoff_max() {
+        return getLong(Configs.CONN_RECONNECT_BACKOFF_MAX, Configs.CONN_RECONNECT_BACKOFF_MAX_DEFAULT);
+    }
+
     // ~~~ properties for connection monitor
     public static boolean conn_monitor_switch() {
         return getBool(Configs.CONN_MONITOR_SWITCH, Configs.CONN_MONITOR_SWITCH_DEFAULT);
@@ -145,10 +243,126 @@ public class ConfigManager {
         return getInt(Configs.RETRY_DETECT_PERIOD, Configs.RETRY_DETECT_PERIOD_DEFAULT);
     }
 
+    // ~~~ properties for invoke
+    public static boolean invoke_timeout_scan() {
+        return getBool(Configs.INVOKE_TIMEOUT_SCAN, Configs.INVOKE_TIMEOUT_SCAN_DEFAULT);
+    }
+
+    public static int invoke_timeout_scan_period() {
+        return getInt(Configs.INVOKE_TIMEOUT_SCAN_PERIOD, Configs.INVOKE_TIMEOUT_SCAN_PERIOD_DEFAULT);
+    }
+
+    public static String invoke_unwritable_policy() {
+        return System.getProperty(Configs.INVOKE_UNWRITABLE_POLICY,
+                Configs.INVOKE_UNWRITABLE_POLICY_DEFAULT);
+    }
+
+    public static int invoke_unwritable_wait_timeout() {
+        return getInt(Configs.INVOKE_UNWRITABLE_WAIT_TIMEOUT,
+                Configs.INVOKE_UNWRITABLE_WAIT_TIMEOUT_DEFAULT);
+    }
+
+    public static boolean invoke_callback_async_connect() {
+        return getBool(Configs.INVOKE_CALLBACK_ASYNC_CONNECT,
+                Configs.INVOKE_CALLBACK_ASYNC_CONNECT_DEFAULT);
+    }
+
+    public static boolean invoke_aimd_limit() {
+        return getBool(Configs.INVOKE_AIMD_LIMIT, Configs.INVOKE_AIMD_LIMIT_DEFAULT);
+    }
+
+    public static int invoke_aimd_limit_initial() {
+        return getInt(Configs.INVOKE_AIMD_LIMIT_INITIAL, Configs.INVOKE_AIMD_LIMIT_INITIAL_DEFAULT);
+    }
+
+    public static int invoke_aimd_limit_max() {
+        return getInt(Configs.INVOKE_AIMD_LIMIT_MAX, Configs.INVOKE_AIMD_LIMIT_MAX_DEFAULT);
+    }
+
+    public static int invoke_aimd_limit_backoff() {
+        return getInt(Configs.INVOKE_AIMD_LIMIT_BACKOFF, Configs.INVOKE_AIMD_LIMIT_BACKOFF_DEFAULT);
+    }
+
+    public static boolean invoke_batch() {
+        return getBool(Configs.INVOKE_BATCH, Configs.INVOKE_BATCH_DEFAULT);
+    }
+
+    public static long invoke_batch_window() {
+        return getLong(Configs.INVOKE_BATCH_WINDOW, Configs.INVOKE_BATCH_WINDOW_DEFAULT);
+    }
+
+    public static int invoke_batch_max_size() {
+        return getInt(Configs.INVOKE_BATCH_MAX_SIZE, Configs.INVOKE_BATCH_MAX_SIZE_DEFAULT);
+    }
+
+    public static int invoke_batch_max_bytes() {
+        return getInt(Configs.INVOKE_BATCH_MAX_BYTES, Configs.INVOKE_BATCH_MAX_BYTES_DEFAULT);
+    }
+
+    // ~~~ properties for codec
+    public static boolean codec_zero_copy_decode() {
+        return getBool(Configs.CODEC_ZERO_COPY_DECODE, Configs.CODEC_ZERO_COPY_DECODE_DEFAULT);
+    }
+
+    public static boolean codec_composite_encode() {
+        return getBool(Configs.CODEC_COMPOSITE_ENCODE, Configs.CODEC_COMPOSITE_ENCODE_DEFAULT);
+    }
+
+    public static int codec_composite_encode_threshold() {
+        return getInt(Configs.CODEC_COMPOSITE_ENCODE_THRESHOLD,
+            Configs.CODEC_COMPOSITE_ENCODE_THRESHOLD_DEFAULT);
+    }
+
+    public static boolean codec_crc32c() {
+        return getBool(Configs.CODEC_CRC32C, Configs.CODEC_CRC32C_DEFAULT);
+    }
+
+    public static boolean codec_class_dictionary() {
+        return getBool(Configs.CODEC_CLASS_DICTIONARY, Configs.CODEC_CLASS_DICTIONARY_DEFAULT);
+    }
+
+    public static int codec_class_dictionary_max_size() {
+        return getInt(Configs.CODEC_CLASS_DICTIONARY_MAX_SIZE,
+            Configs.CODEC_CLASS_DICTIONARY_MAX_SIZE_DEFAULT);
+    }
+
+    public static boolean codec_compress() {
+        return getBool(Configs.CODEC_COMPRESS, Configs.CODEC_COMPRESS_DEFAULT);
+    }
+
+    public static int codec_compress_threshold() {
+        return getInt(Configs.CODEC_COMPRESS_THRESHOLD, Configs.CODEC_COMPRESS_THRESHOLD_DEFAULT);
+    }
+
+    public static byte codec_compressor() {
+        return getByte(Configs.CODEC_COMPRESSOR, Configs.CODEC_COMPRESSOR_DEFAULT);
+    }
+
+    public static int codec_chunk_size() {
+        return getInt(Configs.CODEC_CHUNK_SIZE, Configs.CODEC_CHUNK_SIZE_DEFAULT);
+    }
+
+    public static int codec_max_frame_size() {
+        return getInt(Configs.CODEC_MAX_FRAME_SIZE, Configs.CODEC_MAX_FRAME_SIZE_DEFAULT);
+    }
+
     public static byte serializer() {
         return getByte(Configs.SERIALIZER, Configs.SERIALIZER_DEFAULT);
     }
 
+    public static boolean serializer_bytebuf() {
+        return getBool(Configs.SERIALIZER_BYTEBUF, Configs.SERIALIZER_BYTEBUF_DEFAULT);
+    }
+
+    public static boolean serializer_hessian_reuse() {
+        return getBool(Configs.SERIALIZER_HESSIAN_REUSE, Configs.SERIALIZER_HESSIAN_REUSE_DEFAULT);
+    }
+
+    public static int serializer_hessian_reuse_max_buffer_size() {
+        return getInt(Configs.SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE,
+            Configs.SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE_DEFAULT);
+    }
+
     // ~~~ public helper methods to retrieve system property
     public static boolean getBool(String key, String defaultValue) {
         return Boolean.parseBoolean(System.getProperty(key, defaultValue));
@@ -16,6 +16,7 @@
  */
 package com.alipay.remoting.config;
 
+import com.alipay.remoting.compression.CompressorManager;
 import com.alipay.remoting.serialization.SerializerManager;
 
 /**
@@ -88,6 +89,26 @@ public class Configs {
     public static final String NETTY_EPOLL_LT = "bolt.netty.epoll.lt";
     public static final String NETTY_EPOLL_LT_DEFAULT = "true";
 
+    /**
+     * Netty flush consolidation switch, the flushes of a channel are coalesced until the read completes
+     * or the event loop runs the next task, so that many small messages share one write syscall.
+     * Off by default, since a flush deferred to the next task adds latency to a lone message.
+     */
+    public static final String NETTY_FLUSH_CONSOLIDATION = "bolt.netty.flush.consolidation";
+    public static final String NETTY_FLUSH_CONSOLIDATION_DEFAULT = "false";
+
+    /**
+     * Max flushes coalesced before an explicit flush
+     */
+    public static final String NETTY_FLUSH_CONSOLIDATION_MAX_FLUSHES = "bolt.netty.flush.consolidation.max.flushes";
+    public static final String NETTY_FLUSH_CONSOLIDATION_MAX_FLUSHES_DEFAULT = "256";
+
+    /**
+     * Max delay (in microseconds) of a coalesced flush out of reading, 0 to flush in the next task of the event loop
+     */
+    public static final String NETTY_FLUSH_CONSOLIDATION_DELAY = "bolt.netty.flush.consolidation.delay";
+    public static final String NETTY_FLUSH_CONSOLIDATION_DELAY_DEFAULT = "0";
+
     // ~~~ configs and default values for idle
 
     /**
@@ -140,6 +161,81 @@ public class Configs {
     public static final String CONN_CREATE_TP_KEEPALIVE_TIME = "bolt.conn.create.tp.keepalive";
     public static final String CONN_CREATE_TP_KEEPALIVE_TIME_DEFAULT = "60";
 
+    /**
+     * Elastic connection pool switch.
+     * <p>
+     * An elastic pool keeps at least the connection number of its url, creates one more connection when the
+     * connections are loaded beyond the thresholds below, and closes the connections idle for a while when it
+     * holds more than the connection number of its url.
+     * </p>
+     */
+    public static final String CONN_POOL_ELASTIC = "bolt.conn.pool.elastic";
+    public static final String CONN_POOL_ELASTIC_DEFAULT = "false";
+
+    /**
+     * Max number of connections of an elastic pool, the connection number of the url is used if it is larger.
+     */
+    public static final String CONN_POOL_ELASTIC_MAX = "bolt.conn.pool.elastic.max";
+    public static final String CONN_POOL_ELASTIC_MAX_DEFAULT = "8";
+
+    /**
+     * An elastic pool grows if the average number of pending invocations of its connections reaches this value.
+     */
+    public static final String CONN_POOL_ELASTIC_GROW_INFLIGHT = "bolt.conn.pool.elastic.grow.inflight";
+    public static final String CONN_POOL_ELASTIC_GROW_INFLIGHT_DEFAULT = "32";
+
+    /**
+     * An elastic pool grows if the average outbound bytes pending on its connections reach this value.
+     */
+    public static final String CONN_POOL_ELASTIC_GROW_PENDING_BYTES = "bolt.conn.pool.elastic.grow.pending.bytes";
+    public static final String CONN_POOL_ELASTIC_GROW_PENDING_BYTES_DEFAULT = "32768";
+
+    /**
+     * Time (in milliseconds) without invocation after which a connection of an elastic pool beyond the
+     * connection number of its url is closed by the scanner.
+     */
+    public static final String CONN_POOL_ELASTIC_IDLE = "bolt.conn.pool.elastic.idle";
+    public static final String CONN_POOL_ELASTIC_IDLE_DEFAULT = "60000";
+
+    /**
+     * Time (in milliseconds) an idle connection removed from the selection of an elastic pool is kept
+     * draining, it is closed by the scanner once this grace period passed without pending invocation.
+     */
+    public static final String CONN_POOL_ELASTIC_DRAIN = "bolt.conn.pool.elastic.drain";
+    public static final String CONN_POOL_ELASTIC_DRAIN_DEFAULT = "5000";
+
+    /**
+     * Number of slots of the invoke future table of each connection, rounded up to a power of two.
+     * <p>
+     * The invoke futures are kept in the slot indexed by their id, the ones whose slot is taken by another
+     * pending invoke future are kept in an overflow map.
+     * </p>
+     */
+    public static final String CONN_INVOKE_FUTURE_TABLE_SIZE = "bolt.conn.invoke.future.table.size";
+    public static final String CONN_INVOKE_FUTURE_TABLE_SIZE_DEFAULT = "256";
+
+    /**
+     * Time constant (in milliseconds) of the decay of the response latency EWMA of each connection.
+     * The weight of a sample falls to 1/e after this time, and the latency decays towards 0 if no response
+     * arrives, so that an ejected connection is tried again.
+     */
+    public static final String CONN_LATENCY_DECAY = "bolt.conn.latency.decay";
+    public static final String CONN_LATENCY_DECAY_DEFAULT = "10000";
+
+    /**
+     * A connection is an outlier ejected by {@link com.alipay.remoting.LatencyAwareSelectStrategy} if its
+     * response latency is more than this ratio of the lowest one in the pool.
+     */
+    public static final String CONN_LATENCY_OUTLIER_RATIO = "bolt.conn.latency.outlier.ratio";
+    public static final String CONN_LATENCY_OUTLIER_RATIO_DEFAULT = "4";
+
+    /**
+     * Min response latency (in milliseconds) of an outlier, so that the connections are not ejected for
+     * differences of little latencies.
+     */
+    public static final String CONN_LATENCY_OUTLIER_MIN = "bolt.conn.latency.outlier.min";
+    public static final String CONN_LATENCY_OUTLIER_MIN_DEFAULT = "5";
+
     /**
      * Default connect timeout value, time unit: ms
      */
@@ -181,6 +277,54 @@ public class Configs {
     public static final String TP_KEEPALIVE_TIME = "bolt.tp.keepalive";
     public static final String TP_KEEPALIVE_TIME_DEFAULT = "60";
 
+    /**
+     * Queue delay based admission control switch of the user processors.
+     * <p>
+     * If the min time the requests wait in the queue of an executor stays above the target delay for an
+     * interval, the executor is overloaded: new requests are rejected with
+     * {@link com.alipay.remoting.ResponseStatus#SERVER_THREADPOOL_BUSY} while the executor is occupied,
+     * and queued requests which have waited longer than the target delay are rejected when dequeued.
+     * </p>
+     */
+    public static final String PROCESS_ADMISSION_CODEL = "bolt.process.admission.codel";
+    public static final String PROCESS_ADMISSION_CODEL_DEFAULT = "false";
+
+    /**
+     * Target queue delay (in milliseconds) of the admission control.
+     */
+    public static final String PROCESS_ADMISSION_CODEL_TARGET = "bolt.process.admission.codel.target";
+    public static final String PROCESS_ADMISSION_CODEL_TARGET_DEFAULT = "5";
+
+    /**
+     * Interval (in milliseconds) over which the min queue delay is measured by the admission control.
+     */
+    public static final String PROCESS_ADMISSION_CODEL_INTERVAL = "bolt.process.admission.codel.interval";
+    public static final String PROCESS_ADMISSION_CODEL_INTERVAL_DEFAULT = "100";
+
+    /**
+     * Adaptive concurrency limit switch of the user processors.
+     * <p>
+     * The number of requests dispatched to the executor and not finished yet is limited, and the limit is
+     * tuned in the way of TCP Vegas by the time from the dispatch to the finish of the requests: it grows while
+     * the time stays close to the min time observed and shrinks when the time rises, i.e. requests queue up.
+     * Requests beyond the limit are rejected with {@link com.alipay.remoting.ResponseStatus#SERVER_THREADPOOL_BUSY}.
+     * </p>
+     */
+    public static final String PROCESS_CONCURRENCY_LIMIT = "bolt.process.concurrency.limit";
+    public static final String PROCESS_CONCURRENCY_LIMIT_DEFAULT = "false";
+
+    /**
+     * Initial concurrency limit.
+     */
+    public static final String PROCESS_CONCURRENCY_LIMIT_INITIAL = "bolt.process.concurrency.limit.initial";
+    public static final String PROCESS_CONCURRENCY_LIMIT_INITIAL_DEFAULT = "20";
+
+    /**
+     * Max concurrency limit.
+     */
+    public static final String PROCESS_CONCURRENCY_LIMIT_MAX = "bolt.process.concurrency.limit.max";
+    public static final String PROCESS_CONCURRENCY_LIMIT_MAX_DEFAULT = "1000";
+
     // ~~~ configs and default values for reconnect manager
 
     /**
@@ -189,6 +333,28 @@ public class Configs {
     public static final String CONN_RECONNECT_SWITCH = "bolt.conn.reconnect.switch";
     public static final String CONN_RECONNECT_SWITCH_DEFAULT = "false";
 
+    /**
+     * Max number of urls reconnected at the same time.
+     */
+    public static final String CONN_RECONNECT_PARALLELISM = "bolt.conn.reconnect.parallelism";
+    public static final String CONN_RECONNECT_PARALLELISM_DEFAULT = "4";
+
+    /**
+     * Base backoff (in milliseconds) of reconnecting a url. A lost url is reconnected at once unless it was
+     * attempted within the base backoff, and the backoff is doubled after each failed attempt.
+     * <p>
+     * The actual backoff after a failed attempt is jittered between the half and the whole of it, so that the urls lost at the same
+     * time are not reconnected at the same time.
+     */
+    public static final String CONN_RECONNECT_BACKOFF_BASE = "bolt.conn.reconnect.backoff.base";
+    public static final String CONN_RECONNECT_BACKOFF_BASE_DEFAULT = "1000";
+
+    /**
+     * Max backoff (in milliseconds) before reconnecting a url.
+     */
+    public static final String CONN_RECONNECT_BACKOFF_MAX = "bolt.conn.reconnect.backoff.max";
+    public static final String CONN_RECONNECT_BACKOFF_MAX_DEFAULT = "30000";
+
     // ~~~ configs and default values for connection monitor
 
     /**
@@ -233,6 +399,225 @@ public class Configs {
     public static final String CONN_SERVICE_STATUS_OFF = "off";
     public static final String CONN_SERVICE_STATUS_ON = "on";
 
+    // ~~~ configs and default values for invoke
+
+    /**
+     * Whether to check the timeouts of callback and future invocations by scanning the invoke futures of
+     * each connection in its event loop, instead of scheduling each timeout in the global timer.
+     * <p>
+     * Notice: the timeout handling then runs in the event loop, so do the timeout callbacks and the
+     * completions of {@link java.util.concurrent.CompletableFuture}s which have no executor.
+     * </p>
+     */
+    public static final String INVOKE_TIMEOUT_SCAN = "bolt.invoke.timeout.scan";
+    public static final String INVOKE_TIMEOUT_SCAN_DEFAULT = "false";
+
+    /**
+     * Period (in milliseconds) to scan the invoke futures for timeout in each event loop.
+     */
+    public static final String INVOKE_TIMEOUT_SCAN_PERIOD = "bolt.invoke.timeout.scan.period";
+    public static final String INVOKE_TIMEOUT_SCAN_PERIOD_DEFAULT = "10";
+
+    /**
+     * What to do when invoking on a connection whose outbound buffer exceeds the high water mark.
+     * <ul>
+     * <li>{@link #INVOKE_UNWRITABLE_POLICY_IGNORE}: the invocations by address or url fail the connection check,
+     * the invocations on a given connection write anyway and the outbound buffer keeps growing under a slow peer.</li>
+     * <li>{@link #INVOKE_UNWRITABLE_POLICY_FAIL}: fail the invocation at once with
+     * {@link com.alipay.remoting.rpc.exception.InvokeUnwritableException}.</li>
+     * <li>{@link #INVOKE_UNWRITABLE_POLICY_WAIT}: wait for the connection to be writable at most
+     * {@link #INVOKE_UNWRITABLE_WAIT_TIMEOUT} milliseconds (and no longer than the invoke timeout), then fail.
+     * The invocations in the event loop never wait.</li>
+     * <li>{@link #INVOKE_UNWRITABLE_POLICY_SELECT}: select another writable connection of the same url
+     * from the pool of the client, fail if there is none.</li>
+     * </ul>
+     */
+    public static final String INVOKE_UNWRITABLE_POLICY = "bolt.invoke.unwritable.policy";
+    public static final String INVOKE_UNWRITABLE_POLICY_IGNORE = "ignore";
+    public static final String INVOKE_UNWRITABLE_POLICY_FAIL = "fail";
+    public static final String INVOKE_UNWRITABLE_POLICY_WAIT = "wait";
+    public static final String INVOKE_UNWRITABLE_POLICY_SELECT = "select";
+    public static final String INVOKE_UNWRITABLE_POLICY_DEFAULT = INVOKE_UNWRITABLE_POLICY_IGNORE;
+
+    /**
+     * Max time (in milliseconds) to wait for an unwritable connection with the
+     * {@link #INVOKE_UNWRITABLE_POLICY_WAIT} policy.
+     */
+    public static final String INVOKE_UNWRITABLE_WAIT_TIMEOUT = "bolt.invoke.unwritable.wait.timeout";
+    public static final String INVOKE_UNWRITABLE_WAIT_TIMEOUT_DEFAULT = "1000";
+
+    /**
+     * Whether the callback invocations by address or url acquire the connection without blocking the caller.
+     * The invocation is sent after the connection is created, and the failure to create is notified to the
+     * callback instead of thrown to the caller. The invocations with completable future always do so.
+     */
+    public static final String INVOKE_CALLBACK_ASYNC_CONNECT = "bolt.invoke.callback.async.connect";
+    public static final String INVOKE_CALLBACK_ASYNC_CONNECT_DEFAULT = "false";
+
+    /**
+     * AIMD invoke limit switch.
+     * <p>
+     * Each connection pool keeps a window of the pending invocations of its connections, which grows by one per
+     * window of successful responses and shrinks by the backoff ratio on a
+     * {@link com.alipay.remoting.ResponseStatus#SERVER_THREADPOOL_BUSY} response or a timeout. Invocations beyond the window fail locally with
+     * {@link com.alipay.remoting.rpc.exception.InvokeLimitExceededException} instead of loading the server further.
+     * </p>
+     */
+    public static final String INVOKE_AIMD_LIMIT = "bolt.invoke.aimd.limit";
+    public static final String INVOKE_AIMD_LIMIT_DEFAULT = "false";
+
+    /**
+     * Initial window of the AIMD invoke limit.
+     */
+    public static final String INVOKE_AIMD_LIMIT_INITIAL = "bolt.invoke.aimd.limit.initial";
+    public static final String INVOKE_AIMD_LIMIT_INITIAL_DEFAULT = "100";
+
+    /**
+     * Max window of the AIMD invoke limit.
+     */
+    public static final String INVOKE_AIMD_LIMIT_MAX = "bolt.invoke.aimd.limit.max";
+    public static final String INVOKE_AIMD_LIMIT_MAX_DEFAULT = "1000";
+
+    /**
+     * Percentage of the window kept when the AIMD invoke limit backs off.
+     */
+    public static final String INVOKE_AIMD_LIMIT_BACKOFF = "bolt.invoke.aimd.limit.backoff";
+    public static final String INVOKE_AIMD_LIMIT_BACKOFF_DEFAULT = "90";
+
+    /**
+     * Invoke batch switch of a client for protocol v2, also turned on by
+     * {@link com.alipay.remoting.BoltClient#enableRequestBatchSwitch()}.
+     * <p>
+     * The requests to the same pool key within a window are written together as one batch frame per connection,
+     * which the server unpacks into one list of requests to dispatch. A server answers the connections it received
+     * batch frames from with batch frames of responses in the same way.
+     * Only turn it on for clients when all servers are able to decode batch frames.
+     * </p>
+     */
+    public static final String INVOKE_BATCH = "bolt.invoke.batch";
+    public static final String INVOKE_BATCH_DEFAULT = "false";
+
+    /**
+     * Window (in microseconds) to batch the requests or responses, 0 to batch them until the event loop runs
+     * the next task.
+     */
+    public static final String INVOKE_BATCH_WINDOW = "bolt.invoke.batch.window";
+    public static final String INVOKE_BATCH_WINDOW_DEFAULT = "50";
+
+    /**
+     * Max commands of a batch frame, a batch is written at once when full.
+     */
+    public static final String INVOKE_BATCH_MAX_SIZE = "bolt.invoke.batch.max.size";
+    public static final String INVOKE_BATCH_MAX_SIZE_DEFAULT = "64";
+
+    /**
+     * Max content bytes of a batch frame, a batch is written at once when full, and a command with more content
+     * is written on its own.
+     */
+    public static final String INVOKE_BATCH_MAX_BYTES = "bolt.invoke.batch.max.bytes";
+    public static final String INVOKE_BATCH_MAX_BYTES_DEFAULT = "65536";
+
+    // ~~~ configs and default values for codec
+
+    /**
+     * Zero copy decode switch for protocol v2.
+     * <p>
+     * If switch on, the content of a decoded rpc command is kept as a retained slice of the inbound buffer instead of
+     * being copied into a new byte array, and the slice is released once the content has been deserialized.
+     * </p>
+     */
+    public static final String CODEC_ZERO_COPY_DECODE = "bolt.codec.zerocopy.decode";
+    public static final String CODEC_ZERO_COPY_DECODE_DEFAULT = "false";
+
+    /**
+     * Composite encode switch.
+     * <p>
+     * If switch on, the encoder emits a composite buffer of a small header buffer and the content buffer of the command,
+     * so that a content already held in a {@link io.netty.buffer.ByteBuf} reaches the channel without being copied.
+     * </p>
+     */
+    public static final String CODEC_COMPOSITE_ENCODE = "bolt.codec.composite.encode";
+    public static final String CODEC_COMPOSITE_ENCODE_DEFAULT = "false";
+
+    /**
+     * Content smaller than this threshold (in bytes) is still copied into the header buffer when composite encode is on.
+     */
+    public static final String CODEC_COMPOSITE_ENCODE_THRESHOLD = "bolt.codec.composite.encode.threshold";
+    public static final String CODEC_COMPOSITE_ENCODE_THRESHOLD_DEFAULT = "4096";
+
+    /**
+     * CRC32C switch for protocol v2 requests.
+     * <p>
+     * If switch on and the jvm provides an intrinsified CRC32C (java 9 or later), requests with crc enabled are
+     * checksummed with CRC32C and flagged by {@link com.alipay.remoting.config.switches.ProtocolSwitch#CRC32C_SWITCH_INDEX},
+     * the server answers with the same checksum. CRC32C is only used on a connection after the peer advertised
+     * it verifies CRC32C by {@link com.alipay.remoting.config.switches.ProtocolSwitch#CRC32C_ACCEPT_SWITCH_INDEX}
+     * on its responses, so requests to older servers keep CRC32.
+     * </p>
+     */
+    public static final String CODEC_CRC32C = "bolt.codec.crc32c";
+    public static final String CODEC_CRC32C_DEFAULT = "false";
+
+    /**
+     * Request class dictionary switch for protocol v2.
+     * <p>
+     * If switch on, a connection sends the full request class name only on first use, later requests carry a short id.
+     * It is negotiated per connection, requests to a peer which has not advertised support keep the full class name.
+     * </p>
+     */
+    public static final String CODEC_CLASS_DICTIONARY = "bolt.codec.class.dictionary";
+    public static final String CODEC_CLASS_DICTIONARY_DEFAULT = "false";
+
+    /**
+     * Max number of request class names kept in the dictionary of one connection.
+     */
+    public static final String CODEC_CLASS_DICTIONARY_MAX_SIZE = "bolt.codec.class.dictionary.max.size";
+    public static final String CODEC_CLASS_DICTIONARY_MAX_SIZE_DEFAULT = "1024";
+
+    /**
+     * Content compression switch for protocol v2.
+     * <p>
+     * If switch on, requests carry their content with a leading compressor code, compressed when not smaller than
+     * the threshold, and flagged by {@link com.alipay.remoting.config.switches.ProtocolSwitch#COMPRESS_SWITCH_INDEX}.
+     * A client only compresses requests on a connection after the server advertised on a response that it
+     * decodes them, flagged by {@link com.alipay.remoting.config.switches.ProtocolSwitch#COMPRESS_ACCEPT_SWITCH_INDEX},
+     * and a server only compresses responses of such requests, so old peers are not affected.
+     * </p>
+     */
+    public static final String CODEC_COMPRESS = "bolt.codec.compress";
+    public static final String CODEC_COMPRESS_DEFAULT = "false";
+
+    /**
+     * Content smaller than this threshold (in bytes) is not compressed.
+     */
+    public static final String CODEC_COMPRESS_THRESHOLD = "bolt.codec.compress.threshold";
+    public static final String CODEC_COMPRESS_THRESHOLD_DEFAULT = "8192";
+
+    /**
+     * Code of the compressor, see {@link com.alipay.remoting.compression.CompressorManager}
+     */
+    public static final String CODEC_COMPRESSOR = "bolt.codec.compressor";
+    public static final String CODEC_COMPRESSOR_DEFAULT = String.valueOf(CompressorManager.Deflate);
+
+    /**
+     * Chunk size (in bytes) for protocol v2, 0 means no chunking.
+     * <p>
+     * Content larger than the chunk size is sent as a sequence of frames of at most this many content bytes,
+     * and reassembled by the peer without cumulating the whole frame. Responses are only chunked for requesters
+     * which also have this set, requests are chunked whenever this is set, so only set it for clients when all
+     * servers are able to reassemble chunked requests.
+     * </p>
+     */
+    public static final String CODEC_CHUNK_SIZE = "bolt.codec.chunk.size";
+    public static final String CODEC_CHUNK_SIZE_DEFAULT = "0";
+
+    /**
+     * Max frame size (in bytes) accepted by the protocol v2 decoder, the total content length of chunked frames
+     * included. A larger frame fails the decoding as soon as its header arrives, and the connection is closed.
+     */
+    public static final String CODEC_MAX_FRAME_SIZE = "bolt.codec.max.frame.size";
+    public static final String CODEC_MAX_FRAME_SIZE_DEFAULT = String.valueOf(Integer.MAX_VALUE);
+
     // ~~~ configs and default values for serializer
 
     /**
@@ -241,6 +626,30 @@ public class Configs {
     public static final String SERIALIZER = "bolt.serializer";
     public static final String SERIALIZER_DEFAULT = String.valueOf(SerializerManager.Hessian2);
 
+    /**
+     * Whether to serialize content into a buffer allocated from the netty allocator instead of a byte array,
+     * only take effect when the serializer is a {@link com.alipay.remoting.serialization.ByteBufSerializer}.
+     * <p>
+     * The encoder writes the buffer (or adds it to a composite frame) and releases it, so no byte array
+     * of the content is created on the sending side.
+     * </p>
+     */
+    public static final String SERIALIZER_BYTEBUF = "bolt.serializer.bytebuf";
+    public static final String SERIALIZER_BYTEBUF_DEFAULT = "false";
+
+    /**
+     * Whether hessian serializer reuses its output and output buffer in each thread.
+     */
+    public static final String SERIALIZER_HESSIAN_REUSE = "bolt.serializer.hessian.reuse";
+    public static final String SERIALIZER_HESSIAN_REUSE_DEFAULT = "false";
+
+    /**
+     * Max size (in bytes) of the output buffer kept by each thread when hessian serializer reuses its output,
+     * a buffer grown larger by a big message is dropped after use.
+     */
+    public static final String SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE = "bolt.serializer.hessian.reuse.max.buffer.size";
+    public static final String SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE_DEFAULT = "1048576";
+
     /**
      * Charset
      */
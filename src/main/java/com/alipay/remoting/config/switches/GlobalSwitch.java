@@ -38,6 +38,7 @@ public class GlobalSwitch implements Switch {
     public static final int CONN_MONITOR_SWITCH = 1;
     public static final int SERVER_MANAGE_CONNECTION_SWITCH = 2;
     public static final int SERVER_SYNC_STOP = 3;
+    public static final int CLIENT_REQUEST_BATCH_SWITCH = 4;
 
     /** user settings */
     private BitSet userSettings = new BitSet();
@@ -60,6 +61,12 @@ public class GlobalSwitch implements Switch {
         } else {
             userSettings.clear(CONN_MONITOR_SWITCH);
         }
+
+        if (ConfigManager.invoke_batch()) {
+            userSettings.set(CLIENT_REQUEST_BATCH_SWITCH);
+        } else {
+            userSettings.clear(CLIENT_REQUEST_BATCH_SWITCH);
+        }
     }
 
     // ~~~ public methods
@@ -28,6 +28,36 @@ public class ProtocolSwitch implements Switch {
 
     // switch index
     public static final int CRC_SWITCH_INDEX = 0x000;
+    /**
+     * if on together with crc switch, the crc field of the frame is a CRC32C checksum instead of CRC32
+     */
+    public static final int CRC32C_SWITCH_INDEX = 0x001;
+    /**
+     * on a request: the class field is dictionary encoded, see {@link com.alipay.remoting.rpc.protocol.RpcClassDictionary};
+     * on a response: the responder accepts dictionary encoded requests
+     */
+    public static final int CLASS_DICT_SWITCH_INDEX = 0x002;
+    /**
+     * the content is wrapped with a leading compressor code, see {@link com.alipay.remoting.compression.CompressorManager}
+     */
+    public static final int COMPRESS_SWITCH_INDEX = 0x003;
+    /**
+     * the frame carries a chunk of the content of a command, see {@link com.alipay.remoting.rpc.protocol.RpcChunkAssembler}
+     */
+    public static final int CHUNK_SWITCH_INDEX = 0x004;
+    /**
+     * on a request: the requester is able to reassemble a chunked response
+     */
+    public static final int CHUNK_ACCEPT_SWITCH_INDEX = 0x005;
+    /**
+     * on a response: the responder decodes compressed requests; the bit of {@link #CHUNK_ACCEPT_SWITCH_INDEX}
+     * is shared since that one is meaningless on a response, and the sign bit cannot be parsed by older peers
+     */
+    public static final int COMPRESS_ACCEPT_SWITCH_INDEX = 0x005;
+    /**
+     * on a response: the responder verifies CRC32C checksummed requests
+     */
+    public static final int CRC32C_ACCEPT_SWITCH_INDEX = 0x006;
 
     // default value
     public static final boolean CRC_SWITCH_DEFAULT_VALUE = true;
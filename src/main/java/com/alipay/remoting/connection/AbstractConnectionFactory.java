@@ -19,6 +19,7 @@ package com.alipay.remoting.connection;
 import com.alipay.remoting.Connection;
 import com.alipay.remoting.ConnectionEventHandler;
 import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.FlushCoalescingHandler;
 import com.alipay.remoting.NamedThreadFactory;
 import com.alipay.remoting.ProtocolCode;
 import com.alipay.remoting.Url;
@@ -105,6 +106,11 @@ public abstract class AbstractConnectionFactory implements ConnectionFactory {
             @Override
             protected void initChannel(SocketChannel channel) {
                 ChannelPipeline pipeline = channel.pipeline();
+                if (ConfigManager.netty_flush_consolidation()) {
+                    pipeline.addLast("flushCoalescingHandler", new FlushCoalescingHandler(
+                            ConfigManager.netty_flush_consolidation_max_flushes(),
+                            ConfigManager.netty_flush_consolidation_delay()));
+                }
                 pipeline.addLast("decoder", codec.newDecoder());
                 pipeline.addLast("encoder", codec.newEncoder());
 
@@ -48,6 +48,9 @@ public class DefaultInvokeFuture implements InvokeFuture {
             .getLogger("RpcRemoting");
     private final CountDownLatch countDownLatch = new CountDownLatch(1);
     private final AtomicBoolean executeCallbackOnlyOnce = new AtomicBoolean(false);
+    private final AtomicBoolean releaseOnlyOnce = new AtomicBoolean(false);
+    private volatile boolean released;
+    private final long startTime = System.nanoTime();
     private int invokeId;
     private InvokeCallbackListener callbackListener;
     private InvokeCallback callback;
@@ -124,6 +127,26 @@ public class DefaultInvokeFuture implements InvokeFuture {
     public void putResponse(RemotingCommand response) {
         this.responseCommand = (ResponseCommand) response;
         this.countDownLatch.countDown();
+        if (this.released) {
+            releaseResponse();
+        }
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#release()
+     */
+    @Override
+    public void release() {
+        this.released = true;
+        releaseResponse();
+    }
+
+    private void releaseResponse() {
+        ResponseCommand response = this.responseCommand;
+        // either the releaser or the putter sees the other, only release once if both do
+        if (response != null && this.releaseOnlyOnce.compareAndSet(false, true)) {
+            response.release();
+        }
     }
 
     /**
@@ -182,6 +205,22 @@ public class DefaultInvokeFuture implements InvokeFuture {
         }
     }
 
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getTimeout()
+     */
+    @Override
+    public Timeout getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getStartTime()
+     */
+    @Override
+    public long getStartTime() {
+        return this.startTime;
+    }
+
     /**
      * @see com.alipay.remoting.InvokeFuture#getCause()
      */
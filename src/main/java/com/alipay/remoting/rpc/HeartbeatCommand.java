@@ -40,4 +40,14 @@ public class HeartbeatCommand extends RequestCommand {
         this.setId(IDGenerator.nextId());
     }
 
+    /**
+     * Construction with the given id.
+     *
+     * @param id heartbeat id
+     */
+    public HeartbeatCommand(int id) {
+        super(CommonCommandCode.HEARTBEAT);
+        this.setId(id);
+    }
+
 }
@@ -46,7 +46,9 @@ import org.slf4j.Logger;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Client for Rpc.
@@ -69,6 +71,7 @@ public class RpcClient extends AbstractBoltClient {
     private RemotingAddressParser addressParser;
     private DefaultConnectionMonitor connectionMonitor;
     private ConnectionMonitorStrategy monitorStrategy;
+    private Executor asyncExecutor;
 
     public RpcClient() {
         this.taskScanner = new RpcTaskScanner();
@@ -126,7 +129,9 @@ public class RpcClient extends AbstractBoltClient {
                 connectionEventListener, switches());
         this.connectionManager.setAddressParser(this.addressParser);
         this.connectionManager.startup();
-        this.rpcRemoting = new RpcClientRemoting(new RpcCommandFactory(), this.addressParser, this.connectionManager);
+        this.rpcRemoting = new RpcClientRemoting(new RpcCommandFactory(), this.addressParser, this.connectionManager,
+                switches());
+        this.rpcRemoting.setAsyncExecutor(this.asyncExecutor);
         this.taskScanner.add(this.connectionManager);
         this.taskScanner.startup();
 
@@ -270,6 +275,101 @@ public class RpcClient extends AbstractBoltClient {
         return this.rpcRemoting.invokeWithFuture(conn, request, invokeContext, timeoutMillis);
     }
 
+    /**
+     * Async invocation using a string address, address format example - 127.0.0.1:12200?key1=value1&key2=value2 <br>
+     * The returned {@link CompletableFuture} is completed with the response object, or exceptionally with the
+     * {@link RemotingException} of the invocation, without parking any thread while waiting for the response.
+     * <p>
+     * Notice:<br>
+     * <ol>
+     * <li><b>DO NOT modify the request object concurrently when this method is called.</b></li>
+     * <li>When do invocation, use the string address to find a available connection, if none then create one,
+     * the future is completed exceptionally if the connection can not be created.</li>
+     * <li>The future is completed in the thread processing the response or the timeout, unless an executor is specified
+     * by {@link #setAsyncExecutor(Executor)}, DO NOT block in the dependent actions in that case.</li>
+     * </ol>
+     *
+     * @param address       target address
+     * @param request       request
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final String address, final Object request,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(address, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param address       target address
+     * @param request       request
+     * @param invokeContext invoke context
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final String address, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(address, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Async invocation using a parsed {@link Url}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param url           target url
+     * @param request       request
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Url url, final Object request,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(url, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(Url, Object, int)}
+     *
+     * @param url           target url
+     * @param request       request
+     * @param invokeContext invoke context
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Url url, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(url, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Async invocation using a {@link Connection}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param conn          target connection
+     * @param request       request
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Connection conn, final Object request,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(conn, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(Connection, Object, int)}
+     *
+     * @param conn          target connection
+     * @param request       request
+     * @param invokeContext invoke context
+     * @param timeoutMillis timeout in millisecond
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Connection conn, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(conn, request, invokeContext, timeoutMillis);
+    }
+
     @Override
     public void invokeWithCallback(final String address, final Object request,
                                    final InvokeCallback invokeCallback, final int timeoutMillis)
@@ -366,6 +466,31 @@ public class RpcClient extends AbstractBoltClient {
         return this.connectionManager.getAndCreateIfAbsent(url);
     }
 
+    /**
+     * Get a connection using address without blocking, the connections are created in the
+     * connection create executor if none, see {@link #getConnection(String, int)}.
+     *
+     * @param addr           target address
+     * @param connectTimeout this is prior to url args {@link RpcConfigs#CONNECT_TIMEOUT_KEY}
+     * @return future of the connection
+     */
+    public CompletableFuture<Connection> getConnectionAsync(String address, int connectTimeout) {
+        Url url = this.addressParser.parse(address);
+        return this.getConnectionAsync(url, connectTimeout);
+    }
+
+    /**
+     * Get a connection using a {@link Url} without blocking, see {@link #getConnection(Url, int)}.
+     *
+     * @param url            target url
+     * @param connectTimeout this is prior to url args {@link RpcConfigs#CONNECT_TIMEOUT_KEY}
+     * @return future of the connection
+     */
+    public CompletableFuture<Connection> getConnectionAsync(Url url, int connectTimeout) {
+        url.setConnectTimeout(connectTimeout);
+        return this.connectionManager.getAndCreateIfAbsentAsync(url);
+    }
+
     @Override
     public Map<String, List<Connection>> getAllManagedConnections() {
         return this.connectionManager.getAll();
@@ -461,11 +586,39 @@ public class RpcClient extends AbstractBoltClient {
         return this.switches().isOn(GlobalSwitch.CONN_MONITOR_SWITCH);
     }
 
+    @Override
+    public void enableRequestBatchSwitch() {
+        this.switches().turnOn(GlobalSwitch.CLIENT_REQUEST_BATCH_SWITCH);
+    }
+
+    @Override
+    public void disableRequestBatchSwitch() {
+        this.switches().turnOff(GlobalSwitch.CLIENT_REQUEST_BATCH_SWITCH);
+    }
+
+    @Override
+    public boolean isRequestBatchSwitchOn() {
+        return this.switches().isOn(GlobalSwitch.CLIENT_REQUEST_BATCH_SWITCH);
+    }
+
     @Override
     public DefaultConnectionManager getConnectionManager() {
         return this.connectionManager;
     }
 
+    /**
+     * Set the executor to complete the futures returned by the async invocations, null to complete them
+     * in the thread processing the response.
+     *
+     * @param asyncExecutor completion executor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        if (this.rpcRemoting != null) {
+            this.rpcRemoting.setAsyncExecutor(asyncExecutor);
+        }
+    }
+
     @Override
     public RemotingAddressParser getAddressParser() {
         return this.addressParser;
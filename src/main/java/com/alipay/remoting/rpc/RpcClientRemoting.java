@@ -21,11 +21,26 @@ import com.alipay.remoting.Connection;
 import com.alipay.remoting.DefaultConnectionManager;
 import com.alipay.remoting.InvokeCallback;
 import com.alipay.remoting.InvokeContext;
+import com.alipay.remoting.ProtocolCode;
 import com.alipay.remoting.RemotingAddressParser;
 import com.alipay.remoting.RemotingCommand;
 import com.alipay.remoting.Url;
+import com.alipay.remoting.config.ConfigManager;
+import com.alipay.remoting.config.switches.GlobalSwitch;
 import com.alipay.remoting.exception.RemotingException;
+import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.rpc.protocol.RpcCommandBatcher;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
 import com.alipay.remoting.util.RemotingUtil;
+import io.netty.channel.ChannelFuture;
+import org.slf4j.Logger;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Rpc client remoting
@@ -35,9 +50,32 @@ import com.alipay.remoting.util.RemotingUtil;
  */
 public class RpcClientRemoting extends RpcRemoting {
 
+    /** logger */
+    private static final Logger logger = BoltLoggerFactory.getLogger("RpcRemoting");
+
+    /** whether the callback invocations acquire the connection without blocking */
+    private final boolean callbackAsyncConnect;
+
+    /** protocol carrying batch frames */
+    private static final ProtocolCode BATCH_PROTOCOL = ProtocolCode
+                                                       .fromBytes(RpcProtocolV2.PROTOCOL_CODE);
+
+    /** switches of the client, null to use none */
+    private final GlobalSwitch globalSwitch;
+
+    /** batchers of the requests, by the pool key of the connections */
+    private final ConcurrentHashMap<String, RpcCommandBatcher> batchers = new ConcurrentHashMap<String, RpcCommandBatcher>();
+
     public RpcClientRemoting(CommandFactory commandFactory, RemotingAddressParser addressParser,
                              DefaultConnectionManager connectionManager) {
+        this(commandFactory, addressParser, connectionManager, null);
+    }
+
+    public RpcClientRemoting(CommandFactory commandFactory, RemotingAddressParser addressParser,
+                             DefaultConnectionManager connectionManager, GlobalSwitch globalSwitch) {
         super(commandFactory, addressParser, connectionManager);
+        this.callbackAsyncConnect = ConfigManager.invoke_callback_async_connect();
+        this.globalSwitch = globalSwitch;
     }
 
     /**
@@ -48,7 +86,7 @@ public class RpcClientRemoting extends RpcRemoting {
             throws RemotingException,
             InterruptedException {
         final Connection conn = getConnectionAndInitInvokeContext(url, invokeContext);
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         this.oneway(conn, request, invokeContext);
     }
 
@@ -59,7 +97,7 @@ public class RpcClientRemoting extends RpcRemoting {
     public Object invokeSync(Url url, Object request, InvokeContext invokeContext, int timeoutMillis)
             throws RemotingException, InterruptedException {
         final Connection conn = getConnectionAndInitInvokeContext(url, invokeContext);
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         return this.invokeSync(conn, request, invokeContext, timeoutMillis);
     }
 
@@ -71,10 +109,26 @@ public class RpcClientRemoting extends RpcRemoting {
                                               int timeoutMillis) throws RemotingException,
             InterruptedException {
         final Connection conn = getConnectionAndInitInvokeContext(url, invokeContext);
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         return this.invokeWithFuture(conn, request, invokeContext, timeoutMillis);
     }
 
+    /**
+     * @see com.alipay.remoting.rpc.RpcRemoting#invokeAsync(com.alipay.remoting.Url, java.lang.Object, InvokeContext, int)
+     */
+    @Override
+    public CompletableFuture<Object> invokeAsync(Url url, Object request,
+                                                 InvokeContext invokeContext, int timeoutMillis) {
+        return getConnectionAndInitInvokeContextAsync(url, invokeContext).thenCompose(conn -> {
+            try {
+                checkConnection(conn);
+            } catch (RemotingException e) {
+                return failedFuture(e);
+            }
+            return this.invokeAsync(conn, request, invokeContext, timeoutMillis);
+        });
+    }
+
     /**
      * @see com.alipay.remoting.rpc.RpcRemoting#invokeWithCallback(com.alipay.remoting.Url, java.lang.Object, InvokeContext, com.alipay.remoting.InvokeCallback, int)
      */
@@ -83,11 +137,103 @@ public class RpcClientRemoting extends RpcRemoting {
                                    InvokeCallback invokeCallback, int timeoutMillis)
             throws RemotingException,
             InterruptedException {
+        if (this.callbackAsyncConnect) {
+            getConnectionAndInitInvokeContextAsync(url, invokeContext).whenComplete((conn, cause) -> {
+                Throwable failure = cause;
+                if (failure == null) {
+                    try {
+                        checkConnection(conn);
+                        this.invokeWithCallback(conn, request, invokeContext, invokeCallback, timeoutMillis);
+                        return;
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+                notifyCallbackAbnormally(invokeCallback,
+                        failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause() : failure);
+            });
+            return;
+        }
         final Connection conn = getConnectionAndInitInvokeContext(url, invokeContext);
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         this.invokeWithCallback(conn, request, invokeContext, invokeCallback, timeoutMillis);
     }
 
+    /**
+     * Notify the callback of an invocation failed before sent, in the executor of the callback if any.
+     *
+     * @param invokeCallback callback of the invocation
+     * @param cause          cause of the failure
+     */
+    private void notifyCallbackAbnormally(final InvokeCallback invokeCallback, final Throwable cause) {
+        Runnable task = () -> {
+            try {
+                invokeCallback.onException(cause);
+            } catch (Throwable e) {
+                logger.error("Exception occurred in user defined InvokeCallback#onException() logic.", e);
+            }
+        };
+        Executor executor = invokeCallback.getExecutor();
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Callback thread pool busy.", e);
+        }
+    }
+
+    /**
+     * Select a writable connection from the pools the unwritable connection belongs to.
+     *
+     * @see RpcRemoting#selectWritableConnection(Connection)
+     */
+    @Override
+    protected Connection selectWritableConnection(Connection conn) {
+        for (String poolKey : conn.getPoolKeys()) {
+            for (Connection candidate : this.connectionManager.getAll(poolKey)) {
+                if (candidate != conn && candidate.isFine() && candidate.isWritable()) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Batch the requests to the connections of a pool if the request batch switch is on, only the protocol v2
+     * carries batch frames.
+     *
+     * @see com.alipay.remoting.BaseRemoting#writeAndFlush(Connection, RemotingCommand)
+     */
+    @Override
+    protected ChannelFuture writeAndFlush(Connection conn, RemotingCommand request) {
+        if (this.globalSwitch == null
+            || !this.globalSwitch.isOn(GlobalSwitch.CLIENT_REQUEST_BATCH_SWITCH)
+            || !(request instanceof RpcCommand)
+            || !BATCH_PROTOCOL.equals(conn.getChannel().attr(Connection.PROTOCOL).get())) {
+            return super.writeAndFlush(conn, request);
+        }
+        Iterator<String> poolKeys = conn.getPoolKeys().iterator();
+        if (!poolKeys.hasNext()) {
+            return super.writeAndFlush(conn, request);
+        }
+        String poolKey = poolKeys.next();
+        RpcCommandBatcher batcher = this.batchers.get(poolKey);
+        if (batcher == null) {
+            batcher = new RpcCommandBatcher(ConfigManager.invoke_batch_window(),
+                ConfigManager.invoke_batch_max_size(), ConfigManager.invoke_batch_max_bytes());
+            RpcCommandBatcher existing = this.batchers.putIfAbsent(poolKey, batcher);
+            if (existing != null) {
+                batcher = existing;
+            }
+        }
+        return batcher.write(conn.getChannel(), (RpcCommand) request);
+    }
+
     /**
      * @see RpcRemoting#preProcessInvokeContext(InvokeContext, RemotingCommand, Connection)
      */
@@ -107,6 +253,24 @@ public class RpcClientRemoting extends RpcRemoting {
         }
     }
 
+    /**
+     * Get connection without blocking and set init invokeContext if invokeContext not {@code null}
+     *
+     * @param url           target url
+     * @param invokeContext invoke context to set
+     * @return future of the connection
+     */
+    protected CompletableFuture<Connection> getConnectionAndInitInvokeContextAsync(Url url,
+                                                                                   InvokeContext invokeContext) {
+        final long start = System.currentTimeMillis();
+        CompletableFuture<Connection> future = this.connectionManager.getAndCreateIfAbsentAsync(url);
+        if (null != invokeContext) {
+            future = future.whenComplete((conn, cause) -> invokeContext.putIfAbsent(
+                    InvokeContext.CLIENT_CONN_CREATETIME, (System.currentTimeMillis() - start)));
+        }
+        return future;
+    }
+
     /**
      * Get connection and set init invokeContext if invokeContext not {@code null}
      *
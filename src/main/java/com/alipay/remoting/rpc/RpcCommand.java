@@ -27,6 +27,13 @@ import com.alipay.remoting.exception.DeserializationException;
 import com.alipay.remoting.exception.SerializationException;
 import com.alipay.remoting.rpc.protocol.RpcDeserializeLevel;
 import com.alipay.remoting.rpc.protocol.RpcProtocol;
+import com.alipay.remoting.serialization.ByteBufSerializer;
+import com.alipay.remoting.serialization.Serializer;
+import com.alipay.remoting.serialization.SerializerManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Remoting command. <br>
@@ -42,6 +49,12 @@ public abstract class RpcCommand implements RemotingCommand {
      */
     private static final long serialVersionUID = -3570261012462596503L;
 
+    /**
+     * Allocator of content buffers produced by a {@link ByteBufSerializer}.
+     */
+    private static final ByteBufAllocator ALLOCATOR = ConfigManager.netty_buffer_pooled() ? PooledByteBufAllocator.DEFAULT
+        : UnpooledByteBufAllocator.DEFAULT;
+
     /**
      * Code which stands for the command.
      */
@@ -77,6 +90,11 @@ public abstract class RpcCommand implements RemotingCommand {
      * The bytes format of the content of the command.
      */
     private byte[] content;
+    /**
+     * The buffer holding the content, either the retained slice of the inbound buffer when zero copy decode is on,
+     * or a buffer produced by a serializer for the encoder to write without copying.
+     */
+    private transient ByteBuf contentBuf;
     /**
      * invoke context of each rpc command.
      */
@@ -203,6 +221,61 @@ public abstract class RpcCommand implements RemotingCommand {
     public void deserializeContent(InvokeContext invokeContext) throws DeserializationException {
     }
 
+    /**
+     * Serialize the content object with the serializer of this command.
+     * <p>
+     * The content is written into a buffer from the netty allocator when {@link ConfigManager#serializer_bytebuf}
+     * is on and the serializer is a {@link ByteBufSerializer}, otherwise into a byte array.
+     *
+     * @param obj content object
+     * @throws CodecException
+     */
+    protected void serializeContentObject(Object obj) throws CodecException {
+        Serializer contentSerializer = SerializerManager.getSerializer(this.serializer);
+        if (ConfigManager.serializer_bytebuf && contentSerializer instanceof ByteBufSerializer) {
+            ByteBuf buf = ALLOCATOR.ioBuffer();
+            boolean success = false;
+            try {
+                ((ByteBufSerializer) contentSerializer).serialize(obj, buf);
+                success = true;
+            } finally {
+                if (!success) {
+                    buf.release();
+                }
+            }
+            this.release();
+            this.setContentBuf(buf);
+        } else {
+            this.setContent(contentSerializer.serialize(obj));
+        }
+    }
+
+    /**
+     * Deserialize the content with the serializer of this command.
+     * <p>
+     * If the content is held as a retained buffer, it is read by the {@link ByteBufSerializer} without copying
+     * into a byte array, and released afterwards.
+     *
+     * @param classOfT class of the content
+     * @return content object, null if no content
+     * @throws CodecException
+     */
+    protected <T> T deserializeContentObject(String classOfT) throws CodecException {
+        ByteBuf buf = this.contentBuf;
+        if (this.content == null && buf != null) {
+            try {
+                return SerializerManager.getByteBufSerializer(this.serializer).deserialize(
+                    buf.duplicate(), classOfT);
+            } finally {
+                this.release();
+            }
+        }
+        if (this.content == null) {
+            return null;
+        }
+        return SerializerManager.getSerializer(this.serializer).deserialize(this.content, classOfT);
+    }
+
     @Override
     public ProtocolCode getProtocolCode() {
         return ProtocolCode.fromBytes(RpcProtocol.PROTOCOL_CODE);
@@ -280,7 +353,20 @@ public abstract class RpcCommand implements RemotingCommand {
         }
     }
 
+    /**
+     * Get the bytes format of the content.
+     * <p>
+     * If the content is held as a retained buffer, it will be copied into a byte array once and the buffer released.
+     *
+     * @return content bytes
+     */
     public byte[] getContent() {
+        if (this.content == null && this.contentBuf != null) {
+            byte[] bytes = new byte[this.contentBuf.readableBytes()];
+            this.contentBuf.getBytes(this.contentBuf.readerIndex(), bytes);
+            this.content = bytes;
+            this.release();
+        }
         return content;
     }
 
@@ -291,6 +377,41 @@ public abstract class RpcCommand implements RemotingCommand {
         }
     }
 
+    /**
+     * Getter method for property <tt>contentBuf</tt>.
+     *
+     * @return the retained content buffer, null if not set or already released
+     */
+    public ByteBuf getContentBuf() {
+        return contentBuf;
+    }
+
+    /**
+     * Set the content as a retained buffer, the ownership of the buffer is transferred to this command.
+     * <p>
+     * A custom serializer may set its output here instead of {@link #setContent(byte[])}, the encoder then writes
+     * the buffer (or adds it to a composite frame) and releases it.
+     *
+     * @param contentBuf retained content buffer
+     */
+    public void setContentBuf(ByteBuf contentBuf) {
+        if (contentBuf != null) {
+            this.contentBuf = contentBuf;
+            this.contentLength = contentBuf.readableBytes();
+        }
+    }
+
+    /**
+     * Release the retained content buffer if exists, it is safe to call this method more than once.
+     */
+    public void release() {
+        ByteBuf buf = this.contentBuf;
+        if (buf != null) {
+            this.contentBuf = null;
+            buf.release();
+        }
+    }
+
     public short getHeaderLength() {
         return headerLength;
     }
@@ -37,6 +37,11 @@ public class RpcCommandFactory implements CommandFactory {
         return new RpcRequestCommand(requestObject);
     }
 
+    @Override
+    public RpcRequestCommand createRequestCommand(Object requestObject, int id) {
+        return new RpcRequestCommand(requestObject, id);
+    }
+
     @Override
     public RpcResponseCommand createResponse(final Object responseObject,
                                              final RemotingCommand requestCmd) {
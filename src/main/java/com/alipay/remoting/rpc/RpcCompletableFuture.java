@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc;
+
+import com.alipay.remoting.CommandFactory;
+import com.alipay.remoting.InvokeCallback;
+import com.alipay.remoting.InvokeContext;
+import com.alipay.remoting.InvokeFuture;
+import com.alipay.remoting.RemotingCommand;
+import com.alipay.remoting.log.BoltLoggerFactory;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * InvokeFuture backed by a {@link CompletableFuture}, used by the async invocation.
+ * <p>
+ * The response is resolved and the completable future is completed as soon as the response is put,
+ * either in the thread putting the response (the response processor, or the event loop or timer on timeout
+ * and send failure) or in the completion executor if one is specified.
+ * No latch is allocated and no thread is parked while waiting for the response.
+ */
+public class RpcCompletableFuture implements InvokeFuture {
+
+    private static final Logger             logger  = BoltLoggerFactory.getLogger("RpcRemoting");
+
+    private final CompletableFuture<Object> promise = new CompletableFuture<Object>();
+    private final int                       invokeId;
+    private final long                      startTime = System.nanoTime();
+    private final byte                      protocol;
+    private final CommandFactory            commandFactory;
+    private final String                    remoteAddress;
+    private final Executor                  executor;
+    private final ClassLoader               classLoader;
+    private volatile ResponseCommand        responseCommand;
+    private volatile Timeout                timeout;
+    private InvokeContext                   invokeContext;
+    private Throwable                       cause;
+
+    /**
+     * Constructor.
+     *
+     * @param invokeId       invoke id
+     * @param protocol       protocol code
+     * @param commandFactory command factory
+     * @param remoteAddress  remote address, used in the exception messages
+     * @param executor       executor to complete the future, null to complete in the thread putting the response
+     * @param invokeContext  invoke context
+     */
+    public RpcCompletableFuture(int invokeId, byte protocol, CommandFactory commandFactory,
+                                String remoteAddress, Executor executor,
+                                InvokeContext invokeContext) {
+        this.invokeId = invokeId;
+        this.protocol = protocol;
+        this.commandFactory = commandFactory;
+        this.remoteAddress = remoteAddress;
+        this.executor = executor;
+        this.invokeContext = invokeContext;
+        this.classLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    /**
+     * Get the completable future completed with the response object, or exceptionally with the exception
+     * resolved from the response.
+     */
+    public CompletableFuture<Object> toCompletableFuture() {
+        return this.promise;
+    }
+
+    @Override
+    public ResponseCommand waitResponse(long timeoutMillis) throws InterruptedException {
+        try {
+            this.promise.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // the response is kept anyway
+        } catch (CancellationException e) {
+            // cancelled by the caller
+        } catch (TimeoutException e) {
+            // return the response put if any
+        }
+        return this.responseCommand;
+    }
+
+    @Override
+    public ResponseCommand waitResponse() throws InterruptedException {
+        return waitResponse(Long.MAX_VALUE);
+    }
+
+    @Override
+    public RemotingCommand createConnectionClosedResponse(InetSocketAddress responseHost) {
+        return this.commandFactory.createConnectionClosedResponse(responseHost, null);
+    }
+
+    /**
+     * Resolve the response and complete the future, the timeout is cancelled first
+     * so that it never races with the dependent actions of the future.
+     *
+     * @see com.alipay.remoting.InvokeFuture#putResponse(com.alipay.remoting.RemotingCommand)
+     */
+    @Override
+    public void putResponse(RemotingCommand response) {
+        final ResponseCommand responseCommand = (ResponseCommand) response;
+        responseCommand.setInvokeContext(this.invokeContext);
+        this.responseCommand = responseCommand;
+        cancelTimeout();
+        if (this.executor == null) {
+            complete(responseCommand);
+            return;
+        }
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    complete(responseCommand);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Completion executor rejected, complete in current thread, id={}",
+                this.invokeId);
+            complete(responseCommand);
+        }
+    }
+
+    private void complete(ResponseCommand responseCommand) {
+        ClassLoader oldClassLoader = null;
+        try {
+            if (this.classLoader != null) {
+                oldClassLoader = Thread.currentThread().getContextClassLoader();
+                Thread.currentThread().setContextClassLoader(this.classLoader);
+            }
+            this.promise.complete(RpcResponseResolver.resolveResponseObject(responseCommand,
+                this.remoteAddress));
+        } catch (Throwable t) {
+            this.promise.completeExceptionally(t);
+        } finally {
+            if (null != oldClassLoader) {
+                Thread.currentThread().setContextClassLoader(oldClassLoader);
+            }
+        }
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#isDone()
+     */
+    @Override
+    public boolean isDone() {
+        return this.responseCommand != null;
+    }
+
+    @Override
+    public ClassLoader getAppClassLoader() {
+        return this.classLoader;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#invokeId()
+     */
+    @Override
+    public int invokeId() {
+        return this.invokeId;
+    }
+
+    /**
+     * The future is completed when the response is put, there is no callback to execute.
+     *
+     * @see com.alipay.remoting.InvokeFuture#executeInvokeCallback()
+     */
+    @Override
+    public void executeInvokeCallback() {
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#tryAsyncExecuteInvokeCallbackAbnormally()
+     */
+    @Override
+    public void tryAsyncExecuteInvokeCallbackAbnormally() {
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getInvokeCallback()
+     */
+    @Override
+    public InvokeCallback getInvokeCallback() {
+        return null;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#addTimeout(io.netty.util.Timeout)
+     */
+    @Override
+    public void addTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#cancelTimeout()
+     */
+    @Override
+    public void cancelTimeout() {
+        Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getTimeout()
+     */
+    @Override
+    public Timeout getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getStartTime()
+     */
+    @Override
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getCause()
+     */
+    @Override
+    public Throwable getCause() {
+        return this.cause;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#setCause(java.lang.Throwable)
+     */
+    @Override
+    public void setCause(Throwable cause) {
+        this.cause = cause;
+    }
+
+    /**
+     * @see com.alipay.remoting.InvokeFuture#getProtocolCode()
+     */
+    @Override
+    public byte getProtocolCode() {
+        return this.protocol;
+    }
+
+    /**
+     * @see InvokeFuture#getInvokeContext()
+     */
+    @Override
+    public InvokeContext getInvokeContext() {
+        return this.invokeContext;
+    }
+
+    /**
+     * @see InvokeFuture#setInvokeContext(InvokeContext)
+     */
+    @Override
+    public void setInvokeContext(InvokeContext invokeContext) {
+        this.invokeContext = invokeContext;
+    }
+}
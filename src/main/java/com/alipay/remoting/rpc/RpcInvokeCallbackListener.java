@@ -19,6 +19,7 @@ package com.alipay.remoting.rpc;
 import com.alipay.remoting.InvokeCallback;
 import com.alipay.remoting.InvokeCallbackListener;
 import com.alipay.remoting.InvokeFuture;
+import com.alipay.remoting.RemotingCommand;
 import com.alipay.remoting.ResponseStatus;
 import com.alipay.remoting.exception.CodecException;
 import com.alipay.remoting.exception.ConnectionClosedException;
@@ -66,10 +67,28 @@ public class RpcInvokeCallbackListener implements InvokeCallbackListener {
                     callback.getExecutor().execute(task);
                 } catch (RejectedExecutionException e) {
                     logger.warn("Callback thread pool busy.");
+                    releaseResponse(future);
                 }
             } else {
                 task.run();
             }
+        } else {
+            releaseResponse(future);
+        }
+    }
+
+    /**
+     * Release the retained content of the response if it will never be consumed by the callback.
+     */
+    private void releaseResponse(InvokeFuture future) {
+        try {
+            RemotingCommand response = future.waitResponse(0);
+            if (response instanceof RpcCommand) {
+                ((RpcCommand) response).release();
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted when releasing response. The address is {}",
+                    this.getRemoteAddress());
         }
     }
 
@@ -161,6 +180,10 @@ public class RpcInvokeCallbackListener implements InvokeCallbackListener {
                             .error(
                                     "Exception occurred in user defined InvokeCallback#onException() logic, The address is {}",
                                     this.remoteAddress, e);
+                } finally {
+                    if (response != null) {
+                        response.release();
+                    }
                 }
             } else {
                 ClassLoader oldClassLoader = null;
@@ -190,6 +213,7 @@ public class RpcInvokeCallbackListener implements InvokeCallbackListener {
                             "Exception caught in RpcInvokeCallbackListener. The address is {}",
                             this.remoteAddress, e);
                 } finally {
+                    response.release();
                     if (oldClassLoader != null) {
                         Thread.currentThread().setContextClassLoader(oldClassLoader);
                     }
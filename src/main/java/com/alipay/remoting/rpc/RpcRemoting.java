@@ -16,6 +16,7 @@
  */
 package com.alipay.remoting.rpc;
 
+import com.alipay.remoting.AimdLimiter;
 import com.alipay.remoting.BaseRemoting;
 import com.alipay.remoting.CommandFactory;
 import com.alipay.remoting.Connection;
@@ -26,16 +27,23 @@ import com.alipay.remoting.InvokeFuture;
 import com.alipay.remoting.RemotingAddressParser;
 import com.alipay.remoting.RemotingCommand;
 import com.alipay.remoting.Url;
+import com.alipay.remoting.config.ConfigManager;
+import com.alipay.remoting.config.Configs;
 import com.alipay.remoting.config.switches.ProtocolSwitch;
 import com.alipay.remoting.exception.CodecException;
 import com.alipay.remoting.exception.RemotingException;
 import com.alipay.remoting.exception.SerializationException;
 import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.rpc.exception.InvokeLimitExceededException;
+import com.alipay.remoting.rpc.exception.InvokeUnwritableException;
 import com.alipay.remoting.rpc.protocol.RpcProtocolManager;
 import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
 import com.alipay.remoting.util.RemotingUtil;
 import org.slf4j.Logger;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Rpc remoting capability.
  *
@@ -57,9 +65,20 @@ public abstract class RpcRemoting extends BaseRemoting {
     /** connection manager */
     protected DefaultConnectionManager connectionManager;
 
+    /** executor to complete the futures of async invocations */
+    protected volatile Executor asyncExecutor;
+
+    /** policy when invoking on an unwritable connection, see {@link Configs#INVOKE_UNWRITABLE_POLICY} */
+    private final String unwritablePolicy;
+
+    /** max time to wait for an unwritable connection in millisecond */
+    private final int unwritableWaitTimeout;
+
     /** default constructor */
     public RpcRemoting(CommandFactory commandFactory) {
         super(commandFactory);
+        this.unwritablePolicy = ConfigManager.invoke_unwritable_policy();
+        this.unwritableWaitTimeout = ConfigManager.invoke_unwritable_wait_timeout();
     }
 
     /**
@@ -113,11 +132,12 @@ public abstract class RpcRemoting extends BaseRemoting {
      */
     public void oneway(final Connection conn, final Object request,
                        final InvokeContext invokeContext) throws RemotingException {
-        RequestCommand requestCommand = (RequestCommand) toRemotingCommand(request, conn,
+        final Connection writableConn = ensureWritable(conn, -1);
+        RequestCommand requestCommand = (RequestCommand) toRemotingCommand(request, writableConn,
                 invokeContext, -1);
         requestCommand.setType(RpcCommandType.REQUEST_ONEWAY);
-        preProcessInvokeContext(invokeContext, requestCommand, conn);
-        super.oneway(conn, requestCommand);
+        preProcessInvokeContext(invokeContext, requestCommand, writableConn);
+        super.oneway(writableConn, requestCommand);
     }
 
     /**
@@ -170,13 +190,16 @@ public abstract class RpcRemoting extends BaseRemoting {
     public Object invokeSync(final Connection conn, final Object request,
                              final InvokeContext invokeContext, final int timeoutMillis)
             throws RemotingException, InterruptedException {
-        RemotingCommand requestCommand = toRemotingCommand(request, conn, invokeContext, timeoutMillis);
-        preProcessInvokeContext(invokeContext, requestCommand, conn);
-        ResponseCommand responseCommand = (ResponseCommand) super.invokeSync(conn, requestCommand, timeoutMillis);
+        final Connection writableConn = ensureWritable(conn, timeoutMillis);
+        checkInvokeLimit(writableConn);
+        RemotingCommand requestCommand = toRemotingCommand(request, writableConn, invokeContext, timeoutMillis);
+        preProcessInvokeContext(invokeContext, requestCommand, writableConn);
+        ResponseCommand responseCommand = (ResponseCommand) super.invokeSync(writableConn, requestCommand,
+                timeoutMillis);
         responseCommand.setInvokeContext(invokeContext);
 
         Object responseObject = RpcResponseResolver.resolveResponseObject(responseCommand,
-                RemotingUtil.parseRemoteAddress(conn.getChannel()));
+                RemotingUtil.parseRemoteAddress(writableConn.getChannel()));
         return responseObject;
     }
 
@@ -230,13 +253,93 @@ public abstract class RpcRemoting extends BaseRemoting {
     public RpcResponseFuture invokeWithFuture(final Connection conn, final Object request,
                                               final InvokeContext invokeContext,
                                               final int timeoutMillis) throws RemotingException {
-
-        RemotingCommand requestCommand = toRemotingCommand(request, conn, invokeContext,
+        final Connection writableConn = ensureWritable(conn, timeoutMillis);
+        checkInvokeLimit(writableConn);
+        RemotingCommand requestCommand = toRemotingCommand(request, writableConn, invokeContext,
                 timeoutMillis);
 
-        preProcessInvokeContext(invokeContext, requestCommand, conn);
-        InvokeFuture future = super.invokeWithFuture(conn, requestCommand, timeoutMillis);
-        return new RpcResponseFuture(RemotingUtil.parseRemoteAddress(conn.getChannel()), future);
+        preProcessInvokeContext(invokeContext, requestCommand, writableConn);
+        InvokeFuture future = super.invokeWithFuture(writableConn, requestCommand, timeoutMillis);
+        return new RpcResponseFuture(RemotingUtil.parseRemoteAddress(writableConn.getChannel()), future);
+    }
+
+    /**
+     * Rpc invocation with completable future returned.<br>
+     * Notice! DO NOT modify the request object concurrently when this method is called.
+     *
+     * @param addr
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return
+     */
+    public CompletableFuture<Object> invokeAsync(final String addr, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        Url url = this.addressParser.parse(addr);
+        return this.invokeAsync(url, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Rpc invocation with completable future returned, the future is completed exceptionally
+     * if no connection is available. The connection is looked up in the connection manager without
+     * creating one, subclasses may override to create it.<br>
+     * Notice! DO NOT modify the request object concurrently when this method is called.
+     *
+     * @param url
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return
+     */
+    public CompletableFuture<Object> invokeAsync(final Url url, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        Connection conn = this.connectionManager.get(url.getUniqueKey());
+        if (null == conn) {
+            return failedFuture(new RemotingException("Address [" + url.getUniqueKey()
+                    + "] not connected yet!"));
+        }
+        try {
+            checkConnection(conn);
+        } catch (RemotingException e) {
+            return failedFuture(e);
+        }
+        return this.invokeAsync(conn, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Rpc invocation with completable future returned.<br>
+     * Notice! DO NOT modify the request object concurrently when this method is called.
+     *
+     * @param conn
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return
+     */
+    public CompletableFuture<Object> invokeAsync(final Connection conn, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        final Connection writableConn;
+        RemotingCommand requestCommand;
+        try {
+            writableConn = ensureWritable(conn, timeoutMillis);
+            checkInvokeLimit(writableConn);
+            requestCommand = toRemotingCommand(request, writableConn, invokeContext, timeoutMillis);
+        } catch (InvokeUnwritableException e) {
+            return failedFuture(e);
+        } catch (InvokeLimitExceededException e) {
+            return failedFuture(e);
+        } catch (SerializationException e) {
+            return failedFuture(e);
+        }
+        preProcessInvokeContext(invokeContext, requestCommand, writableConn);
+        RpcCompletableFuture future = new RpcCompletableFuture(requestCommand.getId(),
+            requestCommand.getProtocolCode().getFirstByte(), this.getCommandFactory(),
+            RemotingUtil.parseRemoteAddress(writableConn.getChannel()), this.asyncExecutor, invokeContext);
+        super.invokeWithFuture(writableConn, requestCommand, future, timeoutMillis);
+        return future.toCompletableFuture();
     }
 
     /**
@@ -289,10 +392,117 @@ public abstract class RpcRemoting extends BaseRemoting {
                                    final InvokeContext invokeContext,
                                    final InvokeCallback invokeCallback, final int timeoutMillis)
             throws RemotingException {
-        RemotingCommand requestCommand = toRemotingCommand(request, conn, invokeContext,
+        final Connection writableConn = ensureWritable(conn, timeoutMillis);
+        checkInvokeLimit(writableConn);
+        RemotingCommand requestCommand = toRemotingCommand(request, writableConn, invokeContext,
                 timeoutMillis);
-        preProcessInvokeContext(invokeContext, requestCommand, conn);
-        super.invokeWithCallback(conn, requestCommand, invokeCallback, timeoutMillis);
+        preProcessInvokeContext(invokeContext, requestCommand, writableConn);
+        super.invokeWithCallback(writableConn, requestCommand, invokeCallback, timeoutMillis);
+    }
+
+    /**
+     * Check the connection got by url before invoking. The unwritable connection is left to
+     * {@link #ensureWritable(Connection, int)} unless the policy is ignore.
+     *
+     * @param conn connection got by url
+     * @throws RemotingException if the connection is not available
+     */
+    protected void checkConnection(Connection conn) throws RemotingException {
+        if (conn != null && conn.isFine() && !conn.isWritable()
+                && !Configs.INVOKE_UNWRITABLE_POLICY_IGNORE.equals(this.unwritablePolicy)) {
+            return;
+        }
+        this.connectionManager.check(conn);
+    }
+
+    /**
+     * Apply the unwritable policy before sending a request, so that a slow peer can not grow the
+     * outbound buffer without bound.
+     *
+     * @param conn connection to invoke on
+     * @param timeoutMillis invoke timeout, -1 for oneway
+     * @return the connection to send the request with, which is another one of the same pool for the select policy
+     * @throws InvokeUnwritableException if no writable connection is available
+     */
+    protected Connection ensureWritable(Connection conn, int timeoutMillis)
+            throws InvokeUnwritableException {
+        if (conn.isWritable() || !conn.isFine()
+                || Configs.INVOKE_UNWRITABLE_POLICY_IGNORE.equals(this.unwritablePolicy)) {
+            // let the write report the inactive connection as before
+            return conn;
+        }
+        if (Configs.INVOKE_UNWRITABLE_POLICY_WAIT.equals(this.unwritablePolicy)) {
+            long waitMillis = timeoutMillis > 0 ? Math.min(timeoutMillis, this.unwritableWaitTimeout)
+                    : this.unwritableWaitTimeout;
+            if (conn.awaitWritable(waitMillis)) {
+                return conn;
+            }
+        } else if (Configs.INVOKE_UNWRITABLE_POLICY_SELECT.equals(this.unwritablePolicy)) {
+            Connection selected = selectWritableConnection(conn);
+            if (selected != null) {
+                return selected;
+            }
+        }
+        throw new InvokeUnwritableException(String.format(
+                "Connection %s is unwritable with %d bytes pending, policy: %s",
+                RemotingUtil.parseRemoteAddress(conn.getChannel()), conn.getPendingWriteBytes(),
+                this.unwritablePolicy));
+    }
+
+    /**
+     * Fail the invocation locally if the pending invocations of the connection pool reach its AIMD invoke limit.
+     *
+     * @param conn connection to invoke on
+     * @throws InvokeLimitExceededException if the limit is reached
+     */
+    protected void checkInvokeLimit(Connection conn) throws InvokeLimitExceededException {
+        AimdLimiter limiter = conn.getInvokeLimiter();
+        if (limiter != null && !limiter.allow(conn.getLimitedInvokeCount())) {
+            throw new InvokeLimitExceededException(String.format(
+                    "Connection pool of %s reaches the invoke limit %d",
+                    RemotingUtil.parseRemoteAddress(conn.getChannel()), limiter.getLimit()));
+        }
+    }
+
+    /**
+     * Select another writable connection to replace an unwritable one, for the select policy.
+     *
+     * @param conn the unwritable connection
+     * @return a writable connection, null if none
+     */
+    protected Connection selectWritableConnection(Connection conn) {
+        return null;
+    }
+
+    /**
+     * Create a completable future completed exceptionally.
+     *
+     * @param cause
+     * @return
+     */
+    protected static CompletableFuture<Object> failedFuture(Throwable cause) {
+        CompletableFuture<Object> future = new CompletableFuture<Object>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Getter method for property <tt>asyncExecutor</tt>.
+     *
+     * @return property value of asyncExecutor
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Setter method for property <tt>asyncExecutor</tt>, null to complete the futures of async invocations
+     * in the thread processing the response.
+     *
+     * @param asyncExecutor value to be assigned to property asyncExecutor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
     }
 
     /**
@@ -307,7 +517,8 @@ public abstract class RpcRemoting extends BaseRemoting {
     protected RemotingCommand toRemotingCommand(Object request, Connection conn,
                                                 InvokeContext invokeContext, int timeoutMillis)
             throws SerializationException {
-        RpcRequestCommand command = this.getCommandFactory().createRequestCommand(request);
+        RpcRequestCommand command = this.getCommandFactory().createRequestCommand(request,
+                conn.nextInvokeId());
 
         if (null != invokeContext) {
             // set client custom serializer for request command if not null
@@ -20,6 +20,13 @@ import com.alipay.remoting.InvokeFuture;
 import com.alipay.remoting.exception.RemotingException;
 import com.alipay.remoting.rpc.exception.InvokeTimeoutException;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The future for response.
  *
@@ -27,6 +34,17 @@ import com.alipay.remoting.rpc.exception.InvokeTimeoutException;
  * @version $Id: ResponseFuture.java, v 0.1 2015-10-3 PM5:07:05 tao Exp $
  */
 public class RpcResponseFuture {
+    /**
+     * futures dropped without being resolved, the retained content of their responses is released when polled
+     */
+    private static final ReferenceQueue<RpcResponseFuture> DROPPED = new ReferenceQueue<RpcResponseFuture>();
+
+    /**
+     * trackers of the futures not resolved yet, keeping the trackers reachable until enqueued
+     */
+    private static final Set<DropTracker> TRACKERS = Collections
+        .newSetFromMap(new ConcurrentHashMap<DropTracker, Boolean>());
+
     /**
      * rpc server address
      */
@@ -37,12 +55,20 @@ public class RpcResponseFuture {
      */
     private InvokeFuture future;
 
+    /**
+     * tracker releasing the response when this future is dropped without being resolved
+     */
+    private DropTracker tracker;
+
     /**
      * Constructor
      */
     public RpcResponseFuture(String addr, InvokeFuture future) {
         this.addr = addr;
         this.future = future;
+        releaseDropped();
+        this.tracker = new DropTracker(this, future);
+        TRACKERS.add(this.tracker);
     }
 
     /**
@@ -65,14 +91,51 @@ public class RpcResponseFuture {
             throw new InvokeTimeoutException("Future get result timeout!");
         }
         ResponseCommand responseCommand = (ResponseCommand) this.future.waitResponse();
+        untrack();
         responseCommand.setInvokeContext(this.future.getInvokeContext());
         return RpcResponseResolver.resolveResponseObject(responseCommand, addr);
     }
 
     public Object get() throws RemotingException, InterruptedException {
         ResponseCommand responseCommand = (ResponseCommand) this.future.waitResponse();
+        untrack();
         responseCommand.setInvokeContext(this.future.getInvokeContext());
         return RpcResponseResolver.resolveResponseObject(responseCommand, addr);
     }
 
+    /**
+     * the response is resolved by this future, so it is no longer released when this future is dropped
+     */
+    private void untrack() {
+        if (TRACKERS.remove(this.tracker)) {
+            this.tracker.clear();
+        }
+    }
+
+    /**
+     * release the responses of the futures dropped without being resolved, since the content of a response may be
+     * a retained slice of a pooled buffer, see {@link com.alipay.remoting.config.Configs#CODEC_ZERO_COPY_DECODE}
+     */
+    private static void releaseDropped() {
+        Reference<? extends RpcResponseFuture> ref;
+        while ((ref = DROPPED.poll()) != null) {
+            DropTracker tracker = (DropTracker) ref;
+            if (TRACKERS.remove(tracker)) {
+                tracker.invokeFuture.release();
+            }
+        }
+    }
+
+    /**
+     * Tracker of a future, enqueued once the future is dropped.
+     */
+    private static class DropTracker extends PhantomReference<RpcResponseFuture> {
+        private final InvokeFuture invokeFuture;
+
+        DropTracker(RpcResponseFuture referent, InvokeFuture invokeFuture) {
+            super(referent, DROPPED);
+            this.invokeFuture = invokeFuture;
+        }
+    }
+
 }
@@ -49,20 +49,26 @@ public class RpcResponseResolver {
      * @return response object
      */
     public static Object resolveResponseObject(ResponseCommand responseCommand, String addr) throws RemotingException {
-        preProcess(responseCommand, addr);
-        if (responseCommand.getResponseStatus() == ResponseStatus.SUCCESS) {
-            return toResponseObject(responseCommand);
-        } else {
-            String msg = String.format("Rpc invocation exception: %s, the address is %s, id=%s",
-                    responseCommand.getResponseStatus(), addr, responseCommand.getId());
-            logger.warn(msg);
-            if (responseCommand.getCause() != null) {
-                throw new InvokeException(msg, responseCommand.getCause());
+        try {
+            preProcess(responseCommand, addr);
+            if (responseCommand.getResponseStatus() == ResponseStatus.SUCCESS) {
+                return toResponseObject(responseCommand);
             } else {
-                throw new InvokeException(msg + ", please check the server log for more.");
+                String msg = String.format("Rpc invocation exception: %s, the address is %s, id=%s",
+                        responseCommand.getResponseStatus(), addr, responseCommand.getId());
+                logger.warn(msg);
+                if (responseCommand.getCause() != null) {
+                    throw new InvokeException(msg, responseCommand.getCause());
+                } else {
+                    throw new InvokeException(msg + ", please check the server log for more.");
+                }
+            }
+        } finally {
+            // the response has been resolved, release its retained content if any
+            if (responseCommand != null) {
+                responseCommand.release();
             }
         }
-
     }
 
     private static void preProcess(ResponseCommand responseCommand, String addr) throws RemotingException {
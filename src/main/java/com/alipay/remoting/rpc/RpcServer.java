@@ -26,6 +26,7 @@ import com.alipay.remoting.ConnectionEventType;
 import com.alipay.remoting.ConnectionSelectStrategy;
 import com.alipay.remoting.DefaultConnectionManager;
 import com.alipay.remoting.DefaultServerConnectionManager;
+import com.alipay.remoting.FlushCoalescingHandler;
 import com.alipay.remoting.InvokeCallback;
 import com.alipay.remoting.InvokeContext;
 import com.alipay.remoting.NamedThreadFactory;
@@ -63,7 +64,9 @@ import io.netty.handler.timeout.IdleStateHandler;
 import org.slf4j.Logger;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -133,6 +136,9 @@ public class RpcServer extends AbstractRemotingServer {
     /** rpc codec */
     private Codec codec = new RpcCodec();
 
+    /** executor to complete the futures of async invocations */
+    private Executor asyncExecutor;
+
     /**
      * Construct a rpc server. <br>
      * <p>
@@ -257,6 +263,9 @@ public class RpcServer extends AbstractRemotingServer {
         // enable trigger mode for epoll if need
         NettyEventLoopUtil.enableTriggeredMode(bootstrap); // 设置epoll触发模式
 
+        final boolean flushConsolidation = ConfigManager.netty_flush_consolidation();
+        final int maxPendingFlushes = ConfigManager.netty_flush_consolidation_max_flushes();
+        final long flushDelay = ConfigManager.netty_flush_consolidation_delay();
         final boolean idleSwitch = ConfigManager.tcp_idle_switch(); // 是否空闲检测
         final int idleTime = ConfigManager.tcp_server_idle(); // 空闲时间
         final ChannelHandler serverIdleHandler = new ServerIdleHandler(); // 服务端空闲检测
@@ -267,6 +276,10 @@ public class RpcServer extends AbstractRemotingServer {
             protected void initChannel(SocketChannel channel) {
                 System.out.println("init channel");
                 ChannelPipeline pipeline = channel.pipeline();
+                if (flushConsolidation) {
+                    pipeline.addLast("flushCoalescingHandler", new FlushCoalescingHandler(
+                            maxPendingFlushes, flushDelay));
+                }
                 pipeline.addLast("decoder", codec.newDecoder());
                 pipeline.addLast("encoder", codec.newEncoder());
                 if (idleSwitch) { // 空闲检测
@@ -332,6 +345,7 @@ public class RpcServer extends AbstractRemotingServer {
     protected void initRpcRemoting() {
         this.rpcRemoting = new RpcServerRemoting(new RpcCommandFactory(), this.addressParser,
                 this.connectionManager);
+        this.rpcRemoting.setAsyncExecutor(this.asyncExecutor);
     }
 
     /**
@@ -717,6 +731,107 @@ public class RpcServer extends AbstractRemotingServer {
         return this.rpcRemoting.invokeWithFuture(conn, request, invokeContext, timeoutMillis);
     }
 
+
+    /**
+     * Async invocation using a string address, address format example - 127.0.0.1:12200?key1=value1&key2=value2 <br>
+     * The returned {@link CompletableFuture} is completed with the response object, or exceptionally with the
+     * {@link RemotingException} of the invocation.
+     * <p>
+     * Notice:<br>
+     * <ol>
+     * <li><b>DO NOT modify the request object concurrently when this method is called.</b></li>
+     * <li>When do invocation, use the string address to find a available client connection,
+     * if none then the future is completed exceptionally</li>
+     * <li>Unlike rpc client, address arguments takes no effect here, for rpc server will not create connection.</li>
+     * <li>The future is completed in the thread processing the response, unless an executor is specified
+     * by {@link #setAsyncExecutor(Executor)}.</li>
+     * </ol>
+     *
+     * @param addr
+     * @param request
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final String addr, final Object request,
+                                                 final int timeoutMillis) {
+        check();
+        return this.rpcRemoting.invokeAsync(addr, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param addr
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final String addr, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        check();
+        return this.rpcRemoting.invokeAsync(addr, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Async invocation using a parsed {@link Url}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param url
+     * @param request
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Url url, final Object request,
+                                                 final int timeoutMillis) {
+        check();
+        return this.rpcRemoting.invokeAsync(url, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(Url, Object, int)}
+     *
+     * @param url
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Url url, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        check();
+        return this.rpcRemoting.invokeAsync(url, request, invokeContext, timeoutMillis);
+    }
+
+    /**
+     * Async invocation using a {@link Connection}, common api notice please see {@link #invokeAsync(String, Object, int)}
+     *
+     * @param conn
+     * @param request
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Connection conn, final Object request,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(conn, request, null, timeoutMillis);
+    }
+
+    /**
+     * Async invocation with a {@link InvokeContext}, common api notice please see {@link #invokeAsync(Connection, Object, int)}
+     *
+     * @param conn
+     * @param request
+     * @param invokeContext
+     * @param timeoutMillis
+     * @return CompletableFuture of the response object
+     */
+    public CompletableFuture<Object> invokeAsync(final Connection conn, final Object request,
+                                                 final InvokeContext invokeContext,
+                                                 final int timeoutMillis) {
+        return this.rpcRemoting.invokeAsync(conn, request, invokeContext, timeoutMillis);
+    }
+
     /**
      * Callback invocation using a string address, address format example - 127.0.0.1:12200?key1=value1&key2=value2 <br>
      * You can specify an implementation of {@link InvokeCallback} to get the result.
@@ -920,6 +1035,19 @@ public class RpcServer extends AbstractRemotingServer {
         this.addressParser = addressParser;
     }
 
+    /**
+     * Setter method for property <tt>asyncExecutor</tt>, null to complete the futures of async invocations
+     * in the thread processing the response.
+     *
+     * @param asyncExecutor value to be assigned to property asyncExecutor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        if (this.rpcRemoting != null) {
+            this.rpcRemoting.setAsyncExecutor(asyncExecutor);
+        }
+    }
+
     /**
      * Getter method for property <tt>connectionManager</tt>.
      *
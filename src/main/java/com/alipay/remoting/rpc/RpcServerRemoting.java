@@ -62,7 +62,7 @@ public class RpcServerRemoting extends RpcRemoting {
             throw new RemotingException("Client address [" + url.getUniqueKey()
                     + "] not connected yet!");
         }
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         return this.invokeSync(conn, request, invokeContext, timeoutMillis);
     }
 
@@ -77,7 +77,7 @@ public class RpcServerRemoting extends RpcRemoting {
             throw new RemotingException("Client address [" + url.getOriginUrl()
                     + "] not connected yet!");
         }
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         this.oneway(conn, request, invokeContext);
     }
 
@@ -92,7 +92,7 @@ public class RpcServerRemoting extends RpcRemoting {
             throw new RemotingException("Client address [" + url.getUniqueKey()
                     + "] not connected yet!");
         }
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         return this.invokeWithFuture(conn, request, invokeContext, timeoutMillis);
     }
 
@@ -108,7 +108,7 @@ public class RpcServerRemoting extends RpcRemoting {
             throw new RemotingException("Client address [" + url.getUniqueKey()
                     + "] not connected yet!");
         }
-        this.connectionManager.check(conn);
+        checkConnection(conn);
         this.invokeWithCallback(conn, request, invokeContext, invokeCallback, timeoutMillis);
     }
 
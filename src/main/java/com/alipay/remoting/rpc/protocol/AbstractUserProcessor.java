@@ -19,6 +19,7 @@ package com.alipay.remoting.rpc.protocol;
 import com.alipay.remoting.BizContext;
 import com.alipay.remoting.DefaultBizContext;
 import com.alipay.remoting.RemotingContext;
+import com.alipay.remoting.config.ConfigManager;
 
 import java.util.concurrent.Executor;
 
@@ -35,6 +36,33 @@ public abstract class AbstractUserProcessor<T> implements UserProcessor<T> {
      */
     protected ExecutorSelector executorSelector;
 
+    /**
+     * admission controller, created if the admission control is switched on
+     */
+    private final CoDelAdmissionController admissionController;
+
+    /**
+     * concurrency limiter, created if the concurrency limit is switched on
+     */
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    public AbstractUserProcessor() {
+        if (ConfigManager.process_admission_codel()) {
+            this.admissionController = new CoDelAdmissionController(
+                ConfigManager.process_admission_codel_target(),
+                ConfigManager.process_admission_codel_interval());
+        } else {
+            this.admissionController = null;
+        }
+        if (ConfigManager.process_concurrency_limit()) {
+            this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                ConfigManager.process_concurrency_limit_initial(), 1,
+                ConfigManager.process_concurrency_limit_max());
+        } else {
+            this.concurrencyLimiter = null;
+        }
+    }
+
     /**
      * Provide a default - {@link DefaultBizContext} implementation of {@link BizContext}.
      *
@@ -88,4 +116,26 @@ public abstract class AbstractUserProcessor<T> implements UserProcessor<T> {
     public boolean timeoutDiscard() {
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * By default, return the admission controller created if {@link com.alipay.remoting.config.Configs#PROCESS_ADMISSION_CODEL}
+     * is switched on when the processor is constructed.
+     *
+     * @see UserProcessor#getAdmissionController()
+     */
+    @Override
+    public CoDelAdmissionController getAdmissionController() {
+        return this.admissionController;
+    }
+
+    /**
+     * By default, return the concurrency limiter created if {@link com.alipay.remoting.config.Configs#PROCESS_CONCURRENCY_LIMIT}
+     * is switched on when the processor is constructed.
+     *
+     * @see UserProcessor#getConcurrencyLimiter()
+     */
+    @Override
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+}
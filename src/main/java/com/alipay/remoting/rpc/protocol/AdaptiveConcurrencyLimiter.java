@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit of the requests of a user processor, tuned in the way of TCP Vegas.
+ * <p>
+ * Each request holds a permit from the dispatch to the executor until it finishes, or until its response is sent
+ * if processed by an {@link AsyncUserProcessor}, and the time in between is sampled. The min time sampled is taken as the time without load, from which the number of requests queued
+ * is estimated as {@code limit * (1 - minTime / time)}. The limit grows while few requests are queued, shrinks
+ * while many are queued or the executor rejects requests, and stays otherwise.
+ * <p>
+ * The min time is probed again from time to time, so that the limit follows the changes of the handler,
+ * for example a slower downstream.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** the min time is probed again after this many samples per unit of limit */
+    private static final int    PROBE_SAMPLES_PER_LIMIT = 30;
+    /** weight of a new limit */
+    private static final double SMOOTHING               = 0.5;
+
+    private final int           minLimit;
+    private final int           maxLimit;
+    private final AtomicInteger inflight                = new AtomicInteger();
+    private final AtomicLong    rejected                = new AtomicLong();
+
+    private volatile int        limit;
+    /** the fields below are guarded by this */
+    private double              estimatedLimit;
+    private long                minRtt                  = Long.MAX_VALUE;
+    private long                samplesSinceProbe;
+
+    /**
+     * @param initialLimit initial limit
+     * @param minLimit min limit
+     * @param maxLimit max limit
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Illegal min limit " + minLimit + " or max limit "
+                                               + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) this.estimatedLimit;
+    }
+
+    /**
+     * Try to take a permit before dispatching a request.
+     *
+     * @return false if the limit is reached and the request should be rejected
+     */
+    public boolean tryAcquire() {
+        if (inflight.incrementAndGet() > limit) {
+            inflight.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the permit of a finished request and sample its time.
+     *
+     * @param rttNanos time in nanos from the dispatch to the finish
+     * @param dispatchInflight number of requests holding permits when the request was dispatched
+     */
+    public void onComplete(long rttNanos, int dispatchInflight) {
+        inflight.decrementAndGet();
+        if (rttNanos > 0) {
+            update(rttNanos, dispatchInflight, false);
+        }
+    }
+
+    /**
+     * Return the permit of a request rejected by the executor.
+     */
+    public void onDrop() {
+        int current = inflight.getAndDecrement();
+        rejected.incrementAndGet();
+        update(0, current, true);
+    }
+
+    /**
+     * Get the current limit.
+     *
+     * @return limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the number of requests holding permits.
+     *
+     * @return inflight count
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * Get the number of requests rejected by the limit or by the executor.
+     *
+     * @return rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private synchronized void update(long rtt, int inflight, boolean dropped) {
+        double current = this.estimatedLimit;
+        double step = Math.max(1, Math.log10(current));
+        double target;
+        if (dropped) {
+            target = current - step;
+        } else {
+            if (++samplesSinceProbe >= (long) PROBE_SAMPLES_PER_LIMIT * this.limit) {
+                // forget the min time, the next samples tell the time under the current load
+                samplesSinceProbe = 0;
+                minRtt = rtt;
+                return;
+            }
+            if (rtt < minRtt) {
+                minRtt = rtt;
+            }
+            if (inflight * 2 < current) {
+                // the limit is not the bottleneck, nothing learned about it
+                return;
+            }
+            double queued = Math.ceil(current * (1 - (double) minRtt / rtt));
+            if (queued <= step) {
+                target = current + 6 * step;
+            } else if (queued < 3 * step) {
+                target = current + step;
+            } else if (queued > 6 * step) {
+                target = current - step;
+            } else {
+                return;
+            }
+        }
+        target = Math.max(minLimit, Math.min(maxLimit, target));
+        this.estimatedLimit = (1 - SMOOTHING) * current + SMOOTHING * target;
+        // round towards the target, so that the limit moves at every step and reaches the bounds
+        this.limit = (int) (target > current ? Math.ceil(this.estimatedLimit) : Math
+            .floor(this.estimatedLimit));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control of the requests of a user processor based on their queue delay, in the way of CoDel.
+ * <p>
+ * The min queue delay of the requests dequeued in each interval is measured. If it is above the target delay,
+ * the queue has stayed long for a whole interval and the processor is overloaded until the min queue delay of
+ * a later interval falls below the target delay. While overloaded, the requests waiting longer than the
+ * target delay are rejected when dequeued, and new requests are rejected at once if the executor is occupied,
+ * so that the executor works on the requests which can still finish in time.
+ * <p>
+ * Notice: the overloaded state expires if no request is dequeued for two intervals.
+ */
+public class CoDelAdmissionController {
+
+    /** target queue delay in millis */
+    private final long       targetDelay;
+    /** interval in millis */
+    private final long       interval;
+    /** start of the current interval */
+    private final AtomicLong intervalStart;
+    /** min queue delay in the current interval */
+    private final AtomicLong minDelay = new AtomicLong(Long.MAX_VALUE);
+    /** number of rejected requests */
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean overloaded;
+
+    /**
+     * @param targetDelay target queue delay in millis
+     * @param interval interval in millis
+     */
+    public CoDelAdmissionController(long targetDelay, long interval) {
+        if (targetDelay < 0 || interval <= 0) {
+            throw new IllegalArgumentException("Illegal target delay " + targetDelay
+                                               + " or interval " + interval);
+        }
+        this.targetDelay = targetDelay;
+        this.interval = interval;
+        this.intervalStart = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Decide whether to accept a new request to be queued in the executor.
+     *
+     * @param executor executor to run the request
+     * @param now current time in millis
+     * @return false if the request should be rejected
+     */
+    public boolean admit(Executor executor, long now) {
+        if (isOverloaded(now) && isOccupied(executor)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record the queue delay of a request dequeued by the executor and decide whether to process it.
+     *
+     * @param queueDelay time in millis the request waited in the queue
+     * @param now current time in millis
+     * @return false if the request should be rejected
+     */
+    public boolean onDequeue(long queueDelay, long now) {
+        long start = intervalStart.get();
+        if (now - start >= interval && intervalStart.compareAndSet(start, now)) {
+            long min = minDelay.getAndSet(Long.MAX_VALUE);
+            overloaded = min != Long.MAX_VALUE && min > targetDelay;
+        }
+        long min;
+        while (queueDelay < (min = minDelay.get()) && !minDelay.compareAndSet(min, queueDelay)) {
+            // retry
+        }
+        if (overloaded && queueDelay > targetDelay) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the processor is overloaded.
+     *
+     * @param now current time in millis
+     * @return true if overloaded
+     */
+    public boolean isOverloaded(long now) {
+        return overloaded && now - intervalStart.get() < 2 * interval;
+    }
+
+    /**
+     * Get the number of rejected requests.
+     *
+     * @return rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * An executor is occupied if its threads are all busy or requests are queued. Executors other than
+     * {@link ThreadPoolExecutor} are always considered occupied.
+     */
+    private boolean isOccupied(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+            return !tpe.getQueue().isEmpty() || tpe.getActiveCount() >= tpe.getMaximumPoolSize();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import com.alipay.remoting.NamedThreadFactory;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool which runs the queued tasks in the order of their deadlines, earliest deadline first.
+ * <p>
+ * Rpc requests are ordered by arrive time plus timeout, so the requests close to expiry are not left
+ * waiting behind the ones with plenty of slack. A task whose deadline has passed when it is dequeued is
+ * discarded instead of run, if it allows. Tasks without a deadline are run after all tasks with one,
+ * in the order they are submitted.
+ * <p>
+ * It can be set as the executor of a user processor or returned by an {@link UserProcessor.ExecutorSelector}.
+ * Like the default executor, the queue is bounded and the pool grows to the max size when the queue is full.
+ * <p>
+ * Notice: {@link #shutdownNow()} returns the queued tasks wrapped with their deadlines.
+ */
+public class DeadlineThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /** order of the submitted tasks, to keep FIFO for tasks with the same deadline */
+    private final AtomicLong sequence = new AtomicLong();
+    /** number of tasks discarded as expired */
+    private final AtomicLong expired  = new AtomicLong();
+
+    /**
+     * @param corePoolSize core pool size
+     * @param maxPoolSize max pool size
+     * @param keepAliveTime keep alive time in seconds
+     * @param queueSize capacity of the queue
+     * @param threadNamePrefix prefix of the thread names
+     */
+    public DeadlineThreadPoolExecutor(int corePoolSize, int maxPoolSize, long keepAliveTime,
+                                      int queueSize, String threadNamePrefix) {
+        super(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.SECONDS, new DeadlineQueue(
+            queueSize), new NamedThreadFactory(threadNamePrefix, true));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new DeadlineEntry(command, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Get the number of tasks discarded as expired.
+     *
+     * @return expired count
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * A task with a deadline.
+     */
+    public interface DeadlineTask extends Runnable {
+
+        /**
+         * Get the deadline in millis, {@link Long#MAX_VALUE} if the task never expires.
+         *
+         * @return deadline
+         */
+        long getDeadline();
+
+        /**
+         * Discard the task as its deadline has passed.
+         *
+         * @return false if the task should still be run
+         */
+        boolean discardExpired();
+    }
+
+    /**
+     * Queued task with its deadline, which is checked again when the task is dequeued and run.
+     */
+    class DeadlineEntry implements Runnable, Comparable<DeadlineEntry> {
+        private final Runnable task;
+        private final long     deadline;
+        private final long     seq;
+
+        DeadlineEntry(Runnable task, long seq) {
+            this.task = task;
+            this.deadline = task instanceof DeadlineTask ? ((DeadlineTask) task).getDeadline()
+                : Long.MAX_VALUE;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            if (deadline != Long.MAX_VALUE && System.currentTimeMillis() > deadline
+                && ((DeadlineTask) task).discardExpired()) {
+                expired.incrementAndGet();
+                return;
+            }
+            task.run();
+        }
+
+        @Override
+        public int compareTo(DeadlineEntry o) {
+            if (deadline != o.deadline) {
+                return deadline < o.deadline ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+
+        public Runnable getTask() {
+            return task;
+        }
+    }
+
+    /**
+     * Priority queue of the entries with a capacity, the entries are ordered by their natural ordering.
+     */
+    static class DeadlineQueue extends PriorityBlockingQueue<Runnable> {
+
+        private static final long serialVersionUID = 6542356816410387286L;
+
+        private final int         capacity;
+
+        DeadlineQueue(int capacity) {
+            super(Math.max(1, Math.min(capacity, 64)));
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Illegal queue size " + capacity);
+            }
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            if (size() >= capacity) {
+                return false;
+            }
+            return super.offer(runnable);
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, capacity - size());
+        }
+    }
+}
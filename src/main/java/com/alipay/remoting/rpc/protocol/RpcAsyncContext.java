@@ -40,6 +40,11 @@ public class RpcAsyncContext implements AsyncContext {
 
     private RpcRequestProcessor processor;
 
+    /**
+     * task to complete when the response is sent, null if none
+     */
+    private RpcRequestProcessor.ProcessTask task;
+
     /**
      * is response sent already
      */
@@ -59,14 +64,35 @@ public class RpcAsyncContext implements AsyncContext {
         this.processor = processor;
     }
 
+    /**
+     * Constructor with the task holding a permit of the concurrency limiter, which is returned
+     * when the response is sent.
+     *
+     * @param ctx       remoting context
+     * @param cmd       rpc request command
+     * @param processor rpc request processor
+     * @param task      task to complete when the response is sent, null if none
+     */
+    RpcAsyncContext(final RemotingContext ctx, final RpcRequestCommand cmd,
+                    final RpcRequestProcessor processor, final RpcRequestProcessor.ProcessTask task) {
+        this(ctx, cmd, processor);
+        this.task = task;
+    }
+
     /**
      * @see com.alipay.remoting.AsyncContext#sendResponse(java.lang.Object)
      */
     @Override
     public void sendResponse(Object responseObject) {
         if (isResponseSentAlready.compareAndSet(false, true)) {
-            processor.sendResponseIfNecessary(this.ctx, cmd.getType(), processor
-                    .getCommandFactory().createResponse(responseObject, this.cmd));
+            try {
+                processor.sendResponseIfNecessary(this.ctx, cmd.getType(), processor
+                        .getCommandFactory().createResponse(responseObject, this.cmd));
+            } finally {
+                if (task != null) {
+                    task.complete();
+                }
+            }
         } else {
             throw new IllegalStateException("Should not send rpc response repeatedly!");
         }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per connection reassembly of chunked content for protocol v2.
+ * <p>
+ * Each chunk is kept as a retained slice of the inbound buffer and added to a composite buffer as it arrives,
+ * so the decoder only cumulates one chunk at a time, and neither a copy nor an array of the total length is made
+ * before the content is complete.
+ * <p>
+ * Notice: the assembler is only accessed by the decoder of its channel, which runs in the event loop,
+ * the content of incomplete commands is released when the channel is closed.
+ */
+public class RpcChunkAssembler {
+
+    public static final AttributeKey<RpcChunkAssembler> ASSEMBLER  = AttributeKey
+                                                                      .valueOf("chunkAssembler");
+
+    /**
+     * content being reassembled, keyed by command type and id
+     */
+    private final Map<Long, Assembly>                   assemblies = new HashMap<Long, Assembly>();
+
+    /**
+     * Get the assembler of a channel, create one if absent.
+     */
+    public static RpcChunkAssembler get(Channel channel) {
+        Attribute<RpcChunkAssembler> attr = channel.attr(ASSEMBLER);
+        RpcChunkAssembler assembler = attr.get();
+        if (assembler == null) {
+            final RpcChunkAssembler newAssembler = new RpcChunkAssembler();
+            assembler = attr.setIfAbsent(newAssembler);
+            if (assembler == null) {
+                assembler = newAssembler;
+                channel.closeFuture().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        newAssembler.releaseAll();
+                    }
+                });
+            }
+        }
+        return assembler;
+    }
+
+    /**
+     * Append a chunk read from the inbound buffer.
+     *
+     * @param type command type
+     * @param id command id
+     * @param in buffer positioned at the chunk
+     * @param chunkLength length of the chunk
+     * @param remaining content bytes remaining after this chunk
+     * @param maxLength max total content length
+     * @param clazz class of the command, only carried by the first chunk
+     * @param className class name resolved from the class dictionary, only for the first chunk
+     * @param header header of the command, only carried by the first chunk
+     * @return the complete assembly if this is the last chunk, otherwise null
+     * @throws CodecException if the total length exceeds the max length or the chunks are inconsistent
+     */
+    public Assembly append(byte type, int id, ByteBuf in, int chunkLength, int remaining,
+                           int maxLength, byte[] clazz, String className, byte[] header)
+                                                                                       throws CodecException {
+        if (chunkLength < 0 || remaining < 0) {
+            throw new CodecException("Illegal chunk of command " + id + ", chunk length: "
+                                     + chunkLength + ", remaining: " + remaining);
+        }
+        Long key = ((long) type << 32) | (id & 0xFFFFFFFFL);
+        Assembly assembly = this.assemblies.get(key);
+        if (assembly == null) {
+            long total = (long) chunkLength + remaining;
+            if (total > maxLength) {
+                throw new CodecException("Chunked content length " + total
+                                         + " exceeds max frame size " + maxLength);
+            }
+            assembly = new Assembly(clazz, className, header, (int) total);
+            this.assemblies.put(key, assembly);
+        } else if ((long) assembly.content.writerIndex() + chunkLength + remaining != assembly.length) {
+            this.assemblies.remove(key);
+            assembly.content.release();
+            throw new CodecException("Inconsistent chunk of command " + id + ", expect "
+                                     + (assembly.length - assembly.content.writerIndex())
+                                     + " bytes remaining but got " + (chunkLength + remaining));
+        }
+        if (chunkLength > 0) {
+            assembly.content.addComponent(true, in.readRetainedSlice(chunkLength));
+        }
+        if (remaining == 0) {
+            this.assemblies.remove(key);
+            return assembly;
+        }
+        return null;
+    }
+
+    /**
+     * Number of commands being reassembled.
+     */
+    public int size() {
+        return this.assemblies.size();
+    }
+
+    /**
+     * Release the content of all incomplete commands.
+     */
+    void releaseAll() {
+        for (Assembly assembly : this.assemblies.values()) {
+            assembly.content.release();
+        }
+        this.assemblies.clear();
+    }
+
+    public static class Assembly {
+        private final byte[]           clazz;
+        private final String           className;
+        private final byte[]           header;
+        private final int              length;
+        private final CompositeByteBuf content;
+
+        Assembly(byte[] clazz, String className, byte[] header, int length) {
+            this.clazz = clazz;
+            this.className = className;
+            this.header = header;
+            this.length = length;
+            this.content = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        }
+
+        public byte[] getClazz() {
+            return clazz;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public byte[] getHeader() {
+            return header;
+        }
+
+        /**
+         * Get the reassembled content, the caller is responsible for releasing it.
+         */
+        public ByteBuf getContent() {
+            return content;
+        }
+    }
+}
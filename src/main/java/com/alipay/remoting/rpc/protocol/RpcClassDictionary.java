@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import com.alipay.remoting.config.Configs;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per connection dictionary of request class names for protocol v2.
+ * <p>
+ * The first request of a class sends the class name together with a short id, later requests only send the id.
+ * A peer advertises that it accepts dictionary encoded request classes by turning on
+ * {@link com.alipay.remoting.config.switches.ProtocolSwitch#CLASS_DICT_SWITCH_INDEX} on its responses,
+ * so requests to peers that never advertised keep the full class name.
+ * <p>
+ * Notice: the dictionary is only accessed by the encoder and decoder of its channel, which run in the event loop.
+ */
+public class RpcClassDictionary {
+
+    public static final AttributeKey<RpcClassDictionary> DICTIONARY   = AttributeKey
+                                                                          .valueOf("classDictionary");
+
+    private static final Charset                         CHARSET      = Charset
+                                                                          .forName(Configs.DEFAULT_CHARSET);
+
+    /**
+     * whether the peer accepts dictionary encoded request classes
+     */
+    private volatile boolean                             peerSupported;
+
+    /**
+     * max number of class names assigned by this side
+     */
+    private final int                                    maxSize;
+
+    /**
+     * ids assigned by this side, used when encoding
+     */
+    private final Map<String, Integer>                   outbound     = new HashMap<String, Integer>();
+
+    /**
+     * names defined by the peer, used when decoding
+     */
+    private String[]                                     inboundNames = new String[16];
+    private byte[][]                                     inboundClazz = new byte[16][];
+
+    public RpcClassDictionary(int maxSize) {
+        this.maxSize = Math.min(maxSize, Short.MAX_VALUE + 1);
+    }
+
+    /**
+     * Get the dictionary of a channel, create one if absent.
+     */
+    public static RpcClassDictionary get(Channel channel, int maxSize) {
+        Attribute<RpcClassDictionary> attr = channel.attr(DICTIONARY);
+        RpcClassDictionary dictionary = attr.get();
+        if (dictionary == null) {
+            RpcClassDictionary newDictionary = new RpcClassDictionary(maxSize);
+            dictionary = attr.setIfAbsent(newDictionary);
+            if (dictionary == null) {
+                dictionary = newDictionary;
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Get the id of a class name assigned by this side.
+     *
+     * @return id, or -1 if not assigned yet
+     */
+    public int getId(String className) {
+        Integer id = this.outbound.get(className);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the id the next {@link #define(String)} assigns, the id is not assigned until the frame
+     * carrying the definition has been encoded.
+     *
+     * @return id, or -1 if the dictionary is full
+     */
+    public int nextId() {
+        int size = this.outbound.size();
+        return size >= this.maxSize ? -1 : size;
+    }
+
+    /**
+     * Assign an id to a class name.
+     *
+     * @return id, or -1 if the dictionary is full
+     */
+    public int define(String className) {
+        int id = nextId();
+        if (id >= 0) {
+            this.outbound.put(className, id);
+        }
+        return id;
+    }
+
+    /**
+     * Read a dictionary encoded class field, which is either a short id alone or a short id followed by the name.
+     *
+     * @param in buffer positioned at the class field
+     * @param classLen length of the class field
+     * @return id of the class
+     */
+    public int read(ByteBuf in, int classLen) {
+        int id = in.readShort() & 0xFFFF;
+        if (classLen > 2) {
+            byte[] clazz = new byte[classLen - 2];
+            in.readBytes(clazz);
+            if (id >= this.inboundNames.length) {
+                int newLength = Math.max(id + 1, this.inboundNames.length << 1);
+                this.inboundNames = Arrays.copyOf(this.inboundNames, newLength);
+                this.inboundClazz = Arrays.copyOf(this.inboundClazz, newLength);
+            }
+            this.inboundNames[id] = new String(clazz, CHARSET);
+            this.inboundClazz[id] = clazz;
+        } else if (id >= this.inboundNames.length || this.inboundNames[id] == null) {
+            throw new IllegalStateException("Unknown class id " + id + " in class dictionary");
+        }
+        return id;
+    }
+
+    public String getClassName(int id) {
+        return this.inboundNames[id];
+    }
+
+    public byte[] getClazz(int id) {
+        return this.inboundClazz[id];
+    }
+
+    public boolean isPeerSupported() {
+        return peerSupported;
+    }
+
+    public void setPeerSupported(boolean peerSupported) {
+        this.peerSupported = peerSupported;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import com.alipay.remoting.rpc.ResponseCommand;
+import com.alipay.remoting.rpc.RpcCommand;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Commands written together as one batch frame, either all requests or all responses.
+ * <p>
+ * The batch frame has the header of protocol v2 with {@link RpcCommandCode#RPC_BATCH}, its content is the frames of
+ * the commands encoded as usual, and the decoder unpacks them into one list to dispatch.
+ */
+public class RpcCommandBatch implements Serializable {
+
+    /** For serialization */
+    private static final long      serialVersionUID = 5311276470357370215L;
+
+    private final List<RpcCommand> commands;
+
+    /**
+     * @param commands commands of the same direction, not empty
+     */
+    public RpcCommandBatch(List<RpcCommand> commands) {
+        if (commands == null || commands.isEmpty()) {
+            throw new IllegalArgumentException("commands should not be empty");
+        }
+        this.commands = commands;
+    }
+
+    /**
+     * Getter method for property <tt>commands</tt>.
+     *
+     * @return property value of commands
+     */
+    public List<RpcCommand> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Whether this is a batch of responses.
+     *
+     * @return true if the commands are responses
+     */
+    public boolean isResponse() {
+        return commands.get(0) instanceof ResponseCommand;
+    }
+}
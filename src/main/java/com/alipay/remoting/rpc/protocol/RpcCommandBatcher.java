@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.protocol;
+
+import com.alipay.remoting.rpc.RpcCommand;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch the commands written by many threads into batch frames, see {@link RpcCommandBatch}.
+ * <p>
+ * The commands are queued, the first one of a batch schedules a task in the event loop after the window, which
+ * groups the queued commands by channel and writes each group as one batch frame. A batch is written at once
+ * when reaching the max size or the max bytes, and a command larger than the max bytes is written alone.
+ * <p>
+ * The commands written to the channels of one connection pool share a batcher, a single command of a channel is
+ * written as a plain frame.
+ */
+public class RpcCommandBatcher implements Runnable {
+
+    /** window to batch the commands in nanos, 0 for the next task of the event loop */
+    private final long                windowNanos;
+
+    private final int                 maxBatchSize;
+
+    private final int                 maxBatchBytes;
+
+    private final Queue<PendingWrite> queue     = new ConcurrentLinkedQueue<PendingWrite>();
+
+    private final AtomicInteger       size      = new AtomicInteger();
+
+    private final AtomicLong          bytes     = new AtomicLong();
+
+    private final AtomicBoolean       scheduled = new AtomicBoolean(false);
+
+    /**
+     * @param windowMicros window to batch the commands in microseconds, 0 for the next task of the event loop
+     * @param maxBatchSize max commands of a batch
+     * @param maxBatchBytes max bytes of the commands of a batch
+     */
+    public RpcCommandBatcher(long windowMicros, int maxBatchSize, int maxBatchBytes) {
+        if (windowMicros < 0) {
+            throw new IllegalArgumentException("windowMicros should not be negative: " + windowMicros);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize should be positive: " + maxBatchSize);
+        }
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes should be positive: " + maxBatchBytes);
+        }
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Write a serialized command with the next batch of its channel.
+     *
+     * @param channel channel to write
+     * @param cmd command to write
+     * @return future of the write, completed after the batch is flushed
+     */
+    public ChannelFuture write(Channel channel, RpcCommand cmd) {
+        int length = length(cmd);
+        if (length > this.maxBatchBytes) {
+            return channel.writeAndFlush(cmd);
+        }
+        ChannelPromise promise = channel.newPromise();
+        this.queue.offer(new PendingWrite(channel, cmd, length, promise));
+        long queuedBytes = this.bytes.addAndGet(length);
+        if (this.size.incrementAndGet() >= this.maxBatchSize || queuedBytes >= this.maxBatchBytes) {
+            channel.eventLoop().execute(this);
+        } else if (!this.scheduled.get() && this.scheduled.compareAndSet(false, true)) {
+            if (this.windowNanos > 0) {
+                channel.eventLoop().schedule(this, this.windowNanos, TimeUnit.NANOSECONDS);
+            } else {
+                channel.eventLoop().execute(this);
+            }
+        }
+        return promise;
+    }
+
+    /**
+     * Write the queued commands as batch frames, grouped by channel in the order they are queued.
+     */
+    @Override
+    public void run() {
+        // the commands queued after this are scheduled in another batch if not drained here
+        this.scheduled.set(false);
+        Map<Channel, List<PendingWrite>> groups = new LinkedHashMap<Channel, List<PendingWrite>>();
+        Map<Channel, Integer> groupBytes = new LinkedHashMap<Channel, Integer>();
+        PendingWrite pending;
+        while ((pending = this.queue.poll()) != null) {
+            this.size.decrementAndGet();
+            this.bytes.addAndGet(-pending.length);
+            List<PendingWrite> group = groups.get(pending.channel);
+            Integer batchBytes = groupBytes.get(pending.channel);
+            if (group != null
+                && (group.size() >= this.maxBatchSize || batchBytes + pending.length > this.maxBatchBytes)) {
+                flush(group);
+                group = null;
+            }
+            if (group == null) {
+                group = new ArrayList<PendingWrite>();
+                groups.put(pending.channel, group);
+                batchBytes = 0;
+            }
+            group.add(pending);
+            groupBytes.put(pending.channel, batchBytes + pending.length);
+        }
+        for (List<PendingWrite> group : groups.values()) {
+            flush(group);
+        }
+    }
+
+    /**
+     * Get the commands queued and not yet written.
+     *
+     * @return queued commands
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    private void flush(final List<PendingWrite> group) {
+        if (group.size() == 1) {
+            PendingWrite single = group.get(0);
+            single.channel.writeAndFlush(single.cmd, single.promise);
+            return;
+        }
+        List<RpcCommand> commands = new ArrayList<RpcCommand>(group.size());
+        for (PendingWrite pending : group) {
+            commands.add(pending.cmd);
+        }
+        group.get(0).channel.writeAndFlush(new RpcCommandBatch(commands)).addListener(
+            new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    for (PendingWrite pending : group) {
+                        if (future.isSuccess()) {
+                            pending.promise.trySuccess();
+                        } else {
+                            pending.promise.tryFailure(future.cause());
+                        }
+                    }
+                }
+            });
+    }
+
+    private static int length(RpcCommand cmd) {
+        return cmd.getClazzLength() + cmd.getHeaderLength() + cmd.getContentLength();
+    }
+
+    private static final class PendingWrite {
+        private final Channel        channel;
+        private final RpcCommand     cmd;
+        private final int            length;
+        private final ChannelPromise promise;
+
+        PendingWrite(Channel channel, RpcCommand cmd, int length, ChannelPromise promise) {
+            this.channel = channel;
+            this.cmd = cmd;
+            this.length = length;
+            this.promise = promise;
+        }
+    }
+}
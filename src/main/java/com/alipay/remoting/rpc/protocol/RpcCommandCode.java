@@ -26,7 +26,9 @@ import com.alipay.remoting.CommandCode;
  */
 public enum RpcCommandCode implements CommandCode {
 
-    RPC_REQUEST((short) 1), RPC_RESPONSE((short) 2);
+    RPC_REQUEST((short) 1), RPC_RESPONSE((short) 2),
+    /** frame carrying encoded frames of requests or responses, unpacked by the decoder and never dispatched */
+    RPC_BATCH((short) 3);
 
     private short value;
 
@@ -40,6 +42,8 @@ public enum RpcCommandCode implements CommandCode {
                 return RPC_REQUEST;
             case 2:
                 return RPC_RESPONSE;
+            case 3:
+                return RPC_BATCH;
         }
         throw new IllegalArgumentException("Unknown Rpc command code value: " + value);
     }
@@ -19,7 +19,11 @@ package com.alipay.remoting.rpc.protocol;
 import com.alipay.remoting.CommandCode;
 import com.alipay.remoting.CommandDecoder;
 import com.alipay.remoting.ResponseStatus;
+import com.alipay.remoting.compression.Compressor;
+import com.alipay.remoting.compression.CompressorManager;
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.exception.CodecException;
 import com.alipay.remoting.log.BoltLoggerFactory;
 import com.alipay.remoting.rpc.HeartbeatAckCommand;
 import com.alipay.remoting.rpc.HeartbeatCommand;
@@ -28,7 +32,9 @@ import com.alipay.remoting.rpc.ResponseCommand;
 import com.alipay.remoting.rpc.RpcCommandType;
 import com.alipay.remoting.util.CrcUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
 import org.slf4j.Logger;
 
 import java.net.InetSocketAddress;
@@ -44,11 +50,40 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
 
     private static final Logger logger = BoltLoggerFactory.getLogger("RpcRemoting");
 
+    /**
+     * initial capacity of the decompressed content relative to the compressed length
+     */
+    private static final int    INITIAL_INFLATE_RATIO = 4;
+
     private int lessLen;
 
+    /**
+     * whether to keep content as a retained slice of the inbound buffer
+     */
+    private boolean zeroCopyDecode;
+
+    /**
+     * whether request class dictionary is enabled, see {@link RpcClassDictionary}
+     */
+    private boolean classDictionary;
+
+    /**
+     * max number of class names in the dictionary of one connection
+     */
+    private int     classDictionaryMaxSize;
+
+    /**
+     * max length of class name, header and content of one frame, also of the reassembled chunked content
+     */
+    private int     maxFrameSize;
+
     {
         lessLen = RpcProtocolV2.getResponseHeaderLength() < RpcProtocolV2.getRequestHeaderLength() ? RpcProtocolV2
                 .getResponseHeaderLength() : RpcProtocolV2.getRequestHeaderLength();
+        zeroCopyDecode = ConfigManager.codec_zero_copy_decode();
+        classDictionary = ConfigManager.codec_class_dictionary();
+        classDictionaryMaxSize = ConfigManager.codec_class_dictionary_max_size();
+        maxFrameSize = ConfigManager.codec_max_frame_size();
     }
 
     /**
@@ -79,6 +114,10 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                  * header
                  * content
                  */
+                if (in.getShort(in.readerIndex() + 3) == RpcCommandCode.RPC_BATCH.value()) {
+                    decodeBatch(ctx, in, out);
+                    return;
+                }
                 if (in.readableBytes() > 2 + 1) {
                     int startIndex = in.readerIndex();
                     in.markReaderIndex();
@@ -97,9 +136,12 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             short classLen = in.readShort();
                             short headerLen = in.readShort();
                             int contentLen = in.readInt();
+                            checkFrameSize(classLen, headerLen, contentLen);
                             byte[] clazz = null;
+                            String className = null;
                             byte[] header = null;
                             byte[] content = null;
+                            ByteBuf contentBuf = null;
 
                             // decide the at-least bytes length for each version
                             int lengthAtLeastForV1 = classLen + headerLen + contentLen;
@@ -114,20 +156,77 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             if ((version == RpcProtocolV2.PROTOCOL_VERSION_1 && in.readableBytes() >= lengthAtLeastForV1)
                                     || (version == RpcProtocolV2.PROTOCOL_VERSION_2 && in
                                     .readableBytes() >= lengthAtLeastForV2)) {
+                                if (version == RpcProtocolV2.PROTOCOL_VERSION_2 && crcSwitchOn) {
+                                    // check before reading, so no retained slice leaks on failure
+                                    checkCRC(in, startIndex, in.readerIndex() + classLen + headerLen
+                                            + contentLen, ProtocolSwitch.isOn(
+                                            ProtocolSwitch.CRC32C_SWITCH_INDEX, protocolSwitchValue));
+                                }
                                 if (classLen > 0) {
-                                    clazz = new byte[classLen];
-                                    in.readBytes(clazz);
+                                    if (ProtocolSwitch.isOn(ProtocolSwitch.CLASS_DICT_SWITCH_INDEX,
+                                            protocolSwitchValue)) {
+                                        RpcClassDictionary dictionary = RpcClassDictionary.get(
+                                                ctx.channel(), classDictionaryMaxSize);
+                                        int classId = dictionary.read(in, classLen);
+                                        clazz = dictionary.getClazz(classId);
+                                        className = dictionary.getClassName(classId);
+                                    } else {
+                                        clazz = new byte[classLen];
+                                        in.readBytes(clazz);
+                                    }
                                 }
                                 if (headerLen > 0) {
                                     header = new byte[headerLen];
                                     in.readBytes(header);
                                 }
-                                if (contentLen > 0) {
-                                    content = new byte[contentLen];
-                                    in.readBytes(content);
+                                RpcChunkAssembler.Assembly assembly = null;
+                                boolean chunked = ProtocolSwitch.isOn(
+                                        ProtocolSwitch.CHUNK_SWITCH_INDEX, protocolSwitchValue);
+                                if (chunked) {
+                                    int remaining = in.readInt();
+                                    assembly = RpcChunkAssembler.get(ctx.channel()).append(type,
+                                            requestId, in, contentLen - 4, remaining, maxFrameSize,
+                                            clazz, className, header);
+                                } else if (contentLen > 0) {
+                                    int storedLen = contentLen;
+                                    byte compressorCode = CompressorManager.NONE;
+                                    if (ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+                                            protocolSwitchValue)) {
+                                        compressorCode = in.readByte();
+                                        storedLen -= 1;
+                                    }
+                                    if (compressorCode != CompressorManager.NONE) {
+                                        content = decompress(in, compressorCode, storedLen);
+                                    } else if (zeroCopyDecode) {
+                                        contentBuf = in.readRetainedSlice(storedLen);
+                                    } else {
+                                        content = new byte[storedLen];
+                                        in.readBytes(content);
+                                    }
                                 }
                                 if (version == RpcProtocolV2.PROTOCOL_VERSION_2 && crcSwitchOn) {
-                                    checkCRC(in, startIndex);
+                                    in.skipBytes(4);// crc int
+                                }
+                                if (chunked) {
+                                    if (assembly == null) {
+                                        // wait for the remaining chunks
+                                        return;
+                                    }
+                                    clazz = assembly.getClazz();
+                                    className = assembly.getClassName();
+                                    header = assembly.getHeader();
+                                    ByteBuf assembled = assembly.getContent();
+                                    try {
+                                        content = decompressChunked(assembled, protocolSwitchValue);
+                                        if (content == null && zeroCopyDecode) {
+                                            contentBuf = assembled.retain();
+                                        } else if (content == null) {
+                                            content = new byte[assembled.readableBytes()];
+                                            assembled.readBytes(content);
+                                        }
+                                    } finally {
+                                        assembled.release();
+                                    }
                                 }
                             } else {// not enough data
                                 in.resetReaderIndex();
@@ -146,8 +245,13 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             command.setProtocolSwitch(ProtocolSwitch.create(protocolSwitchValue));
                             command.setTimeout(timeout);
                             command.setClazz(clazz);
+                            if (className != null && command instanceof RpcRequestCommand) {
+                                // resolved from the dictionary, no need to decode the class name again
+                                ((RpcRequestCommand) command).setRequestClass(className);
+                            }
                             command.setHeader(header);
                             command.setContent(content);
+                            command.setContentBuf(contentBuf);
 
                             out.add(command);
                         } else {
@@ -165,9 +269,11 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             short classLen = in.readShort();
                             short headerLen = in.readShort();
                             int contentLen = in.readInt();
+                            checkFrameSize(classLen, headerLen, contentLen);
                             byte[] clazz = null;
                             byte[] header = null;
                             byte[] content = null;
+                            ByteBuf contentBuf = null;
 
                             // decide the at-least bytes length for each version
                             int lengthAtLeastForV1 = classLen + headerLen + contentLen;
@@ -182,6 +288,12 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             if ((version == RpcProtocolV2.PROTOCOL_VERSION_1 && in.readableBytes() >= lengthAtLeastForV1)
                                     || (version == RpcProtocolV2.PROTOCOL_VERSION_2 && in
                                     .readableBytes() >= lengthAtLeastForV2)) {
+                                if (version == RpcProtocolV2.PROTOCOL_VERSION_2 && crcSwitchOn) {
+                                    // check before reading, so no retained slice leaks on failure
+                                    checkCRC(in, startIndex, in.readerIndex() + classLen + headerLen
+                                            + contentLen, ProtocolSwitch.isOn(
+                                            ProtocolSwitch.CRC32C_SWITCH_INDEX, protocolSwitchValue));
+                                }
                                 if (classLen > 0) {
                                     clazz = new byte[classLen];
                                     in.readBytes(clazz);
@@ -190,12 +302,53 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                                     header = new byte[headerLen];
                                     in.readBytes(header);
                                 }
-                                if (contentLen > 0) {
-                                    content = new byte[contentLen];
-                                    in.readBytes(content);
+                                RpcChunkAssembler.Assembly assembly = null;
+                                boolean chunked = ProtocolSwitch.isOn(
+                                        ProtocolSwitch.CHUNK_SWITCH_INDEX, protocolSwitchValue);
+                                if (chunked) {
+                                    int remaining = in.readInt();
+                                    assembly = RpcChunkAssembler.get(ctx.channel()).append(type,
+                                            requestId, in, contentLen - 4, remaining, maxFrameSize,
+                                            clazz, null, header);
+                                } else if (contentLen > 0) {
+                                    int storedLen = contentLen;
+                                    byte compressorCode = CompressorManager.NONE;
+                                    if (ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+                                            protocolSwitchValue)) {
+                                        compressorCode = in.readByte();
+                                        storedLen -= 1;
+                                    }
+                                    if (compressorCode != CompressorManager.NONE) {
+                                        content = decompress(in, compressorCode, storedLen);
+                                    } else if (zeroCopyDecode) {
+                                        contentBuf = in.readRetainedSlice(storedLen);
+                                    } else {
+                                        content = new byte[storedLen];
+                                        in.readBytes(content);
+                                    }
                                 }
                                 if (version == RpcProtocolV2.PROTOCOL_VERSION_2 && crcSwitchOn) {
-                                    checkCRC(in, startIndex);
+                                    in.skipBytes(4);// crc int
+                                }
+                                if (chunked) {
+                                    if (assembly == null) {
+                                        // wait for the remaining chunks
+                                        return;
+                                    }
+                                    clazz = assembly.getClazz();
+                                    header = assembly.getHeader();
+                                    ByteBuf assembled = assembly.getContent();
+                                    try {
+                                        content = decompressChunked(assembled, protocolSwitchValue);
+                                        if (content == null && zeroCopyDecode) {
+                                            contentBuf = assembled.retain();
+                                        } else if (content == null) {
+                                            content = new byte[assembled.readableBytes()];
+                                            assembled.readBytes(content);
+                                        }
+                                    } finally {
+                                        assembled.release();
+                                    }
                                 }
                             } else {// not enough data
                                 in.resetReaderIndex();
@@ -213,9 +366,35 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
                             command.setSerializer(serializer);
                             command.setProtocolSwitch(ProtocolSwitch.create(protocolSwitchValue));
                             command.setResponseStatus(ResponseStatus.valueOf(status));
+                            if (classDictionary
+                                    && ProtocolSwitch.isOn(ProtocolSwitch.CLASS_DICT_SWITCH_INDEX,
+                                    protocolSwitchValue)) {
+                                // the peer accepts dictionary encoded requests from now on
+                                RpcClassDictionary.get(ctx.channel(), classDictionaryMaxSize)
+                                        .setPeerSupported(true);
+                            }
+                            if (ProtocolSwitch.isOn(ProtocolSwitch.CRC32C_ACCEPT_SWITCH_INDEX,
+                                    protocolSwitchValue)) {
+                                // the peer verifies CRC32C checksummed requests from now on
+                                Attribute<Boolean> peerCrc32c = ctx.channel().attr(
+                                        RpcProtocolV2.PEER_CRC32C);
+                                if (peerCrc32c.get() == null) {
+                                    peerCrc32c.set(Boolean.TRUE);
+                                }
+                            }
+                            if (ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_ACCEPT_SWITCH_INDEX,
+                                    protocolSwitchValue)) {
+                                // the peer decodes compressed requests from now on
+                                Attribute<Boolean> peerCompress = ctx.channel().attr(
+                                        RpcProtocolV2.PEER_COMPRESS);
+                                if (peerCompress.get() == null) {
+                                    peerCompress.set(Boolean.TRUE);
+                                }
+                            }
                             command.setClazz(clazz);
                             command.setHeader(header);
                             command.setContent(content);
+                            command.setContentBuf(contentBuf);
                             command.setResponseTimeMillis(System.currentTimeMillis());
                             command.setResponseHost((InetSocketAddress) ctx.channel()
                                     .remoteAddress());
@@ -240,12 +419,54 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
         }
     }
 
-    private void checkCRC(ByteBuf in, int startIndex) {
-        int endIndex = in.readerIndex();
-        int expectedCrc = in.readInt();
-        byte[] frame = new byte[endIndex - startIndex];
-        in.getBytes(startIndex, frame, 0, endIndex - startIndex);
-        int actualCrc = CrcUtil.crc32(frame);
+    /**
+     * Decode a batch frame into all the commands it carries, which are dispatched as one list.
+     * <p>
+     * The batch frame has the header of its direction with no class name, header nor crc, its content is the frames
+     * of the commands. A peer sending batched requests gets batched responses.
+     */
+    private void decodeBatch(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+                                                                                      throws Exception {
+        int startIndex = in.readerIndex();
+        byte type = in.getByte(startIndex + 2);
+        int headerLength;
+        if (type == RpcCommandType.REQUEST) {
+            headerLength = RpcProtocolV2.getRequestHeaderLength();
+        } else if (type == RpcCommandType.RESPONSE) {
+            headerLength = RpcProtocolV2.getResponseHeaderLength();
+        } else {
+            String emsg = "Unknown batch type: " + type;
+            logger.error(emsg);
+            throw new CodecException(emsg);
+        }
+        if (in.readableBytes() < headerLength) {
+            return;
+        }
+        int contentLen = in.getInt(startIndex + headerLength - 4);
+        checkFrameSize((short) 0, (short) 0, contentLen);
+        if (in.readableBytes() < headerLength + contentLen) {
+            return;
+        }
+        in.skipBytes(headerLength);
+        ByteBuf batch = in.readSlice(contentLen);
+        if (type == RpcCommandType.REQUEST) {
+            ctx.channel().attr(RpcProtocolV2.PEER_BATCH).set(Boolean.TRUE);
+        }
+        while (batch.isReadable()) {
+            int readable = batch.readableBytes();
+            decode(ctx, batch, out);
+            if (batch.readableBytes() == readable) {
+                String emsg = "Incomplete command frame in batch, remaining bytes: " + readable;
+                logger.error(emsg);
+                throw new CodecException(emsg);
+            }
+        }
+    }
+
+    private void checkCRC(ByteBuf in, int startIndex, int endIndex, boolean crc32c) {
+        int expectedCrc = in.getInt(endIndex);
+        int actualCrc = crc32c ? CrcUtil.crc32c(in, startIndex, endIndex - startIndex) : CrcUtil
+            .crc32(in, startIndex, endIndex - startIndex);
         if (expectedCrc != actualCrc) {
             String err = "CRC check failed!";
             logger.error(err);
@@ -253,6 +474,71 @@ public class RpcCommandDecoderV2 implements CommandDecoder {
         }
     }
 
+    private void checkFrameSize(short classLen, short headerLen, int contentLen)
+                                                                               throws CodecException {
+        // fail fast before cumulating a frame that is too large
+        if (classLen < 0 || headerLen < 0 || contentLen < 0
+            || (long) classLen + headerLen + contentLen > maxFrameSize) {
+            String err = "Frame size exceeds max frame size " + maxFrameSize + ", classLen: "
+                         + classLen + ", headerLen: " + headerLen + ", contentLen: " + contentLen;
+            logger.error(err);
+            throw new CodecException(err);
+        }
+    }
+
+    /**
+     * Decompress the reassembled content if it is compressed, the compression envelope spans all chunks.
+     *
+     * @return decompressed content, or null if not compressed and the assembled buffer is positioned at the content
+     */
+    private byte[] decompressChunked(ByteBuf assembled, byte protocolSwitchValue)
+                                                                                 throws CodecException {
+        if (!ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX, protocolSwitchValue)) {
+            return null;
+        }
+        byte compressorCode = assembled.readByte();
+        if (compressorCode == CompressorManager.NONE) {
+            return null;
+        }
+        return decompress(assembled, compressorCode, assembled.readableBytes());
+    }
+
+    private byte[] decompress(ByteBuf in, byte compressorCode, int storedLen) throws CodecException {
+        Compressor compressor = CompressorManager.getCompressor(compressorCode);
+        if (compressor == null) {
+            throw new CodecException("Unknown compressor code: " + compressorCode);
+        }
+        if (storedLen < 4) {
+            throw new CodecException("Illegal compressed content length " + storedLen);
+        }
+        int originalLen = in.readInt();
+        // the original length is told by the peer, check it before allocating
+        if (originalLen < 0 || originalLen > maxFrameSize) {
+            String err = "Decompressed content length " + originalLen
+                         + " exceeds max frame size " + maxFrameSize;
+            logger.error(err);
+            throw new CodecException(err);
+        }
+        // grow with the inflated bytes instead of trusting the length, inflating stops at the length
+        ByteBuf dst = Unpooled.buffer(
+            (int) Math.min(originalLen, (long) storedLen * INITIAL_INFLATE_RATIO), originalLen);
+        try {
+            compressor.decompress(in.readSlice(storedLen - 4), dst);
+            if (dst.writerIndex() != originalLen) {
+                throw new CodecException("Decompressed content length " + dst.writerIndex()
+                                         + " does not match " + originalLen);
+            }
+            if (dst.hasArray() && dst.arrayOffset() == 0 && dst.array().length == originalLen) {
+                return dst.array();
+            }
+            byte[] content = new byte[originalLen];
+            dst.getBytes(0, content);
+            return content;
+        } finally {
+            dst.release();
+        }
+    }
+
     private ResponseCommand createResponseCommand(short cmdCode) {
         ResponseCommand command = new RpcResponseCommand();
         command.setCmdCode(RpcCommandCode.valueOf(cmdCode));
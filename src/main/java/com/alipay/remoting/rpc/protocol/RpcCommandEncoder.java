@@ -22,6 +22,7 @@ import com.alipay.remoting.rpc.RequestCommand;
 import com.alipay.remoting.rpc.ResponseCommand;
 import com.alipay.remoting.rpc.RpcCommand;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import org.slf4j.Logger;
 
@@ -63,32 +64,49 @@ public class RpcCommandEncoder implements CommandEncoder {
                  * content
                  */
                 RpcCommand cmd = (RpcCommand) msg;
-                out.writeByte(RpcProtocol.PROTOCOL_CODE);
-                out.writeByte(cmd.getType());
-                out.writeShort(((RpcCommand) msg).getCmdCode().value());
-                out.writeByte(cmd.getVersion());
-                out.writeInt(cmd.getId());
-                out.writeByte(cmd.getSerializer());
-                if (cmd instanceof RequestCommand) {
-                    //timeout
-                    out.writeInt(((RequestCommand) cmd).getTimeout());
+                ByteBuf buf = out;
+                if (out instanceof CompositeByteBuf) {
+                    // protocol v1 has no zero copy content, encode the whole frame into one component
+                    buf = ctx.alloc().ioBuffer(
+                        RpcProtocol.getRequestHeaderLength() + cmd.getClazzLength()
+                                + cmd.getHeaderLength() + cmd.getContentLength());
                 }
-                if (cmd instanceof ResponseCommand) {
-                    //response status
-                    ResponseCommand response = (ResponseCommand) cmd;
-                    out.writeShort(response.getResponseStatus().getValue());
-                }
-                out.writeShort(cmd.getClazzLength());
-                out.writeShort(cmd.getHeaderLength());
-                out.writeInt(cmd.getContentLength());
-                if (cmd.getClazzLength() > 0) {
-                    out.writeBytes(cmd.getClazz());
-                }
-                if (cmd.getHeaderLength() > 0) {
-                    out.writeBytes(cmd.getHeader());
-                }
-                if (cmd.getContentLength() > 0) {
-                    out.writeBytes(cmd.getContent());
+                try {
+                    buf.writeByte(RpcProtocol.PROTOCOL_CODE);
+                    buf.writeByte(cmd.getType());
+                    buf.writeShort(((RpcCommand) msg).getCmdCode().value());
+                    buf.writeByte(cmd.getVersion());
+                    buf.writeInt(cmd.getId());
+                    buf.writeByte(cmd.getSerializer());
+                    if (cmd instanceof RequestCommand) {
+                        //timeout
+                        buf.writeInt(((RequestCommand) cmd).getTimeout());
+                    }
+                    if (cmd instanceof ResponseCommand) {
+                        //response status
+                        ResponseCommand response = (ResponseCommand) cmd;
+                        buf.writeShort(response.getResponseStatus().getValue());
+                    }
+                    buf.writeShort(cmd.getClazzLength());
+                    buf.writeShort(cmd.getHeaderLength());
+                    buf.writeInt(cmd.getContentLength());
+                    if (cmd.getClazzLength() > 0) {
+                        buf.writeBytes(cmd.getClazz());
+                    }
+                    if (cmd.getHeaderLength() > 0) {
+                        buf.writeBytes(cmd.getHeader());
+                    }
+                    if (cmd.getContentLength() > 0) {
+                        buf.writeBytes(cmd.getContent());
+                    }
+                    if (buf != out) {
+                        ((CompositeByteBuf) out).addComponent(true, buf);
+                        buf = out;
+                    }
+                } finally {
+                    if (buf != out) {
+                        buf.release();
+                    }
                 }
             } else {
                 String warnMsg = "msg type [" + msg.getClass() + "] is not subclass of RpcCommand";
@@ -18,13 +18,20 @@ package com.alipay.remoting.rpc.protocol;
 
 import com.alipay.remoting.CommandEncoder;
 import com.alipay.remoting.Connection;
+import com.alipay.remoting.ResponseStatus;
+import com.alipay.remoting.compression.Compressor;
+import com.alipay.remoting.compression.CompressorManager;
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.config.switches.ProtocolSwitch;
 import com.alipay.remoting.log.BoltLoggerFactory;
 import com.alipay.remoting.rpc.RequestCommand;
 import com.alipay.remoting.rpc.ResponseCommand;
 import com.alipay.remoting.rpc.RpcCommand;
+import com.alipay.remoting.rpc.RpcCommandType;
 import com.alipay.remoting.util.CrcUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.Attribute;
 import org.slf4j.Logger;
@@ -41,7 +48,38 @@ public class RpcCommandEncoderV2 implements CommandEncoder {
     /**
      * logger
      */
-    private static final Logger logger = BoltLoggerFactory.getLogger("RpcRemoting");
+    private static final Logger logger             = BoltLoggerFactory.getLogger("RpcRemoting");
+
+    /**
+     * content not smaller than this is added to a composite out buffer as a component instead of being copied
+     */
+    private int                 compositeThreshold = ConfigManager
+                                                       .codec_composite_encode_threshold();
+
+    /**
+     * whether request class dictionary is enabled, see {@link RpcClassDictionary}
+     */
+    private boolean             classDictionary    = ConfigManager.codec_class_dictionary();
+
+    /**
+     * whether to compress requests when the peer decodes them, see {@link com.alipay.remoting.config.Configs#CODEC_COMPRESS}
+     */
+    private boolean             compress           = ConfigManager.codec_compress();
+
+    private int                 compressThreshold  = ConfigManager.codec_compress_threshold();
+
+    private byte                compressorCode     = ConfigManager.codec_compressor();
+
+    /**
+     * content larger than this is sent in chunks, see {@link com.alipay.remoting.config.Configs#CODEC_CHUNK_SIZE}
+     */
+    private int                 chunkSize          = ConfigManager.codec_chunk_size();
+
+    /**
+     * whether to checksum requests with CRC32C when the peer verifies it, see {@link com.alipay.remoting.config.Configs#CODEC_CRC32C}
+     */
+    private boolean             crc32c             = ConfigManager.codec_crc32c()
+                                                     && CrcUtil.isCrc32cIntrinsic();
 
     /**
      * @see CommandEncoder#encode(ChannelHandlerContext, Serializable, ByteBuf)
@@ -49,76 +87,373 @@ public class RpcCommandEncoderV2 implements CommandEncoder {
     @Override
     public void encode(ChannelHandlerContext ctx, Serializable msg, ByteBuf out) throws Exception {
         try {
-            if (msg instanceof RpcCommand) {
-                /*
-                 * proto: magic code for protocol
-                 * ver: version for protocol
-                 * type: request/response/request oneway
-                 * cmdcode: code for remoting command
-                 * ver2:version for remoting command
-                 * requestId: id of request
-                 * codec: code for codec
-                 * switch: function switch
-                 * (req)timeout: request timeout.
-                 * (resp)respStatus: response status
-                 * classLen: length of request or response class name
-                 * headerLen: length of header
-                 * cotentLen: length of content
-                 * className
-                 * header
-                 * content
-                 * crc (optional)
-                 */
-                int index = out.writerIndex();
-                RpcCommand cmd = (RpcCommand) msg;
-                out.writeByte(RpcProtocolV2.PROTOCOL_CODE);
-                Attribute<Byte> version = ctx.channel().attr(Connection.VERSION);
-                byte ver = RpcProtocolV2.PROTOCOL_VERSION_1;
-                if (version != null && version.get() != null) {
-                    ver = version.get();
+            if (msg instanceof RpcCommandBatch) {
+                encodeBatch(ctx, (RpcCommandBatch) msg, out);
+            } else if (msg instanceof RpcCommand) {
+                encodeCommand(ctx, (RpcCommand) msg, out, true);
+            } else {
+                String warnMsg = "msg type [" + msg.getClass() + "] is not subclass of RpcCommand";
+                logger.warn(warnMsg);
+            }
+        } catch (Exception e) {
+            logger.error("Exception caught!", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Encode a command into out, in several frames if chunkable and the content is larger than the chunk size.
+     */
+    private void encodeCommand(ChannelHandlerContext ctx, RpcCommand cmd, ByteBuf out,
+                               boolean chunkable) throws Exception {
+        /*
+         * proto: magic code for protocol
+         * ver: version for protocol
+         * type: request/response/request oneway
+         * cmdcode: code for remoting command
+         * ver2:version for remoting command
+         * requestId: id of request
+         * codec: code for codec
+         * switch: function switch
+         * (req)timeout: request timeout.
+         * (resp)respStatus: response status
+         * classLen: length of request or response class name
+         * headerLen: length of header
+         * cotentLen: length of content
+         * className
+         * header
+         * content
+         * crc (optional)
+         */
+        byte ver = version(ctx);
+        // a request is wrapped when compression is on and the peer advertised it decodes compressed
+        // requests, a response only when its request was wrapped
+        boolean compressEnvelope;
+        if (cmd instanceof RequestCommand) {
+            compressEnvelope = this.compress
+                               && Boolean.TRUE.equals(ctx.channel()
+                                   .attr(RpcProtocolV2.PEER_COMPRESS).get());
+        } else {
+            compressEnvelope = cmd.getProtocolSwitch().isOn(
+                ProtocolSwitch.COMPRESS_SWITCH_INDEX);
+        }
+        compressEnvelope = compressEnvelope && cmd.getContentLength() > 0;
+        Compressor compressor = null;
+        if (compressEnvelope && this.compress
+            && cmd.getContentLength() >= this.compressThreshold) {
+            compressor = CompressorManager.getCompressor(this.compressorCode);
+        }
+        if (this.crc32c && cmd instanceof RequestCommand
+            && ver == RpcProtocolV2.PROTOCOL_VERSION_2
+            && cmd.getProtocolSwitch().isOn(ProtocolSwitch.CRC_SWITCH_INDEX)
+            && Boolean.TRUE.equals(ctx.channel().attr(RpcProtocolV2.PEER_CRC32C).get())) {
+            cmd.getProtocolSwitch().turnOn(ProtocolSwitch.CRC32C_SWITCH_INDEX);
+        }
+        byte protocolSwitch = cmd.getProtocolSwitch().toByte();
+        if (cmd instanceof ResponseCommand) {
+            // advertise that CRC32C checksummed requests are verified
+            protocolSwitch |= 1 << ProtocolSwitch.CRC32C_ACCEPT_SWITCH_INDEX;
+            // advertise that compressed requests are decoded
+            protocolSwitch |= 1 << ProtocolSwitch.COMPRESS_ACCEPT_SWITCH_INDEX;
+        }
+        if (compressEnvelope) {
+            protocolSwitch |= 1 << ProtocolSwitch.COMPRESS_SWITCH_INDEX;
+        } else {
+            protocolSwitch &= ~(1 << ProtocolSwitch.COMPRESS_SWITCH_INDEX);
+        }
+        // a response copies the switch of its request, never mark it chunked by mistake
+        protocolSwitch &= ~(1 << ProtocolSwitch.CHUNK_SWITCH_INDEX);
+        if (this.chunkSize > 0 && cmd instanceof RequestCommand) {
+            // chunked responses can be reassembled
+            protocolSwitch |= 1 << ProtocolSwitch.CHUNK_ACCEPT_SWITCH_INDEX;
+        }
+        // a response is only chunked when its request accepts chunked responses
+        if (chunkable && this.chunkSize > 0
+            && cmd.getContentLength() > this.chunkSize
+            && (cmd instanceof RequestCommand || cmd.getProtocolSwitch().isOn(
+                ProtocolSwitch.CHUNK_ACCEPT_SWITCH_INDEX))) {
+            encodeChunked(ctx, cmd, out, ver, protocolSwitch, compressor);
+            return;
+        }
+
+        CompositeByteBuf composite = null;
+        boolean contentComponent = false;
+        ByteBuf buf = out;
+        if (out instanceof CompositeByteBuf) {
+            composite = (CompositeByteBuf) out;
+            contentComponent = compressor == null && cmd.getContentBuf() != null
+                               && cmd.getContentLength() >= this.compositeThreshold;
+            buf = ctx.alloc().ioBuffer(
+                RpcProtocolV2.getRequestHeaderLength() + cmd.getClazzLength()
+                        + cmd.getHeaderLength()
+                        + (contentComponent ? 0 : cmd.getContentLength()));
+        }
+        int index = out.writerIndex();
+        ByteBuf content = null;
+        try {
+            short clazzLength = cmd.getClazzLength();
+            int classId = -1;
+            boolean classDefinition = false;
+            if (this.classDictionary) {
+                if (cmd instanceof RpcRequestCommand && clazzLength > 0) {
+                    RpcClassDictionary dictionary = ctx.channel()
+                        .attr(RpcClassDictionary.DICTIONARY).get();
+                    String requestClass = ((RpcRequestCommand) cmd).getRequestClass();
+                    if (dictionary != null && dictionary.isPeerSupported()
+                        && requestClass != null) {
+                        classId = dictionary.getId(requestClass);
+                        if (classId < 0) {
+                            // defined after the frame is encoded, see below
+                            classId = dictionary.nextId();
+                            classDefinition = classId >= 0;
+                        }
+                    }
+                } else if (cmd instanceof ResponseCommand) {
+                    // advertise that dictionary encoded requests are accepted
+                    protocolSwitch |= 1 << ProtocolSwitch.CLASS_DICT_SWITCH_INDEX;
+                }
+            }
+            if (classId >= 0) {
+                protocolSwitch |= 1 << ProtocolSwitch.CLASS_DICT_SWITCH_INDEX;
+                clazzLength = (short) (classDefinition ? clazzLength + 2 : 2);
+            }
+            writeHeader(buf, cmd, ver, protocolSwitch, clazzLength, cmd.getHeaderLength(),
+                compressEnvelope ? cmd.getContentLength() + 1 : cmd.getContentLength());
+            int contentLengthIndex = buf.writerIndex() - 4;
+            if (classId >= 0) {
+                buf.writeShort(classId);
+                if (classDefinition) {
+                    buf.writeBytes(cmd.getClazz());
                 }
-                out.writeByte(ver);
-                out.writeByte(cmd.getType());
-                out.writeShort(((RpcCommand) msg).getCmdCode().value());
-                out.writeByte(cmd.getVersion());
-                out.writeInt(cmd.getId());
-                out.writeByte(cmd.getSerializer());
-                out.writeByte(cmd.getProtocolSwitch().toByte());
-                if (cmd instanceof RequestCommand) {
-                    //timeout
-                    out.writeInt(((RequestCommand) cmd).getTimeout());
+            } else if (cmd.getClazzLength() > 0) {
+                buf.writeBytes(cmd.getClazz());
+            }
+            if (cmd.getHeaderLength() > 0) {
+                buf.writeBytes(cmd.getHeader());
+            }
+            if (cmd.getContentLength() > 0) {
+                ByteBuf contentBuf = cmd.getContentBuf();
+                if (compressEnvelope) {
+                    buf.writeByte(compressor == null ? CompressorManager.NONE
+                        : this.compressorCode);
                 }
-                if (cmd instanceof ResponseCommand) {
-                    //response status
-                    ResponseCommand response = (ResponseCommand) cmd;
-                    out.writeShort(response.getResponseStatus().getValue());
+                if (compressor != null) {
+                    // original length, compressed content, then fix the content length
+                    int contentIndex = buf.writerIndex();
+                    buf.writeInt(cmd.getContentLength());
+                    compressor.compress(contentBuf != null ? contentBuf : Unpooled
+                        .wrappedBuffer(cmd.getContent()), buf);
+                    cmd.release();
+                    buf.setInt(contentLengthIndex, buf.writerIndex() - contentIndex + 1);
+                } else if (contentComponent) {
+                    // take over the content buffer, it is released together with the composite
+                    content = contentBuf.retain();
+                    cmd.release();
+                } else if (contentBuf != null) {
+                    buf.writeBytes(contentBuf, contentBuf.readerIndex(),
+                        contentBuf.readableBytes());
+                    cmd.release();
+                } else {
+                    buf.writeBytes(cmd.getContent());
                 }
-                out.writeShort(cmd.getClazzLength());
-                out.writeShort(cmd.getHeaderLength());
-                out.writeInt(cmd.getContentLength());
-                if (cmd.getClazzLength() > 0) {
-                    out.writeBytes(cmd.getClazz());
+            }
+            if (composite != null) {
+                composite.addComponent(true, buf);
+                buf = null;
+                if (content != null) {
+                    composite.addComponent(true, content);
+                    content = null;
                 }
-                if (cmd.getHeaderLength() > 0) {
-                    out.writeBytes(cmd.getHeader());
+            }
+            if (ver == RpcProtocolV2.PROTOCOL_VERSION_2
+                && cmd.getProtocolSwitch().isOn(ProtocolSwitch.CRC_SWITCH_INDEX)) {
+                // compute the crc32 over the frame in place and write to out
+                int crc = crc(cmd, out, index, out.writerIndex() - index);
+                if (composite != null) {
+                    composite.addComponent(true, ctx.alloc().ioBuffer(4).writeInt(crc));
+                } else {
+                    out.writeInt(crc);
                 }
-                if (cmd.getContentLength() > 0) {
-                    out.writeBytes(cmd.getContent());
+            }
+            if (classDefinition) {
+                // the frame carrying the definition is complete, later requests only send the id
+                ctx.channel().attr(RpcClassDictionary.DICTIONARY).get()
+                    .define(((RpcRequestCommand) cmd).getRequestClass());
+            }
+        } finally {
+            if (composite != null && buf != null) {
+                buf.release();
+            }
+            if (content != null) {
+                content.release();
+            }
+        }
+    }
+
+    /**
+     * Encode the content of a command into several frames of at most chunkSize content bytes each,
+     * so that the peer reassembles the content without cumulating the whole frame.
+     * <p>
+     * Each frame has {@link ProtocolSwitch#CHUNK_SWITCH_INDEX} on and its content starts with the number of
+     * content bytes remaining after it, class name and header are only carried by the first frame.
+     * Every frame but the last is written to the channel on its own, with its content as a retained slice
+     * of the payload, the last frame is encoded into out.
+     */
+    private void encodeChunked(ChannelHandlerContext ctx, RpcCommand cmd, ByteBuf out, byte ver,
+                               byte protocolSwitch, Compressor compressor) throws Exception {
+        ByteBuf contentBuf = cmd.getContentBuf();
+        ByteBuf source = contentBuf != null ? contentBuf : Unpooled.wrappedBuffer(cmd
+            .getContent());
+        ByteBuf payload;
+        if (compressor != null) {
+            payload = ctx.alloc().heapBuffer(cmd.getContentLength() / 2);
+            payload.writeByte(this.compressorCode);
+            payload.writeInt(cmd.getContentLength());
+            compressor.compress(source.duplicate(), payload);
+        } else if (ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX, protocolSwitch)) {
+            payload = Unpooled.wrappedBuffer(
+                Unpooled.wrappedBuffer(new byte[] { CompressorManager.NONE }),
+                source.retainedSlice());
+        } else {
+            payload = source.retainedSlice();
+        }
+        protocolSwitch |= 1 << ProtocolSwitch.CHUNK_SWITCH_INDEX;
+        // class name is always sent in full in chunked frames
+        protocolSwitch &= ~(1 << ProtocolSwitch.CLASS_DICT_SWITCH_INDEX);
+        boolean crcOn = ver == RpcProtocolV2.PROTOCOL_VERSION_2
+                        && cmd.getProtocolSwitch().isOn(ProtocolSwitch.CRC_SWITCH_INDEX);
+        try {
+            boolean first = true;
+            while (first || payload.isReadable()) {
+                int pieceLength = Math.min(this.chunkSize, payload.readableBytes());
+                short clazzLength = first ? cmd.getClazzLength() : 0;
+                short headerLength = first ? cmd.getHeaderLength() : 0;
+                ByteBuf head = ctx.alloc().ioBuffer(
+                    RpcProtocolV2.getRequestHeaderLength() + clazzLength + headerLength + 4);
+                writeHeader(head, cmd, ver, protocolSwitch, clazzLength, headerLength,
+                    pieceLength + 4);
+                if (clazzLength > 0) {
+                    head.writeBytes(cmd.getClazz());
+                }
+                if (headerLength > 0) {
+                    head.writeBytes(cmd.getHeader());
                 }
-                if (ver == RpcProtocolV2.PROTOCOL_VERSION_2
-                        && cmd.getProtocolSwitch().isOn(ProtocolSwitch.CRC_SWITCH_INDEX)) {
-                    // compute the crc32 and write to out
-                    byte[] frame = new byte[out.readableBytes()];
-                    out.getBytes(index, frame);
-                    out.writeInt(CrcUtil.crc32(frame));
+                head.writeInt(payload.readableBytes() - pieceLength);
+                CompositeByteBuf frame = ctx.alloc().compositeBuffer(3).addComponent(true, head);
+                try {
+                    if (pieceLength > 0) {
+                        frame.addComponent(true, payload.readRetainedSlice(pieceLength));
+                    }
+                    if (crcOn) {
+                        int crc = crc(cmd, frame, 0, frame.writerIndex());
+                        frame.addComponent(true, ctx.alloc().ioBuffer(4).writeInt(crc));
+                    }
+                    first = false;
+                    if (payload.isReadable()) {
+                        ctx.write(frame);
+                    } else if (out instanceof CompositeByteBuf) {
+                        ((CompositeByteBuf) out).addComponent(true, frame);
+                    } else {
+                        out.writeBytes(frame);
+                        frame.release();
+                    }
+                    frame = null;
+                } finally {
+                    if (frame != null) {
+                        frame.release();
+                    }
                 }
+            }
+        } finally {
+            payload.release();
+            cmd.release();
+        }
+    }
+
+    /**
+     * Encode the commands of a batch into the content of one batch frame, none of them is chunked since the
+     * frames of a chunked command would be written apart from the batch.
+     * <p>
+     * The batch frame has no class name, header nor crc, each command frame it carries has its own crc.
+     */
+    private void encodeBatch(ChannelHandlerContext ctx, RpcCommandBatch batch, ByteBuf out)
+                                                                                           throws Exception {
+        ByteBuf body = ctx.alloc().ioBuffer();
+        ByteBuf head = null;
+        try {
+            for (RpcCommand cmd : batch.getCommands()) {
+                encodeCommand(ctx, cmd, body, false);
+            }
+            boolean composite = out instanceof CompositeByteBuf;
+            head = composite ? ctx.alloc().ioBuffer(RpcProtocolV2.getRequestHeaderLength()) : out;
+            head.writeByte(RpcProtocolV2.PROTOCOL_CODE);
+            head.writeByte(version(ctx));
+            head.writeByte(batch.isResponse() ? RpcCommandType.RESPONSE : RpcCommandType.REQUEST);
+            head.writeShort(RpcCommandCode.RPC_BATCH.value());
+            head.writeByte(0x1);// command version
+            head.writeInt(0);
+            head.writeByte(0);
+            head.writeByte(0);
+            if (batch.isResponse()) {
+                head.writeShort(ResponseStatus.SUCCESS.getValue());
             } else {
-                String warnMsg = "msg type [" + msg.getClass() + "] is not subclass of RpcCommand";
-                logger.warn(warnMsg);
+                head.writeInt(0);
             }
-        } catch (Exception e) {
-            logger.error("Exception caught!", e);
-            throw e;
+            head.writeShort(0);
+            head.writeShort(0);
+            head.writeInt(body.readableBytes());
+            if (composite) {
+                ((CompositeByteBuf) out).addComponent(true, head).addComponent(true, body);
+                head = null;
+                body = null;
+            } else {
+                head = null;
+                out.writeBytes(body);
+            }
+        } finally {
+            if (head != null) {
+                head.release();
+            }
+            if (body != null) {
+                body.release();
+            }
+        }
+    }
+
+    private byte version(ChannelHandlerContext ctx) {
+        Attribute<Byte> version = ctx.channel().attr(Connection.VERSION);
+        if (version != null && version.get() != null) {
+            return version.get();
+        }
+        return RpcProtocolV2.PROTOCOL_VERSION_1;
+    }
+
+    private void writeHeader(ByteBuf buf, RpcCommand cmd, byte ver, byte protocolSwitch,
+                             short clazzLength, short headerLength, int contentLength) {
+        buf.writeByte(RpcProtocolV2.PROTOCOL_CODE);
+        buf.writeByte(ver);
+        buf.writeByte(cmd.getType());
+        buf.writeShort(cmd.getCmdCode().value());
+        buf.writeByte(cmd.getVersion());
+        buf.writeInt(cmd.getId());
+        buf.writeByte(cmd.getSerializer());
+        buf.writeByte(protocolSwitch);
+        if (cmd instanceof RequestCommand) {
+            //timeout
+            buf.writeInt(((RequestCommand) cmd).getTimeout());
+        }
+        if (cmd instanceof ResponseCommand) {
+            //response status
+            ResponseCommand response = (ResponseCommand) cmd;
+            buf.writeShort(response.getResponseStatus().getValue());
         }
+        buf.writeShort(clazzLength);
+        buf.writeShort(headerLength);
+        buf.writeInt(contentLength);
+    }
+
+    private int crc(RpcCommand cmd, ByteBuf buf, int index, int length) {
+        return cmd.getProtocolSwitch().isOn(ProtocolSwitch.CRC32C_SWITCH_INDEX) ? CrcUtil.crc32c(
+            buf, index, length) : CrcUtil.crc32(buf, index, length);
     }
 }
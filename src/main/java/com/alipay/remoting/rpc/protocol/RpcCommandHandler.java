@@ -150,6 +150,8 @@ public class RpcCommandHandler implements CommandHandler {
      */
     private void processExceptionForSingleCommand(RemotingContext ctx, Object msg, Throwable t) {
         final int id = ((RpcCommand) msg).getId();
+        // the command will not be processed any more, release its retained content
+        ((RpcCommand) msg).release();
         final String emsg = "Exception caught when processing "
                 + ((msg instanceof RequestCommand) ? "request, id=" : "response, id=");
         logger.warn(emsg + id, t);
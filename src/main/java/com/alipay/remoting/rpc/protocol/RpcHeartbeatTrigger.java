@@ -79,7 +79,7 @@ public class RpcHeartbeatTrigger implements HeartbeatTrigger {
             if (!heartbeatSwitch) {
                 return;
             }
-            final HeartbeatCommand heartbeat = new HeartbeatCommand();
+            final HeartbeatCommand heartbeat = new HeartbeatCommand(conn.nextInvokeId());
 
             final InvokeFuture future = new DefaultInvokeFuture(heartbeat.getId(),
                     new InvokeCallbackListener() {
@@ -23,6 +23,7 @@ import com.alipay.remoting.CommandHandler;
 import com.alipay.remoting.HeartbeatTrigger;
 import com.alipay.remoting.Protocol;
 import com.alipay.remoting.rpc.RpcCommandFactory;
+import io.netty.util.AttributeKey;
 
 /**
  * Request command protocol for v2
@@ -77,6 +78,24 @@ public class RpcProtocolV2 implements Protocol {
      */
     public static final byte PROTOCOL_VERSION_2 = (byte) 2;
 
+    /**
+     * whether the peer of a channel verifies CRC32C checksummed requests,
+     * see {@link com.alipay.remoting.config.switches.ProtocolSwitch#CRC32C_ACCEPT_SWITCH_INDEX}
+     */
+    public static final AttributeKey<Boolean> PEER_CRC32C = AttributeKey.valueOf("peerCrc32c");
+
+    /**
+     * whether the peer of a channel decodes compressed requests,
+     * see {@link com.alipay.remoting.config.switches.ProtocolSwitch#COMPRESS_ACCEPT_SWITCH_INDEX}
+     */
+    public static final AttributeKey<Boolean> PEER_COMPRESS = AttributeKey.valueOf("peerCompress");
+
+    /**
+     * whether the peer of a channel sends batch frames, so that the responses to it are batched as well,
+     * see {@link RpcCommandCode#RPC_BATCH}
+     */
+    public static final AttributeKey<Boolean> PEER_BATCH = AttributeKey.valueOf("peerBatch");
+
     /**
      * in contrast to protocol v1,
      * one more byte is used as protocol version,
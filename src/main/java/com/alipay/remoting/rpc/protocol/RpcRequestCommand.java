@@ -23,7 +23,6 @@ import com.alipay.remoting.config.Configs;
 import com.alipay.remoting.exception.DeserializationException;
 import com.alipay.remoting.exception.SerializationException;
 import com.alipay.remoting.rpc.RequestCommand;
-import com.alipay.remoting.serialization.SerializerManager;
 import com.alipay.remoting.util.IDGenerator;
 
 import java.io.UnsupportedEncodingException;
@@ -65,6 +64,18 @@ public class RpcRequestCommand extends RequestCommand {
         this.setId(IDGenerator.nextId());
     }
 
+    /**
+     * create request command with the given id and request object
+     *
+     * @param request request object
+     * @param id      request id
+     */
+    public RpcRequestCommand(Object request, int id) {
+        super(RpcCommandCode.RPC_REQUEST);
+        this.requestObject = request;
+        this.setId(id);
+    }
+
     @Override
     public void serializeClazz() throws SerializationException {
         if (this.requestClass != null) {
@@ -129,8 +140,7 @@ public class RpcRequestCommand extends RequestCommand {
                     return;
                 }
 
-                this.setContent(SerializerManager.getSerializer(this.getSerializer()).serialize(
-                        this.requestObject));
+                this.serializeContentObject(this.requestObject);
             } catch (SerializationException e) {
                 throw e;
             } catch (Exception e) {
@@ -148,10 +158,7 @@ public class RpcRequestCommand extends RequestCommand {
                         && this.getCustomSerializer().deserializeContent(this)) {
                     return;
                 }
-                if (this.getContent() != null) {
-                    this.setRequestObject(SerializerManager.getSerializer(this.getSerializer())
-                            .deserialize(this.getContent(), this.requestClass));
-                }
+                this.setRequestObject(this.deserializeContentObject(this.requestClass));
             } catch (DeserializationException e) {
                 throw e;
             } catch (Exception e) {
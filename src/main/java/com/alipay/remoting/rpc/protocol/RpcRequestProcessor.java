@@ -22,20 +22,25 @@ import com.alipay.remoting.InvokeContext;
 import com.alipay.remoting.RemotingCommand;
 import com.alipay.remoting.RemotingContext;
 import com.alipay.remoting.ResponseStatus;
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.exception.DeserializationException;
 import com.alipay.remoting.exception.SerializationException;
 import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.rpc.RpcCommand;
 import com.alipay.remoting.rpc.RpcCommandType;
 import com.alipay.remoting.util.RemotingUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Process Rpc request.
@@ -49,6 +54,12 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
      */
     private static final Logger logger = BoltLoggerFactory.getLogger("RpcRemoting");
 
+    /**
+     * batcher of the responses of a channel whose peer sends batched requests
+     */
+    private static final AttributeKey<RpcCommandBatcher> RESPONSE_BATCHER = AttributeKey
+                                                                              .valueOf("responseBatcher");
+
     /**
      * Default constructor.
      */
@@ -82,6 +93,7 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
         if (userProcessor == null) {
             String errMsg = "No user processor found for request: " + cmd.getRequestClass();
             logger.error(errMsg);
+            cmd.release();
             sendResponseIfNecessary(ctx, cmd.getType(), this.getCommandFactory()
                     .createExceptionResponse(cmd.getId(), errMsg));
             return;// must end process
@@ -120,8 +132,30 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
             executor = (this.getExecutor() == null ? defaultExecutor : this.getExecutor());
         }
 
-        // use the final executor dispatch process task
-        executor.execute(new ProcessTask(ctx, cmd));
+        // reject at once if the executor is overloaded
+        CoDelAdmissionController admissionController = userProcessor.getAdmissionController();
+        if (admissionController != null
+            && !admissionController.admit(executor, System.currentTimeMillis())) {
+            rejectAsBusy(ctx, cmd);
+            return;
+        }
+
+        AdaptiveConcurrencyLimiter concurrencyLimiter = userProcessor.getConcurrencyLimiter();
+        if (concurrencyLimiter == null) {
+            // use the final executor dispatch process task
+            executor.execute(new ProcessTask(ctx, cmd));
+            return;
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            rejectAsBusy(ctx, cmd);
+            return;
+        }
+        try {
+            executor.execute(new ProcessTask(ctx, cmd, concurrencyLimiter));
+        } catch (RejectedExecutionException e) {
+            concurrencyLimiter.onDrop();
+            throw e;
+        }
     }
 
     /**
@@ -130,19 +164,39 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
     @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public void doProcess(final RemotingContext ctx, RpcRequestCommand cmd) throws Exception {
+        doProcess(ctx, cmd, null);
+    }
+
+    /**
+     * Process the request of a task dispatched to the executor.
+     *
+     * @param ctx  remoting context
+     * @param cmd  rpc request command
+     * @param task task holding a permit of the concurrency limiter, null if none
+     */
+    private void doProcess(final RemotingContext ctx, RpcRequestCommand cmd, ProcessTask task) {
         long currentTimestamp = System.currentTimeMillis();
 
         preProcessRemotingContext(ctx, cmd, currentTimestamp);
         if (ctx.isTimeoutDiscard() && ctx.isRequestTimeout()) {
             timeoutLog(cmd, currentTimestamp, ctx);// do some log
+            cmd.release();
             return;// then, discard this request
         }
+        CoDelAdmissionController admissionController = ctx.getUserProcessor(
+            cmd.getRequestClass()).getAdmissionController();
+        if (admissionController != null
+            && !admissionController.onDequeue(currentTimestamp - cmd.getArriveTime(),
+                currentTimestamp)) {
+            rejectAsBusy(ctx, cmd);
+            return;
+        }
         debugLog(ctx, cmd, currentTimestamp);
         // decode request all
         if (!deserializeRequestCommand(ctx, cmd, RpcDeserializeLevel.DESERIALIZE_ALL)) {
             return;
         }
-        dispatchToUserProcessor(ctx, cmd);
+        dispatchToUserProcessor(ctx, cmd, task);
     }
 
     /**
@@ -180,7 +234,8 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
                         .createExceptionResponse(id, t, errMsg);
             }
 
-            ctx.writeAndFlush(serializedResponse).addListener(new ChannelFutureListener() {
+            final RemotingCommand sentResponse = serializedResponse;
+            writeResponse(ctx, serializedResponse).addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
                     if (logger.isDebugEnabled()) {
@@ -191,6 +246,10 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
                                 .channel()));
                     }
                     if (!future.isSuccess()) {
+                        if (sentResponse instanceof RpcCommand) {
+                            // the encoder may not have released the content buffer
+                            ((RpcCommand) sentResponse).release();
+                        }
                         logger.error(
                                 "Rpc response send failed! id="
                                         + id
@@ -210,30 +269,70 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
     }
 
     /**
-     * dispatch request command to user processor
+     * Write a response, batched if the peer sends batched requests.
      *
      * @param ctx remoting context
-     * @param cmd rpc request command
+     * @param response serialized response
+     * @return the future of the write
      */
-    private void dispatchToUserProcessor(RemotingContext ctx, RpcRequestCommand cmd) {
+    private ChannelFuture writeResponse(RemotingContext ctx, RemotingCommand response) {
+        Channel channel = ctx.getChannelContext().channel();
+        if (!(response instanceof RpcCommand)
+            || !Boolean.TRUE.equals(channel.attr(RpcProtocolV2.PEER_BATCH).get())) {
+            return ctx.writeAndFlush(response);
+        }
+        Attribute<RpcCommandBatcher> attr = channel.attr(RESPONSE_BATCHER);
+        RpcCommandBatcher batcher = attr.get();
+        if (batcher == null) {
+            RpcCommandBatcher created = new RpcCommandBatcher(ConfigManager.invoke_batch_window(),
+                ConfigManager.invoke_batch_max_size(), ConfigManager.invoke_batch_max_bytes());
+            batcher = attr.setIfAbsent(created);
+            if (batcher == null) {
+                batcher = created;
+            }
+        }
+        return batcher.write(channel, (RpcCommand) response);
+    }
+
+    /**
+     * dispatch request command to user processor
+     *
+     * @param ctx  remoting context
+     * @param cmd  rpc request command
+     * @param task task holding a permit of the concurrency limiter, null if none
+     */
+    private void dispatchToUserProcessor(RemotingContext ctx, RpcRequestCommand cmd,
+                                         ProcessTask task) {
         final int id = cmd.getId();
         final byte type = cmd.getType();
         // processor here must not be null, for it have been checked before
         UserProcessor processor = ctx.getUserProcessor(cmd.getRequestClass());
         if (processor instanceof AsyncUserProcessor) {
+            // the permit of a request expecting a response is returned when the response is sent
+            ProcessTask responseTask = null;
+            if (task != null && type != RpcCommandType.REQUEST_ONEWAY) {
+                responseTask = task;
+                responseTask.handedOff = true;
+            }
             try {
                 processor.handleRequest(processor.preHandleRequest(ctx, cmd.getRequestObject()),
-                        new RpcAsyncContext(ctx, cmd, this), cmd.getRequestObject());
+                        new RpcAsyncContext(ctx, cmd, this, responseTask), cmd.getRequestObject());
             } catch (RejectedExecutionException e) {
                 logger
                         .warn("RejectedExecutionException occurred when do ASYNC process in RpcRequestProcessor");
                 sendResponseIfNecessary(ctx, type, this.getCommandFactory()
                         .createExceptionResponse(id, ResponseStatus.SERVER_THREADPOOL_BUSY));
+                if (responseTask != null) {
+                    responseTask.complete();
+                }
             } catch (Throwable t) {
                 String errMsg = "AYSNC process rpc request failed in RpcRequestProcessor, id=" + id;
                 logger.error(errMsg, t);
                 sendResponseIfNecessary(ctx, type, this.getCommandFactory()
                         .createExceptionResponse(id, t, errMsg));
+                if (responseTask != null) {
+                    responseTask.complete();
+                }
             }
         } else {
             try {
@@ -258,12 +357,13 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
     }
 
     /**
-     * deserialize request command
+     * deserialize request command, the retained content buffer will be released
+     * if all parts have been deserialized or exception caught.
      *
      * @return true if deserialize success; false if exception catched
      */
     private boolean deserializeRequestCommand(RemotingContext ctx, RpcRequestCommand cmd, int level) {
-        boolean result;
+        boolean result = false;
         try {
             cmd.deserialize(level);
             result = true;
@@ -282,6 +382,10 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
             sendResponseIfNecessary(ctx, cmd.getType(), this.getCommandFactory()
                     .createExceptionResponse(cmd.getId(), t, errMsg));
             result = false;
+        } finally {
+            if (!result || level >= RpcDeserializeLevel.DESERIALIZE_ALL) {
+                cmd.release();
+            }
         }
         return result;
     }
@@ -302,6 +406,20 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
                 currentTimestamp - cmd.getArriveTime());
     }
 
+    /**
+     * reject a request by the admission controller or the concurrency limiter of its user processor,
+     * the client is told the server is busy.
+     */
+    private void rejectAsBusy(RemotingContext ctx, RpcRequestCommand cmd) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rpc request id[{}] rejected as server busy, from remoteAddr[{}].",
+                cmd.getId(), RemotingUtil.parseRemoteAddress(ctx.getChannelContext().channel()));
+        }
+        cmd.release();
+        sendResponseIfNecessary(ctx, cmd.getType(), this.getCommandFactory()
+            .createExceptionResponse(cmd.getId(), ResponseStatus.SERVER_THREADPOOL_BUSY));
+    }
+
     /**
      * print some log when request timeout and discarded in io thread.
      */
@@ -348,30 +466,86 @@ public class RpcRequestProcessor extends AbstractRemotingProcessor<RpcRequestCom
      * @author xiaomin.cxm
      * @version $Id: RpcRequestProcessor.java, v 0.1 May 19, 2016 4:01:28 PM xiaomin.cxm Exp $
      */
-    class ProcessTask implements Runnable {
+    class ProcessTask implements DeadlineThreadPoolExecutor.DeadlineTask {
 
         RemotingContext ctx;
         RpcRequestCommand msg;
+        AdaptiveConcurrencyLimiter concurrencyLimiter;
+        long dispatchTime;
+        int dispatchInflight;
+        /** whether the permit is returned by the async context instead of at the end of the task */
+        boolean handedOff;
+        final AtomicBoolean completed = new AtomicBoolean();
 
         public ProcessTask(RemotingContext ctx, RpcRequestCommand msg) {
             this.ctx = ctx;
             this.msg = msg;
         }
 
+        public ProcessTask(RemotingContext ctx, RpcRequestCommand msg,
+                           AdaptiveConcurrencyLimiter concurrencyLimiter) {
+            this(ctx, msg);
+            this.concurrencyLimiter = concurrencyLimiter;
+            this.dispatchTime = System.nanoTime();
+            this.dispatchInflight = concurrencyLimiter.getInflight();
+        }
+
         /**
          * @see java.lang.Runnable#run()
          */
         @Override
         public void run() {
             try {
-                RpcRequestProcessor.this.doProcess(ctx, msg);
+                RpcRequestProcessor.this.doProcess(ctx, msg, this);
             } catch (Throwable e) {
                 //protect the thread running this task
                 String remotingAddress = RemotingUtil.parseRemoteAddress(ctx.getChannelContext()
                         .channel());
                 logger.error("Exception caught when process rpc request command in RpcRequestProcessor, Id="
                         + msg.getId() + "! Invoke source address is [" + remotingAddress + "].", e);
+            } finally {
+                if (!handedOff) {
+                    complete();
+                }
+            }
+        }
+
+        /**
+         * Return the permit of the request and sample its time, only the first call takes effect.
+         */
+        void complete() {
+            if (concurrencyLimiter != null && completed.compareAndSet(false, true)) {
+                concurrencyLimiter.onComplete(System.nanoTime() - dispatchTime, dispatchInflight);
+            }
+        }
+
+        /**
+         * The deadline of a request is its arrive time plus timeout, oneway requests never expire.
+         *
+         * @see DeadlineThreadPoolExecutor.DeadlineTask#getDeadline()
+         */
+        @Override
+        public long getDeadline() {
+            if (msg.getTimeout() <= 0 || msg.getType() == RpcCommandType.REQUEST_ONEWAY) {
+                return Long.MAX_VALUE;
+            }
+            return msg.getArriveTime() + msg.getTimeout();
+        }
+
+        /**
+         * @see DeadlineThreadPoolExecutor.DeadlineTask#discardExpired()
+         */
+        @Override
+        public boolean discardExpired() {
+            if (!ctx.isTimeoutDiscard()) {
+                return false;
+            }
+            timeoutLog(msg, System.currentTimeMillis(), ctx);
+            msg.release();
+            if (concurrencyLimiter != null && completed.compareAndSet(false, true)) {
+                concurrencyLimiter.onDrop();
             }
+            return true;
         }
 
     }
@@ -23,7 +23,6 @@ import com.alipay.remoting.config.Configs;
 import com.alipay.remoting.exception.DeserializationException;
 import com.alipay.remoting.exception.SerializationException;
 import com.alipay.remoting.rpc.ResponseCommand;
-import com.alipay.remoting.serialization.SerializerManager;
 
 import java.io.UnsupportedEncodingException;
 
@@ -113,8 +112,7 @@ public class RpcResponseCommand extends ResponseCommand {
                     return;
                 }
 
-                this.setContent(SerializerManager.getSerializer(this.getSerializer()).serialize(
-                        this.responseObject));
+                this.serializeContentObject(this.responseObject);
             } catch (SerializationException e) {
                 throw e;
             } catch (Exception e) {
@@ -132,10 +130,7 @@ public class RpcResponseCommand extends ResponseCommand {
                         && this.getCustomSerializer().deserializeContent(this, invokeContext)) {
                     return;
                 }
-                if (this.getContent() != null) {
-                    this.setResponseObject(SerializerManager.getSerializer(this.getSerializer())
-                            .deserialize(this.getContent(), this.responseClass));
-                }
+                this.setResponseObject(this.deserializeContentObject(this.responseClass));
             } catch (DeserializationException e) {
                 throw e;
             } catch (Exception e) {
@@ -21,7 +21,10 @@ import com.alipay.remoting.Connection;
 import com.alipay.remoting.InvokeFuture;
 import com.alipay.remoting.RemotingCommand;
 import com.alipay.remoting.RemotingContext;
+import com.alipay.remoting.ResponseStatus;
 import com.alipay.remoting.log.BoltLoggerFactory;
+import com.alipay.remoting.rpc.ResponseCommand;
+import com.alipay.remoting.rpc.RpcCommand;
 import com.alipay.remoting.util.RemotingUtil;
 import org.slf4j.Logger;
 
@@ -66,8 +69,12 @@ public class RpcResponseProcessor extends AbstractRemotingProcessor<RemotingComm
                     oldClassLoader = Thread.currentThread().getContextClassLoader();
                     Thread.currentThread().setContextClassLoader(future.getAppClassLoader());
                 }
-                future.putResponse(cmd);
+                // cancel the timeout first, the response completes the future of an async invocation directly
                 future.cancelTimeout();
+                conn.recordResponseLatency(future);
+                conn.recordInvokeResult(future,
+                    ((ResponseCommand) cmd).getResponseStatus() == ResponseStatus.SERVER_THREADPOOL_BUSY);
+                future.putResponse(cmd);
                 try {
                     future.executeInvokeCallback();
                 } catch (Exception e) {
@@ -79,6 +86,9 @@ public class RpcResponseProcessor extends AbstractRemotingProcessor<RemotingComm
                         .warn("Cannot find InvokeFuture, maybe already timeout, id={}, from={} ",
                                 cmd.getId(),
                                 RemotingUtil.parseRemoteAddress(ctx.getChannelContext().channel()));
+                if (cmd instanceof RpcCommand) {
+                    ((RpcCommand) cmd).release();
+                }
             }
         } finally {
             if (null != oldClassLoader) {
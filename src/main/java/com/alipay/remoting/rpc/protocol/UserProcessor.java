@@ -89,6 +89,24 @@ public interface UserProcessor<T> {
      */
     boolean timeoutDiscard();
 
+    /**
+     * Get the queue delay based admission controller of the requests processed in executor.
+     *
+     * @return admission controller, null if no admission control
+     */
+    default CoDelAdmissionController getAdmissionController() {
+        return null;
+    }
+
+    /**
+     * Get the adaptive limiter of the requests processed in executor at the same time.
+     *
+     * @return concurrency limiter, null if no concurrency limit
+     */
+    default AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return null;
+    }
+
     /**
      * Use this method to get the executor selector.
      *
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.serialization;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Serializer working on {@link ByteBuf} directly, so the content needs not be materialized as a byte array.
+ * <p>
+ * Stream based implementations may bridge with {@link io.netty.buffer.ByteBufOutputStream} and
+ * {@link io.netty.buffer.ByteBufInputStream}. A plain {@link Serializer} registered in {@link SerializerManager}
+ * is adapted by {@link ByteBufSerializerAdapter}.
+ */
+public interface ByteBufSerializer extends Serializer {
+    /**
+     * Encode object into the buffer.
+     *
+     * @param obj target object
+     * @param out buffer to write to, not released by the serializer
+     */
+    void serialize(final Object obj, ByteBuf out) throws CodecException;
+
+    /**
+     * Decode the readable bytes of the buffer into Object.
+     *
+     * @param in       serialized data, not released by the serializer
+     * @param classOfT class of original data
+     */
+    <T> T deserialize(ByteBuf in, String classOfT) throws CodecException;
+}
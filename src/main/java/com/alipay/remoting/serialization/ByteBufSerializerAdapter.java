@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.serialization;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Adapt a byte array based {@link Serializer} to {@link ByteBufSerializer}, bytes are copied between the
+ * buffer and the array.
+ */
+public class ByteBufSerializerAdapter implements ByteBufSerializer {
+
+    private final Serializer serializer;
+
+    public ByteBufSerializerAdapter(Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) throws CodecException {
+        out.writeBytes(this.serializer.serialize(obj));
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuf in, String classOfT) throws CodecException {
+        byte[] data;
+        int length = in.readableBytes();
+        if (in.hasArray() && in.arrayOffset() + in.readerIndex() == 0 && in.array().length == length) {
+            // the buffer wraps exactly one array
+            data = in.array();
+            in.skipBytes(length);
+        } else {
+            data = new byte[length];
+            in.readBytes(data);
+        }
+        return this.serializer.deserialize(data, classOfT);
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws CodecException {
+        return this.serializer.serialize(obj);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, String classOfT) throws CodecException {
+        return this.serializer.deserialize(data, classOfT);
+    }
+
+    /**
+     * Getter method for property <tt>serializer</tt>.
+     *
+     * @return the adapted serializer
+     */
+    public Serializer getSerializer() {
+        return serializer;
+    }
+}
@@ -0,0 +1,775 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.serialization;
+
+import com.alipay.remoting.exception.CodecException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary serializer without any dependency.
+ * <p>
+ * Values are written with a one byte tag, integers in zigzag varint, enums by ordinal, and objects as their fields
+ * in a fixed order without field names. Primitive fields are written without tags. Each class name is written once per message,
+ * later occurrences refer to it by index. Fields are accessed by cached reflection descriptors.
+ * <p>
+ * Notice:
+ * <ul>
+ * <li>Both sides must have the same class definitions, a mismatch of fields or enum constants is detected by
+ * a fingerprint and fails the deserialization. There is no schema evolution.</li>
+ * <li>Classes must implement {@link Serializable} and have a no-arg constructor. Throwables and other
+ * serializable java.* classes not supported natively are written with java serialization.</li>
+ * <li>Circular references are not supported, the nesting depth is limited.</li>
+ * <li>Collections and maps are read as the declared field type if it is concrete, otherwise as
+ * {@link ArrayList}, {@link HashSet}, {@link TreeSet}, {@link HashMap} or {@link TreeMap}.</li>
+ * </ul>
+ */
+public class CompactSerializer implements ByteBufSerializer {
+
+    private static final Charset                               UTF8            = Charset.forName("UTF-8");
+
+    private static final byte                                  NULL            = 0;
+    private static final byte                                  TRUE            = 1;
+    private static final byte                                  FALSE           = 2;
+    private static final byte                                  BYTE            = 3;
+    private static final byte                                  SHORT           = 4;
+    private static final byte                                  INT             = 5;
+    private static final byte                                  LONG            = 6;
+    private static final byte                                  FLOAT           = 7;
+    private static final byte                                  DOUBLE          = 8;
+    private static final byte                                  CHAR            = 9;
+    private static final byte                                  STRING          = 10;
+    private static final byte                                  BYTES           = 11;
+    private static final byte                                  LIST            = 12;
+    private static final byte                                  SET             = 13;
+    private static final byte                                  MAP             = 14;
+    private static final byte                                  ARRAY           = 15;
+    private static final byte                                  OBJECT          = 16;
+    private static final byte                                  ENUM            = 17;
+    private static final byte                                  DATE            = 18;
+    private static final byte                                  BIG_INTEGER     = 19;
+    private static final byte                                  BIG_DECIMAL     = 20;
+    private static final byte                                  JAVA            = 21;
+    /** object of exactly the declared type, no class is written */
+    private static final byte                                  DECLARED_OBJECT = 22;
+    /** double which is exactly representable as a float */
+    private static final byte                                  FLOAT_DOUBLE    = 23;
+    /** tags from SHORT_STRING carry the utf-8 length of a string less than 32 bytes */
+    private static final int                                   SHORT_STRING    = 0x20;
+    /** tags from SMALL_INT carry an int from -16 to 47 */
+    private static final int                                   SMALL_INT       = 0x40;
+    private static final int                                   SMALL_INT_BIAS  = 0x50;
+    private static final int                                   TAG_LIMIT       = 0x80;
+
+    /** max nesting depth of values */
+    private static final int                                   MAX_DEPTH       = 256;
+
+    private static final Map<String, Class<?>>                 PRIMITIVES      = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> clazz : new Class<?>[] { boolean.class, byte.class, short.class, int.class,
+                long.class, float.class, double.class, char.class }) {
+            PRIMITIVES.put(clazz.getName(), clazz);
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, ClassDescriptor> descriptors     = new ConcurrentHashMap<Class<?>, ClassDescriptor>();
+
+    private final ConcurrentHashMap<Class<?>, EnumDescriptor>  enumDescriptors = new ConcurrentHashMap<Class<?>, EnumDescriptor>();
+
+    private final ConcurrentHashMap<String, Class<?>>          classes         = new ConcurrentHashMap<String, Class<?>>();
+
+    /**
+     * @see com.alipay.remoting.serialization.Serializer#serialize(java.lang.Object)
+     */
+    @Override
+    public byte[] serialize(Object obj) throws CodecException {
+        ByteBuf buf = Unpooled.buffer(256);
+        serialize(obj, buf);
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    /**
+     * @see com.alipay.remoting.serialization.Serializer#deserialize(byte[], java.lang.String)
+     */
+    @Override
+    public <T> T deserialize(byte[] data, String classOfT) throws CodecException {
+        return deserialize(Unpooled.wrappedBuffer(data), classOfT);
+    }
+
+    /**
+     * @see com.alipay.remoting.serialization.ByteBufSerializer#serialize(java.lang.Object, io.netty.buffer.ByteBuf)
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) throws CodecException {
+        try {
+            new Writer(out).writeValue(obj, Object.class, 0);
+        } catch (CodecException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CodecException("Exception occurred when compact serializer encode!", e);
+        }
+    }
+
+    /**
+     * @see com.alipay.remoting.serialization.ByteBufSerializer#deserialize(io.netty.buffer.ByteBuf, java.lang.String)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T deserialize(ByteBuf in, String classOfT) throws CodecException {
+        try {
+            return (T) new Reader(in).readValue(Object.class, 0);
+        } catch (CodecException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CodecException("Exception occurred when compact serializer decode!", e);
+        }
+    }
+
+    private ClassDescriptor getDescriptor(Class<?> clazz) throws CodecException {
+        ClassDescriptor descriptor = this.descriptors.get(clazz);
+        if (descriptor == null) {
+            descriptor = new ClassDescriptor(clazz);
+            ClassDescriptor old = this.descriptors.putIfAbsent(clazz, descriptor);
+            if (old != null) {
+                descriptor = old;
+            }
+        }
+        return descriptor;
+    }
+
+    private EnumDescriptor getEnumDescriptor(Class<?> enumClass) throws CodecException {
+        EnumDescriptor descriptor = this.enumDescriptors.get(enumClass);
+        if (descriptor == null) {
+            descriptor = new EnumDescriptor(enumClass);
+            EnumDescriptor old = this.enumDescriptors.putIfAbsent(enumClass, descriptor);
+            if (old != null) {
+                descriptor = old;
+            }
+        }
+        return descriptor;
+    }
+
+    private Class<?> loadClass(String name) throws CodecException {
+        Class<?> clazz = this.classes.get(name);
+        if (clazz == null) {
+            clazz = PRIMITIVES.get(name);
+        }
+        if (clazz == null) {
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                clazz = Class.forName(name, false,
+                    loader != null ? loader : CompactSerializer.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new CodecException("Class not found: " + name, e);
+            }
+            this.classes.putIfAbsent(name, clazz);
+        }
+        return clazz;
+    }
+
+    private static boolean isNative(Class<?> clazz) {
+        return clazz.getName().startsWith("java.");
+    }
+
+    /**
+     * Cached fields and constructor of a class, fields are sorted by name from the top most super class.
+     */
+    private static class ClassDescriptor {
+        private final Constructor<?> constructor;
+        private final Field[]        fields;
+        private final int            fingerprint;
+
+        ClassDescriptor(Class<?> clazz) throws CodecException {
+            if (!Serializable.class.isAssignableFrom(clazz)) {
+                throw new CodecException("Class " + clazz.getName()
+                                         + " must implement java.io.Serializable");
+            }
+            try {
+                this.constructor = clazz.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new CodecException("Class " + clazz.getName()
+                                         + " must have a no-arg constructor", e);
+            }
+            List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            List<Field> fieldList = new ArrayList<Field>();
+            StringBuilder signature = new StringBuilder();
+            for (Class<?> c : hierarchy) {
+                Field[] declared = c.getDeclaredFields();
+                Arrays.sort(declared, new Comparator<Field>() {
+                    @Override
+                    public int compare(Field f1, Field f2) {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                });
+                for (Field field : declared) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                    signature.append(field.getName()).append(':')
+                        .append(field.getType().getName()).append(';');
+                }
+            }
+            this.fields = fieldList.toArray(new Field[fieldList.size()]);
+            this.fingerprint = signature.toString().hashCode();
+        }
+    }
+
+    /**
+     * Cached constants of an enum, written by ordinal.
+     */
+    private static class EnumDescriptor {
+        private final Object[] constants;
+        private final int      fingerprint;
+
+        EnumDescriptor(Class<?> enumClass) throws CodecException {
+            if (!enumClass.isEnum()) {
+                throw new CodecException("Class " + enumClass.getName() + " is not an enum");
+            }
+            this.constants = enumClass.getEnumConstants();
+            StringBuilder signature = new StringBuilder();
+            for (Object constant : this.constants) {
+                signature.append(((Enum<?>) constant).name()).append(';');
+            }
+            this.fingerprint = signature.toString().hashCode();
+        }
+    }
+
+    private class Writer {
+        private final ByteBuf                     out;
+        /** index of each class written in this message */
+        private IdentityHashMap<Class<?>, Integer> classIndexes;
+        /** classes whose fingerprint has been written in this message */
+        private IdentityHashMap<Class<?>, Object>  checkedClasses;
+
+        Writer(ByteBuf out) {
+            this.out = out;
+        }
+
+        void writeValue(Object value, Class<?> declared, int depth) throws Exception {
+            if (value == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            if (depth > MAX_DEPTH) {
+                throw new CodecException("Nesting depth exceeds " + MAX_DEPTH
+                                         + ", circular reference is not supported");
+            }
+            Class<?> clazz = value.getClass();
+            if (clazz == String.class) {
+                String string = (String) value;
+                int length = ByteBufUtil.utf8Bytes(string);
+                if (length < SMALL_INT - SHORT_STRING) {
+                    out.writeByte(SHORT_STRING + length);
+                } else {
+                    out.writeByte(STRING);
+                    writeVarInt(length);
+                }
+                ByteBufUtil.writeUtf8(out, string);
+            } else if (clazz == Integer.class) {
+                int intValue = (Integer) value;
+                if (intValue >= SMALL_INT - SMALL_INT_BIAS && intValue < TAG_LIMIT - SMALL_INT_BIAS) {
+                    out.writeByte(intValue + SMALL_INT_BIAS);
+                } else {
+                    out.writeByte(INT);
+                    writeVarInt(zigzag(intValue));
+                }
+            } else if (clazz == Long.class) {
+                out.writeByte(LONG);
+                writeVarLong(zigzag((Long) value));
+            } else if (clazz == Boolean.class) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (clazz == Byte.class) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (clazz == Short.class) {
+                out.writeByte(SHORT);
+                writeVarInt(zigzag((Short) value));
+            } else if (clazz == Character.class) {
+                out.writeByte(CHAR);
+                writeVarInt((Character) value);
+            } else if (clazz == Float.class) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (clazz == Double.class) {
+                double doubleValue = (Double) value;
+                if ((float) doubleValue == doubleValue) {
+                    out.writeByte(FLOAT_DOUBLE);
+                    out.writeFloat((float) doubleValue);
+                } else {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(doubleValue);
+                }
+            } else if (clazz == byte[].class) {
+                out.writeByte(BYTES);
+                writeVarInt(((byte[]) value).length);
+                out.writeBytes((byte[]) value);
+            } else if (value instanceof Enum) {
+                out.writeByte(ENUM);
+                Class<?> enumClass = ((Enum<?>) value).getDeclaringClass();
+                writeClass(enumClass);
+                writeFingerprint(enumClass, getEnumDescriptor(enumClass).fingerprint);
+                writeVarInt(((Enum<?>) value).ordinal());
+            } else if (clazz == Date.class) {
+                out.writeByte(DATE);
+                writeVarLong(zigzag(((Date) value).getTime()));
+            } else if (clazz == BigInteger.class) {
+                out.writeByte(BIG_INTEGER);
+                writeString(value.toString());
+            } else if (clazz == BigDecimal.class) {
+                out.writeByte(BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (clazz.isArray()) {
+                out.writeByte(ARRAY);
+                Class<?> componentType = clazz.getComponentType();
+                writeClass(componentType);
+                int length = Array.getLength(value);
+                writeVarInt(length);
+                for (int i = 0; i < length; i++) {
+                    if (componentType.isPrimitive()) {
+                        writePrimitive(componentType, Array.get(value, i));
+                    } else {
+                        writeValue(Array.get(value, i), componentType, depth + 1);
+                    }
+                }
+            } else if (value instanceof Collection) {
+                out.writeByte(value instanceof Set ? SET : LIST);
+                Collection<?> collection = (Collection<?>) value;
+                writeVarInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(element, Object.class, depth + 1);
+                }
+            } else if (value instanceof Map) {
+                out.writeByte(MAP);
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey(), Object.class, depth + 1);
+                    writeValue(entry.getValue(), Object.class, depth + 1);
+                }
+            } else if (value instanceof Throwable || isNative(clazz)) {
+                writeJava(value);
+            } else {
+                ClassDescriptor descriptor = getDescriptor(clazz);
+                if (clazz == declared) {
+                    out.writeByte(DECLARED_OBJECT);
+                } else {
+                    out.writeByte(OBJECT);
+                    writeClass(clazz);
+                }
+                writeFingerprint(clazz, descriptor.fingerprint);
+                for (Field field : descriptor.fields) {
+                    if (field.getType().isPrimitive()) {
+                        writePrimitive(field.getType(), field.get(value));
+                    } else {
+                        writeValue(field.get(value), field.getType(), depth + 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Write the fingerprint of a class at its first occurrence in this message.
+         */
+        private void writeFingerprint(Class<?> clazz, int fingerprint) {
+            if (checkedClasses == null) {
+                checkedClasses = new IdentityHashMap<Class<?>, Object>();
+            }
+            if (checkedClasses.put(clazz, Boolean.TRUE) == null) {
+                out.writeInt(fingerprint);
+            }
+        }
+
+        private void writePrimitive(Class<?> type, Object value) {
+            if (type == int.class) {
+                writeVarInt(zigzag((Integer) value));
+            } else if (type == long.class) {
+                writeVarLong(zigzag((Long) value));
+            } else if (type == boolean.class) {
+                out.writeBoolean((Boolean) value);
+            } else if (type == byte.class) {
+                out.writeByte((Byte) value);
+            } else if (type == short.class) {
+                writeVarInt(zigzag((Short) value));
+            } else if (type == char.class) {
+                writeVarInt((Character) value);
+            } else if (type == float.class) {
+                out.writeFloat((Float) value);
+            } else {
+                out.writeDouble((Double) value);
+            }
+        }
+
+        private void writeJava(Object value) throws IOException, CodecException {
+            if (!(value instanceof Serializable)) {
+                throw new CodecException("Class " + value.getClass().getName()
+                                         + " must implement java.io.Serializable");
+            }
+            out.writeByte(JAVA);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            ObjectOutputStream oos = new ObjectOutputStream(new ByteBufOutputStream(out));
+            oos.writeObject(value);
+            oos.close();
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+
+        private void writeClass(Class<?> clazz) {
+            if (classIndexes == null) {
+                classIndexes = new IdentityHashMap<Class<?>, Integer>();
+            }
+            Integer index = classIndexes.get(clazz);
+            if (index != null) {
+                writeVarInt(index + 1);
+            } else {
+                classIndexes.put(clazz, classIndexes.size());
+                writeVarInt(0);
+                writeString(clazz.getName());
+            }
+        }
+
+        private void writeString(String value) {
+            writeVarInt(ByteBufUtil.utf8Bytes(value));
+            ByteBufUtil.writeUtf8(out, value);
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    private class Reader {
+        private final ByteBuf  in;
+        /** classes read in this message, by index */
+        private List<Class<?>> classList;
+        /** classes whose fingerprint has been checked in this message */
+        private Set<Class<?>>  checkedClasses;
+
+        Reader(ByteBuf in) {
+            this.in = in;
+        }
+
+        Object readValue(Class<?> expected, int depth) throws Exception {
+            if (depth > MAX_DEPTH) {
+                throw new CodecException("Nesting depth exceeds " + MAX_DEPTH);
+            }
+            int tag = in.readUnsignedByte();
+            if (tag >= SMALL_INT) {
+                if (tag >= TAG_LIMIT) {
+                    throw new CodecException("Unknown compact tag: " + tag);
+                }
+                return tag - SMALL_INT_BIAS;
+            }
+            if (tag >= SHORT_STRING) {
+                return readString(tag - SHORT_STRING);
+            }
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case BYTE:
+                    return in.readByte();
+                case SHORT:
+                    return (short) unzigzag(readVarInt());
+                case INT:
+                    return unzigzag(readVarInt());
+                case LONG:
+                    return unzigzag(readVarLong());
+                case FLOAT:
+                    return in.readFloat();
+                case DOUBLE:
+                    return in.readDouble();
+                case FLOAT_DOUBLE:
+                    return (double) in.readFloat();
+                case CHAR:
+                    return (char) readVarInt();
+                case STRING:
+                    return readString(readLength());
+                case BYTES: {
+                    byte[] bytes = new byte[readLength()];
+                    in.readBytes(bytes);
+                    return bytes;
+                }
+                case ENUM:
+                    return readEnum();
+                case DATE:
+                    return new Date(unzigzag(readVarLong()));
+                case BIG_INTEGER:
+                    return new BigInteger(readString());
+                case BIG_DECIMAL:
+                    return new BigDecimal(readString());
+                case ARRAY: {
+                    Class<?> componentType = readClass();
+                    int length = readLength();
+                    Object array = Array.newInstance(componentType, length);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, componentType.isPrimitive() ? readPrimitive(componentType)
+                            : readValue(componentType, depth + 1));
+                    }
+                    return array;
+                }
+                case LIST:
+                case SET: {
+                    int size = readLength();
+                    Collection<Object> collection = newCollection(expected, tag == SET, size);
+                    for (int i = 0; i < size; i++) {
+                        collection.add(readValue(Object.class, depth + 1));
+                    }
+                    return collection;
+                }
+                case MAP: {
+                    int size = readLength();
+                    Map<Object, Object> map = newMap(expected, size);
+                    for (int i = 0; i < size; i++) {
+                        map.put(readValue(Object.class, depth + 1),
+                            readValue(Object.class, depth + 1));
+                    }
+                    return map;
+                }
+                case JAVA:
+                    return readJava();
+                case OBJECT:
+                case DECLARED_OBJECT: {
+                    Class<?> clazz = tag == OBJECT ? readClass() : expected;
+                    ClassDescriptor descriptor = getDescriptor(clazz);
+                    checkFingerprint(clazz, descriptor.fingerprint);
+                    Object value = descriptor.constructor.newInstance();
+                    for (Field field : descriptor.fields) {
+                        Class<?> type = field.getType();
+                        field.set(value,
+                            type.isPrimitive() ? readPrimitive(type) : readValue(type, depth + 1));
+                    }
+                    return value;
+                }
+                default:
+                    throw new CodecException("Unknown compact tag: " + tag);
+            }
+        }
+
+        private Object readPrimitive(Class<?> type) {
+            if (type == int.class) {
+                return unzigzag(readVarInt());
+            } else if (type == long.class) {
+                return unzigzag(readVarLong());
+            } else if (type == boolean.class) {
+                return in.readBoolean();
+            } else if (type == byte.class) {
+                return in.readByte();
+            } else if (type == short.class) {
+                return (short) unzigzag(readVarInt());
+            } else if (type == char.class) {
+                return (char) readVarInt();
+            } else if (type == float.class) {
+                return in.readFloat();
+            } else {
+                return in.readDouble();
+            }
+        }
+
+        private Object readEnum() throws CodecException {
+            Class<?> enumClass = readClass();
+            EnumDescriptor descriptor = getEnumDescriptor(enumClass);
+            checkFingerprint(enumClass, descriptor.fingerprint);
+            int ordinal = readVarInt();
+            if (ordinal < 0 || ordinal >= descriptor.constants.length) {
+                throw new CodecException("Illegal ordinal " + ordinal + " of enum "
+                                         + enumClass.getName());
+            }
+            return descriptor.constants[ordinal];
+        }
+
+        /**
+         * Check the fingerprint of a class at its first occurrence in this message.
+         */
+        private void checkFingerprint(Class<?> clazz, int fingerprint) throws CodecException {
+            if (checkedClasses == null) {
+                checkedClasses = new HashSet<Class<?>>();
+            }
+            if (checkedClasses.add(clazz) && in.readInt() != fingerprint) {
+                throw new CodecException("Fields of class " + clazz.getName()
+                                         + " do not match the peer");
+            }
+        }
+
+        private Object readJava() throws IOException, ClassNotFoundException {
+            int length = in.readInt();
+            ObjectInputStream ois = new ObjectInputStream(new ByteBufInputStream(in, length));
+            Object value = ois.readObject();
+            ois.close();
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Collection<Object> newCollection(Class<?> expected, boolean set, int size)
+                                                                                          throws Exception {
+            if (isConcrete(expected, Collection.class)) {
+                return (Collection<Object>) expected.getDeclaredConstructor().newInstance();
+            }
+            if (set) {
+                return SortedSet.class.isAssignableFrom(expected) ? new TreeSet<Object>()
+                    : new HashSet<Object>(size * 4 / 3 + 1);
+            }
+            return new ArrayList<Object>(size);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object> newMap(Class<?> expected, int size) throws Exception {
+            if (isConcrete(expected, Map.class)) {
+                return (Map<Object, Object>) expected.getDeclaredConstructor().newInstance();
+            }
+            return SortedMap.class.isAssignableFrom(expected) ? new TreeMap<Object, Object>()
+                : new HashMap<Object, Object>(size * 4 / 3 + 1);
+        }
+
+        private boolean isConcrete(Class<?> expected, Class<?> base) {
+            return base.isAssignableFrom(expected) && !expected.isInterface()
+                   && !Modifier.isAbstract(expected.getModifiers());
+        }
+
+        private Class<?> readClass() throws CodecException {
+            if (classList == null) {
+                classList = new ArrayList<Class<?>>();
+            }
+            int index = readVarInt();
+            if (index == 0) {
+                Class<?> clazz = loadClass(readString());
+                classList.add(clazz);
+                return clazz;
+            }
+            if (index > classList.size()) {
+                throw new CodecException("Illegal class index: " + index);
+            }
+            return classList.get(index - 1);
+        }
+
+        private String readString() {
+            return readString(readLength());
+        }
+
+        private String readString(int length) {
+            if (length > in.readableBytes()) {
+                throw new IndexOutOfBoundsException("Illegal length: " + length + ", readable: "
+                                                    + in.readableBytes());
+            }
+            String value = in.toString(in.readerIndex(), length, UTF8);
+            in.skipBytes(length);
+            return value;
+        }
+
+        private int readLength() {
+            int length = readVarInt();
+            if (length < 0 || length > in.readableBytes()) {
+                throw new IndexOutOfBoundsException("Illegal length: " + length + ", readable: "
+                                                    + in.readableBytes());
+            }
+            return length;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = in.readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint");
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varlong");
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -16,31 +16,81 @@
  */
 package com.alipay.remoting.serialization;
 
+import com.alipay.remoting.config.ConfigManager;
 import com.alipay.remoting.exception.CodecException;
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 import com.caucho.hessian.io.SerializerFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Hessian2 serializer.
+ * <p>
+ * When {@link com.alipay.remoting.config.Configs#SERIALIZER_HESSIAN_REUSE} is on, each thread reuses its own
+ * Hessian2Output and output buffer, the buffer is dropped after use if it has grown larger than
+ * {@link com.alipay.remoting.config.Configs#SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE}.
+ * Otherwise buffers are presized with the last output size of the same class.
  *
  * @author jiangping
  * @version $Id: HessianSerializer.java, v 0.1 2015-10-4 PM9:51:55 tao Exp $
  */
-public class HessianSerializer implements Serializer {
+public class HessianSerializer implements ByteBufSerializer {
 
-    private SerializerFactory serializerFactory = new SerializerFactory();
+    /** size hint for classes not serialized yet */
+    private static final int                           DEFAULT_SIZE_HINT = 256;
+
+    /** max number of classes to keep size hints for */
+    private static final int                           MAX_SIZE_HINTS    = 1024;
+
+    private SerializerFactory                          serializerFactory = new SerializerFactory();
+
+    /** whether to reuse output and buffer in each thread */
+    private final boolean                              reuse;
+
+    /** max size of the buffer kept by each thread, also the max size hint */
+    private final int                                  maxBufferSize;
+
+    private final ThreadLocal<ReusableOutput>          outputs;
+
+    /** last output size of each class */
+    private final ConcurrentHashMap<Class<?>, Integer> sizeHints         = new ConcurrentHashMap<Class<?>, Integer>();
+
+    public HessianSerializer() {
+        this.reuse = ConfigManager.serializer_hessian_reuse() && ReusableHessian2Output.isSupported();
+        this.maxBufferSize = ConfigManager.serializer_hessian_reuse_max_buffer_size();
+        this.outputs = new ThreadLocal<ReusableOutput>() {
+            @Override
+            protected ReusableOutput initialValue() {
+                return new ReusableOutput();
+            }
+        };
+    }
 
     /**
      * @see com.alipay.remoting.serialization.Serializer#serialize(java.lang.Object)
      */
     @Override
     public byte[] serialize(Object obj) throws CodecException {
-        ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
+        if (this.reuse) {
+            ReusableOutput reusable = this.outputs.get();
+            ReusableByteArrayOutputStream byteArray = reusable.bytes;
+            byteArray.reset();
+            try {
+                writeObject(reusable, byteArray, obj);
+                return byteArray.toByteArray();
+            } finally {
+                byteArray.trim(this.maxBufferSize);
+            }
+        }
+        ByteArrayOutputStream byteArray = new ByteArrayOutputStream(sizeHint(obj));
         Hessian2Output output = new Hessian2Output(byteArray);
         output.setSerializerFactory(serializerFactory);
         try {
@@ -49,7 +99,7 @@ public class HessianSerializer implements Serializer {
         } catch (IOException e) {
             throw new CodecException("IOException occurred when Hessian serializer encode!", e);
         }
-
+        recordSize(obj, byteArray.size());
         return byteArray.toByteArray();
     }
 
@@ -71,4 +121,127 @@ public class HessianSerializer implements Serializer {
         return (T) resultObject;
     }
 
+    /**
+     * @see com.alipay.remoting.serialization.ByteBufSerializer#serialize(java.lang.Object, io.netty.buffer.ByteBuf)
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) throws CodecException {
+        int start = out.writerIndex();
+        out.ensureWritable(sizeHint(obj));
+        if (this.reuse) {
+            writeObject(this.outputs.get(), new ByteBufOutputStream(out), obj);
+        } else {
+            Hessian2Output output = new Hessian2Output(new ByteBufOutputStream(out));
+            output.setSerializerFactory(serializerFactory);
+            try {
+                output.writeObject(obj);
+                output.close();
+            } catch (IOException e) {
+                throw new CodecException("IOException occurred when Hessian serializer encode!", e);
+            }
+        }
+        recordSize(obj, out.writerIndex() - start);
+    }
+
+    /**
+     * @see com.alipay.remoting.serialization.ByteBufSerializer#deserialize(io.netty.buffer.ByteBuf, java.lang.String)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T deserialize(ByteBuf in, String classOfT) throws CodecException {
+        Hessian2Input input = new Hessian2Input(new ByteBufInputStream(in));
+        input.setSerializerFactory(serializerFactory);
+        Object resultObject;
+        try {
+            resultObject = input.readObject();
+            input.close();
+        } catch (IOException e) {
+            throw new CodecException("IOException occurred when Hessian serializer decode!", e);
+        }
+        return (T) resultObject;
+    }
+
+    /**
+     * Write with the reused output of current thread, the output is discarded on failure
+     * since it may hold partial content.
+     */
+    private void writeObject(ReusableOutput reusable, OutputStream os, Object obj)
+                                                                                 throws CodecException {
+        ReusableHessian2Output output = reusable.output;
+        boolean success = false;
+        try {
+            output.reset(os);
+            output.writeObject(obj);
+            output.flush();
+            success = true;
+        } catch (IOException e) {
+            throw new CodecException("IOException occurred when Hessian serializer encode!", e);
+        } catch (IllegalAccessException e) {
+            throw new CodecException("Hessian output can not be reset!", e);
+        } finally {
+            if (success) {
+                try {
+                    output.reset(null);
+                } catch (IllegalAccessException e) {
+                    success = false;
+                }
+            }
+            if (!success) {
+                reusable.output = newOutput();
+            }
+        }
+    }
+
+    private ReusableHessian2Output newOutput() {
+        ReusableHessian2Output output = new ReusableHessian2Output();
+        output.setSerializerFactory(serializerFactory);
+        return output;
+    }
+
+    private int sizeHint(Object obj) {
+        if (obj == null) {
+            return DEFAULT_SIZE_HINT;
+        }
+        Integer hint = this.sizeHints.get(obj.getClass());
+        return hint == null ? DEFAULT_SIZE_HINT : hint;
+    }
+
+    /**
+     * Record the output size of the class, only when it changes a lot, so a steady class costs no write.
+     */
+    private void recordSize(Object obj, int size) {
+        if (obj == null) {
+            return;
+        }
+        size = Math.min(size, this.maxBufferSize);
+        Integer hint = this.sizeHints.get(obj.getClass());
+        if (hint == null ? this.sizeHints.size() < MAX_SIZE_HINTS : size > hint || size < hint >> 1) {
+            this.sizeHints.put(obj.getClass(), size);
+        }
+    }
+
+    /**
+     * Output and buffer reused by one thread.
+     */
+    private class ReusableOutput {
+        private ReusableHessian2Output        output = newOutput();
+        private ReusableByteArrayOutputStream bytes  = new ReusableByteArrayOutputStream();
+    }
+
+    /**
+     * Byte array output stream whose buffer is kept only if not larger than a given size.
+     */
+    private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ReusableByteArrayOutputStream() {
+            super(DEFAULT_SIZE_HINT);
+        }
+
+        void trim(int maxSize) {
+            if (this.buf.length > maxSize) {
+                this.buf = new byte[DEFAULT_SIZE_HINT];
+            }
+            this.count = 0;
+        }
+    }
 }
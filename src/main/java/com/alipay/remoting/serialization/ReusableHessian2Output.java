@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.serialization;
+
+import com.alipay.remoting.log.BoltLoggerFactory;
+import com.caucho.hessian.io.Hessian2Output;
+import org.slf4j.Logger;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+
+/**
+ * Hessian2 output which can be reused for independent messages.
+ * <p>
+ * Hessian2Output only clears object references in {@link #resetReferences()}, class and type definitions
+ * written for former messages are kept and would be referenced by later ones. They are cleared by reflection,
+ * if the fields are absent in the hessian version in use, {@link #isSupported()} returns false.
+ */
+class ReusableHessian2Output extends Hessian2Output {
+
+    private static final Logger logger = BoltLoggerFactory.getLogger("CommonDefault");
+
+    private static final Field  CLASS_REFS;
+    private static final Field  TYPE_REFS;
+
+    static {
+        Field classRefs = null;
+        Field typeRefs = null;
+        try {
+            classRefs = Hessian2Output.class.getDeclaredField("_classRefs");
+            classRefs.setAccessible(true);
+            typeRefs = Hessian2Output.class.getDeclaredField("_typeRefs");
+            typeRefs.setAccessible(true);
+        } catch (Exception e) {
+            logger.warn("Hessian2Output can not be reused, fields not accessible.", e);
+            classRefs = null;
+            typeRefs = null;
+        }
+        CLASS_REFS = classRefs;
+        TYPE_REFS = typeRefs;
+    }
+
+    ReusableHessian2Output() {
+        super(null);
+    }
+
+    /**
+     * @return whether the definitions of the hessian version in use can be cleared
+     */
+    static boolean isSupported() {
+        return CLASS_REFS != null && TYPE_REFS != null;
+    }
+
+    /**
+     * Clear all references and definitions, and write to the given stream from now on.
+     *
+     * @param os stream to write to
+     */
+    void reset(OutputStream os) throws IllegalAccessException {
+        resetReferences();
+        CLASS_REFS.set(this, null);
+        TYPE_REFS.set(this, null);
+        this._os = os;
+    }
+}
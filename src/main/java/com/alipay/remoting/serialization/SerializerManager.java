@@ -29,23 +29,43 @@ package com.alipay.remoting.serialization;
 public class SerializerManager {
 
     public static final byte Hessian2 = 1;
+    /** see {@link CompactSerializer} */
+    public static final byte Compact = 3;
     private static Serializer[] serializers = new Serializer[5];
+    private static ByteBufSerializer[] byteBufSerializers = new ByteBufSerializer[5];
     //public static final byte    Json        = 2;
 
     static {
         addSerializer(Hessian2, new HessianSerializer());
+        addSerializer(Compact, new CompactSerializer());
     }
 
     public static Serializer getSerializer(int idx) {
         return serializers[idx];
     }
 
+    /**
+     * Get the serializer working on buffers, a byte array based serializer is returned as adapted.
+     *
+     * @param idx serializer index
+     * @return the registered serializer if it is a {@link ByteBufSerializer}, otherwise its adapter
+     */
+    public static ByteBufSerializer getByteBufSerializer(int idx) {
+        return byteBufSerializers[idx];
+    }
+
     public static void addSerializer(int idx, Serializer serializer) {
         if (serializers.length <= idx) {
             Serializer[] newSerializers = new Serializer[idx + 5];
             System.arraycopy(serializers, 0, newSerializers, 0, serializers.length);
             serializers = newSerializers;
+            ByteBufSerializer[] newByteBufSerializers = new ByteBufSerializer[idx + 5];
+            System.arraycopy(byteBufSerializers, 0, newByteBufSerializers, 0,
+                byteBufSerializers.length);
+            byteBufSerializers = newByteBufSerializers;
         }
         serializers[idx] = serializer;
+        byteBufSerializers[idx] = serializer instanceof ByteBufSerializer ? (ByteBufSerializer) serializer
+            : new ByteBufSerializerAdapter(serializer);
     }
 }
@@ -16,10 +16,20 @@
  */
 package com.alipay.remoting.util;
 
+import io.netty.buffer.ByteBuf;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 /**
- * CRC32 utility.
+ * CRC32 and CRC32C utility.
+ * <p>
+ * CRC32C uses {@code java.util.zip.CRC32C} (intrinsified by the jvm) when running on java 9 or later,
+ * and a pure java implementation otherwise.
  *
  * @author jiangping
  * @version $Id: CrcUtil2, v 0.1 2017-06-05 11:29 Timo Exp $
@@ -33,6 +43,49 @@ public class CrcUtil {
         }
     };
 
+    /**
+     * constructor of java.util.zip.CRC32C, null if not available
+     */
+    private static final MethodHandle CRC32C_CONSTRUCTOR;
+
+    /**
+     * Checksum#update(ByteBuffer), null if not available
+     */
+    private static final MethodHandle CHECKSUM_UPDATE_BUFFER;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle update = null;
+        try {
+            Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+            constructor = MethodHandles.publicLookup()
+                .findConstructor(clazz, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Checksum.class));
+            update = MethodHandles.publicLookup().findVirtual(Checksum.class, "update",
+                MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (Throwable e) {
+            // java 8, fall back to the pure java implementation
+            constructor = null;
+            update = null;
+        }
+        CRC32C_CONSTRUCTOR = constructor;
+        CHECKSUM_UPDATE_BUFFER = update;
+    }
+
+    private static final ThreadLocal<Checksum> CRC_32C_THREAD_LOCAL = new ThreadLocal<Checksum>() {
+        @Override
+        protected Checksum initialValue() {
+            if (CRC32C_CONSTRUCTOR != null) {
+                try {
+                    return (Checksum) CRC32C_CONSTRUCTOR.invokeExact();
+                } catch (Throwable e) {
+                    // fall through
+                }
+            }
+            return new PureJavaCrc32C();
+        }
+    };
+
     /**
      * Compute CRC32 code for byte[].
      *
@@ -63,4 +116,130 @@ public class CrcUtil {
         return ret;
     }
 
+    /**
+     * Compute CRC32 code for the readable region of a {@link ByteBuf} without copying it into a byte[].
+     *
+     * @param buf
+     * @param index
+     * @param length
+     * @return
+     */
+    public static final int crc32(ByteBuf buf, int index, int length) {
+        CRC32 crc32 = CRC_32_THREAD_LOCAL.get();
+        try {
+            if (buf.hasArray()) {
+                crc32.update(buf.array(), buf.arrayOffset() + index, length);
+            } else {
+                for (ByteBuffer nioBuffer : buf.nioBuffers(index, length)) {
+                    crc32.update(nioBuffer);
+                }
+            }
+            return (int) crc32.getValue();
+        } finally {
+            crc32.reset();
+        }
+    }
+
+    /**
+     * Compute CRC32C code for byte[].
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static final int crc32c(byte[] array, int offset, int length) {
+        Checksum crc32c = CRC_32C_THREAD_LOCAL.get();
+        try {
+            crc32c.update(array, offset, length);
+            return (int) crc32c.getValue();
+        } finally {
+            crc32c.reset();
+        }
+    }
+
+    /**
+     * Compute CRC32C code for a region of a {@link ByteBuf} without copying it into a byte[] when possible.
+     *
+     * @param buf
+     * @param index
+     * @param length
+     * @return
+     */
+    public static final int crc32c(ByteBuf buf, int index, int length) {
+        Checksum crc32c = CRC_32C_THREAD_LOCAL.get();
+        try {
+            if (buf.hasArray()) {
+                crc32c.update(buf.array(), buf.arrayOffset() + index, length);
+            } else if (CHECKSUM_UPDATE_BUFFER != null && !(crc32c instanceof PureJavaCrc32C)) {
+                for (ByteBuffer nioBuffer : buf.nioBuffers(index, length)) {
+                    CHECKSUM_UPDATE_BUFFER.invokeExact(crc32c, nioBuffer);
+                }
+            } else {
+                for (int i = index; i < index + length; ++i) {
+                    crc32c.update(buf.getByte(i));
+                }
+            }
+            return (int) crc32c.getValue();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to compute crc32c", e);
+        } finally {
+            crc32c.reset();
+        }
+    }
+
+    /**
+     * Whether CRC32C is computed by the jdk, which is intrinsified and at least as fast as CRC32.
+     *
+     * @return true if running on java 9 or later
+     */
+    public static boolean isCrc32cIntrinsic() {
+        return CRC32C_CONSTRUCTOR != null;
+    }
+
+    /**
+     * Table driven CRC32C (Castagnoli), only used when the jdk does not provide one.
+     */
+    static final class PureJavaCrc32C implements Checksum {
+
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int n = 0; n < 256; ++n) {
+                int c = n;
+                for (int k = 0; k < 8; ++k) {
+                    c = (c & 1) != 0 ? (c >>> 1) ^ 0x82F63B78 : c >>> 1;
+                }
+                TABLE[n] = c;
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int c = crc;
+            for (int i = off; i < off + len; ++i) {
+                c = (c >>> 8) ^ TABLE[(c ^ b[i]) & 0xFF];
+            }
+            crc = c;
+        }
+
+        @Override
+        public long getValue() {
+            return (~crc) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
 }
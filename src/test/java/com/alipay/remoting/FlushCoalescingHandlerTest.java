@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for coalescing the flushes of a channel.
+ */
+public class FlushCoalescingHandlerTest {
+
+    @Test
+    public void testFlushInNextTask() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(256, 0));
+        // the embedded channel runs the pending tasks on each write, so write before the flushes
+        channel.write("a");
+        channel.write("b");
+        channel.write("c");
+        channel.flush();
+        channel.flush();
+        channel.flush();
+        Assert.assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        Assert.assertEquals("a", channel.readOutbound());
+        Assert.assertEquals("b", channel.readOutbound());
+        Assert.assertEquals("c", channel.readOutbound());
+        Assert.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushOnReadComplete() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(256, 0),
+            new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    ctx.writeAndFlush("re:" + msg);
+                }
+            });
+        channel.pipeline().fireChannelRead("a");
+        channel.pipeline().fireChannelRead("b");
+        // the flush task scheduled out of reading should not flush while reading
+        channel.runPendingTasks();
+        Assert.assertNull(channel.readOutbound());
+
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals("re:a", channel.readOutbound());
+        Assert.assertEquals("re:b", channel.readOutbound());
+        Assert.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushWhenReachMaxFlushes() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(2, 0));
+        channel.write("a");
+        channel.write("b");
+        channel.flush();
+        Assert.assertNull(channel.readOutbound());
+        channel.flush();
+        Assert.assertEquals("a", channel.readOutbound());
+        Assert.assertEquals("b", channel.readOutbound());
+        Assert.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushAfterDelay() throws InterruptedException {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(256, 50 * 1000));
+        channel.writeAndFlush("a");
+        channel.runPendingTasks();
+        Assert.assertNull(channel.readOutbound());
+
+        Thread.sleep(100);
+        channel.runPendingTasks();
+        Assert.assertEquals("a", channel.readOutbound());
+        Assert.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushBeforeClose() {
+        EmbeddedChannel channel = new EmbeddedChannel(new FlushCoalescingHandler(256, 0));
+        channel.writeAndFlush("a");
+        channel.close();
+        Assert.assertEquals("a", channel.readOutbound());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxFlushes() {
+        new FlushCoalescingHandler(0, 0);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting;
+
+import com.alipay.remoting.exception.RemotingException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for the parallel reconnect of {@link ReconnectManager}.
+ */
+public class ParallelReconnectTest {
+
+    private ReconnectManager reconnectManager;
+
+    @After
+    public void stop() {
+        if (reconnectManager != null && reconnectManager.isStarted()) {
+            reconnectManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateTasksDeduplicated() throws Exception {
+        HealRecorder recorder = new HealRecorder(0, 0);
+        reconnectManager = start(recorder, 2, 50, 100);
+
+        Url url = new Url("127.0.0.1", 1111);
+        for (int i = 0; i < 10; i++) {
+            reconnectManager.reconnect(url);
+        }
+        Assert.assertEquals(1, reconnectManager.getPendingTaskCount());
+
+        waitUntilIdle(2000);
+        Assert.assertEquals(1, recorder.heals(url));
+    }
+
+    @Test
+    public void testReconnectInParallel() throws Exception {
+        HealRecorder recorder = new HealRecorder(200, 0);
+        reconnectManager = start(recorder, 4, 10, 100);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            reconnectManager.reconnect(new Url("127.0.0.1", 2000 + i));
+        }
+        waitUntilIdle(3000);
+
+        // 8 urls healed by 4 threads, each heal takes 200ms
+        Assert.assertTrue(System.currentTimeMillis() - start < 1200);
+        Assert.assertEquals(4, recorder.maxConcurrency.get());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(1, recorder.heals(new Url("127.0.0.1", 2000 + i)));
+        }
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        HealRecorder recorder = new HealRecorder(0, 3);
+        reconnectManager = start(recorder, 2, 20, 100);
+
+        Url url = new Url("127.0.0.1", 3333);
+        reconnectManager.reconnect(url);
+        waitUntilIdle(3000);
+        Assert.assertEquals(4, recorder.heals(url));
+    }
+
+    @Test
+    public void testFirstAttemptAtOnce() throws Exception {
+        HealRecorder recorder = new HealRecorder(0, 0);
+        reconnectManager = start(recorder, 1, 1000, 2000);
+
+        Url url = new Url("127.0.0.1", 5555);
+        long start = System.currentTimeMillis();
+        reconnectManager.reconnect(url);
+        waitUntilIdle(500);
+        Assert.assertTrue(System.currentTimeMillis() - start < 500);
+        Assert.assertEquals(1, recorder.heals(url));
+    }
+
+    @Test
+    public void testFlappingUrlNotRedialedWithinBase() throws Exception {
+        HealRecorder recorder = new HealRecorder(0, 0);
+        reconnectManager = start(recorder, 1, 500, 1000);
+
+        Url url = new Url("127.0.0.1", 6666);
+        reconnectManager.reconnect(url);
+        waitUntilIdle(400);
+        Assert.assertEquals(1, recorder.heals(url));
+
+        // lost again right after reconnected, redialed after the base backoff
+        reconnectManager.reconnect(url);
+        Thread.sleep(300);
+        Assert.assertEquals(1, recorder.heals(url));
+        waitUntilIdle(1000);
+        Assert.assertEquals(2, recorder.heals(url));
+    }
+
+    @Test
+    public void testBackoffJitter() {
+        reconnectManager = new ReconnectManager(new HealRecorder(0, 0), 1, 100, 1000);
+        for (int attempts = 0; attempts < 64; attempts++) {
+            long expected = Math.min(1000, 100L << Math.min(attempts, 30));
+            for (int i = 0; i < 100; i++) {
+                long backoff = reconnectManager.backoff(attempts);
+                Assert.assertTrue(backoff >= expected / 2);
+                Assert.assertTrue(backoff <= expected);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelReconnect() throws Exception {
+        HealRecorder recorder = new HealRecorder(0, 0);
+        recorder.gate = new CountDownLatch(1);
+        reconnectManager = start(recorder, 1, 100, 100);
+
+        // the single reconnect thread is blocked by another url, the task of the url waits behind it
+        Url blocker = new Url("127.0.0.1", 4443);
+        reconnectManager.reconnect(blocker);
+        Url url = new Url("127.0.0.1", 4444);
+        reconnectManager.reconnect(url);
+        reconnectManager.disableReconnect(url);
+        Assert.assertEquals(1, reconnectManager.getPendingTaskCount());
+
+        reconnectManager.reconnect(url);
+        recorder.gate.countDown();
+        waitUntilIdle(2000);
+        Assert.assertEquals(1, recorder.heals(blocker));
+        Assert.assertEquals(0, recorder.heals(url));
+
+        reconnectManager.enableReconnect(url);
+        reconnectManager.reconnect(url);
+        waitUntilIdle(2000);
+        Assert.assertEquals(1, recorder.heals(url));
+    }
+
+    private ReconnectManager start(HealRecorder recorder, int parallelism, long baseBackoff,
+                                   long maxBackoff) {
+        ReconnectManager manager = new ReconnectManager(recorder, parallelism, baseBackoff,
+            maxBackoff);
+        manager.startup();
+        return manager;
+    }
+
+    private void waitUntilIdle(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (reconnectManager.getPendingTaskCount() > 0) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    static class HealRecorder extends DefaultConnectionManager {
+        final Map<Url, AtomicInteger> heals          = new ConcurrentHashMap<Url, AtomicInteger>();
+        final AtomicInteger           concurrency    = new AtomicInteger();
+        final AtomicInteger           maxConcurrency = new AtomicInteger();
+        final long                    healMillis;
+        final int                     failures;
+        volatile CountDownLatch       gate;
+
+        HealRecorder(long healMillis, int failures) {
+            this.healMillis = healMillis;
+            this.failures = failures;
+        }
+
+        int heals(Url url) {
+            AtomicInteger count = heals.get(url);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public void createConnectionAndHealIfNeed(Url url) throws InterruptedException,
+                                                          RemotingException {
+            int current = concurrency.incrementAndGet();
+            try {
+                int max;
+                while (current > (max = maxConcurrency.get())
+                       && !maxConcurrency.compareAndSet(max, current)) {
+                    // retry
+                }
+                heals.putIfAbsent(url, new AtomicInteger());
+                int count = heals.get(url).incrementAndGet();
+                if (gate != null) {
+                    gate.await();
+                }
+                if (healMillis > 0) {
+                    Thread.sleep(healMillis);
+                }
+                if (count <= failures) {
+                    throw new RemotingException("connect " + url.getOriginUrl() + " failed");
+                }
+            } finally {
+                concurrency.decrementAndGet();
+            }
+        }
+    }
+}
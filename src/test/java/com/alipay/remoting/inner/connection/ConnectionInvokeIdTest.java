@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.inner.connection;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.rpc.DefaultInvokeFuture;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.protocol.RpcProtocol;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for the invoke ids allocated by connection.
+ */
+public class ConnectionInvokeIdTest {
+
+    @Test
+    public void testSequencePerConnection() {
+        Connection conn1 = new Connection(new EmbeddedChannel());
+        Connection conn2 = new Connection(new EmbeddedChannel());
+        Assert.assertEquals(1, conn1.nextInvokeId());
+        Assert.assertEquals(2, conn1.nextInvokeId());
+        Assert.assertEquals(1, conn2.nextInvokeId());
+
+        RpcRequestCommand command = new RpcCommandFactory().createRequestCommand("hello",
+            conn2.nextInvokeId());
+        Assert.assertEquals(2, command.getId());
+    }
+
+    @Test
+    public void testSkipPendingId() {
+        Connection conn = new Connection(new EmbeddedChannel());
+        conn.addInvokeFuture(new DefaultInvokeFuture(2, null, null, RpcProtocol.PROTOCOL_CODE,
+            new RpcCommandFactory()));
+        Assert.assertEquals(1, conn.nextInvokeId());
+        Assert.assertEquals(3, conn.nextInvokeId());
+        conn.removeInvokeFuture(2);
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final Connection conn = new Connection(new EmbeddedChannel());
+        final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    if (!ids.add(conn.nextInvokeId())) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(80000, ids.size());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.inner.connection;
+
+import com.alipay.remoting.InvokeFuture;
+import com.alipay.remoting.InvokeFutureTable;
+import com.alipay.remoting.rpc.DefaultInvokeFuture;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.protocol.RpcProtocol;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for the invoke future table of connection.
+ */
+public class InvokeFutureTableTest {
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals(1, new InvokeFutureTable(1).capacity());
+        Assert.assertEquals(256, new InvokeFutureTable(256).capacity());
+        Assert.assertEquals(512, new InvokeFutureTable(257).capacity());
+        try {
+            new InvokeFutureTable(0);
+            Assert.fail("Should not reach here!");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        InvokeFutureTable table = new InvokeFutureTable(16);
+        Assert.assertTrue(table.isEmpty());
+        Assert.assertNull(table.get(1));
+        Assert.assertNull(table.remove(1));
+
+        InvokeFuture f1 = newFuture(1);
+        Assert.assertNull(table.putIfAbsent(f1));
+        Assert.assertSame(f1, table.putIfAbsent(newFuture(1)));
+        Assert.assertSame(f1, table.get(1));
+        Assert.assertNull(table.get(17));
+        Assert.assertEquals(1, table.size());
+
+        Assert.assertSame(f1, table.remove(1));
+        Assert.assertNull(table.remove(1));
+        Assert.assertNull(table.get(1));
+        Assert.assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void testCollision() {
+        InvokeFutureTable table = new InvokeFutureTable(16);
+        InvokeFuture f1 = newFuture(1);
+        InvokeFuture f17 = newFuture(17);
+        InvokeFuture f33 = newFuture(33);
+        Assert.assertNull(table.putIfAbsent(f1));
+        Assert.assertNull(table.putIfAbsent(f17));
+        Assert.assertNull(table.putIfAbsent(f33));
+        Assert.assertSame(f17, table.putIfAbsent(newFuture(17)));
+        Assert.assertEquals(3, table.size());
+        Assert.assertSame(f1, table.get(1));
+        Assert.assertSame(f17, table.get(17));
+        Assert.assertSame(f33, table.get(33));
+
+        // the slot is free again, the id kept in the overflow map is still found
+        Assert.assertSame(f1, table.remove(1));
+        Assert.assertSame(f17, table.putIfAbsent(newFuture(17)));
+        Assert.assertSame(f17, table.get(17));
+        Assert.assertSame(f17, table.remove(17));
+        Assert.assertSame(f33, table.remove(33));
+        Assert.assertTrue(table.isEmpty());
+
+        // negative ids are indexed by their low bits as well
+        InvokeFuture negative = newFuture(-1);
+        Assert.assertNull(table.putIfAbsent(negative));
+        Assert.assertSame(negative, table.remove(-1));
+    }
+
+    @Test
+    public void testForEach() {
+        InvokeFutureTable table = new InvokeFutureTable(8);
+        for (int i = 0; i < 20; i++) {
+            table.putIfAbsent(newFuture(i));
+        }
+        final Set<Integer> ids = new HashSet<Integer>();
+        table.forEach(future -> ids.add(future.invokeId()));
+        Assert.assertEquals(20, ids.size());
+
+        table.forEach(future -> table.remove(future.invokeId()));
+        Assert.assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentRemoveOnlyOnce() throws Exception {
+        final InvokeFutureTable table = new InvokeFutureTable(64);
+        final int count = 10000;
+        for (int i = 0; i < count; i++) {
+            table.putIfAbsent(newFuture(i));
+        }
+        final AtomicInteger removed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < count; i++) {
+                        if (table.remove(i) != null) {
+                            removed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        Assert.assertEquals(count, removed.get());
+        Assert.assertTrue(table.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAddAndRemove() throws Exception {
+        final InvokeFutureTable table = new InvokeFutureTable(256);
+        final AtomicInteger ids = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20000; i++) {
+                        int id = ids.getAndIncrement();
+                        InvokeFuture future = newFuture(id);
+                        if (table.putIfAbsent(future) != null || table.get(id) != future
+                            || table.remove(id) != future) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(table.isEmpty());
+    }
+
+    private InvokeFuture newFuture(int id) {
+        return new DefaultInvokeFuture(id, null, null, RpcProtocol.PROTOCOL_CODE,
+            new RpcCommandFactory());
+    }
+}
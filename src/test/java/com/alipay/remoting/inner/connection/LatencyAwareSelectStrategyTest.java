@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.inner.connection;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.InvokeFuture;
+import com.alipay.remoting.LatencyAwareSelectStrategy;
+import com.alipay.remoting.LatencyEwma;
+import com.alipay.remoting.rpc.DefaultInvokeFuture;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.protocol.RpcProtocol;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the response latency EWMA of connections and the latency aware select strategy.
+ */
+public class LatencyAwareSelectStrategyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testEwma() {
+        LatencyEwma ewma = new LatencyEwma(1000);
+        Assert.assertEquals(0, ewma.get(0), 0);
+
+        // peak sample replaces the average
+        ewma.update(10 * MS, 0);
+        Assert.assertEquals(10 * MS, ewma.get(0), 0);
+        ewma.update(50 * MS, 0);
+        Assert.assertEquals(50 * MS, ewma.get(0), 0);
+
+        // lower samples are weighted by the time elapsed
+        ewma.update(10 * MS, 1000 * MS);
+        double expected = 50 * MS * Math.exp(-1) + 10 * MS * (1 - Math.exp(-1));
+        Assert.assertEquals(expected, ewma.get(1000 * MS), 1);
+
+        // decay towards 0 without samples
+        Assert.assertEquals(expected * Math.exp(-2), ewma.get(3000 * MS), 1);
+    }
+
+    @Test
+    public void testEjectOutlier() throws InterruptedException {
+        Connection slow = newConnection(30);
+        Connection fast1 = newConnection(0);
+        Connection fast2 = newConnection(0);
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(slow);
+        connections.add(fast1);
+        connections.add(fast2);
+        Assert.assertTrue(slow.getResponseLatency() > 4 * fast1.getResponseLatency());
+
+        LatencyAwareSelectStrategy strategy = new LatencyAwareSelectStrategy(null, 4, 1);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertNotSame(slow, strategy.select(connections));
+        }
+
+        // never eject all
+        connections.remove(fast1);
+        connections.remove(fast2);
+        Assert.assertSame(slow, strategy.select(connections));
+    }
+
+    @Test
+    public void testPreferLessCost() throws InterruptedException {
+        Connection busy = newConnection(2);
+        Connection idle = newConnection(2);
+        for (int i = 10; i < 20; i++) {
+            busy.addInvokeFuture(newFuture(i));
+        }
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(busy);
+        connections.add(idle);
+
+        LatencyAwareSelectStrategy strategy = new LatencyAwareSelectStrategy(null, 1000, 1000);
+        int idleHits = 0;
+        for (int i = 0; i < 100; i++) {
+            if (strategy.select(connections) == idle) {
+                idleHits++;
+            }
+        }
+        Assert.assertEquals(100, idleHits);
+    }
+
+    @Test
+    public void testTryConnectionWithoutResponse() throws InterruptedException {
+        Connection sampled = newConnection(5);
+        Connection fresh = new Connection(new EmbeddedChannel());
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(sampled);
+        connections.add(fresh);
+        LatencyAwareSelectStrategy strategy = new LatencyAwareSelectStrategy(null, 4, 1);
+        Assert.assertSame(fresh, strategy.select(connections));
+    }
+
+    private Connection newConnection(long latencyMillis) throws InterruptedException {
+        Connection conn = new Connection(new EmbeddedChannel());
+        InvokeFuture future = newFuture(1);
+        conn.addInvokeFuture(future);
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        conn.removeInvokeFuture(1);
+        conn.recordResponseLatency(future);
+        Assert.assertTrue(conn.getResponseLatency() > 0);
+        return conn;
+    }
+
+    private InvokeFuture newFuture(int id) {
+        return new DefaultInvokeFuture(id, null, null, RpcProtocol.PROTOCOL_CODE,
+            new RpcCommandFactory());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.inner.connection;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.LeastInflightSelectStrategy;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.GlobalSwitch;
+import com.alipay.remoting.rpc.DefaultInvokeFuture;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.protocol.RpcProtocol;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test for the least inflight select strategy.
+ */
+public class LeastInflightSelectStrategyTest {
+
+    @Test
+    public void testSelectLessInflight() {
+        Connection busy = newConnection(10);
+        Connection idle = newConnection(0);
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(busy);
+        connections.add(idle);
+
+        LeastInflightSelectStrategy strategy = new LeastInflightSelectStrategy(null);
+        // the two samples of two connections are always both of them
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(idle, strategy.select(connections));
+        }
+    }
+
+    @Test
+    public void testSpreadAmongEqualConnections() {
+        List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < 4; i++) {
+            connections.add(newConnection(0));
+        }
+        LeastInflightSelectStrategy strategy = new LeastInflightSelectStrategy(null);
+        int[] hits = new int[connections.size()];
+        for (int i = 0; i < 4000; i++) {
+            hits[connections.indexOf(strategy.select(connections))]++;
+        }
+        for (int hit : hits) {
+            Assert.assertTrue(hit > 500);
+        }
+    }
+
+    @Test
+    public void testSkipUnavailable() {
+        Connection closed = newConnection(0);
+        closed.getChannel().close();
+        Connection off = newConnection(0);
+        off.setAttribute(Configs.CONN_SERVICE_STATUS, Configs.CONN_SERVICE_STATUS_OFF);
+        Connection fine = newConnection(5);
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(closed);
+        connections.add(off);
+        connections.add(fine);
+
+        GlobalSwitch globalSwitch = new GlobalSwitch();
+        globalSwitch.turnOn(GlobalSwitch.CONN_MONITOR_SWITCH);
+        LeastInflightSelectStrategy strategy = new LeastInflightSelectStrategy(globalSwitch);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(fine, strategy.select(connections));
+        }
+
+        connections.remove(fine);
+        Assert.assertNull(strategy.select(connections));
+        Assert.assertNull(strategy.select(Collections.singletonList(closed)));
+        Assert.assertNull(strategy.select(new ArrayList<Connection>()));
+        Assert.assertNull(strategy.select(null));
+    }
+
+    private Connection newConnection(int inflight) {
+        Connection conn = new Connection(new EmbeddedChannel());
+        for (int i = 1; i <= inflight; i++) {
+            conn.addInvokeFuture(new DefaultInvokeFuture(i, null, null, RpcProtocol.PROTOCOL_CODE,
+                new RpcCommandFactory()));
+        }
+        Assert.assertEquals(inflight, conn.getInvokeFutureCount());
+        return conn;
+    }
+}
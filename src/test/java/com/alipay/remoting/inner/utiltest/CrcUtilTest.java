@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.inner.utiltest;
+
+import com.alipay.remoting.util.CrcUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * test CrcUtil
+ */
+public class CrcUtilTest {
+
+    @Test
+    public void testCrc32OverByteBuf() {
+        byte[] bytes = new byte[10000];
+        new Random(1).nextBytes(bytes);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 100, 9000);
+        int expected = (int) crc32.getValue();
+
+        Assert.assertEquals(expected, CrcUtil.crc32(bytes, 100, 9000));
+
+        ByteBuf heap = Unpooled.wrappedBuffer(bytes);
+        Assert.assertEquals(expected, CrcUtil.crc32(heap, 100, 9000));
+
+        ByteBuf direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+        Assert.assertEquals(expected, CrcUtil.crc32(direct, 100, 9000));
+
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(bytes, 0, 3000));
+        composite.addComponent(true, Unpooled.directBuffer().writeBytes(bytes, 3000, 7000));
+        Assert.assertEquals(expected, CrcUtil.crc32(composite, 100, 9000));
+
+        direct.release();
+        composite.release();
+    }
+
+    @Test
+    public void testCrc32c() {
+        byte[] check = "123456789".getBytes();
+        Assert.assertEquals(0xE3069283, CrcUtil.crc32c(check, 0, check.length));
+
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(check);
+        Assert.assertEquals(0xE3069283, CrcUtil.crc32c(direct, 0, check.length));
+        direct.release();
+
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(check, 0, 4));
+        composite.addComponent(true, Unpooled.directBuffer().writeBytes(check, 4, 5));
+        Assert.assertEquals(0xE3069283, CrcUtil.crc32c(composite, 0, check.length));
+        composite.release();
+
+        // state is reset between calls
+        Assert.assertEquals(0xE3069283, CrcUtil.crc32c(check, 0, check.length));
+    }
+}
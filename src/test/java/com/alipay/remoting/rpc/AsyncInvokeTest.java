@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc;
+
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.exception.RemotingException;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleClientUserProcessor;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeTimeoutException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for async invocation with completable future returned.
+ */
+public class AsyncInvokeTest {
+
+    BoltServer                server;
+    RpcClient                 client;
+
+    int                       port                    = PortScan.select();
+    String                    addr                    = "127.0.0.1:" + port;
+
+    SimpleServerUserProcessor serverUserProcessor     = new SimpleServerUserProcessor(0, 4, 4,
+                                                          60, 32);
+    SimpleClientUserProcessor clientUserProcessor     = new SimpleClientUserProcessor();
+    CONNECTEventProcessor     serverConnectProcessor  = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        server = new BoltServer(port, true);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.registerUserProcessor(clientUserProcessor);
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testInvokeAsync() throws Exception {
+        RequestBody req = new RequestBody(1, "hello world async");
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.invokeAsync(addr, req, 3000));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(3,
+            TimeUnit.SECONDS);
+        for (CompletableFuture<Object> future : futures) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+        }
+        Assert.assertEquals(20, serverUserProcessor.getInvokeTimes());
+    }
+
+    @Test
+    public void testCompose() throws Exception {
+        final RequestBody req = new RequestBody(1, "hello world async");
+        Object result = client.invokeAsync(addr, req, 3000)
+            .thenCompose(res -> client.invokeAsync(addr, req, 3000))
+            .thenApply(res -> res + "!").get(3, TimeUnit.SECONDS);
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR + "!", result);
+        Assert.assertEquals(2, serverUserProcessor.getInvokeTimes());
+    }
+
+    @Test
+    public void testCompletionExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "async-completion"));
+        try {
+            client.setAsyncExecutor(executor);
+            String thread = client.invokeAsync(addr, new RequestBody(1, "hello"), 3000)
+                .thenApply(res -> Thread.currentThread().getName()).get(3, TimeUnit.SECONDS);
+            Assert.assertEquals("async-completion", thread);
+        } finally {
+            client.setAsyncExecutor(null);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        int delayPort = PortScan.select();
+        BoltServer delayServer = new BoltServer(delayPort);
+        delayServer.start();
+        delayServer.registerUserProcessor(new SimpleServerUserProcessor(500));
+        try {
+            CompletableFuture<Object> future = client.invokeAsync("127.0.0.1:" + delayPort,
+                new RequestBody(1, "hello"), 100);
+            try {
+                future.get(3, TimeUnit.SECONDS);
+                Assert.fail("Should not reach here!");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof InvokeTimeoutException);
+            }
+        } finally {
+            delayServer.stop();
+        }
+    }
+
+    @Test
+    public void testConnectFailCompletesExceptionally() throws Exception {
+        CompletableFuture<Object> future = client.invokeAsync(
+            "127.0.0.1:" + PortScan.select() + "?_CONNECTTIMEOUT=500", new RequestBody(1, "hello"),
+            1000);
+        try {
+            future.get(3, TimeUnit.SECONDS);
+            Assert.fail("Should not reach here!");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RemotingException);
+        }
+    }
+
+    @Test
+    public void testServerInvokeAsync() throws Exception {
+        client.invokeSync(addr, new RequestBody(1, "hello"), 3000);
+        String remoteAddr = serverConnectProcessor.getRemoteAddr();
+        Object result = server.getRpcServer()
+            .invokeAsync(remoteAddr, new RequestBody(1, "hello client"), 3000)
+            .get(3, TimeUnit.SECONDS);
+        Assert.assertEquals(RequestBody.DEFAULT_CLIENT_RETURN_STR, result);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.client;
+
+import com.alipay.remoting.AimdLimiter;
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.Url;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeLimitExceededException;
+import com.alipay.remoting.rpc.exception.InvokeServerBusyException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Test for the AIMD limit of the pending invocations of a connection pool.
+ */
+public class AimdInvokeLimitTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor(200, 1, 1, 60,
+                                                      1);
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.INVOKE_AIMD_LIMIT, "true");
+        System.setProperty(Configs.INVOKE_AIMD_LIMIT_INITIAL, "4");
+        System.setProperty(Configs.INVOKE_AIMD_LIMIT_BACKOFF, "50");
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.INVOKE_AIMD_LIMIT);
+        System.clearProperty(Configs.INVOKE_AIMD_LIMIT_INITIAL);
+        System.clearProperty(Configs.INVOKE_AIMD_LIMIT_BACKOFF);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testFailLocallyBeyondLimitAndBackOffWhenBusy() throws Exception {
+        Connection conn = client.getConnection(addr, 1000);
+        AimdLimiter limiter = conn.getInvokeLimiter();
+        Assert.assertEquals(4, limiter.getLimit());
+
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.invokeWithFuture(conn, req, 3000));
+        }
+        try {
+            client.invokeWithFuture(conn, req, 3000);
+            Assert.fail("Should not reach here!");
+        } catch (InvokeLimitExceededException e) {
+            // expected
+        }
+        CompletableFuture<Object> async = client.invokeAsync(conn, req, 3000);
+        try {
+            async.get();
+            Assert.fail("Should not reach here!");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InvokeLimitExceededException);
+        }
+
+        // one request processed and one queued by the server, the others are rejected as busy
+        int busy = 0;
+        for (RpcResponseFuture future : futures) {
+            try {
+                Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+            } catch (InvokeServerBusyException e) {
+                ++busy;
+            }
+        }
+        Assert.assertEquals(2, busy);
+        // the busy responses of the requests sent together back off once
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(0, conn.getInvokeFutureCount());
+    }
+
+    @Test
+    public void testLimitSharedByPool() throws Exception {
+        Url url = client.getAddressParser().parse(addr + "?_CONNECTIONNUM=2&_CONNECTIONWARMUP=true");
+        client.getConnection(url, 1000);
+        List<Connection> conns = client.getConnectionManager().getAll(url.getUniqueKey());
+        Assert.assertEquals(2, conns.size());
+        Connection first = conns.get(0);
+        Connection second = conns.get(1);
+        Assert.assertSame(first.getInvokeLimiter(), second.getInvokeLimiter());
+        Assert.assertEquals(4, first.getInvokeLimiter().getLimit());
+
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(client.invokeWithFuture(first, req, 3000));
+            futures.add(client.invokeWithFuture(second, req, 3000));
+        }
+        // the window counts the pending invocations of both connections
+        try {
+            client.invokeWithFuture(second, req, 3000);
+            Assert.fail("Should not reach here!");
+        } catch (InvokeLimitExceededException e) {
+            // expected
+        }
+        for (RpcResponseFuture future : futures) {
+            try {
+                future.get();
+            } catch (InvokeServerBusyException e) {
+                // rejected by the single thread server
+            }
+        }
+        Assert.assertEquals(0, first.getLimitedInvokeCount());
+    }
+
+    @Test
+    public void testAdditiveIncrease() {
+        AimdLimiter limiter = new AimdLimiter(4, 6, 50);
+        for (int i = 0; i < 4; i++) {
+            limiter.onSuccess();
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+        limiter.onSuccess();
+        Assert.assertEquals(5, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        Assert.assertEquals(6, limiter.getLimit());
+        Assert.assertTrue(limiter.allow(5));
+        Assert.assertFalse(limiter.allow(6));
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(16, 100, 50);
+        long sendTime = System.nanoTime();
+        limiter.onOverload(sendTime);
+        limiter.onOverload(sendTime);
+        Assert.assertEquals(8, limiter.getLimit());
+
+        Thread.sleep(1);
+        limiter.onOverload(System.nanoTime());
+        Assert.assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(1);
+            limiter.onOverload(System.nanoTime());
+        }
+        Assert.assertEquals(1, limiter.getLimit());
+        Assert.assertTrue(limiter.allow(0));
+    }
+}
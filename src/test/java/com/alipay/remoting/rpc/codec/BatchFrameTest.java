@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.InvokeCallback;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.RpcCommand;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.RpcCommandType;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.protocol.RpcCommandBatch;
+import com.alipay.remoting.rpc.protocol.RpcCommandCode;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.RpcResponseCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for the batch frames of protocol v2.
+ */
+public class BatchFrameTest {
+
+    BoltServer                server;
+    RpcClient                 client;
+
+    int                       port                   = PortScan.select();
+    String                    addr                   = "127.0.0.1:" + port
+                                                       + "?_PROTOCOL=2&_VERSION=2&_CONNECTIONNUM=2";
+
+    SimpleServerUserProcessor serverUserProcessor    = new SimpleServerUserProcessor(0, 20, 20,
+                                                         60, 1000);
+    CONNECTEventProcessor     serverConnectProcessor = new CONNECTEventProcessor();
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.INVOKE_BATCH_WINDOW, "1000");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.INVOKE_BATCH_WINDOW);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.enableRequestBatchSwitch();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testBatchFrame() throws Exception {
+        List<RpcCommand> requests = new ArrayList<RpcCommand>();
+        for (int i = 1; i <= 3; i++) {
+            requests.add(newCommand(new RequestBody(i, "hello batch"), i));
+        }
+        EmbeddedChannel clientChannel = newChannel();
+        Assert.assertTrue(clientChannel.writeOutbound(new RpcCommandBatch(requests)));
+        ByteBuf frame = clientChannel.readOutbound();
+        Assert.assertEquals(RpcCommandCode.RPC_BATCH.value(), frame.getShort(3));
+        Assert.assertEquals(frame.readableBytes() - RpcProtocolV2.getRequestHeaderLength(),
+            frame.getInt(RpcProtocolV2.getRequestHeaderLength() - 4));
+
+        // the requests of a batch are dispatched as one list
+        EmbeddedChannel serverChannel = newChannel();
+        Assert.assertNull(serverChannel.attr(RpcProtocolV2.PEER_BATCH).get());
+        Assert.assertTrue(serverChannel.writeInbound(frame));
+        List<?> decoded = serverChannel.readInbound();
+        Assert.assertEquals(3, decoded.size());
+        for (int i = 0; i < 3; i++) {
+            RpcRequestCommand request = (RpcRequestCommand) decoded.get(i);
+            Assert.assertEquals(i + 1, request.getId());
+            request.deserialize();
+            Assert.assertEquals(i + 1, ((RequestBody) request.getRequestObject()).getId());
+            request.release();
+        }
+        Assert.assertEquals(Boolean.TRUE, serverChannel.attr(RpcProtocolV2.PEER_BATCH).get());
+
+        // the responses are batched with the response header, the content is their frames in order
+        List<RpcCommand> responses = new ArrayList<RpcCommand>();
+        RpcCommandFactory factory = new RpcCommandFactory();
+        for (RpcCommand request : requests) {
+            RpcResponseCommand response = factory.createResponse(
+                RequestBody.DEFAULT_SERVER_RETURN_STR, request);
+            response.serialize();
+            responses.add(response);
+        }
+        Assert.assertTrue(serverChannel.writeOutbound(new RpcCommandBatch(responses)));
+        ByteBuf responseFrame = serverChannel.readOutbound();
+        Assert.assertEquals(RpcCommandType.RESPONSE, responseFrame.getByte(2));
+        Assert.assertEquals(RpcCommandCode.RPC_BATCH.value(), responseFrame.getShort(3));
+        int offset = RpcProtocolV2.getResponseHeaderLength();
+        for (int i = 1; i <= 3; i++) {
+            Assert.assertEquals(RpcCommandCode.RPC_RESPONSE.value(),
+                responseFrame.getShort(offset + 3));
+            Assert.assertEquals(i, responseFrame.getInt(offset + 6));
+            offset += RpcProtocolV2.getResponseHeaderLength() + responseFrame.getShort(offset + 14)
+                      + responseFrame.getShort(offset + 16) + responseFrame.getInt(offset + 18)
+                      + 4;
+        }
+        Assert.assertEquals(responseFrame.readableBytes(), offset);
+        responseFrame.release();
+        clientChannel.finish();
+        serverChannel.finish();
+    }
+
+    @Test
+    public void testBatchedInvocations() throws Exception {
+        final int count = 200;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            client.invokeWithCallback(addr, new RequestBody(i, "hello batch"),
+                new InvokeCallback() {
+                    @Override
+                    public void onResponse(Object result) {
+                        if (RequestBody.DEFAULT_SERVER_RETURN_STR.equals(result)) {
+                            succeeded.incrementAndGet();
+                        }
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onException(Throwable e) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public Executor getExecutor() {
+                        return null;
+                    }
+                }, 3000);
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(count, succeeded.get());
+        Assert.assertEquals(count, serverUserProcessor.getInvokeTimes());
+
+        // the server batches its responses to the connections sending batches
+        Connection serverConn = serverConnectProcessor.getConnection();
+        Assert.assertEquals(Boolean.TRUE, serverConn.getChannel().attr(RpcProtocolV2.PEER_BATCH)
+            .get());
+
+        // plain frames go on when the switch is off
+        client.disableRequestBatchSwitch();
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+            client.invokeSync(addr, new RequestBody(1, "hello plain"), 3000));
+    }
+
+    private RpcRequestCommand newCommand(RequestBody request, int id) throws Exception {
+        RpcRequestCommand command = new RpcRequestCommand(request, id);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+        command.serialize();
+        return command;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.BizContext;
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.protocol.RpcChunkAssembler;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.SyncUserProcessor;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for chunked framing of protocol v2.
+ */
+public class ChunkTest {
+
+    static final int CHUNK_SIZE     = 16 * 1024;
+    static final int MAX_FRAME_SIZE = 512 * 1024;
+
+    BoltServer       server;
+    RpcClient        client;
+
+    int              port           = PortScan.select();
+    String           addr           = "127.0.0.1:" + port + "?_PROTOCOL=2&_VERSION=2";
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.CODEC_CHUNK_SIZE, String.valueOf(CHUNK_SIZE));
+        System.setProperty(Configs.CODEC_MAX_FRAME_SIZE, String.valueOf(MAX_FRAME_SIZE));
+        System.setProperty(Configs.CODEC_COMPRESS, "true");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.CODEC_CHUNK_SIZE);
+        System.clearProperty(Configs.CODEC_MAX_FRAME_SIZE);
+        System.clearProperty(Configs.CODEC_COMPRESS);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SyncUserProcessor<RequestBody>() {
+            @Override
+            public Object handleRequest(BizContext bizCtx, RequestBody request) throws Exception {
+                return request;
+            }
+
+            @Override
+            public String interest() {
+                return RequestBody.class.getName();
+            }
+        });
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testChunkedFrames() throws Exception {
+        // random content does not compress, so it is carried by several chunks
+        RequestBody request = new RequestBody(1, 100 * 1024);
+        RpcRequestCommand command = newCommand(request);
+        int contentLength = command.getContentLength();
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+
+        // each chunk is a write of its own, feed them one by one, only the last one produces a command
+        int count = 0;
+        ByteBuf frame;
+        while ((frame = channel.readOutbound()) != null) {
+            Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.CHUNK_SWITCH_INDEX,
+                frame.getByte(11)));
+            int frameLength = 24 + frame.getShort(16) + frame.getShort(18) + frame.getInt(20) + 4;
+            Assert.assertEquals(frameLength, frame.readableBytes());
+            Assert.assertTrue(frame.getInt(20) <= CHUNK_SIZE + 4);
+            channel.writeInbound(frame);
+            count++;
+            if (!channel.outboundMessages().isEmpty()) {
+                Assert.assertNull(channel.readInbound());
+            }
+        }
+        Assert.assertTrue(count > contentLength / CHUNK_SIZE);
+
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(contentLength, decoded.getContentLength());
+        decoded.deserialize();
+        Assert.assertEquals(RequestBody.class.getName(), decoded.getRequestClass());
+        Assert.assertEquals(request.getMsg(), ((RequestBody) decoded.getRequestObject()).getMsg());
+        Assert.assertEquals(0, RpcChunkAssembler.get(channel).size());
+        channel.finish();
+    }
+
+    @Test
+    public void testSmallContentNotChunked() throws Exception {
+        RpcRequestCommand command = newCommand(new RequestBody(1, "hello world"));
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertFalse(ProtocolSwitch.isOn(ProtocolSwitch.CHUNK_SWITCH_INDEX,
+            frame.getByte(11)));
+        Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.CHUNK_ACCEPT_SWITCH_INDEX,
+            frame.getByte(11)));
+
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        decoded.deserialize();
+        Assert.assertEquals("hello world", ((RequestBody) decoded.getRequestObject()).getMsg());
+        channel.finish();
+    }
+
+    @Test
+    public void testOversizedFrameFailFast() throws Exception {
+        RpcRequestCommand command = newCommand(new RequestBody(1, "hello world"));
+
+        EmbeddedChannel channel = newChannel();
+        channel.writeOutbound(command);
+        ByteBuf frame = channel.readOutbound();
+        // only the header arrives, declaring a content larger than the max frame size
+        frame.setInt(20, MAX_FRAME_SIZE + 1);
+        try {
+            channel.writeInbound(frame.readRetainedSlice(24));
+            Assert.fail("Should not reach here!");
+        } catch (DecoderException e) {
+            // expected
+        }
+        frame.release();
+    }
+
+    @Test
+    public void testOversizedChunkedContentFailFast() throws Exception {
+        RpcRequestCommand command = newCommand(new RequestBody(1, MAX_FRAME_SIZE));
+
+        EmbeddedChannel channel = newChannel();
+        channel.writeOutbound(command);
+        ByteBuf first = channel.readOutbound();
+        // the first chunk already tells the total content length
+        try {
+            channel.writeInbound(first);
+            Assert.fail("Should not reach here!");
+        } catch (DecoderException e) {
+            // expected
+        }
+        channel.releaseOutbound();
+    }
+
+    @Test
+    public void testIncompleteContentReleasedOnClose() throws Exception {
+        RpcRequestCommand command = newCommand(new RequestBody(1, 100 * 1024));
+
+        EmbeddedChannel channel = newChannel();
+        channel.writeOutbound(command);
+        ByteBuf first = channel.readOutbound();
+        channel.writeInbound(first);
+        Assert.assertNull(channel.readInbound());
+        Assert.assertEquals(1, RpcChunkAssembler.get(channel).size());
+        // the chunk is kept as a slice of the inbound buffer
+        Assert.assertEquals(1, first.refCnt());
+
+        channel.close();
+        Assert.assertEquals(0, RpcChunkAssembler.get(channel).size());
+        Assert.assertEquals(0, first.refCnt());
+        channel.releaseOutbound();
+    }
+
+    @Test
+    public void testInvokeWithChunk() throws Exception {
+        RequestBody random = new RequestBody(1, 200 * 1024);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200 * 1024) {
+            sb.append("bolt rpc chunk ");
+        }
+        RequestBody compressible = new RequestBody(2, sb.toString());
+        for (int i = 0; i < 5; i++) {
+            RequestBody ret = (RequestBody) client.invokeSync(addr, random, 3000);
+            Assert.assertEquals(random.getMsg(), ret.getMsg());
+            ret = (RequestBody) client.invokeSync(addr, compressible, 3000);
+            Assert.assertEquals(compressible.getMsg(), ret.getMsg());
+        }
+    }
+
+    private RpcRequestCommand newCommand(RequestBody request) throws Exception {
+        RpcRequestCommand command = new RpcRequestCommand(request);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+        command.serialize();
+        return command;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
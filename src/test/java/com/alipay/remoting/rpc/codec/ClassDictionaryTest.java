@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.protocol.RpcClassDictionary;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for the request class dictionary of protocol v2.
+ */
+public class ClassDictionaryTest {
+
+    BoltServer                server;
+    RpcClient                 client;
+
+    int                       port                   = PortScan.select();
+    String                    addr                   = "127.0.0.1:" + port
+                                                       + "?_PROTOCOL=2&_VERSION=2";
+
+    SimpleServerUserProcessor serverUserProcessor    = new SimpleServerUserProcessor();
+    CONNECTEventProcessor     serverConnectProcessor = new CONNECTEventProcessor();
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.CODEC_CLASS_DICTIONARY, "true");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.CODEC_CLASS_DICTIONARY);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testNegotiateAndInvoke() throws Exception {
+        RequestBody req = new RequestBody(1, "hello world");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(addr, req, 3000));
+        }
+        Assert.assertEquals(5, serverUserProcessor.getInvokeTimes());
+
+        Connection clientConn = client.getConnection(addr, 3000);
+        RpcClassDictionary clientDictionary = clientConn.getChannel()
+            .attr(RpcClassDictionary.DICTIONARY).get();
+        Assert.assertTrue(clientDictionary.isPeerSupported());
+        Assert.assertEquals(0, clientDictionary.getId(RequestBody.class.getName()));
+
+        RpcClassDictionary serverDictionary = serverConnectProcessor.getConnection().getChannel()
+            .attr(RpcClassDictionary.DICTIONARY).get();
+        Assert.assertEquals(RequestBody.class.getName(), serverDictionary.getClassName(0));
+    }
+
+    @Test
+    public void testNotUsedBeforeAdvertised() throws Exception {
+        EmbeddedChannel channel = newChannel();
+        ByteBuf frame = encode(channel);
+        // full class name
+        Assert.assertTrue(frame.getShort(16) > 2);
+        frame.release();
+        Assert.assertNull(channel.attr(RpcClassDictionary.DICTIONARY).get());
+        channel.finish();
+    }
+
+    @Test
+    public void testDefinitionThenReference() throws Exception {
+        EmbeddedChannel clientChannel = newChannel();
+        RpcClassDictionary.get(clientChannel, 16).setPeerSupported(true);
+        EmbeddedChannel serverChannel = newChannel();
+
+        ByteBuf definition = encode(clientChannel);
+        int definitionLen = definition.getShort(16);
+        Assert.assertEquals(RequestBody.class.getName().length() + 2, definitionLen);
+        Assert.assertTrue(serverChannel.writeInbound(definition));
+        RpcRequestCommand decoded = serverChannel.readInbound();
+        Assert.assertEquals(RequestBody.class.getName(), decoded.getRequestClass());
+
+        ByteBuf reference = encode(clientChannel);
+        Assert.assertEquals(2, reference.getShort(16));
+        Assert.assertTrue(serverChannel.writeInbound(reference));
+        decoded = serverChannel.readInbound();
+        Assert.assertEquals(RequestBody.class.getName(), decoded.getRequestClass());
+        decoded.deserialize();
+        Assert.assertTrue(decoded.getRequestObject() instanceof RequestBody);
+
+        // a new connection does not know the id
+        EmbeddedChannel otherChannel = newChannel();
+        try {
+            otherChannel.writeInbound(encode(clientChannel));
+            Assert.fail("Should not reach here!");
+        } catch (DecoderException e) {
+            Assert.assertTrue(e.getMessage().contains("Unknown class id"));
+        }
+        clientChannel.finish();
+        serverChannel.finish();
+    }
+
+    @Test
+    public void testNotDefinedIfEncodeFailed() throws Exception {
+        EmbeddedChannel clientChannel = newChannel();
+        RpcClassDictionary dictionary = RpcClassDictionary.get(clientChannel, 16);
+        dictionary.setPeerSupported(true);
+
+        RequestBody request = new RequestBody(1, "hello world");
+        RpcRequestCommand broken = new RpcRequestCommand(request) {
+            @Override
+            public byte[] getContent() {
+                throw new IllegalStateException("broken content");
+            }
+        };
+        broken.setTimeout(3000);
+        broken.setRequestClass(request.getClass().getName());
+        broken.serialize();
+        try {
+            clientChannel.writeOutbound(broken);
+            Assert.fail("Should not reach here!");
+        } catch (EncoderException e) {
+            // expected
+        }
+        Assert.assertEquals(-1, dictionary.getId(RequestBody.class.getName()));
+
+        // the next frame still carries the definition
+        ByteBuf definition = encode(clientChannel);
+        Assert.assertEquals(RequestBody.class.getName().length() + 2, definition.getShort(16));
+        Assert.assertEquals(0, dictionary.getId(RequestBody.class.getName()));
+        definition.release();
+        clientChannel.finish();
+    }
+
+    private ByteBuf encode(EmbeddedChannel channel) throws Exception {
+        RequestBody request = new RequestBody(1, "hello world");
+        RpcRequestCommand command = new RpcRequestCommand(request);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.serialize();
+        Assert.assertTrue(channel.writeOutbound(command));
+        return channel.readOutbound();
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
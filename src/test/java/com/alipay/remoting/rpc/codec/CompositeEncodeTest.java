@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Test for composite encode of protocol v2, the content buffer of a command is added to the frame without copying.
+ */
+public class CompositeEncodeTest {
+
+    BoltServer                server;
+    RpcClient                 client;
+
+    int                       port                   = PortScan.select();
+    String                    addr                   = "127.0.0.1:" + port
+                                                       + "?_PROTOCOL=2&_VERSION=2";
+
+    SimpleServerUserProcessor serverUserProcessor    = new SimpleServerUserProcessor();
+    CONNECTEventProcessor     serverConnectProcessor = new CONNECTEventProcessor();
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.CODEC_COMPOSITE_ENCODE, "true");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.CODEC_COMPOSITE_ENCODE);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testContentBufAddedAsComponent() throws Exception {
+        byte[] bytes = new byte[64 * 1024];
+        Arrays.fill(bytes, (byte) 7);
+        ByteBuf contentBuf = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+
+        RpcRequestCommand command = newCommand();
+        command.setContentBuf(contentBuf);
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertTrue(frame instanceof CompositeByteBuf);
+        // header, content and crc
+        Assert.assertEquals(3, ((CompositeByteBuf) frame).numComponents());
+        Assert.assertNull(command.getContentBuf());
+        Assert.assertEquals(1, contentBuf.refCnt());
+
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertArrayEquals(bytes, decoded.getContent());
+        Assert.assertEquals(0, contentBuf.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void testSmallContentCopied() throws Exception {
+        byte[] bytes = new byte[128];
+        Arrays.fill(bytes, (byte) 3);
+        ByteBuf contentBuf = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+
+        RpcRequestCommand command = newCommand();
+        command.setContentBuf(contentBuf);
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        // header with content, and crc
+        Assert.assertEquals(2, ((CompositeByteBuf) frame).numComponents());
+        Assert.assertEquals(0, contentBuf.refCnt());
+
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertArrayEquals(bytes, decoded.getContent());
+        channel.finish();
+    }
+
+    @Test
+    public void testInvokeWithCompositeEncode() throws Exception {
+        RequestBody req = new RequestBody(1, 128 * 1024);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(addr, req, 3000));
+        }
+        Assert.assertEquals(10, serverUserProcessor.getInvokeTimes());
+    }
+
+    private RpcRequestCommand newCommand() {
+        RpcRequestCommand command = new RpcRequestCommand();
+        command.setId(1);
+        command.setTimeout(3000);
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+        return command;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
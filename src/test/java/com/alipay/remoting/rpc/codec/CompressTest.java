@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.BizContext;
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.compression.CompressorManager;
+import com.alipay.remoting.compression.DeflateCompressor;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.exception.CodecException;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.RpcResponseCommand;
+import com.alipay.remoting.rpc.protocol.SyncUserProcessor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Test for content compression of protocol v2.
+ */
+public class CompressTest {
+
+    BoltServer server;
+    RpcClient  client;
+
+    int        port = PortScan.select();
+    String     addr = "127.0.0.1:" + port + "?_PROTOCOL=2&_VERSION=2";
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.CODEC_COMPRESS, "true");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.CODEC_COMPRESS);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SyncUserProcessor<RequestBody>() {
+            @Override
+            public Object handleRequest(BizContext bizCtx, RequestBody request) throws Exception {
+                return request;
+            }
+
+            @Override
+            public String interest() {
+                return RequestBody.class.getName();
+            }
+        });
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testDeflateCompressor() throws Exception {
+        DeflateCompressor compressor = new DeflateCompressor(6, 1);
+        byte[] bytes = repetitive(100 * 1024);
+
+        for (int i = 0; i < 3; i++) {
+            // heap to direct
+            ByteBuf compressed = Unpooled.directBuffer();
+            compressor.compress(Unpooled.wrappedBuffer(bytes), compressed);
+            Assert.assertTrue(compressed.readableBytes() < bytes.length / 4);
+
+            // direct to a fixed heap array
+            byte[] decompressed = new byte[bytes.length];
+            ByteBuf dst = Unpooled.wrappedBuffer(decompressed);
+            dst.clear();
+            compressor.decompress(compressed.duplicate(), dst);
+            Assert.assertArrayEquals(bytes, decompressed);
+
+            // fixed array too small
+            ByteBuf small = Unpooled.wrappedBuffer(new byte[bytes.length - 1]);
+            small.clear();
+            try {
+                compressor.decompress(compressed.duplicate(), small);
+                Assert.fail("Should not reach here!");
+            } catch (CodecException e) {
+                // expected
+            }
+            compressed.release();
+        }
+    }
+
+    @Test
+    public void testCompressedFrame() throws Exception {
+        RequestBody request = new RequestBody(1, new String(repetitive(64 * 1024)));
+        RpcRequestCommand command = newCommand(request);
+        int contentLength = command.getContentLength();
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+            frame.getByte(11)));
+        Assert.assertTrue(frame.readableBytes() < contentLength / 4);
+
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertEquals(contentLength, decoded.getContentLength());
+        decoded.deserialize();
+        Assert.assertEquals(request.getMsg(), ((RequestBody) decoded.getRequestObject()).getMsg());
+        channel.finish();
+    }
+
+    @Test
+    public void testSmallContentStored() throws Exception {
+        RpcRequestCommand command = newCommand(new RequestBody(1, "hello world"));
+        int contentLength = command.getContentLength();
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+            frame.getByte(11)));
+        // content length and leading compressor code
+        Assert.assertEquals(contentLength + 1, frame.getInt(20));
+        Assert.assertEquals(CompressorManager.NONE, frame.getByte(24 + frame.getShort(16)));
+
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        decoded.deserialize();
+        Assert.assertEquals("hello world", ((RequestBody) decoded.getRequestObject()).getMsg());
+        channel.finish();
+    }
+
+    @Test
+    public void testForgedOriginalLength() throws Exception {
+        int[] forged = new int[] { Integer.MAX_VALUE, -1, 64 * 1024 - 1 };
+        for (int originalLen : forged) {
+            RpcRequestCommand command = newCommand(new RequestBody(1, new String(
+                repetitive(64 * 1024))));
+            command.setProtocolSwitch(ProtocolSwitch.create(new int[0]));
+
+            EmbeddedChannel channel = newChannel();
+            Assert.assertTrue(channel.writeOutbound(command));
+            ByteBuf frame = channel.readOutbound();
+            int contentIndex = 24 + frame.getShort(16) + frame.getShort(18);
+            Assert.assertEquals(CompressorManager.Deflate, frame.getByte(contentIndex));
+            // the original length follows the compressor code
+            frame.setInt(contentIndex + 1, originalLen);
+            try {
+                channel.writeInbound(frame);
+                Assert.fail("Should not reach here!");
+            } catch (DecoderException e) {
+                Assert.assertTrue(e.getCause() instanceof CodecException);
+            }
+            try {
+                channel.finishAndReleaseAll();
+            } catch (DecoderException e) {
+                // the rest of the broken frame is decoded when the channel is closed
+            }
+        }
+    }
+
+    @Test
+    public void testCompressNegotiated() throws Exception {
+        RpcRequestCommand request = newCommand(new RequestBody(1, "hello world"));
+        RpcResponseCommand response = new RpcCommandFactory().createResponse("ok", request);
+        response.serialize();
+
+        // the responder advertises that it decodes compressed requests
+        EmbeddedChannel serverChannel = newChannel();
+        Assert.assertTrue(serverChannel.writeOutbound(response));
+        ByteBuf responseFrame = serverChannel.readOutbound();
+        Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_ACCEPT_SWITCH_INDEX,
+            responseFrame.getByte(11)));
+        Assert.assertFalse(ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+            responseFrame.getByte(11)));
+        responseFrame.release();
+        serverChannel.finish();
+
+        // requests are not wrapped before the peer advertised
+        EmbeddedChannel clientChannel = newChannel();
+        clientChannel.attr(RpcProtocolV2.PEER_COMPRESS).set(null);
+        Assert.assertTrue(clientChannel.writeOutbound(request));
+        ByteBuf requestFrame = clientChannel.readOutbound();
+        Assert.assertFalse(ProtocolSwitch.isOn(ProtocolSwitch.COMPRESS_SWITCH_INDEX,
+            requestFrame.getByte(11)));
+        Assert.assertEquals(request.getContentLength(), requestFrame.getInt(20));
+        requestFrame.release();
+        clientChannel.finish();
+    }
+
+    @Test
+    public void testPeerCompressRecorded() throws Exception {
+        RequestBody compressible = new RequestBody(1, new String(repetitive(128 * 1024)));
+        Connection conn = client.getConnection(addr, 1000);
+        Assert.assertNull(conn.getChannel().attr(RpcProtocolV2.PEER_COMPRESS).get());
+        RequestBody ret = (RequestBody) client.invokeSync(conn, compressible, 3000);
+        Assert.assertEquals(compressible.getMsg(), ret.getMsg());
+        Assert.assertEquals(Boolean.TRUE, conn.getChannel().attr(RpcProtocolV2.PEER_COMPRESS)
+            .get());
+        ret = (RequestBody) client.invokeSync(conn, compressible, 3000);
+        Assert.assertEquals(compressible.getMsg(), ret.getMsg());
+    }
+
+    @Test
+    public void testInvokeWithCompress() throws Exception {
+        RequestBody compressible = new RequestBody(1, new String(repetitive(128 * 1024)));
+        RequestBody random = new RequestBody(2, 128 * 1024);
+        for (int i = 0; i < 5; i++) {
+            RequestBody ret = (RequestBody) client.invokeSync(addr, compressible, 3000);
+            Assert.assertEquals(compressible.getMsg(), ret.getMsg());
+            ret = (RequestBody) client.invokeSync(addr, random, 3000);
+            Assert.assertEquals(random.getId(), ret.getId());
+        }
+    }
+
+    private RpcRequestCommand newCommand(RequestBody request) throws Exception {
+        RpcRequestCommand command = new RpcRequestCommand(request);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+        command.serialize();
+        return command;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        // as if the peer advertised it decodes compressed requests
+        channel.attr(RpcProtocolV2.PEER_COMPRESS).set(Boolean.TRUE);
+        return channel;
+    }
+
+    private static byte[] repetitive(int size) {
+        byte[] words = "bolt rpc compress ".getBytes();
+        byte[] bytes = new byte[size];
+        Random random = new Random(1);
+        for (int i = 0; i < size; i++) {
+            bytes[i] = words[(i + random.nextInt(2)) % words.length];
+        }
+        return bytes;
+    }
+}
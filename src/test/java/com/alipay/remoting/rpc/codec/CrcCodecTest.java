@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.RpcRemoting;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.RpcResponseCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for the crc32 and crc32c checksum of protocol v2 frames.
+ */
+public class CrcCodecTest {
+
+    @BeforeClass
+    public static void initClass() throws ClassNotFoundException {
+        // protocols are registered when RpcRemoting is initialized
+        Class.forName(RpcRemoting.class.getName());
+    }
+
+    @Test
+    public void testCrc32RoundTrip() throws Exception {
+        roundTrip(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+    }
+
+    @Test
+    public void testCrc32cRoundTrip() throws Exception {
+        roundTrip(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX,
+                ProtocolSwitch.CRC32C_SWITCH_INDEX }));
+    }
+
+    @Test
+    public void testCorruptedFrame() throws Exception {
+        ProtocolSwitch protocolSwitch = ProtocolSwitch.create(new int[] {
+                ProtocolSwitch.CRC_SWITCH_INDEX, ProtocolSwitch.CRC32C_SWITCH_INDEX });
+        ByteBuf frame = encode(protocolSwitch);
+        int index = frame.writerIndex() - 10;
+        frame.setByte(index, frame.getByte(index) + 1);
+
+        EmbeddedChannel channel = newChannel();
+        try {
+            channel.writeInbound(frame);
+            Assert.fail("Should not reach here!");
+        } catch (DecoderException e) {
+            Assert.assertTrue(e.getMessage().contains("CRC check failed"));
+        }
+    }
+
+    @Test
+    public void testCrc32cNegotiated() throws Exception {
+        RpcCommandFactory factory = new RpcCommandFactory();
+        RpcRequestCommand request = newRequest(ProtocolSwitch.create(new int[] {
+                ProtocolSwitch.CRC_SWITCH_INDEX }));
+        RpcResponseCommand response = factory.createResponse("ok", request);
+        response.serialize();
+
+        // the responder advertises that it verifies CRC32C
+        EmbeddedChannel serverChannel = newChannel();
+        Assert.assertTrue(serverChannel.writeOutbound(response));
+        ByteBuf responseFrame = serverChannel.readOutbound();
+        Assert.assertTrue(ProtocolSwitch.isOn(ProtocolSwitch.CRC32C_ACCEPT_SWITCH_INDEX,
+            responseFrame.getByte(11)));
+        serverChannel.finish();
+
+        // requests keep CRC32 before the peer advertised
+        EmbeddedChannel clientChannel = newChannel();
+        Assert.assertTrue(clientChannel.writeOutbound(request));
+        ByteBuf requestFrame = clientChannel.readOutbound();
+        Assert.assertFalse(ProtocolSwitch.isOn(ProtocolSwitch.CRC32C_SWITCH_INDEX,
+            requestFrame.getByte(11)));
+        requestFrame.release();
+
+        responseFrame.release();
+        clientChannel.finish();
+    }
+
+    @Test
+    public void testPeerCrc32cRecorded() throws Exception {
+        int port = PortScan.select();
+        BoltServer server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SimpleServerUserProcessor());
+        RpcClient client = new RpcClient();
+        client.init();
+        try {
+            String addr = "127.0.0.1:" + port + "?_PROTOCOL=2&_VERSION=2";
+            Connection conn = client.getConnection(addr, 1000);
+            Assert.assertNull(conn.getChannel().attr(RpcProtocolV2.PEER_CRC32C).get());
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(conn, new RequestBody(1, "hello"), 3000));
+            Assert.assertEquals(Boolean.TRUE, conn.getChannel().attr(RpcProtocolV2.PEER_CRC32C)
+                .get());
+        } finally {
+            client.shutdown();
+            server.stop();
+        }
+    }
+
+    private void roundTrip(ProtocolSwitch protocolSwitch) throws Exception {
+        ByteBuf frame = encode(protocolSwitch);
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertEquals(protocolSwitch.toByte(), decoded.getProtocolSwitch().toByte());
+        decoded.deserialize();
+        Assert.assertTrue(decoded.getRequestObject() instanceof RequestBody);
+        channel.finish();
+    }
+
+    private ByteBuf encode(ProtocolSwitch protocolSwitch) throws Exception {
+        RpcRequestCommand command = newRequest(protocolSwitch);
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        ByteBuf frame = channel.readOutbound();
+        channel.finish();
+        return frame;
+    }
+
+    private RpcRequestCommand newRequest(ProtocolSwitch protocolSwitch) throws Exception {
+        RequestBody request = new RequestBody(1, 8 * 1024);
+        RpcRequestCommand command = new RpcRequestCommand(request);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.setProtocolSwitch(protocolSwitch);
+        command.serialize();
+        return command;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
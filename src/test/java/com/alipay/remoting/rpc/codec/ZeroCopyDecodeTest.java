@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.codec;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.InvokeCallback;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.ResponseStatus;
+import com.alipay.remoting.rpc.DefaultInvokeFuture;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.RpcCommandFactory;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.RpcResponseCommand;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test for zero copy decode of protocol v2, the content is kept as a retained slice of the inbound buffer.
+ */
+public class ZeroCopyDecodeTest {
+
+    static ResourceLeakDetector.Level oldLevel;
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port + "?_PROTOCOL=2&_VERSION=2";
+
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor();
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.CODEC_ZERO_COPY_DECODE, "true");
+        oldLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.CODEC_ZERO_COPY_DECODE);
+        ResourceLeakDetector.setLevel(oldLevel);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testRetainedSliceReleasedAfterDeserialize() throws Exception {
+        ByteBuf frame = encode(new RequestBody(1, 100 * 1024));
+
+        EmbeddedChannel decodeChannel = newChannel();
+        Assert.assertTrue(decodeChannel.writeInbound(frame));
+        RpcRequestCommand decoded = decodeChannel.readInbound();
+
+        // the decoder has released the cumulation, only the slice of the command holds it
+        Assert.assertNotNull(decoded.getContentBuf());
+        Assert.assertTrue(frame.refCnt() > 0);
+        Assert.assertEquals(decoded.getContentBuf().readableBytes(), decoded.getContentLength());
+
+        decoded.deserialize();
+        Assert.assertTrue(decoded.getRequestObject() instanceof RequestBody);
+        decoded.release();
+        Assert.assertNull(decoded.getContentBuf());
+        Assert.assertEquals(0, frame.refCnt());
+        // release again should take no effect
+        decoded.release();
+        decodeChannel.finish();
+    }
+
+    @Test
+    public void testGetContentCopiesAndReleases() throws Exception {
+        ByteBuf frame = encode(new RequestBody(2, 1024));
+
+        EmbeddedChannel decodeChannel = newChannel();
+        decodeChannel.writeInbound(frame);
+        RpcRequestCommand decoded = decodeChannel.readInbound();
+
+        byte[] content = decoded.getContent();
+        Assert.assertEquals(decoded.getContentLength(), content.length);
+        Assert.assertNull(decoded.getContentBuf());
+        Assert.assertEquals(0, frame.refCnt());
+        decodeChannel.finish();
+    }
+
+    @Test
+    public void testInvokeWithZeroCopyDecode() throws Exception {
+        RequestBody req = new RequestBody(1, 128 * 1024);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(addr, req, 3000));
+
+            RpcResponseFuture future = client.invokeWithFuture(addr, req, 3000);
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicReference<Object> ret = new AtomicReference<Object>();
+            client.invokeWithCallback(addr, req, new InvokeCallback() {
+                @Override
+                public void onResponse(Object result) {
+                    ret.set(result);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    ret.set(e);
+                    latch.countDown();
+                }
+
+                @Override
+                public Executor getExecutor() {
+                    return null;
+                }
+            }, 3000);
+            Assert.assertTrue(latch.await(3, TimeUnit.SECONDS));
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, ret.get());
+        }
+        Assert.assertEquals(15, serverUserProcessor.getInvokeTimes());
+    }
+
+    @Test
+    public void testAbandonedFutureReleased() throws Exception {
+        // the response is put after the future is abandoned, e.g. right after the wait of invokeSync times out
+        ByteBuf content = PooledByteBufAllocator.DEFAULT.directBuffer(1024).writeZero(1024);
+        DefaultInvokeFuture future = newFuture();
+        future.release();
+        future.putResponse(newResponse(content));
+        Assert.assertEquals(0, content.refCnt());
+        // release again should take no effect
+        future.release();
+
+        // the response is put before the future is abandoned
+        content = PooledByteBufAllocator.DEFAULT.directBuffer(1024).writeZero(1024);
+        future = newFuture();
+        future.putResponse(newResponse(content));
+        Assert.assertEquals(1, content.refCnt());
+        future.release();
+        Assert.assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void testDroppedFutureReleased() throws Exception {
+        ByteBuf content = PooledByteBufAllocator.DEFAULT.directBuffer(1024).writeZero(1024);
+        DefaultInvokeFuture future = newFuture();
+        dropResponseFuture(future);
+        // the response of invokeWithFuture arrives while get() is never called
+        future.putResponse(newResponse(content));
+        for (int i = 0; i < 100 && content.refCnt() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            // the dropped futures are released when a future is created
+            dropResponseFuture(newFuture());
+        }
+        Assert.assertEquals(0, content.refCnt());
+
+        // a resolved future is not released again when dropped
+        RpcResponseCommand serialized = new RpcResponseCommand(RequestBody.DEFAULT_SERVER_RETURN_STR);
+        serialized.serialize();
+        content = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(serialized.getContent());
+        future = newFuture();
+        RpcResponseFuture responseFuture = new RpcResponseFuture(addr, future);
+        future.putResponse(newResponse(content));
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, responseFuture.get());
+        Assert.assertEquals(0, content.refCnt());
+        responseFuture = null;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(10);
+            dropResponseFuture(newFuture());
+        }
+    }
+
+    private void dropResponseFuture(DefaultInvokeFuture future) {
+        new RpcResponseFuture(addr, future);
+    }
+
+    private DefaultInvokeFuture newFuture() {
+        return new DefaultInvokeFuture(1, null, null, RpcProtocolV2.PROTOCOL_CODE,
+            new RpcCommandFactory());
+    }
+
+    private RpcResponseCommand newResponse(ByteBuf content) {
+        RpcResponseCommand response = new RpcResponseCommand();
+        response.setResponseStatus(ResponseStatus.SUCCESS);
+        response.setContentBuf(content);
+        return response;
+    }
+
+    private ByteBuf encode(Object request) throws Exception {
+        RpcRequestCommand command = new RpcRequestCommand(request);
+        command.setTimeout(3000);
+        command.setRequestClass(request.getClass().getName());
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[]{ProtocolSwitch.CRC_SWITCH_INDEX}));
+        command.serialize();
+
+        EmbeddedChannel encodeChannel = newChannel();
+        Assert.assertTrue(encodeChannel.writeOutbound(command));
+        ByteBuf frame = encodeChannel.readOutbound();
+        encodeChannel.finish();
+        return frame;
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.connectionmanage;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.InvokeCallback;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.exception.RemotingException;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test for acquiring connections without blocking the caller.
+ */
+public class AsyncConnectionAcquireTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+    String deadAddr = "127.0.0.1:" + PortScan.select();
+
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor();
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.INVOKE_CALLBACK_ASYNC_CONNECT, "true");
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.INVOKE_CALLBACK_ASYNC_CONNECT);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testAcquisitionsShareCreation() throws Exception {
+        List<CompletableFuture<Connection>> futures = new ArrayList<CompletableFuture<Connection>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.getConnectionAsync(addr, 3000));
+        }
+        Connection conn = futures.get(0).get(3, TimeUnit.SECONDS);
+        Assert.assertTrue(conn.isFine());
+        for (CompletableFuture<Connection> future : futures) {
+            Assert.assertSame(conn, future.get(3, TimeUnit.SECONDS));
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(1, serverConnectProcessor.getConnectTimes());
+
+        // created already, completed at once
+        CompletableFuture<Connection> created = client.getConnectionAsync(addr, 3000);
+        Assert.assertTrue(created.isDone());
+        Assert.assertSame(conn, created.get());
+        Assert.assertSame(conn, client.getConnection(addr, 3000));
+    }
+
+    @Test
+    public void testAcquireFailed() throws Exception {
+        CompletableFuture<Connection> future = client.getConnectionAsync(deadAddr, 1000);
+        try {
+            future.get(3, TimeUnit.SECONDS);
+            Assert.fail("should not reach here");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RemotingException);
+        }
+    }
+
+    @Test
+    public void testInvokeAsyncWithAsyncConnect() throws Exception {
+        RequestBody req = new RequestBody(1, "hello");
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+            client.invokeAsync(addr, req, 3000).get(3, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> failed = client.invokeAsync(deadAddr, req, 3000);
+        try {
+            failed.get(3, TimeUnit.SECONDS);
+            Assert.fail("should not reach here");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RemotingException);
+        }
+    }
+
+    @Test
+    public void testInvokeWithCallbackWithAsyncConnect() throws Exception {
+        RequestBody req = new RequestBody(1, "hello");
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, invokeWithCallback(addr, req));
+
+        // the failure to connect is notified to the callback instead of thrown
+        Object ret = invokeWithCallback(deadAddr, req);
+        Assert.assertTrue(ret instanceof RemotingException);
+        Assert.assertEquals(1, serverUserProcessor.getInvokeTimes());
+    }
+
+    private Object invokeWithCallback(String address, RequestBody req) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Object> ret = new AtomicReference<Object>();
+        client.invokeWithCallback(address, req, new InvokeCallback() {
+            @Override
+            public void onResponse(Object result) {
+                ret.set(result);
+                latch.countDown();
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                ret.set(e);
+                latch.countDown();
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+        }, 3000);
+        Assert.assertTrue(latch.await(3, TimeUnit.SECONDS));
+        return ret.get();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.connectionmanage;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.Url;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.DISCONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test for the elastic connection pool, which grows with the pending invocations and shrinks when idle.
+ */
+public class ElasticConnectionPoolTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port + "?_CONNECTIONNUM=1";
+
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor(200, 20, 20, 60,
+                                                      100);
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+    DISCONNECTEventProcessor serverDisConnectProcessor = new DISCONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.CONN_POOL_ELASTIC, "true");
+        System.setProperty(Configs.CONN_POOL_ELASTIC_MAX, "3");
+        System.setProperty(Configs.CONN_POOL_ELASTIC_GROW_INFLIGHT, "2");
+        System.setProperty(Configs.CONN_POOL_ELASTIC_IDLE, "300");
+        System.setProperty(Configs.CONN_POOL_ELASTIC_DRAIN, "1000");
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.addConnectionEventProcessor(ConnectionEventType.CLOSE, serverDisConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.CONN_POOL_ELASTIC);
+        System.clearProperty(Configs.CONN_POOL_ELASTIC_MAX);
+        System.clearProperty(Configs.CONN_POOL_ELASTIC_GROW_INFLIGHT);
+        System.clearProperty(Configs.CONN_POOL_ELASTIC_IDLE);
+        System.clearProperty(Configs.CONN_POOL_ELASTIC_DRAIN);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testGrowWithInflightAndShrinkWhenIdle() throws Exception {
+        Url url = client.getAddressParser().parse(addr);
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(client.invokeWithFuture(url, req, 3000));
+            Thread.sleep(10);
+        }
+        for (RpcResponseFuture future : futures) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+        }
+        // grows one connection at a time up to the max size
+        Assert.assertEquals(3, client.getConnectionManager().count(url.getUniqueKey()));
+        Assert.assertEquals(3, serverConnectProcessor.getConnectTimes());
+
+        // connections beyond the connection number of the url are drained when idle
+        client.getConnectionManager().scan();
+        Assert.assertEquals(3, client.getConnectionManager().count(url.getUniqueKey()));
+        List<Connection> selectable = client.getConnectionManager().getAll(url.getUniqueKey());
+        Thread.sleep(500);
+        client.getConnectionManager().scan();
+        Assert.assertEquals(1, client.getConnectionManager().count(url.getUniqueKey()));
+
+        // draining connections handed out before are still usable and closed after the grace period
+        Connection kept = client.getConnectionManager().get(url.getUniqueKey());
+        for (Connection conn : selectable) {
+            Assert.assertTrue(conn.isFine());
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(conn, req, 3000));
+        }
+        Assert.assertEquals(0, serverDisConnectProcessor.getDisConnectTimes());
+        client.getConnectionManager().scan();
+        Thread.sleep(100);
+        Assert.assertEquals(0, serverDisConnectProcessor.getDisConnectTimes());
+        Thread.sleep(1200);
+        client.getConnectionManager().scan();
+        Thread.sleep(100);
+        Assert.assertEquals(2, serverDisConnectProcessor.getDisConnectTimes());
+        for (Connection conn : selectable) {
+            Assert.assertEquals(conn == kept, conn.isFine());
+        }
+
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+            client.invokeSync(url, req, 3000));
+        Assert.assertEquals(1, client.getConnectionManager().count(url.getUniqueKey()));
+    }
+
+    @Test
+    public void testOnewayKeepsConnectionsBusy() throws Exception {
+        Url url = client.getAddressParser().parse(addr);
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(client.invokeWithFuture(url, req, 3000));
+            Thread.sleep(10);
+        }
+        for (RpcResponseFuture future : futures) {
+            future.get();
+        }
+        Assert.assertEquals(3, client.getConnectionManager().count(url.getUniqueKey()));
+
+        // connections used by oneway invocations only are not idle
+        for (int i = 0; i < 5; i++) {
+            for (Connection conn : client.getConnectionManager().getAll(url.getUniqueKey())) {
+                client.oneway(conn, req);
+            }
+            Thread.sleep(100);
+            client.getConnectionManager().scan();
+        }
+        Assert.assertEquals(3, client.getConnectionManager().count(url.getUniqueKey()));
+
+        Thread.sleep(500);
+        client.getConnectionManager().scan();
+        Assert.assertEquals(1, client.getConnectionManager().count(url.getUniqueKey()));
+        Thread.sleep(1200);
+        client.getConnectionManager().scan();
+        Thread.sleep(100);
+        Assert.assertEquals(2, serverDisConnectProcessor.getDisConnectTimes());
+    }
+
+    @Test
+    public void testNotGrowWithoutLoad() throws Exception {
+        Url url = client.getAddressParser().parse(addr);
+        RequestBody req = new RequestBody(1, "hello");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(url, req, 3000));
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(1, client.getConnectionManager().count(url.getUniqueKey()));
+        Assert.assertEquals(1, serverConnectProcessor.getConnectTimes());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.serializer;
+
+import com.alipay.remoting.BizContext;
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ProtocolCode;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.config.switches.ProtocolSwitch;
+import com.alipay.remoting.exception.CodecException;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcCodec;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.protocol.RpcProtocolV2;
+import com.alipay.remoting.rpc.protocol.RpcRequestCommand;
+import com.alipay.remoting.rpc.protocol.SyncUserProcessor;
+import com.alipay.remoting.serialization.ByteBufSerializer;
+import com.alipay.remoting.serialization.ByteBufSerializerAdapter;
+import com.alipay.remoting.serialization.HessianSerializer;
+import com.alipay.remoting.serialization.Serializer;
+import com.alipay.remoting.serialization.SerializerManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for {@link ByteBufSerializer} and serializing content into buffers.
+ */
+public class ByteBufSerializerTest {
+
+    static ResourceLeakDetector.Level oldLevel;
+
+    BoltServer                        server;
+    RpcClient                         client;
+
+    int                               port = PortScan.select();
+    String                            addr = "127.0.0.1:" + port + "?_PROTOCOL=2&_VERSION=2";
+
+    @BeforeClass
+    public static void initClass() {
+        System.setProperty(Configs.SERIALIZER_BYTEBUF, "true");
+        System.setProperty(Configs.CODEC_ZERO_COPY_DECODE, "true");
+        oldLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty(Configs.SERIALIZER_BYTEBUF);
+        System.clearProperty(Configs.CODEC_ZERO_COPY_DECODE);
+        ResourceLeakDetector.setLevel(oldLevel);
+    }
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SyncUserProcessor<RequestBody>() {
+            @Override
+            public Object handleRequest(BizContext bizCtx, RequestBody request) throws Exception {
+                return request;
+            }
+
+            @Override
+            public String interest() {
+                return RequestBody.class.getName();
+            }
+        });
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testHessianByteBufRoundTrip() throws Exception {
+        HessianSerializer serializer = new HessianSerializer();
+        RequestBody body = new RequestBody(1, 10 * 1024);
+
+        ByteBuf direct = Unpooled.directBuffer();
+        serializer.serialize(body, direct);
+        // same bytes as the byte array serializer
+        byte[] bytes = serializer.serialize(body);
+        Assert.assertEquals(Unpooled.wrappedBuffer(bytes), direct);
+
+        RequestBody ret = serializer.deserialize(direct.slice(), RequestBody.class.getName());
+        Assert.assertEquals(body.getMsg(), ret.getMsg());
+        direct.release();
+    }
+
+    @Test
+    public void testByteArraySerializerAdapted() throws Exception {
+        final HessianSerializer hessian = new HessianSerializer();
+        Serializer plain = new Serializer() {
+            @Override
+            public byte[] serialize(Object obj) throws CodecException {
+                return hessian.serialize(obj);
+            }
+
+            @Override
+            public <T> T deserialize(byte[] data, String classOfT) throws CodecException {
+                return hessian.deserialize(data, classOfT);
+            }
+        };
+        SerializerManager.addSerializer(12, plain);
+        Assert.assertSame(plain, SerializerManager.getSerializer(12));
+        ByteBufSerializer adapted = SerializerManager.getByteBufSerializer(12);
+        Assert.assertTrue(adapted instanceof ByteBufSerializerAdapter);
+        Assert.assertSame(SerializerManager.getSerializer(SerializerManager.Hessian2),
+            SerializerManager.getByteBufSerializer(SerializerManager.Hessian2));
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(0);
+        adapted.serialize("hello", buf);
+        buf.skipBytes(4);
+        Assert.assertEquals("hello", adapted.deserialize(buf, String.class.getName()));
+        Assert.assertFalse(buf.isReadable());
+        Assert.assertEquals("hello",
+            adapted.deserialize(Unpooled.wrappedBuffer(plain.serialize("hello")), null));
+    }
+
+    @Test
+    public void testSerializeIntoBuffer() throws Exception {
+        RequestBody body = new RequestBody(1, 64 * 1024);
+        RpcRequestCommand command = new RpcRequestCommand(body);
+        command.setTimeout(3000);
+        command.setRequestClass(RequestBody.class.getName());
+        command.setProtocolSwitch(ProtocolSwitch.create(new int[] { ProtocolSwitch.CRC_SWITCH_INDEX }));
+        command.serialize();
+        ByteBuf contentBuf = command.getContentBuf();
+        Assert.assertNotNull(contentBuf);
+        Assert.assertEquals(contentBuf.readableBytes(), command.getContentLength());
+
+        EmbeddedChannel channel = newChannel();
+        Assert.assertTrue(channel.writeOutbound(command));
+        // released by the encoder
+        Assert.assertEquals(0, contentBuf.refCnt());
+        ByteBuf frame = channel.readOutbound();
+        Assert.assertTrue(channel.writeInbound(frame));
+        RpcRequestCommand decoded = channel.readInbound();
+        Assert.assertNotNull(decoded.getContentBuf());
+        decoded.deserialize();
+        Assert.assertEquals(body.getMsg(), ((RequestBody) decoded.getRequestObject()).getMsg());
+        // read from the retained slice and released
+        Assert.assertNull(decoded.getContentBuf());
+        Assert.assertEquals(0, frame.refCnt());
+        channel.finish();
+    }
+
+    @Test
+    public void testInvokeWithByteBufSerializer() throws Exception {
+        RequestBody body = new RequestBody(1, 128 * 1024);
+        for (int i = 0; i < 10; i++) {
+            RequestBody ret = (RequestBody) client.invokeSync(addr, body, 3000);
+            Assert.assertEquals(body.getMsg(), ret.getMsg());
+        }
+    }
+
+    private EmbeddedChannel newChannel() {
+        RpcCodec codec = new RpcCodec();
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder(), codec.newDecoder());
+        channel.attr(Connection.PROTOCOL).set(ProtocolCode.fromBytes(RpcProtocolV2.PROTOCOL_CODE));
+        channel.attr(Connection.VERSION).set(RpcProtocolV2.PROTOCOL_VERSION_2);
+        return channel;
+    }
+}
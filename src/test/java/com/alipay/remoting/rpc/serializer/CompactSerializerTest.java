@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.serializer;
+
+import com.alipay.remoting.BizContext;
+import com.alipay.remoting.InvokeContext;
+import com.alipay.remoting.exception.CodecException;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.protocol.SyncUserProcessor;
+import com.alipay.remoting.serialization.CompactSerializer;
+import com.alipay.remoting.serialization.HessianSerializer;
+import com.alipay.remoting.serialization.SerializerManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for {@link CompactSerializer}.
+ */
+public class CompactSerializerTest {
+
+    CompactSerializer serializer = new CompactSerializer();
+
+    BoltServer        server;
+    RpcClient         client;
+
+    int               port       = PortScan.select();
+    String            addr       = "127.0.0.1:" + port;
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SyncUserProcessor<Dto>() {
+            @Override
+            public Object handleRequest(BizContext bizCtx, Dto request) throws Exception {
+                request.name = "echo " + request.name;
+                return request;
+            }
+
+            @Override
+            public String interest() {
+                return Dto.class.getName();
+            }
+        });
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Dto dto = newDto();
+        Dto ret = serializer.deserialize(serializer.serialize(dto), Dto.class.getName());
+        assertDto(dto, ret);
+
+        ByteBuf buf = Unpooled.directBuffer();
+        serializer.serialize(dto, buf);
+        ret = serializer.deserialize(buf, null);
+        assertDto(dto, ret);
+        Assert.assertFalse(buf.isReadable());
+        buf.release();
+    }
+
+    @Test
+    public void testSimpleValues() throws Exception {
+        Object[] values = new Object[] { null, true, (byte) -1, (short) -300, Integer.MIN_VALUE,
+                Long.MAX_VALUE, 1.5f, -2.5d, 'c', "中文 string", new byte[] { 1, 2, 3 },
+                TimeUnit.SECONDS, new Date(), new BigInteger("123456789012345678901234567890"),
+                new BigDecimal("-1.000000000000000000001") };
+        for (Object value : values) {
+            Object ret = serializer.deserialize(serializer.serialize(value), null);
+            if (value instanceof byte[]) {
+                Assert.assertArrayEquals((byte[]) value, (byte[]) ret);
+            } else {
+                Assert.assertEquals(value, ret);
+            }
+        }
+        int[] ints = new int[] { 0, -1, 1 << 30, Integer.MAX_VALUE };
+        Assert.assertArrayEquals(ints, (int[]) serializer.deserialize(serializer.serialize(ints), null));
+        String[] strings = new String[] { "a", null, "b" };
+        Assert.assertArrayEquals(strings,
+            (String[]) serializer.deserialize(serializer.serialize(strings), null));
+    }
+
+    @Test
+    public void testSmallerThanHessian() throws Exception {
+        List<Dto> dtos = new ArrayList<Dto>();
+        for (int i = 0; i < 100; i++) {
+            Dto dto = newDto();
+            dto.id = i;
+            dto.error = null;
+            dtos.add(dto);
+        }
+        int compact = serializer.serialize(dtos).length;
+        int hessian = new HessianSerializer().serialize(dtos).length;
+        Assert.assertTrue(compact + " vs " + hessian, compact < hessian);
+    }
+
+    @Test
+    public void testFingerprintMismatch() throws Exception {
+        Child child = new Child();
+        byte[] bytes = serializer.serialize(child);
+        // tag, new class marker, class name length and class name, then the fingerprint
+        int offset = 3 + Child.class.getName().length();
+        bytes[offset] = (byte) ~bytes[offset];
+        try {
+            serializer.deserialize(bytes, null);
+            Assert.fail("Should not reach here!");
+        } catch (CodecException e) {
+            Assert.assertTrue(e.getMessage().contains("do not match"));
+        }
+    }
+
+    @Test
+    public void testNotSerializable() throws Exception {
+        try {
+            serializer.serialize(new Object());
+            Assert.fail("Should not reach here!");
+        } catch (CodecException e) {
+            // expected
+        }
+        try {
+            serializer.serialize(new NoDefaultConstructor(1));
+            Assert.fail("Should not reach here!");
+        } catch (CodecException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testThrowable() throws Exception {
+        Exception e = new IllegalStateException("test", new RuntimeException("cause"));
+        Exception ret = serializer.deserialize(serializer.serialize(e), null);
+        Assert.assertEquals("test", ret.getMessage());
+        Assert.assertEquals("cause", ret.getCause().getMessage());
+    }
+
+    @Test
+    public void testInvokeWithCompact() throws Exception {
+        InvokeContext invokeContext = new InvokeContext();
+        invokeContext.put(InvokeContext.BOLT_CUSTOM_SERIALIZER, SerializerManager.Compact);
+        Dto dto = newDto();
+        for (int i = 0; i < 5; i++) {
+            Dto ret = (Dto) client.invokeSync(addr, dto, invokeContext, 3000);
+            Assert.assertEquals("echo " + dto.name, ret.name);
+            Assert.assertEquals(dto.tags, ret.tags);
+        }
+        // request body has a java.util.Random field, written by java serialization
+        server.registerUserProcessor(new SyncUserProcessor<RequestBody>() {
+            @Override
+            public Object handleRequest(BizContext bizCtx, RequestBody request) throws Exception {
+                return request;
+            }
+
+            @Override
+            public String interest() {
+                return RequestBody.class.getName();
+            }
+        });
+        RequestBody body = new RequestBody(1, "hello");
+        RequestBody ret = (RequestBody) client.invokeSync(addr, body, invokeContext, 3000);
+        Assert.assertEquals("hello", ret.getMsg());
+    }
+
+    private Dto newDto() {
+        Dto dto = new Dto();
+        dto.id = 7;
+        dto.flag = true;
+        dto.score = -12345678901L;
+        dto.ratio = 0.5;
+        dto.letter = 'x';
+        dto.name = "dto";
+        dto.count = 42;
+        dto.tags = new ArrayList<String>();
+        dto.tags.add("a");
+        dto.tags.add("b");
+        dto.linked = new LinkedList<Integer>();
+        dto.linked.add(1);
+        dto.attributes = new HashMap<String, Object>();
+        dto.attributes.put("k", 1L);
+        dto.attributes.put("nested", new ArrayList<Object>(dto.tags));
+        dto.sorted = new TreeSet<String>(dto.tags);
+        dto.unit = TimeUnit.MILLISECONDS;
+        dto.child = new Child();
+        dto.child.parentField = "parent";
+        dto.child.childField = 3;
+        dto.children = new Child[] { new Child(), null };
+        dto.children[0].parentField = "parent";
+        dto.error = new RuntimeException("error");
+        dto.ignored = "ignored";
+        return dto;
+    }
+
+    private void assertDto(Dto expected, Dto actual) {
+        Assert.assertEquals(expected.id, actual.id);
+        Assert.assertEquals(expected.flag, actual.flag);
+        Assert.assertEquals(expected.score, actual.score);
+        Assert.assertEquals(expected.ratio, actual.ratio, 0);
+        Assert.assertEquals(expected.letter, actual.letter);
+        Assert.assertEquals(expected.name, actual.name);
+        Assert.assertEquals(expected.count, actual.count);
+        Assert.assertEquals(expected.tags, actual.tags);
+        Assert.assertTrue(actual.linked instanceof LinkedList);
+        Assert.assertEquals(expected.linked, actual.linked);
+        Assert.assertEquals(expected.attributes, actual.attributes);
+        Assert.assertTrue(actual.sorted instanceof TreeSet);
+        Assert.assertEquals(expected.sorted, actual.sorted);
+        Assert.assertEquals(expected.unit, actual.unit);
+        Assert.assertEquals("parent", actual.child.parentField);
+        Assert.assertEquals(3, actual.child.childField);
+        Assert.assertEquals(2, actual.children.length);
+        Assert.assertEquals("parent", actual.children[0].parentField);
+        Assert.assertNull(actual.children[1]);
+        Assert.assertEquals("error", actual.error.getMessage());
+        Assert.assertNull(actual.ignored);
+    }
+
+    static class Dto implements Serializable {
+        private static final long   serialVersionUID = 1L;
+        int                         id;
+        boolean                     flag;
+        long                        score;
+        double                      ratio;
+        char                        letter;
+        String                      name;
+        Integer                     count;
+        List<String>                tags;
+        LinkedList<Integer>         linked;
+        Map<String, Object>         attributes;
+        SortedSet<String>           sorted;
+        TimeUnit                    unit;
+        Child                       child;
+        Child[]                     children;
+        RuntimeException            error;
+        transient String            ignored;
+    }
+
+    static class Parent implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String                    parentField;
+    }
+
+    static class Child extends Parent {
+        private static final long serialVersionUID = 1L;
+        int                       childField;
+    }
+
+    static class NoDefaultConstructor implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int                       value;
+
+        NoDefaultConstructor(int value) {
+            this.value = value;
+        }
+    }
+}
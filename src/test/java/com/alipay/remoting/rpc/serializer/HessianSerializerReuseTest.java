@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.serializer;
+
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.serialization.HessianSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+
+/**
+ * Test for hessian serializer reusing its output in each thread.
+ */
+public class HessianSerializerReuseTest {
+
+    HessianSerializer reused;
+    HessianSerializer plain;
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.SERIALIZER_HESSIAN_REUSE, "true");
+        System.setProperty(Configs.SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE, "65536");
+        reused = new HessianSerializer();
+        System.clearProperty(Configs.SERIALIZER_HESSIAN_REUSE);
+        System.clearProperty(Configs.SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE);
+        plain = new HessianSerializer();
+    }
+
+    @After
+    public void clear() {
+        System.clearProperty(Configs.SERIALIZER_HESSIAN_REUSE);
+        System.clearProperty(Configs.SERIALIZER_HESSIAN_REUSE_MAX_BUFFER_SIZE);
+    }
+
+    @Test
+    public void testMessagesAreIndependent() throws Exception {
+        RequestBody body = new RequestBody(1, "hello");
+        byte[] expected = plain.serialize(body);
+        for (int i = 0; i < 3; i++) {
+            // each message carries its own class definition, same as a fresh output
+            byte[] bytes = reused.serialize(body);
+            Assert.assertArrayEquals(expected, bytes);
+            RequestBody ret = plain.deserialize(bytes, RequestBody.class.getName());
+            Assert.assertEquals("hello", ret.getMsg());
+            Assert.assertEquals("world", plain.deserialize(reused.serialize("world"), null));
+        }
+    }
+
+    @Test
+    public void testReusedAfterFailure() throws Exception {
+        Holder holder = new Holder();
+        holder.msg = "partial";
+        holder.value = new Object();
+        try {
+            reused.serialize(holder);
+            Assert.fail("Should not reach here!");
+        } catch (Exception e) {
+            // expected, Object is not serializable
+        }
+        RequestBody body = new RequestBody(2, "after failure");
+        Assert.assertArrayEquals(plain.serialize(body), reused.serialize(body));
+    }
+
+    @Test
+    public void testLargeMessage() throws Exception {
+        // larger than the max buffer size kept by the thread
+        RequestBody large = new RequestBody(3, 256 * 1024);
+        RequestBody small = new RequestBody(4, "small");
+        for (int i = 0; i < 3; i++) {
+            RequestBody ret = plain.deserialize(reused.serialize(large), null);
+            Assert.assertEquals(large.getMsg(), ret.getMsg());
+            ret = plain.deserialize(reused.serialize(small), null);
+            Assert.assertEquals(small.getMsg(), ret.getMsg());
+        }
+    }
+
+    @Test
+    public void testByteBufReused() throws Exception {
+        RequestBody body = new RequestBody(5, 1024);
+        byte[] expected = plain.serialize(body);
+        for (int i = 0; i < 3; i++) {
+            ByteBuf buf = Unpooled.directBuffer(16);
+            reused.serialize(body, buf);
+            Assert.assertEquals(Unpooled.wrappedBuffer(expected), buf);
+            RequestBody ret = reused.deserialize(buf, null);
+            Assert.assertEquals(body.getMsg(), ret.getMsg());
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testConcurrentReuse() throws Exception {
+        final Throwable[] error = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            RequestBody body = new RequestBody(id, "thread-" + id + "-" + i);
+                            RequestBody ret = plain.deserialize(reused.serialize(body), null);
+                            Assert.assertEquals(body.getMsg(), ret.getMsg());
+                        }
+                    } catch (Throwable e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(error[0]);
+    }
+
+    static class Holder implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String                    msg;
+        Object                    value;
+    }
+}
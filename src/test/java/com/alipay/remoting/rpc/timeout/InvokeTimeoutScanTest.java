@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.timeout;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.InvokeCallback;
+import com.alipay.remoting.InvokeTimeout;
+import com.alipay.remoting.InvokeTimeoutScanner;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeTimeoutException;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test for invoke timeouts scanned in the event loops.
+ */
+public class InvokeTimeoutScanTest {
+
+    BoltServer server;
+    RpcClient  client;
+
+    int        port    = PortScan.select();
+    String     addr    = "127.0.0.1:" + port;
+
+    int        timeout = 200;
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.INVOKE_TIMEOUT_SCAN, "true");
+        server = new BoltServer(port);
+        server.start();
+        server.registerUserProcessor(new SimpleServerUserProcessor(timeout * 3));
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.INVOKE_TIMEOUT_SCAN);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testInvokeTimeoutExpireOnce() throws Exception {
+        Connection conn = client.getConnection(addr, 1000);
+        Timer timer = InvokeTimeoutScanner.of(conn.getChannel().eventLoop()).timer();
+        final AtomicInteger runs = new AtomicInteger();
+        InvokeTimeout invokeTimeout = new InvokeTimeout(t -> runs.incrementAndGet(),
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100), timer);
+        Assert.assertSame(timer, invokeTimeout.timer());
+        Assert.assertFalse(invokeTimeout.expire(System.nanoTime()));
+        long deadline = invokeTimeout.deadline();
+        Assert.assertTrue(invokeTimeout.expire(deadline));
+        Assert.assertFalse(invokeTimeout.expire(deadline + 1));
+        Assert.assertTrue(invokeTimeout.isExpired());
+        Assert.assertFalse(invokeTimeout.cancel());
+        Assert.assertEquals(1, runs.get());
+
+        invokeTimeout = new InvokeTimeout(t -> runs.incrementAndGet(), System.nanoTime(), timer);
+        Assert.assertTrue(invokeTimeout.cancel());
+        Assert.assertTrue(invokeTimeout.isCancelled());
+        Assert.assertFalse(invokeTimeout.expire(System.nanoTime()));
+        Assert.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testScannerTimer() throws Exception {
+        Connection conn = client.getConnection(addr, 1000);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Timeout scheduled = conn.newInvokeTimeout(t -> latch.countDown(), timeout);
+        Timer timer = scheduled.timer();
+        Assert.assertNotNull(timer);
+
+        // the timer view schedules its own timeouts in the event loop
+        Timeout viaTimer = timer.newTimeout(t -> latch.countDown(), 10, TimeUnit.MILLISECONDS);
+        Assert.assertSame(timer, viaTimer.timer());
+        Assert.assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(viaTimer.isExpired());
+        Assert.assertTrue(scheduled.cancel());
+
+        // stopping the shared scanner is a no-op
+        Assert.assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test
+    public void testFutureTimeout() throws Exception {
+        Connection conn = client.getConnection(addr, 1000);
+        long start = System.currentTimeMillis();
+        RpcResponseFuture future = client.invokeWithFuture(conn, new RequestBody(1, "hello"),
+            timeout);
+        try {
+            future.get();
+            Assert.fail("Should not reach here!");
+        } catch (InvokeTimeoutException e) {
+            long elapsed = System.currentTimeMillis() - start;
+            Assert.assertTrue("elapsed " + elapsed, elapsed >= timeout && elapsed < timeout * 2);
+        }
+        Assert.assertTrue(conn.isInvokeFutureMapFinish());
+    }
+
+    @Test
+    public void testCallbackTimeout() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+        long start = System.currentTimeMillis();
+        client.invokeWithCallback(addr, new RequestBody(1, "hello"), new InvokeCallback() {
+            @Override
+            public void onResponse(Object result) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                cause.set(e);
+                latch.countDown();
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+        }, timeout);
+        Assert.assertTrue(latch.await(timeout * 2, TimeUnit.MILLISECONDS));
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue(cause.get() instanceof InvokeTimeoutException);
+        Assert.assertTrue("elapsed " + elapsed, elapsed >= timeout);
+    }
+
+    @Test
+    public void testResponseCancelsTimeout() throws Exception {
+        int fastPort = PortScan.select();
+        BoltServer fastServer = new BoltServer(fastPort);
+        fastServer.start();
+        fastServer.registerUserProcessor(new SimpleServerUserProcessor());
+        try {
+            Connection conn = client.getConnection("127.0.0.1:" + fastPort, 1000);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                    client.invokeWithFuture(conn, new RequestBody(1, "hello"), timeout).get());
+            }
+            Assert.assertTrue(conn.isInvokeFutureMapFinish());
+            Thread.sleep(timeout * 2);
+            Assert.assertTrue(conn.isInvokeFutureMapFinish());
+        } finally {
+            fastServer.stop();
+        }
+    }
+}
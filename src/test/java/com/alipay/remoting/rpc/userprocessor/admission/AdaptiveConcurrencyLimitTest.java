@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.userprocessor.admission;
+
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.AsyncServerUserProcessor;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeServerBusyException;
+import com.alipay.remoting.rpc.protocol.AdaptiveConcurrencyLimiter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the adaptive concurrency limit of user processors.
+ */
+public class AdaptiveConcurrencyLimitTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+
+    SimpleServerUserProcessor serverUserProcessor;
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.PROCESS_CONCURRENCY_LIMIT, "true");
+        System.setProperty(Configs.PROCESS_CONCURRENCY_LIMIT_INITIAL, "10");
+        serverUserProcessor = new SimpleServerUserProcessor(20, 1, 1, 60, 200);
+
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.PROCESS_CONCURRENCY_LIMIT);
+        System.clearProperty(Configs.PROCESS_CONCURRENCY_LIMIT_INITIAL);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testLimitRequestsInExecutor() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = serverUserProcessor.getConcurrencyLimiter();
+        Assert.assertEquals(10, limiter.getLimit());
+
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(client.invokeWithFuture(addr, req, 5000));
+        }
+        int succeeded = 0;
+        int busy = 0;
+        for (RpcResponseFuture future : futures) {
+            try {
+                Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+                ++succeeded;
+            } catch (InvokeServerBusyException e) {
+                ++busy;
+            }
+        }
+        Assert.assertEquals(50, succeeded + busy);
+        Assert.assertTrue(succeeded >= 10);
+        Assert.assertTrue(busy > 0);
+        Assert.assertEquals(busy, limiter.getRejectedCount());
+        Assert.assertEquals(succeeded, serverUserProcessor.getInvokeTimes());
+        // the permits are returned after the responses are written, the shrink on queueing is
+        // checked without timing in testShrinkWithQueueing
+        waitDrained(limiter);
+        Assert.assertEquals(0, limiter.getInflight());
+        Assert.assertTrue(limiter.getLimit() >= 1 && limiter.getLimit() <= 10);
+    }
+
+    @Test
+    public void testAsyncPermitReturnedOnResponse() throws Exception {
+        int asyncPort = PortScan.select();
+        AsyncServerUserProcessor asyncProcessor = new AsyncServerUserProcessor(200);
+        BoltServer asyncServer = new BoltServer(asyncPort);
+        asyncServer.start();
+        asyncServer.registerUserProcessor(asyncProcessor);
+        try {
+            AdaptiveConcurrencyLimiter limiter = asyncProcessor.getConcurrencyLimiter();
+            RequestBody req = new RequestBody(1, "hello");
+            List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(client.invokeWithFuture("127.0.0.1:" + asyncPort, req, 5000));
+            }
+            Thread.sleep(100);
+            // handleRequest has returned, the permits are held until the responses are sent
+            Assert.assertEquals(3, limiter.getInflight());
+            for (RpcResponseFuture future : futures) {
+                Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+            }
+            waitDrained(limiter);
+            Assert.assertEquals(0, limiter.getInflight());
+        } finally {
+            asyncServer.stop();
+        }
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getInflight());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+
+        limiter.onComplete(TimeUnit.MILLISECONDS.toNanos(1), 2);
+        Assert.assertEquals(1, limiter.getInflight());
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testGrowWithoutQueueing() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.onComplete(TimeUnit.MILLISECONDS.toNanos(10), fill(limiter));
+            drain(limiter);
+        }
+        Assert.assertEquals(100, limiter.getLimit());
+    }
+
+    @Test
+    public void testShrinkWithQueueing() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100);
+        limiter.onComplete(TimeUnit.MILLISECONDS.toNanos(10), fill(limiter));
+        drain(limiter);
+        int before = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            // the time doubles, half of the requests are queued
+            limiter.onComplete(TimeUnit.MILLISECONDS.toNanos(20), fill(limiter));
+            drain(limiter);
+        }
+        Assert.assertTrue(limiter.getLimit() < before);
+        Assert.assertTrue(limiter.getLimit() >= 1);
+    }
+
+    @Test
+    public void testNotGrowWhenUnderused() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.onComplete(TimeUnit.MILLISECONDS.toNanos(10), limiter.getInflight());
+        }
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testShrinkOnDrop() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.onDrop();
+        Assert.assertEquals(0, limiter.getInflight());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+        Assert.assertTrue(limiter.getLimit() < 10);
+    }
+
+    private int fill(AdaptiveConcurrencyLimiter limiter) {
+        while (limiter.tryAcquire()) {
+            // acquire all permits
+        }
+        return limiter.getInflight();
+    }
+
+    private void waitDrained(AdaptiveConcurrencyLimiter limiter) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (limiter.getInflight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void drain(AdaptiveConcurrencyLimiter limiter) {
+        while (limiter.getInflight() > 0) {
+            limiter.onComplete(0, 0);
+        }
+    }
+}
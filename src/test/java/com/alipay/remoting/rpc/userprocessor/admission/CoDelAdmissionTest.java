@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.userprocessor.admission;
+
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeServerBusyException;
+import com.alipay.remoting.rpc.protocol.CoDelAdmissionController;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the queue delay based admission control of user processors.
+ */
+public class CoDelAdmissionTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+
+    SimpleServerUserProcessor serverUserProcessor;
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        System.setProperty(Configs.PROCESS_ADMISSION_CODEL, "true");
+        System.setProperty(Configs.PROCESS_ADMISSION_CODEL_TARGET, "5");
+        System.setProperty(Configs.PROCESS_ADMISSION_CODEL_INTERVAL, "50");
+        serverUserProcessor = new SimpleServerUserProcessor(20, 1, 1, 60, 200);
+
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.PROCESS_ADMISSION_CODEL);
+        System.clearProperty(Configs.PROCESS_ADMISSION_CODEL_TARGET);
+        System.clearProperty(Configs.PROCESS_ADMISSION_CODEL_INTERVAL);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testShedLoadWhenOverloaded() throws Exception {
+        RequestBody req = new RequestBody(1, "hello");
+        List<RpcResponseFuture> futures = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(client.invokeWithFuture(addr, req, 5000));
+            Thread.sleep(2);
+        }
+        int succeeded = 0;
+        int busy = 0;
+        for (RpcResponseFuture future : futures) {
+            try {
+                Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+                ++succeeded;
+            } catch (InvokeServerBusyException e) {
+                ++busy;
+            }
+        }
+        Assert.assertEquals(100, succeeded + busy);
+        Assert.assertTrue(succeeded > 0);
+        Assert.assertTrue(busy > 0);
+        Assert.assertEquals(busy, serverUserProcessor.getAdmissionController().getRejectedCount());
+        Assert.assertEquals(succeeded, serverUserProcessor.getInvokeTimes());
+    }
+
+    @Test
+    public void testNotShedWithoutOverload() throws Exception {
+        RequestBody req = new RequestBody(1, "hello");
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(addr, req, 3000));
+        }
+        Assert.assertEquals(0, serverUserProcessor.getAdmissionController().getRejectedCount());
+    }
+
+    @Test
+    public void testOverloadedState() {
+        CoDelAdmissionController controller = new CoDelAdmissionController(5, 100);
+        ThreadPoolExecutor idle = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(10));
+        long now = System.currentTimeMillis();
+
+        // queue delays above the target for a whole interval
+        Assert.assertTrue(controller.onDequeue(10, now));
+        Assert.assertTrue(controller.onDequeue(20, now + 50));
+        Assert.assertFalse(controller.isOverloaded(now + 50));
+        Assert.assertFalse(controller.onDequeue(30, now + 100));
+        Assert.assertTrue(controller.isOverloaded(now + 100));
+        // requests queued shortly are still processed
+        Assert.assertTrue(controller.onDequeue(3, now + 120));
+        Assert.assertFalse(controller.admit(Runnable::run, now + 120));
+        // an idle executor still accepts requests
+        Assert.assertTrue(controller.admit(idle, now + 120));
+
+        // the min queue delay of the interval falls below the target
+        Assert.assertTrue(controller.onDequeue(1, now + 200));
+        Assert.assertFalse(controller.isOverloaded(now + 200));
+        Assert.assertTrue(controller.admit(Runnable::run, now + 200));
+        Assert.assertEquals(2, controller.getRejectedCount());
+
+        // the state expires without requests dequeued
+        Assert.assertTrue(controller.onDequeue(30, now + 300));
+        Assert.assertFalse(controller.onDequeue(30, now + 400));
+        Assert.assertTrue(controller.isOverloaded(now + 400));
+        Assert.assertFalse(controller.isOverloaded(now + 600));
+        idle.shutdown();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.userprocessor.deadline;
+
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.RpcResponseFuture;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeTimeoutException;
+import com.alipay.remoting.rpc.protocol.DeadlineThreadPoolExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the earliest deadline first executor of user processors.
+ */
+public class DeadlineExecutorTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+
+    DeadlineThreadPoolExecutor executor = new DeadlineThreadPoolExecutor(1, 1, 60, 10,
+                                            "Deadline-executor");
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor(100) {
+                                                      @Override
+                                                      public Executor getExecutor() {
+                                                          return executor;
+                                                      }
+                                                  };
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    @Before
+    public void init() {
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        client.shutdown();
+        server.stop();
+        executor.shutdownNow();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testRequestCloseToExpiryProcessedFirst() throws Exception {
+        RequestBody req = new RequestBody(1, "hello");
+        client.getConnection(addr, 1000);
+        List<RpcResponseFuture> relaxed = new ArrayList<RpcResponseFuture>();
+        for (int i = 0; i < 4; i++) {
+            relaxed.add(client.invokeWithFuture(addr, req, 3000));
+        }
+        RpcResponseFuture expiring = client.invokeWithFuture(addr, req, 50);
+        RpcResponseFuture urgent = client.invokeWithFuture(addr, req, 300);
+
+        // processed in the order of arrive, the urgent one would wait for 400ms
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, urgent.get());
+        try {
+            expiring.get();
+            Assert.fail("Should not reach here!");
+        } catch (InvokeTimeoutException e) {
+            // expected
+        }
+        for (RpcResponseFuture future : relaxed) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR, future.get());
+        }
+        Assert.assertEquals(1, executor.getExpiredCount());
+        Assert.assertEquals(5, serverUserProcessor.getInvokeTimes());
+    }
+
+    @Test
+    public void testOrderByDeadline() throws InterruptedException {
+        DeadlineThreadPoolExecutor edf = new DeadlineThreadPoolExecutor(1, 1, 60, 10, "edf-test");
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch block = new CountDownLatch(1);
+        edf.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        long now = System.currentTimeMillis();
+        edf.execute(new Task("plain1", Long.MAX_VALUE, order));
+        edf.execute(new Task("300", now + 3000, order));
+        edf.execute(new Task("100", now + 1000, order));
+        edf.execute(new Task("expired", now - 1, order));
+        edf.execute(new Task("200", now + 2000, order));
+        edf.execute(new Task("plain2", Long.MAX_VALUE, order));
+        block.countDown();
+        edf.shutdown();
+        Assert.assertTrue(edf.awaitTermination(3, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("100", "200", "300", "plain1", "plain2"),
+            order);
+        Assert.assertEquals(1, edf.getExpiredCount());
+    }
+
+    @Test
+    public void testExpiredTaskRunIfNotDiscarded() throws InterruptedException {
+        DeadlineThreadPoolExecutor edf = new DeadlineThreadPoolExecutor(1, 1, 60, 10, "edf-test");
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Task task = new Task("expired", System.currentTimeMillis() - 1, order);
+        task.discardable = false;
+        edf.execute(task);
+        edf.shutdown();
+        Assert.assertTrue(edf.awaitTermination(3, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Collections.singletonList("expired"), order);
+        Assert.assertEquals(0, edf.getExpiredCount());
+    }
+
+    @Test
+    public void testRejectWhenQueueFull() throws InterruptedException {
+        DeadlineThreadPoolExecutor edf = new DeadlineThreadPoolExecutor(1, 1, 60, 2, "edf-test");
+        final CountDownLatch block = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        edf.execute(blocking);
+        edf.execute(blocking);
+        edf.execute(blocking);
+        try {
+            edf.execute(blocking);
+            Assert.fail("Should not reach here!");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        block.countDown();
+        edf.shutdown();
+        Assert.assertTrue(edf.awaitTermination(3, TimeUnit.SECONDS));
+    }
+
+    static class Task implements DeadlineThreadPoolExecutor.DeadlineTask {
+        String       name;
+        long         deadline;
+        List<String> order;
+        boolean      discardable = true;
+
+        Task(String name, long deadline, List<String> order) {
+            this.name = name;
+            this.deadline = deadline;
+            this.order = order;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
+        @Override
+        public boolean discardExpired() {
+            return discardable;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+    }
+}
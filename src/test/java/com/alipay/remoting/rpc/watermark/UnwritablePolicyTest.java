@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alipay.remoting.rpc.watermark;
+
+import com.alipay.remoting.Connection;
+import com.alipay.remoting.ConnectionEventType;
+import com.alipay.remoting.config.Configs;
+import com.alipay.remoting.rpc.RpcClient;
+import com.alipay.remoting.rpc.common.BoltServer;
+import com.alipay.remoting.rpc.common.CONNECTEventProcessor;
+import com.alipay.remoting.rpc.common.PortScan;
+import com.alipay.remoting.rpc.common.RequestBody;
+import com.alipay.remoting.rpc.common.SimpleServerUserProcessor;
+import com.alipay.remoting.rpc.exception.InvokeUnwritableException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for the policies of invoking on an unwritable connection, the connection is made unwritable
+ * with a user defined writability of the outbound buffer.
+ */
+public class UnwritablePolicyTest {
+
+    BoltServer server;
+    RpcClient client;
+
+    int port = PortScan.select();
+    String addr = "127.0.0.1:" + port;
+
+    SimpleServerUserProcessor serverUserProcessor = new SimpleServerUserProcessor();
+    CONNECTEventProcessor serverConnectProcessor = new CONNECTEventProcessor();
+
+    private void init(String policy) {
+        System.setProperty(Configs.INVOKE_UNWRITABLE_POLICY, policy);
+        System.setProperty(Configs.INVOKE_UNWRITABLE_WAIT_TIMEOUT, "500");
+        server = new BoltServer(port);
+        server.start();
+        server.addConnectionEventProcessor(ConnectionEventType.CONNECT, serverConnectProcessor);
+        server.registerUserProcessor(serverUserProcessor);
+
+        client = new RpcClient();
+        client.init();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        System.clearProperty(Configs.INVOKE_UNWRITABLE_POLICY);
+        System.clearProperty(Configs.INVOKE_UNWRITABLE_WAIT_TIMEOUT);
+        client.shutdown();
+        server.stop();
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void testPendingBytes() throws Exception {
+        init(Configs.INVOKE_UNWRITABLE_POLICY_FAIL);
+        Connection conn = client.getConnection(addr, 3000);
+        Assert.assertTrue(conn.isWritable());
+        Assert.assertEquals(0, conn.getPendingWriteBytes());
+        Assert.assertTrue(conn.bytesBeforeUnwritable() > 0);
+
+        setWritable(conn, false);
+        Assert.assertFalse(conn.isWritable());
+        Assert.assertEquals(0, conn.bytesBeforeUnwritable());
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        init(Configs.INVOKE_UNWRITABLE_POLICY_FAIL);
+        RequestBody req = new RequestBody(1, "hello");
+        Connection conn = client.getConnection(addr, 3000);
+        setWritable(conn, false);
+        try {
+            client.invokeSync(conn, req, 3000);
+            Assert.fail("should not reach here");
+        } catch (InvokeUnwritableException e) {
+            // expected
+        }
+        CompletableFuture<Object> future = client.invokeAsync(conn, req, 3000);
+        try {
+            future.get(3, TimeUnit.SECONDS);
+            Assert.fail("should not reach here");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InvokeUnwritableException);
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(0, serverUserProcessor.getInvokeTimes());
+
+        setWritable(conn, true);
+        Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+            client.invokeSync(conn, req, 3000));
+    }
+
+    @Test
+    public void testWaitWritable() throws Exception {
+        init(Configs.INVOKE_UNWRITABLE_POLICY_WAIT);
+        RequestBody req = new RequestBody(1, "hello");
+        final Connection conn = client.getConnection(addr, 3000);
+
+        setWritable(conn, false);
+        long start = System.currentTimeMillis();
+        try {
+            client.invokeSync(conn, req, 3000);
+            Assert.fail("should not reach here");
+        } catch (InvokeUnwritableException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start >= 400);
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    setWritable(conn, true);
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(conn, req, 3000));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSelectWritable() throws Exception {
+        init(Configs.INVOKE_UNWRITABLE_POLICY_SELECT);
+        String poolAddr = addr + "?_CONNECTIONNUM=2&_CONNECTIONWARMUP=true";
+        RequestBody req = new RequestBody(1, "hello");
+        Connection conn = client.getConnection(poolAddr, 3000);
+        Assert.assertEquals(2, client.getAllManagedConnections().values().iterator().next().size());
+
+        setWritable(conn, false);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(RequestBody.DEFAULT_SERVER_RETURN_STR,
+                client.invokeSync(poolAddr, req, 3000));
+        }
+        Assert.assertEquals(10, serverUserProcessor.getInvokeTimes());
+        Assert.assertEquals(0, conn.getPendingWriteBytes());
+    }
+
+    private static void setWritable(Connection conn, boolean writable) {
+        conn.getChannel().unsafe().outboundBuffer().setUserDefinedWritability(1, writable);
+    }
+}